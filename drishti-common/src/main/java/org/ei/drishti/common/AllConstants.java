@@ -86,6 +86,7 @@ public class AllConstants {
         public static final String SUB_CENTER = "subCenter";
         public static final String PHC = "phc";
         public static final String QUANTITY = "quantity";
+        public static final String REPORT_KEY = "reportKey";
         public static final String SERVICE_PROVIDER_ANM = "ANM";
     }
 
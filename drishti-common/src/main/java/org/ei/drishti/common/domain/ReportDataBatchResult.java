@@ -0,0 +1,75 @@
+package org.ei.drishti.common.domain;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ReportDataBatchResult implements Serializable {
+    @JsonProperty
+    private int submittedCount;
+    @JsonProperty
+    private Map<Integer, String> failures = new TreeMap<>();
+    @JsonProperty
+    private Map<Integer, Integer> existingCounts = new TreeMap<>();
+
+    public ReportDataBatchResult() {
+    }
+
+    public ReportDataBatchResult(int submittedCount) {
+        this.submittedCount = submittedCount;
+    }
+
+    public ReportDataBatchResult withFailure(int index, String reason) {
+        failures.put(index, reason);
+        return this;
+    }
+
+    /**
+     * Records how many of the reports of a record were already saved, and so were not saved again by a backfill.
+     */
+    public ReportDataBatchResult withExistingCount(int index, int count) {
+        existingCounts.put(index, count);
+        return this;
+    }
+
+    public int submittedCount() {
+        return submittedCount;
+    }
+
+    public int savedCount() {
+        return submittedCount - failures.size();
+    }
+
+    public Map<Integer, String> failures() {
+        return failures;
+    }
+
+    public int existingCount(int index) {
+        Integer count = existingCounts.get(index);
+        return count == null ? 0 : count;
+    }
+
+    public Map<Integer, Integer> existingCounts() {
+        return existingCounts;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return EqualsBuilder.reflectionEquals(this, obj);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+}
@@ -1,8 +1,24 @@
 package org.ei.drishti.common.monitor;
 
 public enum Metric {
+    HTTP_CONNECTIONS_IN_POOL,
+    HTTP_REQUEST_TIME,
+    REPORTING_AGGREGATOR_LAG_ROWS,
+    REPORTING_AGGREGATOR_LAG_SECONDS,
     REPORTING_ANM_REPORTS_CACHE_TIME,
     REPORTING_ANM_REPORTS_INSERT_TIME,
+    REPORTING_CACHE_HITS,
+    REPORTING_CACHE_LOAD_TIME,
+    REPORTING_CACHE_MISSES,
+    REPORTING_DIMENSION_INDEX_LOAD_TIME,
+    REPORTING_OUTBOX_DEPTH,
+    REPORTING_OUTBOX_LAG,
+    REPORTING_OUTBOX_SUBMIT_TIME,
+    REPORTING_RULE_EVALUATIONS,
+    REPORTING_RULE_MEMO_HITS,
     REPORTING_SERVICE_PROVIDED_CACHE_TIME,
     REPORTING_SERVICE_PROVIDED_INSERT_TIME,
+    ZIGGY_ENGINE_BORROW_TIME,
+    ZIGGY_ENGINES_IN_USE,
+    ZIGGY_SAVE_FORM_TIME,
 }
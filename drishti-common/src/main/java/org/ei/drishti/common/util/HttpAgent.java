@@ -2,12 +2,15 @@ package org.ei.drishti.common.util;
 
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -19,49 +22,95 @@ import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.protocol.HTTP;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.security.KeyStore;
 import java.security.Security;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.ei.drishti.common.monitor.Metric.HTTP_CONNECTIONS_IN_POOL;
+import static org.ei.drishti.common.monitor.Metric.HTTP_REQUEST_TIME;
 
 @Component
 public class HttpAgent {
+    public static final int NO_TIMEOUT = 0;
+    private static final ResponseHandler<HttpResponse> BUFFERED_BODY = new ResponseHandler<HttpResponse>() {
+        @Override
+        public HttpResponse handle(int statusCode, InputStream body) throws IOException {
+            return new HttpResponse(statusCode == HttpStatus.SC_OK, statusCode, IOUtils.toString(body));
+        }
+    };
 
     private final DefaultHttpClient httpClient;
+    private final ThreadSafeClientConnManager connectionManager;
+    private final ExecutorService asyncExecutor;
+    private final Monitor monitor;
+    private final int socketTimeoutInMillis;
+
+    @Autowired
+    public HttpAgent(Monitor monitor,
+                     @Value("#{drishti['http.max.connections']}") int maxConnections,
+                     @Value("#{drishti['http.max.connections.per.route']}") int maxConnectionsPerRoute,
+                     @Value("#{drishti['http.connection.timeout.in.milliseconds']}") int connectionTimeoutInMillis,
+                     @Value("#{drishti['http.socket.timeout.in.milliseconds']}") int socketTimeoutInMillis,
+                     @Value("#{drishti['http.async.threads']}") int asyncThreads) {
+        this(monitor, maxConnections, maxConnectionsPerRoute, connectionTimeoutInMillis, socketTimeoutInMillis, asyncThreads,
+                sslSocketFactoryWithDrishtiCertificate());
+    }
+
+    HttpAgent(Monitor monitor, int maxConnections, int maxConnectionsPerRoute, int connectionTimeoutInMillis,
+              int socketTimeoutInMillis, int asyncThreads, SocketFactory httpsSocketFactory) {
+        this.monitor = monitor;
+        this.socketTimeoutInMillis = socketTimeoutInMillis;
 
-    public HttpAgent() {
         BasicHttpParams basicHttpParams = new BasicHttpParams();
-        HttpConnectionParams.setConnectionTimeout(basicHttpParams, 30000);
-        HttpConnectionParams.setSoTimeout(basicHttpParams, 60000);
+        HttpConnectionParams.setConnectionTimeout(basicHttpParams, connectionTimeoutInMillis);
+        HttpConnectionParams.setSoTimeout(basicHttpParams, socketTimeoutInMillis);
+        ConnManagerParams.setMaxTotalConnections(basicHttpParams, maxConnections);
+        ConnManagerParams.setMaxConnectionsPerRoute(basicHttpParams, new ConnPerRouteBean(maxConnectionsPerRoute));
+        ConnManagerParams.setTimeout(basicHttpParams, connectionTimeoutInMillis);
 
         SchemeRegistry registry = new SchemeRegistry();
         registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
-        registry.register(new Scheme("https", sslSocketFactoryWithDrishtiCertificate(), 443));
+        registry.register(new Scheme("https", httpsSocketFactory, 443));
 
-        ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(basicHttpParams, registry);
+        connectionManager = new ThreadSafeClientConnManager(basicHttpParams, registry);
         httpClient = new DefaultHttpClient(connectionManager, basicHttpParams);
+        asyncExecutor = Executors.newFixedThreadPool(Math.max(1, asyncThreads));
     }
 
     public HttpResponse post(String url, String data, String contentType) {
+        return post(url, data, contentType, socketTimeoutInMillis);
+    }
+
+    public HttpResponse post(String url, String data, String contentType, int socketTimeoutInMillis) {
         HttpPost request = new HttpPost(url);
         try {
             request.setHeader(HTTP.CONTENT_TYPE, contentType);
             StringEntity entity = new StringEntity(data);
             entity.setContentEncoding(contentType);
             request.setEntity(entity);
-            org.apache.http.HttpResponse response = httpClient.execute(request);
-            return new HttpResponse(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK, IOUtils.toString(response.getEntity().getContent()));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        return execute(request, socketTimeoutInMillis, BUFFERED_BODY);
     }
 
     public HttpResponse put(String url, Map<String, String> formParams) {
@@ -72,40 +121,104 @@ public class HttpAgent {
                 urlParameters.add(new BasicNameValuePair(param, formParams.get(param)));
             }
             request.setEntity(new UrlEncodedFormEntity(urlParameters));
-            org.apache.http.HttpResponse response = httpClient.execute(request);
-            return new HttpResponse(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK,
-                    IOUtils.toString(response.getEntity().getContent()));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        return execute(request, socketTimeoutInMillis, BUFFERED_BODY);
     }
 
     public HttpResponse get(String url) {
-        HttpGet request = new HttpGet(url);
-        try {
-            org.apache.http.HttpResponse response = httpClient.execute(request);
-            return new HttpResponse(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK, IOUtils.toString(response.getEntity().getContent()));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        return get(url, socketTimeoutInMillis);
+    }
+
+    public HttpResponse get(String url, int socketTimeoutInMillis) {
+        return execute(new HttpGet(url), socketTimeoutInMillis, BUFFERED_BODY);
+    }
+
+    public <T> T get(String url, HttpResponseReader<T> reader) {
+        return get(url, socketTimeoutInMillis, reader);
+    }
+
+    public <T> T get(String url, int socketTimeoutInMillis, final HttpResponseReader<T> reader) {
+        return execute(new HttpGet(url), socketTimeoutInMillis, new ResponseHandler<T>() {
+            @Override
+            public T handle(int statusCode, InputStream body) throws IOException {
+                return reader.read(statusCode == HttpStatus.SC_OK, body);
+            }
+        });
     }
 
     public HttpResponse getWithSocketTimeout(String url) {
-        HttpGet request = new HttpGet(url);
+        return get(url, NO_TIMEOUT);
+    }
+
+    public Future<HttpResponse> getAsync(final String url) {
+        return asyncExecutor.submit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return get(url);
+            }
+        });
+    }
+
+    public Future<HttpResponse> postAsync(final String url, final String data, final String contentType) {
+        return asyncExecutor.submit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return post(url, data, contentType);
+            }
+        });
+    }
+
+    public Future<HttpResponse> putAsync(final String url, final Map<String, String> formParams) {
+        return asyncExecutor.submit(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return put(url, formParams);
+            }
+        });
+    }
+
+    public int connectionsInPool() {
+        return connectionManager.getConnectionsInPool();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        asyncExecutor.shutdown();
+        connectionManager.shutdown();
+    }
+
+    private <T> T execute(HttpUriRequest request, int socketTimeoutInMillis, ResponseHandler<T> handler) {
+        // Timeouts are set on the request, so that one call never changes them for the others sharing the client.
+        HttpConnectionParams.setSoTimeout(request.getParams(), socketTimeoutInMillis);
+        Probe probe = monitor.start(HTTP_REQUEST_TIME);
         try {
-            httpClient.getParams().setParameter(CoreConnectionPNames.SO_TIMEOUT, 0);
             org.apache.http.HttpResponse response = httpClient.execute(request);
-            return new HttpResponse(response.getStatusLine().getStatusCode() == HttpStatus.SC_OK, IOUtils.toString(response.getEntity().getContent()));
+            int statusCode = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return handler.handle(statusCode, new ByteArrayInputStream(new byte[0]));
+            }
+            try {
+                return handler.handle(statusCode, entity.getContent());
+            } finally {
+                entity.consumeContent();
+            }
         } catch (Exception e) {
+            request.abort();
             throw new RuntimeException(e);
+        } finally {
+            monitor.end(probe);
+            monitor.addObservationFor(HTTP_CONNECTIONS_IN_POOL, connectionsInPool());
         }
     }
 
-    private SocketFactory sslSocketFactoryWithDrishtiCertificate() {
+    private static SocketFactory sslSocketFactoryWithDrishtiCertificate() {
         try {
             Security.addProvider(new BouncyCastleProvider());
             KeyStore trustedKeystore = KeyStore.getInstance("BKS");
-            InputStream inputStream = this.getClass().getResourceAsStream("/drishti_client.keystore");
+            InputStream inputStream = HttpAgent.class.getResourceAsStream("/drishti_client.keystore");
             try {
                 trustedKeystore.load(inputStream, "phone red pen".toCharArray());
             } finally {
@@ -120,4 +233,8 @@ public class HttpAgent {
             throw new AssertionError(e);
         }
     }
+
+    private interface ResponseHandler<T> {
+        T handle(int statusCode, InputStream body) throws IOException;
+    }
 }
@@ -1,11 +1,19 @@
 package org.ei.drishti.common.util;
 
+import org.apache.commons.httpclient.HttpStatus;
+
 public class HttpResponse {
     private final boolean isSuccess;
+    private final int statusCode;
     private final String body;
 
     public HttpResponse(boolean isSuccess, String body) {
+        this(isSuccess, isSuccess ? HttpStatus.SC_OK : HttpStatus.SC_INTERNAL_SERVER_ERROR, body);
+    }
+
+    public HttpResponse(boolean isSuccess, int statusCode, String body) {
         this.isSuccess = isSuccess;
+        this.statusCode = statusCode;
         this.body = body;
     }
 
@@ -13,6 +21,17 @@ public class HttpResponse {
         return isSuccess;
     }
 
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Whether the request itself was refused, so sending it again unchanged would be refused again.
+     */
+    public boolean isClientError() {
+        return statusCode >= 400 && statusCode < 500;
+    }
+
     public String body() {
         return body;
     }
@@ -0,0 +1,12 @@
+package org.ei.drishti.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a response body as it streams in, instead of buffering all of it into a string first. The body must
+ * not be used after read returns: the connection goes back to the pool.
+ */
+public interface HttpResponseReader<T> {
+    T read(boolean isSuccess, InputStream body) throws IOException;
+}
@@ -0,0 +1,175 @@
+package org.ei.drishti.common.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.ei.drishti.common.monitor.Monitor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpAgentTest {
+    private static final int SLOW_RESPONSE_IN_MILLIS = 500;
+
+    private HttpServer server;
+    private String url;
+    private List<HttpAgent> agents = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 10);
+        server.createContext("/fast", respondingWith("fast", 0));
+        server.createContext("/slow", respondingWith("slow", SLOW_RESPONSE_IN_MILLIS));
+        server.createContext("/unavailable", respondingWith(503, "unavailable", 0));
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (HttpAgent agent : agents) {
+            agent.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldNotKeepTheTimeoutOfARequestForTheNextRequestOnTheSameConnection() throws Exception {
+        HttpAgent agent = agent(1, 1, 2000);
+
+        assertEquals("fast", agent.get(url + "/fast", 100).body());
+        assertEquals("slow", agent.get(url + "/slow").body());
+        assertEquals(1, agent.connectionsInPool());
+
+        try {
+            agent.get(url + "/slow", 100);
+            fail("Expected the request to time out");
+        } catch (RuntimeException expected) {
+        }
+        assertEquals("slow", agent.get(url + "/slow").body());
+    }
+
+    @Test
+    public void shouldReleaseTheConnectionWhenTheStreamingReaderReturnsWithoutReadingTheBody() throws Exception {
+        HttpAgent agent = agent(1, 1, 2000);
+
+        String result = agent.get(url + "/fast", 2000, new HttpResponseReader<String>() {
+            @Override
+            public String read(boolean isSuccess, InputStream body) throws IOException {
+                return "not read";
+            }
+        });
+
+        assertEquals("not read", result);
+        assertEquals("fast", agent.get(url + "/fast").body());
+    }
+
+    @Test
+    public void shouldReleaseTheConnectionWhenTheStreamingReaderThrows() throws Exception {
+        HttpAgent agent = agent(1, 1, 2000);
+
+        try {
+            agent.get(url + "/fast", 2000, new HttpResponseReader<String>() {
+                @Override
+                public String read(boolean isSuccess, InputStream body) throws IOException {
+                    body.read();
+                    throw new IOException("Could not parse the body");
+                }
+            });
+            fail("Expected the reader to fail");
+        } catch (RuntimeException expected) {
+        }
+
+        assertEquals("fast", agent.get(url + "/fast").body());
+    }
+
+    @Test
+    public void shouldTellTheStatusCodeOfTheResponse() throws Exception {
+        HttpAgent agent = agent(1, 1, 2000);
+
+        HttpResponse unavailable = agent.get(url + "/unavailable");
+        HttpResponse missing = agent.get(url + "/missing");
+
+        assertFalse(unavailable.isSuccess());
+        assertEquals(503, unavailable.statusCode());
+        assertFalse(unavailable.isClientError());
+        assertEquals(404, missing.statusCode());
+        assertTrue(missing.isClientError());
+        assertEquals(200, agent.get(url + "/fast").statusCode());
+    }
+
+    @Test
+    public void shouldTakeThePoolLimitsFromItsConfiguration() throws Exception {
+        assertEquals(1, successfulConcurrentRequests(agent(2, 1, 2000)));
+        assertEquals(1, successfulConcurrentRequests(agent(1, 2, 2000)));
+        assertEquals(2, successfulConcurrentRequests(agent(2, 2, 2000)));
+    }
+
+    private int successfulConcurrentRequests(HttpAgent agent) throws InterruptedException {
+        List<Future<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            responses.add(agent.getAsync(url + "/slow"));
+        }
+        int successes = 0;
+        for (Future<HttpResponse> response : responses) {
+            try {
+                response.get();
+                successes++;
+            } catch (ExecutionException e) {
+                // Waited longer than the connection timeout for a connection from the pool.
+            }
+        }
+        return successes;
+    }
+
+    private HttpAgent agent(int maxConnections, int maxConnectionsPerRoute, int socketTimeoutInMillis) {
+        HttpAgent agent = new HttpAgent(new Monitor(), maxConnections, maxConnectionsPerRoute, SLOW_RESPONSE_IN_MILLIS / 2,
+                socketTimeoutInMillis, 2, SSLSocketFactory.getSocketFactory());
+        agents.add(agent);
+        return agent;
+    }
+
+    private HttpHandler respondingWith(String body, int delayInMillis) {
+        return respondingWith(200, body, delayInMillis);
+    }
+
+    private HttpHandler respondingWith(final int statusCode, final String body, final int delayInMillis) {
+        return new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(delayInMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                IOUtils.toByteArray(exchange.getRequestBody());
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(statusCode, bytes.length);
+                OutputStream responseBody = exchange.getResponseBody();
+                try {
+                    responseBody.write(bytes);
+                } finally {
+                    responseBody.close();
+                }
+            }
+        };
+    }
+}
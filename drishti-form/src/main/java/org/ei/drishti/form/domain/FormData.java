@@ -33,10 +33,18 @@ public class FormData {
         this.sub_forms = sub_forms;
     }
 
+    public String bindType() {
+        return bind_type;
+    }
+
     public List<FormField> fields() {
         return fields;
     }
 
+    public List<SubFormData> subForms() {
+        return sub_forms;
+    }
+
     public String getField(String name) {
         if (mapOfFieldsByName == null) {
             createFieldMapByName();
@@ -35,6 +35,14 @@ public class SubFormData {
         return name;
     }
 
+    public String bindType() {
+        return bind_type;
+    }
+
+    public List<FormField> fields() {
+        return fields;
+    }
+
     public List<Map<String, String>> instances() {
         return instances;
     }
@@ -3,7 +3,9 @@ package org.ei.drishti.form.repository;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentOperationResult;
 import org.ektorp.ViewQuery;
+import org.ektorp.ViewResult;
 import org.ektorp.support.GenerateView;
 import org.ektorp.support.View;
 import org.motechproject.dao.MotechBaseRepository;
@@ -11,10 +13,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 @Repository
 public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
+    private static final int STREAMING_PAGE_SIZE = 100;
+
     @Autowired
     protected AllFormSubmissions(@Qualifier("drishtiFormDatabaseConnector") CouchDbConnector db) {
         super(FormSubmission.class, db);
@@ -33,6 +43,22 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
         return submissions.get(0);
     }
 
+    public Set<String> findExistingInstanceIds(Collection<String> instanceIds) {
+        Set<String> existingInstanceIds = new HashSet<>();
+        if (instanceIds.isEmpty()) {
+            return existingInstanceIds;
+        }
+        List<ViewResult.Row> rows = db.queryView(createQuery("by_instanceId").keys(instanceIds)).getRows();
+        for (ViewResult.Row row : rows) {
+            existingInstanceIds.add(row.getKey());
+        }
+        return existingInstanceIds;
+    }
+
+    public List<DocumentOperationResult> addAll(List<FormSubmission> submissions) {
+        return db.executeBulk(submissions);
+    }
+
     @View(name = "formSubmission_by_server_version", map = "function(doc) { if (doc.type === 'FormSubmission') { emit([doc.serverVersion], null); } }")
     public List<FormSubmission> findByServerVersion(long serverVersion) {
         ComplexKey startKey = ComplexKey.of(serverVersion + 1);
@@ -40,6 +66,10 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
         return db.queryView(createQuery("formSubmission_by_server_version").startKey(startKey).endKey(endKey).includeDocs(true), FormSubmission.class);
     }
 
+    public List<FormSubmission> findAllWithServerVersion(long serverVersion) {
+        return db.queryView(createQuery("formSubmission_by_server_version").key(ComplexKey.of(serverVersion)).includeDocs(true), FormSubmission.class);
+    }
+
     public List<FormSubmission> allFormSubmissions(long serverVersion, Integer batchSize) {
         ComplexKey startKey = ComplexKey.of(serverVersion + 1);
         ComplexKey endKey = ComplexKey.of(Long.MAX_VALUE);
@@ -54,6 +84,10 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
         return db.queryView(query, FormSubmission.class);
     }
 
+    public Iterable<FormSubmission> streamAllFormSubmissions(long serverVersion, Integer batchSize) {
+        return new PagedFormSubmissions("formSubmission_by_server_version", new Object[0], serverVersion, batchSize);
+    }
+
     @View(
             name = "formSubmission_by_anm_and_server_version",
             map = "function(doc) { if (doc.type === 'FormSubmission') { emit([doc.anmId, doc.serverVersion], null); } }")
@@ -69,6 +103,10 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
         }
         return db.queryView(query, FormSubmission.class);
     }
+
+    public Iterable<FormSubmission> streamByANMIDAndServerVersion(String anmId, long version, Integer batchSize) {
+        return new PagedFormSubmissions("formSubmission_by_anm_and_server_version", new Object[]{anmId}, version, batchSize);
+    }
     
     @View(name = "formSubmission_by_form_name_and_server_version", 
     		map = "function(doc) { if (doc.type === 'FormSubmission') { emit([doc.formName, doc.serverVersion]); } }")
@@ -81,6 +119,10 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
                 .includeDocs(true), FormSubmission.class);
     }
 
+    public Iterable<FormSubmission> streamByFormNameAndServerVersion(String formName, long version, Integer batchSize) {
+        return new PagedFormSubmissions("formSubmission_by_form_name_and_server_version", new Object[]{formName}, version, batchSize);
+    }
+
     @View(name = "formSubmission_by_form_name_not_openmrs_synced", 
     		map = "function(doc) { if (doc.type === 'FormSubmission') { try{ if(doc.formMetaData.openmrsSynced === true){return;} }catch(e){} emit(doc.formName); }}")
     public List<FormSubmission> findByOpenmrsNotSynced(String formName) {
@@ -88,5 +130,85 @@ public class AllFormSubmissions extends MotechBaseRepository<FormSubmission> {
                 .key(formName)
                 .includeDocs(true), FormSubmission.class);
     }
-    
+
+    private ComplexKey keyOf(Object[] keyPrefix, long serverVersion) {
+        Object[] components = new Object[keyPrefix.length + 1];
+        System.arraycopy(keyPrefix, 0, components, 0, keyPrefix.length);
+        components[keyPrefix.length] = serverVersion;
+        return ComplexKey.of(components);
+    }
+
+    private class PagedFormSubmissions implements Iterable<FormSubmission> {
+        private final String viewName;
+        private final Object[] keyPrefix;
+        private final long serverVersion;
+        private final Integer batchSize;
+
+        PagedFormSubmissions(String viewName, Object[] keyPrefix, long serverVersion, Integer batchSize) {
+            this.viewName = viewName;
+            this.keyPrefix = keyPrefix;
+            this.serverVersion = serverVersion;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public Iterator<FormSubmission> iterator() {
+            return new Iterator<FormSubmission>() {
+                private List<FormSubmission> page = new ArrayList<>();
+                private int positionInPage = 0;
+                private int fetched = 0;
+                private boolean exhausted = false;
+                private FormSubmission last;
+
+                @Override
+                public boolean hasNext() {
+                    if (positionInPage < page.size()) {
+                        return true;
+                    }
+                    if (exhausted) {
+                        return false;
+                    }
+                    fetchNextPage();
+                    return positionInPage < page.size();
+                }
+
+                @Override
+                public FormSubmission next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    last = page.get(positionInPage++);
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+
+                private void fetchNextPage() {
+                    int pageSize = batchSize == null ? STREAMING_PAGE_SIZE : Math.min(STREAMING_PAGE_SIZE, batchSize - fetched);
+                    if (pageSize <= 0) {
+                        exhausted = true;
+                        page = new ArrayList<>();
+                        positionInPage = 0;
+                        return;
+                    }
+                    ViewQuery query = createQuery(viewName)
+                            .endKey(keyOf(keyPrefix, Long.MAX_VALUE))
+                            .includeDocs(true)
+                            .limit(pageSize);
+                    if (last == null) {
+                        query.startKey(keyOf(keyPrefix, serverVersion + 1));
+                    } else {
+                        query.startKey(keyOf(keyPrefix, last.serverVersion())).startDocId(last.getId()).skip(1);
+                    }
+                    page = db.queryView(query, FormSubmission.class);
+                    positionInPage = 0;
+                    fetched += page.size();
+                    exhausted = page.size() < pageSize;
+                }
+            };
+        }
+    }
 }
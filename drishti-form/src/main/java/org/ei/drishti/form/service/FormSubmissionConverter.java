@@ -14,16 +14,17 @@ import static java.lang.String.valueOf;
 
 public class FormSubmissionConverter {
     private static Logger logger = LoggerFactory.getLogger(FormSubmissionConverter.class.toString());
+    private static final Gson gson = new Gson();
 
     public static FormSubmissionDTO from(FormSubmission formSubmission) {
         return new FormSubmissionDTO(formSubmission.anmId(), formSubmission.instanceId(), formSubmission.entityId(), formSubmission.formName(),
-                new Gson().toJson(formSubmission.instance()), valueOf(formSubmission.clientVersion()), formSubmission.formDataDefinitionVersion())
+                gson.toJson(formSubmission.instance()), valueOf(formSubmission.clientVersion()), formSubmission.formDataDefinitionVersion())
                 .withServerVersion(valueOf(formSubmission.serverVersion()));
     }
 
     public static FormSubmission toFormSubmission(FormSubmissionDTO formSubmissionDTO) {
         try {
-            FormInstance formInstance = new Gson().fromJson(formSubmissionDTO.instance(), FormInstance.class);
+            FormInstance formInstance = gson.fromJson(formSubmissionDTO.instance(), FormInstance.class);
             return new FormSubmission(formSubmissionDTO.anmId(), formSubmissionDTO.instanceId(), formSubmissionDTO.formName(), formSubmissionDTO.entityId(),
                     formSubmissionDTO.formDataDefinitionVersion(), parseLong(formSubmissionDTO.clientVersion()), formInstance);
         } catch (Exception e) {
@@ -34,7 +35,7 @@ public class FormSubmissionConverter {
 
     public static FormSubmission toFormSubmissionWithVersion(FormSubmissionDTO formSubmissionDTO) {
         return new FormSubmission(formSubmissionDTO.anmId(), formSubmissionDTO.instanceId(), formSubmissionDTO.formName(),
-                formSubmissionDTO.entityId(), parseLong(formSubmissionDTO.clientVersion()), formSubmissionDTO.formDataDefinitionVersion(), new Gson().fromJson(formSubmissionDTO.instance(), FormInstance.class),
+                formSubmissionDTO.entityId(), parseLong(formSubmissionDTO.clientVersion()), formSubmissionDTO.formDataDefinitionVersion(), gson.fromJson(formSubmissionDTO.instance(), FormInstance.class),
                 parseLong(formSubmissionDTO.serverVersion()));
     }
 }
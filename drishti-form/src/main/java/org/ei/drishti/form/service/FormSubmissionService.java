@@ -5,13 +5,16 @@ import org.ei.drishti.common.util.DateUtil;
 import org.ei.drishti.dto.form.FormSubmissionDTO;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.form.repository.AllFormSubmissions;
+import org.ektorp.DocumentOperationResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 import static ch.lambdaj.collection.LambdaCollections.with;
 import static java.text.MessageFormat.format;
@@ -36,6 +39,19 @@ public class FormSubmissionService {
         });
     }
 
+    public List<FormSubmissionDTO> fetch(long formFetchToken, int batchSize) {
+        List<FormSubmission> submissions = allFormSubmissions.allFormSubmissions(formFetchToken, batchSize);
+        if (submissions.size() == batchSize) {
+            submissions = withoutTrailingServerVersion(submissions);
+        }
+        return with(submissions).convert(new Converter<FormSubmission, FormSubmissionDTO>() {
+            @Override
+            public FormSubmissionDTO convert(FormSubmission submission) {
+                return FormSubmissionConverter.from(submission);
+            }
+        });
+    }
+
     public List<FormSubmission> getNewSubmissionsForANM(String anmIdentifier, Long version, Integer batchSize) {
         return allFormSubmissions.findByANMIDAndServerVersion(anmIdentifier, version, batchSize);
     }
@@ -44,15 +60,16 @@ public class FormSubmissionService {
         return allFormSubmissions.allFormSubmissions(version, batchSize);
     }
 
-    public void submit(List<FormSubmissionDTO> formSubmissionsDTO) {
-        List<FormSubmission> formSubmissions = with(formSubmissionsDTO).convert(new Converter<FormSubmissionDTO, FormSubmission>() {
-            @Override
-            public FormSubmission convert(FormSubmissionDTO submission) {
-                return FormSubmissionConverter.toFormSubmission(submission);
-            }
-        });
+    public Iterable<FormSubmission> streamNewSubmissionsForANM(String anmIdentifier, Long version, Integer batchSize) {
+        return allFormSubmissions.streamByANMIDAndServerVersion(anmIdentifier, version, batchSize);
+    }
 
-        sort(formSubmissions, timeStampComparator());
+    public Iterable<FormSubmission> streamAllSubmissions(Long version, Integer batchSize) {
+        return allFormSubmissions.streamAllFormSubmissions(version, batchSize);
+    }
+
+    public void submit(List<FormSubmissionDTO> formSubmissionsDTO) {
+        List<FormSubmission> formSubmissions = toSortedFormSubmissions(formSubmissionsDTO);
         for (FormSubmission submission : formSubmissions) {
             if (allFormSubmissions.exists(submission.instanceId())) {
                 logger.warn(format("Received form submission that already exists. Skipping. Submission: {0}", submission));
@@ -64,6 +81,38 @@ public class FormSubmissionService {
             allFormSubmissions.add(submission);
         }
     }
+
+    public List<DocumentOperationResult> submitInBulk(List<FormSubmissionDTO> formSubmissionsDTO) {
+        List<FormSubmission> formSubmissions = toSortedFormSubmissions(formSubmissionsDTO);
+        List<String> instanceIds = new ArrayList<>();
+        for (FormSubmission submission : formSubmissions) {
+            instanceIds.add(submission.instanceId());
+        }
+        Set<String> seenInstanceIds = allFormSubmissions.findExistingInstanceIds(instanceIds);
+
+        List<FormSubmission> newSubmissions = new ArrayList<>();
+        long serverVersion = 0L;
+        for (FormSubmission submission : formSubmissions) {
+            if (!seenInstanceIds.add(submission.instanceId())) {
+                logger.warn(format("Received form submission that already exists. Skipping. Submission: {0}", submission));
+                continue;
+            }
+            serverVersion = Math.max(DateUtil.millis(), serverVersion + 1);
+            submission.setServerVersion(serverVersion);
+            newSubmissions.add(submission);
+        }
+        if (newSubmissions.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        logger.info(format("Saving {0} new forms out of {1} received in bulk.", newSubmissions.size(), formSubmissions.size()));
+        List<DocumentOperationResult> failures = allFormSubmissions.addAll(newSubmissions);
+        for (DocumentOperationResult failure : failures) {
+            logger.error(format("Failed to save form submission with document Id: {0}. Error: {1}, Reason: {2}",
+                    failure.getId(), failure.getError(), failure.getReason()));
+        }
+        return failures;
+    }
     
     public List<FormSubmission> getSubmissionByFormName(String formName, long serverVersion) {
         return allFormSubmissions.findByFormName(formName, serverVersion);
@@ -78,6 +127,32 @@ public class FormSubmissionService {
 	}
 
 
+    // The fetch token only remembers a server version, so a page must not end half way through
+    // submissions sharing one. The trimmed submissions are picked up again by the next page. When the
+    // whole page shares one server version, all submissions with it are fetched, however many there are.
+    private List<FormSubmission> withoutTrailingServerVersion(List<FormSubmission> submissions) {
+        long lastServerVersion = submissions.get(submissions.size() - 1).serverVersion();
+        int end = submissions.size();
+        while (end > 0 && submissions.get(end - 1).serverVersion() == lastServerVersion) {
+            end--;
+        }
+        if (end == 0) {
+            return allFormSubmissions.findAllWithServerVersion(lastServerVersion);
+        }
+        return new ArrayList<>(submissions.subList(0, end));
+    }
+
+    private List<FormSubmission> toSortedFormSubmissions(List<FormSubmissionDTO> formSubmissionsDTO) {
+        List<FormSubmission> formSubmissions = with(formSubmissionsDTO).convert(new Converter<FormSubmissionDTO, FormSubmission>() {
+            @Override
+            public FormSubmission convert(FormSubmissionDTO submission) {
+                return FormSubmissionConverter.toFormSubmission(submission);
+            }
+        });
+        sort(formSubmissions, timeStampComparator());
+        return formSubmissions;
+    }
+
     private Comparator<FormSubmission> timeStampComparator() {
         return new Comparator<FormSubmission>() {
             public int compare(FormSubmission firstSubmission, FormSubmission secondSubmission) {
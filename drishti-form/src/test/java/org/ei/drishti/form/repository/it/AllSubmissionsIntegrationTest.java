@@ -10,6 +10,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.*;
 
@@ -33,6 +38,15 @@ public class AllSubmissionsIntegrationTest {
         assertFalse(formSubmissions.exists("Invalid Instance Id"));
     }
 
+    @Test
+    public void shouldFindInstanceIdsWhichAlreadyExist() throws Exception {
+        formSubmissions.add(new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", 1L, "1", null, 0L));
+        formSubmissions.add(new FormSubmission("anm id 1", "instance id 2", "form name 1", "entity id 2", 1L, "1", null, 0L));
+
+        assertEquals(new HashSet<>(asList("instance id 1", "instance id 2")),
+                formSubmissions.findExistingInstanceIds(asList("instance id 1", "instance id 2", "instance id 3")));
+    }
+
     @Test
     public void shouldFetchAllFormSubmissionsAfterServerVersion() throws Exception {
         long baseTimeStamp = DateUtil.now().getMillis();
@@ -72,6 +86,17 @@ public class AllSubmissionsIntegrationTest {
 
     }
 
+    @Test
+    public void shouldFetchAllFormSubmissionsWithAServerVersion() throws Exception {
+        FormSubmission firstFormSubmission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, 1L);
+        FormSubmission secondFormSubmission = new FormSubmission("anm id 2", "instance id 2", "form name 1", "entity id 2", 0L, "1", null, 2L);
+        FormSubmission thirdFormSubmission = new FormSubmission("anm id 3", "instance id 3", "form name 1", "entity id 3", 0L, "1", null, 2L);
+        formSubmissions.addAll(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission));
+
+        assertEquals(new HashSet<>(asList("instance id 2", "instance id 3")), instanceIdsOf(formSubmissions.findAllWithServerVersion(2L)));
+        assertEquals(0, formSubmissions.findAllWithServerVersion(3L).size());
+    }
+
     @Test
     public void shouldFetchFormSubmissionsBasedOnANMIDTimeStampAndBatchSize() throws Exception {
         long baseTimeStamp = DateUtil.now().getMillis();
@@ -91,4 +116,71 @@ public class AllSubmissionsIntegrationTest {
 
         assertEquals(0, formSubmissions.findByANMIDAndServerVersion("ANM 1", thirdFormSubmission.serverVersion(), null).size());
     }
+
+    @Test
+    public void shouldStreamFormSubmissionsForANMInServerVersionOrderHonouringBatchSize() throws Exception {
+        long baseTimeStamp = DateUtil.now().getMillis();
+        FormSubmission firstFormSubmission = new FormSubmission("ANM 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, baseTimeStamp);
+        formSubmissions.add(firstFormSubmission);
+        FormSubmission secondFormSubmission = new FormSubmission("ANM 1", "instance id 2", "form name 1", "entity id 2", 1L, "1", null, baseTimeStamp + 1);
+        formSubmissions.add(secondFormSubmission);
+        FormSubmission thirdFormSubmission = new FormSubmission("ANM 1", "instance id 3", "form name 1", "entity id 3", 2L, "1", null, baseTimeStamp + 2);
+        formSubmissions.add(thirdFormSubmission);
+        formSubmissions.add(new FormSubmission("ANM 2", "instance id 4", "form name 1", "entity id 4", 3L, "1", null, baseTimeStamp + 3));
+
+        assertEquals(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission), toList(formSubmissions.streamByANMIDAndServerVersion("ANM 1", 0L, null)));
+        assertEquals(asList(secondFormSubmission), toList(formSubmissions.streamByANMIDAndServerVersion("ANM 1", firstFormSubmission.serverVersion(), 1)));
+        assertEquals(4, toList(formSubmissions.streamAllFormSubmissions(0L, null)).size());
+        assertEquals(asList(secondFormSubmission, thirdFormSubmission),
+                toList(formSubmissions.streamByFormNameAndServerVersion("form name 1", firstFormSubmission.serverVersion(), 2)));
+    }
+
+    @Test
+    public void shouldStreamFormSubmissionsAcrossPagesWithoutSkippingOrRepeatingSubmissionsOfTheSameServerVersion() throws Exception {
+        List<FormSubmission> submissions = new ArrayList<>();
+        for (int i = 0; i < 105; i++) {
+            long serverVersion = i < 97 ? i + 1 : 98;
+            submissions.add(new FormSubmission("ANM 1", "instance id " + i, "form name 1", "entity id " + i, 0L, "1", null, serverVersion));
+        }
+        formSubmissions.addAll(submissions);
+        formSubmissions.add(new FormSubmission("ANM 2", "instance id 105", "form name 1", "entity id 105", 0L, "1", null, 98L));
+
+        List<FormSubmission> streamed = toList(formSubmissions.streamByANMIDAndServerVersion("ANM 1", 0L, null));
+
+        assertEquals(105, streamed.size());
+        assertEquals(instanceIdsOf(submissions), instanceIdsOf(streamed));
+        assertServerVersionsDoNotDecrease(streamed);
+
+        List<FormSubmission> firstBatch = toList(formSubmissions.streamByANMIDAndServerVersion("ANM 1", 0L, 102));
+        assertEquals(102, firstBatch.size());
+        assertEquals(102, instanceIdsOf(firstBatch).size());
+        assertEquals(streamed.subList(0, 102), firstBatch);
+
+        List<FormSubmission> all = toList(formSubmissions.streamAllFormSubmissions(0L, null));
+        assertEquals(106, all.size());
+        assertEquals(106, instanceIdsOf(all).size());
+        assertServerVersionsDoNotDecrease(all);
+    }
+
+    private Set<String> instanceIdsOf(List<FormSubmission> submissions) {
+        Set<String> instanceIds = new HashSet<>();
+        for (FormSubmission submission : submissions) {
+            instanceIds.add(submission.instanceId());
+        }
+        return instanceIds;
+    }
+
+    private void assertServerVersionsDoNotDecrease(List<FormSubmission> submissions) {
+        for (int i = 1; i < submissions.size(); i++) {
+            assertTrue(submissions.get(i - 1).serverVersion() <= submissions.get(i).serverVersion());
+        }
+    }
+
+    private List<FormSubmission> toList(Iterable<FormSubmission> submissions) {
+        List<FormSubmission> list = new ArrayList<>();
+        for (FormSubmission submission : submissions) {
+            list.add(submission);
+        }
+        return list;
+    }
 }
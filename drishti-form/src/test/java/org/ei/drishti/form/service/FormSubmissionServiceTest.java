@@ -3,6 +3,7 @@ package org.ei.drishti.form.service;
 import org.ei.drishti.dto.form.FormSubmissionDTO;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.form.repository.AllFormSubmissions;
+import org.ektorp.DocumentOperationResult;
 import org.joda.time.LocalDate;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,11 +11,14 @@ import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.motechproject.util.DateUtil;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import static java.lang.String.valueOf;
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -79,6 +83,41 @@ public class FormSubmissionServiceTest {
         verifyNoMoreInteractions(allFormSubmissions);
     }
 
+    @Test
+    public void shouldSaveAllNewSubmissionsInOneBulkOperationWithIncreasingServerVersions() throws Exception {
+        long baseTimeStamp = DateUtil.now().getMillis();
+        FormSubmissionDTO earlierFormSubmissionDTO = new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name 1", null, valueOf(baseTimeStamp), "1");
+        FormSubmissionDTO laterFormSubmissionDTO = new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name 1", null, valueOf(baseTimeStamp + 1), "1");
+        FormSubmissionDTO existingFormSubmissionDTO = new FormSubmissionDTO("anm id 2", "instance id 3", "entity id 3", "form name 1", null, valueOf(baseTimeStamp + 2), "1");
+        FormSubmissionDTO duplicateFormSubmissionDTO = new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name 1", null, valueOf(baseTimeStamp + 3), "1");
+        FormSubmission earlierFormSubmission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", baseTimeStamp, "1", null, serverVersion);
+        FormSubmission laterFormSubmission = new FormSubmission("anm id 2", "instance id 2", "form name 1", "entity id 2", baseTimeStamp + 1, "1", null, serverVersion + 1);
+        List<DocumentOperationResult> failures = asList(DocumentOperationResult.newInstance("doc id", "conflict", "Document update conflict."));
+        when(allFormSubmissions.findExistingInstanceIds(asList("instance id 1", "instance id 2", "instance id 3", "instance id 2")))
+                .thenReturn(new HashSet<>(asList("instance id 3")));
+        when(allFormSubmissions.addAll(asList(earlierFormSubmission, laterFormSubmission))).thenReturn(failures);
+
+        List<DocumentOperationResult> result = formSubmissionService.submitInBulk(
+                asList(duplicateFormSubmissionDTO, laterFormSubmissionDTO, existingFormSubmissionDTO, earlierFormSubmissionDTO));
+
+        assertEquals(failures, result);
+        verify(allFormSubmissions).findExistingInstanceIds(asList("instance id 1", "instance id 2", "instance id 3", "instance id 2"));
+        verify(allFormSubmissions).addAll(asList(earlierFormSubmission, laterFormSubmission));
+        verifyNoMoreInteractions(allFormSubmissions);
+    }
+
+    @Test
+    public void shouldNotSaveAnythingInBulkWhenAllSubmissionsAlreadyExist() throws Exception {
+        long baseTimeStamp = DateUtil.now().getMillis();
+        FormSubmissionDTO formSubmissionDTO = new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name 1", null, valueOf(baseTimeStamp), "1");
+        when(allFormSubmissions.findExistingInstanceIds(asList("instance id 1"))).thenReturn(new HashSet<>(asList("instance id 1")));
+
+        List<DocumentOperationResult> result = formSubmissionService.submitInBulk(asList(formSubmissionDTO));
+
+        assertEquals(Collections.<DocumentOperationResult>emptyList(), result);
+        verify(allFormSubmissions, times(0)).addAll(anyListOf(FormSubmission.class));
+    }
+
     @Test
     public void shouldFetchFormSubmissionsByGiven() throws Exception {
         long baseTimeStamp = DateUtil.now().getMillis();
@@ -93,6 +132,34 @@ public class FormSubmissionServiceTest {
         assertEquals(asList(firstFormSubmissionDTO, secondFormSubmissionDTO), formSubmissionDTOs);
     }
 
+    @Test
+    public void shouldNotEndAFullPageHalfWayThroughSubmissionsSharingAServerVersion() throws Exception {
+        long baseTimeStamp = DateUtil.now().getMillis();
+        FormSubmission firstFormSubmission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", baseTimeStamp, "1", null, 1L);
+        FormSubmission secondFormSubmission = new FormSubmission("anm id 2", "instance id 2", "form name 1", "entity id 2", baseTimeStamp + 1, "1", null, 2L);
+        FormSubmission thirdFormSubmission = new FormSubmission("anm id 2", "instance id 3", "form name 1", "entity id 3", baseTimeStamp + 2, "1", null, 2L);
+        when(allFormSubmissions.allFormSubmissions(0L, 3)).thenReturn(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission));
+        when(allFormSubmissions.allFormSubmissions(0L, 4)).thenReturn(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission));
+
+        assertEquals(asList(FormSubmissionConverter.from(firstFormSubmission)), formSubmissionService.fetch(0L, 3));
+        assertEquals(3, formSubmissionService.fetch(0L, 4).size());
+    }
+
+    @Test
+    public void shouldFetchAllSubmissionsOfAServerVersionWhenTheyDoNotFitInAPage() throws Exception {
+        long baseTimeStamp = DateUtil.now().getMillis();
+        FormSubmission firstFormSubmission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", baseTimeStamp, "1", null, 2L);
+        FormSubmission secondFormSubmission = new FormSubmission("anm id 2", "instance id 2", "form name 1", "entity id 2", baseTimeStamp + 1, "1", null, 2L);
+        FormSubmission thirdFormSubmission = new FormSubmission("anm id 2", "instance id 3", "form name 1", "entity id 3", baseTimeStamp + 2, "1", null, 2L);
+        when(allFormSubmissions.allFormSubmissions(0L, 2)).thenReturn(asList(firstFormSubmission, secondFormSubmission));
+        when(allFormSubmissions.findAllWithServerVersion(2L)).thenReturn(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission));
+
+        List<FormSubmissionDTO> formSubmissionDTOs = formSubmissionService.fetch(0L, 2);
+
+        assertEquals(asList(FormSubmissionConverter.from(firstFormSubmission), FormSubmissionConverter.from(secondFormSubmission),
+                FormSubmissionConverter.from(thirdFormSubmission)), formSubmissionDTOs);
+    }
+
     @Test
     public void shouldFetchAllFormSubmissions() throws Exception {
         long baseTimeStamp = DateUtil.now().getMillis();
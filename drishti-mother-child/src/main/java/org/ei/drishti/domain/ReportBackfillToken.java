@@ -0,0 +1,52 @@
+package org.ei.drishti.domain;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.ektorp.support.TypeDiscriminator;
+import org.motechproject.model.MotechBaseDataObject;
+
+@TypeDiscriminator("doc.type === 'ReportBackfillToken'")
+public class ReportBackfillToken extends MotechBaseDataObject {
+    @JsonProperty
+    private String name;
+    @JsonProperty
+    private long version;
+
+    protected ReportBackfillToken() {
+    }
+
+    public ReportBackfillToken(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public ReportBackfillToken withVersion(long version) {
+        this.version = version;
+        return this;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, "id");
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
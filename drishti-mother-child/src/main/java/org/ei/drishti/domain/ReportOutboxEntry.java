@@ -0,0 +1,136 @@
+package org.ei.drishti.domain;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.ei.drishti.common.domain.ReportDataDeleteRequest;
+import org.ei.drishti.common.domain.ReportDataUpdateRequest;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ektorp.support.TypeDiscriminator;
+import org.motechproject.model.MotechBaseDataObject;
+
+import java.util.UUID;
+
+/**
+ * Report data, or a request to update or delete reports, waiting in the outbox. Entries are delivered in the
+ * order of their creation time and sequence number. The report key of report data is sent along with the data,
+ * so that the reporting application saves it only once however many times it is delivered. An entry that keeps
+ * being rejected is dead-lettered: it stays in the outbox but is no longer submitted.
+ */
+@TypeDiscriminator("doc.type === 'ReportOutboxEntry'")
+public class ReportOutboxEntry extends MotechBaseDataObject {
+    public enum Action {
+        SUBMIT, UPDATE, DELETE
+    }
+
+    @JsonProperty
+    private Action action = Action.SUBMIT;
+    @JsonProperty
+    private ReportingData data;
+    @JsonProperty
+    private ReportDataUpdateRequest updateRequest;
+    @JsonProperty
+    private ReportDataDeleteRequest deleteRequest;
+    @JsonProperty
+    private long createdAt;
+    @JsonProperty
+    private long sequence;
+    @JsonProperty
+    private String reportKey;
+    @JsonProperty
+    private int rejectedAttempts;
+    @JsonProperty
+    private boolean deadLettered;
+
+    protected ReportOutboxEntry() {
+    }
+
+    public ReportOutboxEntry(ReportingData data, long createdAt) {
+        this(data, createdAt, UUID.randomUUID().toString());
+    }
+
+    public ReportOutboxEntry(ReportingData data, long createdAt, String reportKey) {
+        this.data = data;
+        this.createdAt = createdAt;
+        this.reportKey = reportKey;
+    }
+
+    public ReportOutboxEntry(ReportDataUpdateRequest updateRequest, long createdAt) {
+        this.action = Action.UPDATE;
+        this.updateRequest = updateRequest;
+        this.createdAt = createdAt;
+    }
+
+    public ReportOutboxEntry(ReportDataDeleteRequest deleteRequest, long createdAt) {
+        this.action = Action.DELETE;
+        this.deleteRequest = deleteRequest;
+        this.createdAt = createdAt;
+    }
+
+    public ReportOutboxEntry withSequence(long sequence) {
+        this.sequence = sequence;
+        return this;
+    }
+
+    public ReportOutboxEntry rejected() {
+        rejectedAttempts++;
+        return this;
+    }
+
+    public ReportOutboxEntry deadLetter() {
+        deadLettered = true;
+        return this;
+    }
+
+    public Action action() {
+        return action;
+    }
+
+    public ReportingData data() {
+        return data;
+    }
+
+    public ReportDataUpdateRequest updateRequest() {
+        return updateRequest;
+    }
+
+    public ReportDataDeleteRequest deleteRequest() {
+        return deleteRequest;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public String reportKey() {
+        return reportKey;
+    }
+
+    public int rejectedAttempts() {
+        return rejectedAttempts;
+    }
+
+    public boolean isDeadLettered() {
+        return deadLettered;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, "id");
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -17,6 +17,7 @@ import org.motechproject.server.event.annotations.MotechListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.text.MessageFormat;
@@ -33,19 +34,29 @@ public class FormEventListener {
     private FormSubmissionService formSubmissionService;
     private FormEntityService formEntityService;
     private AllFormExportTokens allFormExportTokens;
+    private boolean bulkIngestion;
+    private int fetchBatchSize;
     private static final ReentrantLock lock = new ReentrantLock();
 
     @Autowired
-    public FormEventListener(FormSubmissionService formSubmissionService, FormEntityService formEntityService, AllFormExportTokens allFormExportTokens) {
+    public FormEventListener(FormSubmissionService formSubmissionService, FormEntityService formEntityService, AllFormExportTokens allFormExportTokens,
+                             @Value("#{drishti['form.submission.bulk.ingestion']}") boolean bulkIngestion,
+                             @Value("#{drishti['form.fetch.batch.size']}") int fetchBatchSize) {
         this.formSubmissionService = formSubmissionService;
         this.formEntityService = formEntityService;
         this.allFormExportTokens = allFormExportTokens;
+        this.bulkIngestion = bulkIngestion;
+        this.fetchBatchSize = fetchBatchSize;
     }
 
     @MotechListener(subjects = FormSubmissionEvent.SUBJECT)
     public void submitForms(MotechEvent event) {
         List<FormSubmissionDTO> formSubmissions = new Gson().fromJson((String) event.getParameters().get("data"), new TypeToken<List<FormSubmissionDTO>>() {
         }.getType());
+        if (bulkIngestion) {
+            formSubmissionService.submitInBulk(formSubmissions);
+            return;
+        }
         formSubmissionService.submit(formSubmissions);
     }
 
@@ -59,21 +70,32 @@ public class FormEventListener {
             logger.info("Fetching Forms");
             long version = getVersion();
 
-            List<FormSubmissionDTO> formSubmissionDTOs = formSubmissionService.fetch(version);
-            if (formSubmissionDTOs.isEmpty()) {
-                logger.info("No new forms found. Export token: " + version);
-                return;
-            }
+            while (true) {
+                List<FormSubmissionDTO> formSubmissionDTOs = formSubmissionService.fetch(version, fetchBatchSize);
+                if (formSubmissionDTOs.isEmpty()) {
+                    logger.info("No new forms found. Export token: " + version);
+                    return;
+                }
 
-            logger.info(format("Fetched {0} new forms found. Export token: {1}", formSubmissionDTOs.size(), version));
-            List<FormSubmission> formSubmissions = with(formSubmissionDTOs)
-                    .convert(new Converter<FormSubmissionDTO, FormSubmission>() {
-                        @Override
-                        public FormSubmission convert(FormSubmissionDTO submission) {
-                            return FormSubmissionConverter.toFormSubmissionWithVersion(submission);
-                        }
-                    });
-            formEntityService.process(formSubmissions);
+                logger.info(format("Fetched {0} new forms found. Export token: {1}", formSubmissionDTOs.size(), version));
+                List<FormSubmission> formSubmissions = with(formSubmissionDTOs)
+                        .convert(new Converter<FormSubmissionDTO, FormSubmission>() {
+                            @Override
+                            public FormSubmission convert(FormSubmissionDTO submission) {
+                                return FormSubmissionConverter.toFormSubmissionWithVersion(submission);
+                            }
+                        });
+                formEntityService.process(formSubmissions);
+
+                long nextVersion = version;
+                for (FormSubmission submission : formSubmissions) {
+                    nextVersion = Math.max(nextVersion, submission.serverVersion());
+                }
+                if (nextVersion == version) {
+                    return;
+                }
+                version = nextVersion;
+            }
         } catch (Exception e) {
             logger.error(MessageFormat.format("{0} occurred while trying to fetch forms. Message: {1} with stack trace {2}",
                     e.toString(), e.getMessage(), getFullStackTrace(e)));
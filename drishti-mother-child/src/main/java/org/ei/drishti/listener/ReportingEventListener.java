@@ -1,91 +1,134 @@
 package org.ei.drishti.listener;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import org.apache.commons.io.IOUtils;
 import org.ei.drishti.common.domain.ANMReport;
+import org.ei.drishti.common.domain.ReportDataDeleteRequest;
+import org.ei.drishti.common.domain.ReportDataUpdateRequest;
+import org.ei.drishti.common.domain.ReportingData;
 import org.ei.drishti.common.util.HttpAgent;
-import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.common.util.HttpResponseReader;
 import org.ei.drishti.event.ReportDeleteEvent;
 import org.ei.drishti.event.ReportEvent;
 import org.ei.drishti.event.ReportUpdateEvent;
+import org.ei.drishti.scheduler.ReportOutboxScheduler;
 import org.ei.drishti.service.reporting.ANMReportingService;
+import org.ei.drishti.service.reporting.ReportOutbox;
 import org.motechproject.scheduler.domain.MotechEvent;
 import org.motechproject.server.event.annotations.MotechListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.ei.drishti.scheduler.ANMReportScheduler.SUBJECT;
 
 @Component
 public class ReportingEventListener {
     public static final String FETCH_REPORTS_FOR_ALL_ANMS_ACTION = "fetchForAllANMs";
-    public static final String SUBMIT_REPORT_ACTION = "submit";
-    public static final String UPDATE_REPORT_ACTION = "update";
-    public static final String DELETE_REPORT_ACTION = "delete";
+    private static final int ANM_REPORTS_CHUNK_SIZE = 100;
     private ANMReportingService anmReportService;
     private HttpAgent httpAgent;
+    private ReportOutbox reportOutbox;
     private String url;
     private static Logger logger = LoggerFactory.getLogger(ReportingEventListener.class);
 
     @Autowired
-    public ReportingEventListener(ANMReportingService anmReportService, HttpAgent httpAgent,
+    public ReportingEventListener(ANMReportingService anmReportService, HttpAgent httpAgent, ReportOutbox reportOutbox,
                                   @Value("#{drishti['drishti.reporting.url']}") String url) {
         this.anmReportService = anmReportService;
         this.httpAgent = httpAgent;
+        this.reportOutbox = reportOutbox;
         this.url = url;
     }
 
     @MotechListener(subjects = ReportEvent.SUBJECT)
     public void submitReportingData(MotechEvent event) {
-        String data = new Gson().toJson(event.getParameters().get("data"));
-        HttpResponse response = httpAgent.post(url + "/" + SUBMIT_REPORT_ACTION, data, MediaType.APPLICATION_JSON_VALUE);
-        if (!response.isSuccess()) {
-            logger.error("Reporting data post failed. URL: " + url + "/" + SUBMIT_REPORT_ACTION + ". Data: " + data + ". Response: " + response.body());
-        }
+        reportOutbox.append(asList((ReportingData) event.getParameters().get("data")));
+    }
+
+    @MotechListener(subjects = ReportOutboxScheduler.SUBJECT)
+    public void flushReportOutbox(MotechEvent event) {
+        reportOutbox.scheduleFlush();
     }
 
     @MotechListener(subjects = ReportUpdateEvent.SUBJECT)
     public void updateReportingData(MotechEvent event) {
-        String data = new Gson().toJson(event.getParameters().get("data"));
-        HttpResponse response = httpAgent.post(url + "/" + UPDATE_REPORT_ACTION, data, MediaType.APPLICATION_JSON_VALUE);
-        if (!response.isSuccess()) {
-            logger.error("Reporting data post failed. URL: " + url + "/" + UPDATE_REPORT_ACTION + ". Data: " + data + ". Response: " + response.body());
-        }
+        reportOutbox.appendUpdate((ReportDataUpdateRequest) event.getParameters().get("data"));
     }
 
     @MotechListener(subjects = ReportDeleteEvent.SUBJECT)
     public void deleteReportingData(MotechEvent event) {
-        String data = new Gson().toJson(event.getParameters().get("data"));
-        HttpResponse response = httpAgent.post(url + "/" + DELETE_REPORT_ACTION, data, MediaType.APPLICATION_JSON_VALUE);
-        if (!response.isSuccess()) {
-            logger.error("Reporting data post failed. URL: " + url + "/" + DELETE_REPORT_ACTION + ". Data: " + data + ". Response: " + response.body());
-        }
+        reportOutbox.appendDelete((ReportDataDeleteRequest) event.getParameters().get("data"));
     }
 
+    /**
+     * Fetches the reports of all ANMs and replaces their report actions, reading the reports as they stream in
+     * and processing them a chunk at a time instead of holding the reports of every ANM in memory.
+     */
     @MotechListener(subjects = SUBJECT)
     public void fetchANMReports(MotechEvent event) throws Exception {
         logger.info("Fetching ANM reports...");
 
         anmReportService.reportFromEntityData();
-        HttpResponse response = httpAgent.getWithSocketTimeout(url + "/" + FETCH_REPORTS_FOR_ALL_ANMS_ACTION);
-        if (!response.isSuccess()) {
-            logger.error("ANM Reports fetch failed. URL: " + url + "/" + FETCH_REPORTS_FOR_ALL_ANMS_ACTION + ". Response body: " + response.body());
+        Integer numberOfReports = httpAgent.get(url + "/" + FETCH_REPORTS_FOR_ALL_ANMS_ACTION,
+                new HttpResponseReader<Integer>() {
+                    @Override
+                    public Integer read(boolean isSuccess, InputStream body) throws IOException {
+                        if (!isSuccess) {
+                            logger.error("ANM Reports fetch failed. URL: " + url + "/" + FETCH_REPORTS_FOR_ALL_ANMS_ACTION
+                                    + ". Response body: " + IOUtils.toString(body));
+                            return null;
+                        }
+                        return processInChunks(new JsonReader(new InputStreamReader(body, "UTF-8")));
+                    }
+                });
+        if (numberOfReports == null) {
             return;
         }
-        List<ANMReport> anmReports = new Gson().fromJson(response.body(), new TypeToken<List<ANMReport>>() {
-        }.getType());
-        if (anmReports.isEmpty()) {
+        if (numberOfReports == 0) {
             logger.info("No ANM Reports fetched");
             return;
         }
-        anmReportService.processReports(anmReports);
 
         logger.info("Done fetching ANM reports.");
     }
+
+    private int processInChunks(JsonReader reader) throws IOException {
+        Gson gson = new Gson();
+        List<ANMReport> chunk = new ArrayList<>();
+        int numberOfReports = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            chunk.add(gson.<ANMReport>fromJson(reader, ANMReport.class));
+            if (chunk.size() == ANM_REPORTS_CHUNK_SIZE) {
+                process(chunk, numberOfReports == 0);
+                numberOfReports += chunk.size();
+                chunk = new ArrayList<>();
+            }
+        }
+        reader.endArray();
+        if (!chunk.isEmpty()) {
+            process(chunk, numberOfReports == 0);
+            numberOfReports += chunk.size();
+        }
+        return numberOfReports;
+    }
+
+    private void process(List<ANMReport> chunk, boolean isFirstChunk) {
+        if (isFirstChunk) {
+            anmReportService.processReports(chunk);
+        } else {
+            anmReportService.processMoreReports(chunk);
+        }
+    }
 }
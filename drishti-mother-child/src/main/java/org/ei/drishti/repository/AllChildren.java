@@ -18,9 +18,36 @@ import java.util.Map;
 
 @Repository
 public class AllChildren extends MotechBaseRepository<Child> {
+    private final LocationCache locationCache;
+
     @Autowired
-    protected AllChildren(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
+    protected AllChildren(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db, LocationCache locationCache) {
         super(Child.class, db);
+        this.locationCache = locationCache;
+    }
+
+    @Override
+    public void add(Child child) {
+        super.add(child);
+        locationCache.invalidate(child.caseId());
+    }
+
+    @Override
+    public void update(Child child) {
+        super.update(child);
+        locationCache.invalidate(child.caseId());
+    }
+
+    @Override
+    public void remove(Child child) {
+        super.remove(child);
+        locationCache.invalidate(child.caseId());
+    }
+
+    @Override
+    public void removeAll() {
+        super.removeAll();
+        locationCache.clear();
     }
 
     @GenerateView
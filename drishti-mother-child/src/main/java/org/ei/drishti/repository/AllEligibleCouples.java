@@ -21,11 +21,37 @@ import java.util.Map;
 public class AllEligibleCouples extends MotechBaseRepository<EligibleCouple> {
     private static Logger logger = LoggerFactory.getLogger(AllEligibleCouples.class);
     private final AllMothers allMothers;
+    private final LocationCache locationCache;
 
     @Autowired
-    public AllEligibleCouples(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db, AllMothers allMothers) {
+    public AllEligibleCouples(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db, AllMothers allMothers, LocationCache locationCache) {
         super(EligibleCouple.class, db);
         this.allMothers = allMothers;
+        this.locationCache = locationCache;
+    }
+
+    @Override
+    public void add(EligibleCouple couple) {
+        super.add(couple);
+        locationCache.invalidate(couple.caseId());
+    }
+
+    @Override
+    public void update(EligibleCouple couple) {
+        super.update(couple);
+        locationCache.invalidate(couple.caseId());
+    }
+
+    @Override
+    public void remove(EligibleCouple couple) {
+        super.remove(couple);
+        locationCache.invalidate(couple.caseId());
+    }
+
+    @Override
+    public void removeAll() {
+        super.removeAll();
+        locationCache.clear();
     }
 
     @GenerateView
@@ -3,6 +3,7 @@ package org.ei.drishti.repository;
 import org.ei.drishti.common.AllConstants;
 import org.ei.drishti.domain.MCTSReport;
 import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentOperationResult;
 import org.ektorp.support.GenerateView;
 import org.ektorp.support.View;
 import org.joda.time.LocalDate;
@@ -11,6 +12,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -41,6 +45,28 @@ public class AllMCTSReports extends MotechBaseRepository<MCTSReport> {
                 .includeDocs(true), MCTSReport.class);
     }
 
+    @View(name = "all_mcts_reports_by_entity_id",
+            map = "function(doc) { if (doc.type === 'MCTSReport') { emit(doc.entityId); } }")
+    public List<MCTSReport> allFor(Collection<String> entityIds) {
+        if (entityIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return db.queryView(createQuery("all_mcts_reports_by_entity_id")
+                .keys(entityIds)
+                .includeDocs(true), MCTSReport.class);
+    }
+
+    public void addAll(List<MCTSReport> reports) {
+        if (reports.isEmpty()) {
+            return;
+        }
+        List<DocumentOperationResult> failures = db.executeBulk(reports);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(MessageFormat.format("Could not save {0} of {1} MCTS reports. Failures: {2}",
+                    failures.size(), reports.size(), failures));
+        }
+    }
+
     public void markReportAsSent(MCTSReport report)  {
         this.update(report.markReportAsSent());
     }
@@ -17,9 +17,36 @@ import java.util.Map;
 
 @Repository
 public class AllMothers extends MotechBaseRepository<Mother> {
+    private final LocationCache locationCache;
+
     @Autowired
-    public AllMothers(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
+    public AllMothers(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db, LocationCache locationCache) {
         super(Mother.class, db);
+        this.locationCache = locationCache;
+    }
+
+    @Override
+    public void add(Mother mother) {
+        super.add(mother);
+        locationCache.invalidate(mother.caseId());
+    }
+
+    @Override
+    public void update(Mother mother) {
+        super.update(mother);
+        locationCache.invalidate(mother.caseId());
+    }
+
+    @Override
+    public void remove(Mother mother) {
+        super.remove(mother);
+        locationCache.invalidate(mother.caseId());
+    }
+
+    @Override
+    public void removeAll() {
+        super.removeAll();
+        locationCache.clear();
     }
 
     @GenerateView
@@ -0,0 +1,38 @@
+package org.ei.drishti.repository;
+
+import org.ei.drishti.common.AllConstants;
+import org.ei.drishti.domain.ReportBackfillToken;
+import org.ektorp.CouchDbConnector;
+import org.ektorp.support.GenerateView;
+import org.motechproject.dao.MotechBaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public class AllReportBackfillTokens extends MotechBaseRepository<ReportBackfillToken> {
+    @Autowired
+    protected AllReportBackfillTokens(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
+        super(ReportBackfillToken.class, db);
+    }
+
+    @GenerateView
+    public ReportBackfillToken findByName(String name) {
+        List<ReportBackfillToken> tokens = queryView("by_name", name);
+        if (tokens == null || tokens.isEmpty()) {
+            return null;
+        }
+        return tokens.get(0);
+    }
+
+    public ReportBackfillToken tokenFor(String name, long initialVersion) {
+        ReportBackfillToken token = findByName(name);
+        if (token == null) {
+            token = new ReportBackfillToken(name, initialVersion);
+            add(token);
+        }
+        return token;
+    }
+}
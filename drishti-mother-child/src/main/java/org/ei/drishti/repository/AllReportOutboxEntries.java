@@ -0,0 +1,65 @@
+package org.ei.drishti.repository;
+
+import org.ei.drishti.common.AllConstants;
+import org.ei.drishti.domain.ReportOutboxEntry;
+import org.ektorp.BulkDeleteDocument;
+import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentOperationResult;
+import org.ektorp.ViewResult;
+import org.ektorp.support.View;
+import org.motechproject.dao.MotechBaseRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+@Repository
+public class AllReportOutboxEntries extends MotechBaseRepository<ReportOutboxEntry> {
+    private static final String ALL_WAITING_BY_CREATED_AT_AND_SEQUENCE = "all_waiting_report_outbox_entries_by_created_at_and_sequence";
+
+    @Autowired
+    protected AllReportOutboxEntries(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
+        super(ReportOutboxEntry.class, db);
+    }
+
+    public void addAll(List<ReportOutboxEntry> entries) {
+        executeBulk(entries, "save");
+    }
+
+    public void removeAll(List<ReportOutboxEntry> entries) {
+        List<BulkDeleteDocument> deletes = new ArrayList<>();
+        for (ReportOutboxEntry entry : entries) {
+            deletes.add(BulkDeleteDocument.of(entry));
+        }
+        executeBulk(deletes, "remove");
+    }
+
+    @View(name = ALL_WAITING_BY_CREATED_AT_AND_SEQUENCE,
+            map = "function(doc) { if (doc.type === 'ReportOutboxEntry' && !doc.deadLettered) { emit([doc.createdAt, doc.sequence || 0], null); } }",
+            reduce = "_count")
+    public List<ReportOutboxEntry> oldest(int limit) {
+        return db.queryView(createQuery(ALL_WAITING_BY_CREATED_AT_AND_SEQUENCE)
+                .reduce(false)
+                .limit(limit)
+                .includeDocs(true), ReportOutboxEntry.class);
+    }
+
+    public int depth() {
+        List<ViewResult.Row> rows = db.queryView(createQuery(ALL_WAITING_BY_CREATED_AT_AND_SEQUENCE).reduce(true)).getRows();
+        return rows.isEmpty() ? 0 : rows.get(0).getValueAsInt();
+    }
+
+    private void executeBulk(List<?> documents, String operation) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<DocumentOperationResult> failures = db.executeBulk(documents);
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(MessageFormat.format("Could not {0} {1} of {2} report outbox entries. Failures: {3}",
+                    operation, failures.size(), documents.size(), failures));
+        }
+    }
+}
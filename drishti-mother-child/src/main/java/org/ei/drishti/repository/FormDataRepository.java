@@ -11,6 +11,7 @@ import org.ei.drishti.domain.EligibleCouple;
 import org.ei.drishti.domain.Mother;
 import org.ei.drishti.domain.Person;
 import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentOperationResult;
 import org.ektorp.ViewQuery;
 import org.ektorp.ViewResult;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,11 +19,14 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static java.text.MessageFormat.format;
 import static java.util.UUID.randomUUID;
 
 @Repository
@@ -32,13 +36,16 @@ public class FormDataRepository {
     private static final String DOCUMENT_TYPE = "type";
     private static final String ID_FIELD_ON_ENTITY = "caseId";
     private static final String CASE_ID_VIEW_NAME = "by_caseId";
-    private Map<String, Field[]> fieldSetMap;
+    private Map<String, Set<String>> fieldSetMap;
     private CouchDbConnector db;
     private Map<String, String> designDocMap;
+    private LocationCache locationCache;
+    private final ThreadLocal<Map<String, ObjectNode>> unitOfWork = new ThreadLocal<>();
 
     @Autowired
-    public FormDataRepository(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
+    public FormDataRepository(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db, LocationCache locationCache) {
         this.db = db;
+        this.locationCache = locationCache;
         initMaps();
     }
 
@@ -49,35 +56,60 @@ public class FormDataRepository {
         designDocMap.put(AllConstants.FormEntityTypes.PERSON_TYPE, "Person");
         designDocMap.put(AllConstants.FormEntityTypes.MOTHER_TYPE, "Mother");
         designDocMap.put(AllConstants.FormEntityTypes.CHILD_TYPE, "Child");
-        fieldSetMap.put(AllConstants.FormEntityTypes.ELIGIBLE_COUPLE_TYPE, EligibleCouple.class.getDeclaredFields());
-        fieldSetMap.put(AllConstants.FormEntityTypes.PERSON_TYPE, Person.class.getDeclaredFields());
-        fieldSetMap.put(AllConstants.FormEntityTypes.MOTHER_TYPE, Mother.class.getDeclaredFields());
-        fieldSetMap.put(AllConstants.FormEntityTypes.CHILD_TYPE, Child.class.getDeclaredFields());
+        fieldSetMap.put(AllConstants.FormEntityTypes.ELIGIBLE_COUPLE_TYPE, fieldNamesOf(EligibleCouple.class));
+        fieldSetMap.put(AllConstants.FormEntityTypes.PERSON_TYPE, fieldNamesOf(Person.class));
+        fieldSetMap.put(AllConstants.FormEntityTypes.MOTHER_TYPE, fieldNamesOf(Mother.class));
+        fieldSetMap.put(AllConstants.FormEntityTypes.CHILD_TYPE, fieldNamesOf(Child.class));
+    }
+
+    /**
+     * Starts collecting the entity saves made on this thread. Saved entities are kept in memory, successive
+     * saves of the same entity are merged into one document, and nothing is written until
+     * {@link #commitUnitOfWork()} flushes them all in one bulk request.
+     */
+    public void beginUnitOfWork() {
+        unitOfWork.set(new LinkedHashMap<String, ObjectNode>());
+    }
+
+    public void commitUnitOfWork() {
+        Map<String, ObjectNode> pendingEntities = unitOfWork.get();
+        unitOfWork.remove();
+        if (pendingEntities == null || pendingEntities.isEmpty()) {
+            return;
+        }
+        List<DocumentOperationResult> failures = db.executeBulk(pendingEntities.values());
+        for (ObjectNode entity : pendingEntities.values()) {
+            invalidateLocationOf(entity);
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(format("Could not save {0} of {1} entities. Failures: {2}",
+                    failures.size(), pendingEntities.size(), failures));
+        }
+    }
+
+    public void rollbackUnitOfWork() {
+        unitOfWork.remove();
     }
 
     public String saveEntity(String entityType, String fields) {
-        Map<String, String> updatedFieldsMap = getStringMapFromJSON(fields);
+        return saveEntity(entityType, getStringMapFromJSON(fields));
+    }
+
+    public String saveEntity(String entityType, Map<String, String> updatedFieldsMap) {
         String entityId = updatedFieldsMap.get(ID);
         String docEntityType = designDocMap.get(entityType);
 
-        List<ViewResult.Row> viewQueryResult = getDBViewQueryResult(entityId, docEntityType);
-
-        ObjectNode entity;
-        ObjectNode details;
-        if (viewQueryResult.size() != 0) {
-            JsonNode document = viewQueryResult.get(0).getDocAsNode();
-            entity = (ObjectNode) document;
-            details = (ObjectNode) document.get(DETAILS);
-        } else {
-            entity = new ObjectNode(JsonNodeFactory.instance);
-            details = new ObjectNode(JsonNodeFactory.instance);
-            entity.put("_id", randomUUID().toString());
-            entity.put(DOCUMENT_TYPE, docEntityType);
+        Map<String, ObjectNode> pendingEntities = unitOfWork.get();
+        String pendingEntityKey = docEntityType + "/" + entityId;
+        ObjectNode entity = pendingEntities == null ? null : pendingEntities.get(pendingEntityKey);
+        if (entity == null) {
+            entity = loadOrCreateEntity(entityId, docEntityType);
         }
+        ObjectNode details = (ObjectNode) entity.get(DETAILS);
 
-        List<String> fieldList = getFieldsList(entityType);
+        Set<String> fieldNames = fieldSetMap.get(entityType);
         for (String fieldName : updatedFieldsMap.keySet()) {
-            if (fieldList.contains(fieldName)) {
+            if (fieldNames.contains(fieldName)) {
                 entity.put(fieldName, updatedFieldsMap.get(fieldName));
             } else if (fieldName.equals(ID)) {
                 entity.put(ID_FIELD_ON_ENTITY, updatedFieldsMap.get(fieldName));
@@ -87,22 +119,46 @@ public class FormDataRepository {
         }
         entity.put(DETAILS, details);
 
-        db.update(entity);
+        if (pendingEntities == null) {
+            db.update(entity);
+            invalidateLocationOf(entity);
+        } else {
+            pendingEntities.put(pendingEntityKey, entity);
+        }
         return entityId;
     }
 
+    private void invalidateLocationOf(ObjectNode entity) {
+        JsonNode caseId = entity.get(ID_FIELD_ON_ENTITY);
+        if (caseId != null) {
+            locationCache.invalidate(caseId.getTextValue());
+        }
+    }
+
+    private ObjectNode loadOrCreateEntity(String entityId, String docEntityType) {
+        List<ViewResult.Row> viewQueryResult = getDBViewQueryResult(entityId, docEntityType);
+        if (viewQueryResult.size() != 0) {
+            JsonNode document = viewQueryResult.get(0).getDocAsNode();
+            return (ObjectNode) document;
+        }
+        ObjectNode entity = new ObjectNode(JsonNodeFactory.instance);
+        entity.put("_id", randomUUID().toString());
+        entity.put(DOCUMENT_TYPE, docEntityType);
+        entity.put(DETAILS, new ObjectNode(JsonNodeFactory.instance));
+        return entity;
+    }
+
     private List<ViewResult.Row> getDBViewQueryResult(String id, String docEntityType) {
         return db.queryView(new ViewQuery().viewName(CASE_ID_VIEW_NAME).designDocId("_design/" + docEntityType).key(id)
                 .queryParam(ID_FIELD_ON_ENTITY, id).includeDocs(true)).getRows();
     }
 
-    private List<String> getFieldsList(String entityType) {
-        List<String> fieldList = new ArrayList<>();
-        Field[] fieldSet = fieldSetMap.get(entityType);
-        for (Field field : fieldSet) {
-            fieldList.add(field.getName());
+    private Set<String> fieldNamesOf(Class<?> entityClass) {
+        Set<String> fieldNames = new HashSet<>();
+        for (Field field : entityClass.getDeclaredFields()) {
+            fieldNames.add(field.getName());
         }
-        return fieldList;
+        return fieldNames;
     }
 
     private Map<String, String> getStringMapFromJSON(String fields) {
@@ -0,0 +1,103 @@
+package org.ei.drishti.repository;
+
+import org.ei.drishti.domain.Location;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, least recently used cache of what it takes to find the location of an entity: the parent case id of
+ * children and mothers, and the location of eligible couples. Entries are keyed by case id and are dropped by the
+ * repositories whenever the entity with that case id is written, so a cached chain never outlives an update.
+ * An entry read from the database is only cached if its case id was not invalidated since the read started, as
+ * told by a version that changes on every invalidation. Versions are kept for stripes of case ids rather than each
+ * one, so an invalidation now and then needlessly stops another entry from being cached.
+ */
+@Component
+public class LocationCache {
+    private static final int VERSION_STRIPES = 1024;
+
+    private final Map<String, CachedLink> links;
+    private final long[] versions = new long[VERSION_STRIPES];
+
+    @Autowired
+    public LocationCache(@Value("#{drishti['location.cache.size']}") final int maximumSize) {
+        this.links = new LinkedHashMap<String, CachedLink>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLink> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    public synchronized String parentOf(String caseId) {
+        CachedLink link = links.get(caseId);
+        return link == null ? null : link.parentCaseId;
+    }
+
+    public synchronized Location locationOf(String caseId) {
+        CachedLink link = links.get(caseId);
+        return link == null ? null : link.location;
+    }
+
+    public synchronized Versions versions() {
+        return new Versions(versions.clone());
+    }
+
+    public synchronized void cacheParent(String caseId, String parentCaseId, Versions versionsWhenRead) {
+        if (caseId != null && parentCaseId != null && isUnchangedSince(caseId, versionsWhenRead)) {
+            links.put(caseId, new CachedLink(parentCaseId, null));
+        }
+    }
+
+    public synchronized void cacheLocation(String caseId, Location location, Versions versionsWhenRead) {
+        if (caseId != null && location != null && isUnchangedSince(caseId, versionsWhenRead)) {
+            links.put(caseId, new CachedLink(null, location));
+        }
+    }
+
+    public synchronized void invalidate(String caseId) {
+        versions[stripe(caseId)]++;
+        links.remove(caseId);
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < versions.length; i++) {
+            versions[i]++;
+        }
+        links.clear();
+    }
+
+    private boolean isUnchangedSince(String caseId, Versions versionsWhenRead) {
+        int stripe = stripe(caseId);
+        return versions[stripe] == versionsWhenRead.versions[stripe];
+    }
+
+    private static int stripe(String caseId) {
+        return caseId == null ? 0 : (caseId.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    /**
+     * The invalidation versions of all case ids at one point in time, taken before reading entries that are to be cached.
+     */
+    public static class Versions {
+        private final long[] versions;
+
+        private Versions(long[] versions) {
+            this.versions = versions;
+        }
+    }
+
+    private static class CachedLink {
+        private final String parentCaseId;
+        private final Location location;
+
+        CachedLink(String parentCaseId, Location location) {
+            this.parentCaseId = parentCaseId;
+            this.location = location;
+        }
+    }
+}
@@ -4,13 +4,26 @@ import com.google.gson.Gson;
 import org.ei.drishti.domain.FormExportToken;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.repository.AllFormExportTokens;
+import org.ei.drishti.service.reporting.ILocationLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import static java.lang.String.valueOf;
 import static java.text.MessageFormat.format;
@@ -23,22 +36,162 @@ public class FormEntityService {
     private static Logger logger = LoggerFactory.getLogger(FormEntityService.class.toString());
     private ZiggyService ziggyService;
     private AllFormExportTokens allFormExportTokens;
+    private ILocationLoader locationLoader;
+    private int checkpointInterval;
+    private int numberOfWorkers;
+    private boolean useNativeEntityMapper;
 
     @Autowired
-    public FormEntityService(ZiggyService ziggyService, AllFormExportTokens allFormExportTokens) {
+    public FormEntityService(ZiggyService ziggyService, AllFormExportTokens allFormExportTokens, ILocationLoader locationLoader,
+                             @Value("#{drishti['form.export.token.checkpoint.interval']}") int checkpointInterval,
+                             @Value("#{drishti['form.processing.workers']}") int numberOfWorkers,
+                             @Value("#{drishti['ziggy.native.entity.mapper']}") boolean useNativeEntityMapper) {
         this.ziggyService = ziggyService;
         this.allFormExportTokens = allFormExportTokens;
+        this.locationLoader = locationLoader;
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+        this.numberOfWorkers = Math.max(1, numberOfWorkers);
+        this.useNativeEntityMapper = useNativeEntityMapper;
     }
 
     public void process(List<FormSubmission> formSubmissions) {
         sort(formSubmissions, serverVersionComparator());
         FormExportToken exportToken = allFormExportTokens.getAll().get(0);
-        for (FormSubmission submission : formSubmissions) {
-            String params = getParams(submission);
-            logger.info(format("Invoking save for form with instance Id: {0} and for entity Id: {1}",
-                    submission.instanceId(), submission.entityId()));
-            ziggyService.saveForm(params, new Gson().toJson(submission.instance()));
-            allFormExportTokens.update(exportToken.withVersion(submission.serverVersion()));
+        locationLoader.preloadFor(formSubmissions);
+        if (numberOfWorkers > 1) {
+            processInParallel(formSubmissions, exportToken);
+            return;
+        }
+        int processedSinceCheckpoint = 0;
+        try {
+            for (FormSubmission submission : formSubmissions) {
+                save(submission);
+                exportToken.withVersion(submission.serverVersion());
+                if (++processedSinceCheckpoint >= checkpointInterval) {
+                    allFormExportTokens.update(exportToken);
+                    processedSinceCheckpoint = 0;
+                }
+            }
+        } finally {
+            if (processedSinceCheckpoint > 0) {
+                allFormExportTokens.update(exportToken);
+            }
+        }
+    }
+
+    // Submissions of one ANM cover a whole EC - mother - child lineage, so they are kept in one partition
+    // and processed in server version order. Partitions run in parallel and the export token only moves
+    // up to the highest server version below which everything has been processed. As soon as one partition
+    // fails the others are stopped, so that little is saved past the export token and processed again later.
+    private void processInParallel(List<FormSubmission> formSubmissions, FormExportToken exportToken) {
+        List<List<Integer>> partitions = partition(formSubmissions);
+        if (partitions.isEmpty()) {
+            return;
+        }
+        FormProcessingWatermark watermark = new FormProcessingWatermark(formSubmissions, exportToken, allFormExportTokens, checkpointInterval);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        ExecutorService executor = newFixedThreadPool(Math.min(numberOfWorkers, partitions.size()));
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Void>> results = new ArrayList<>();
+        Throwable failure = null;
+        try {
+            for (List<Integer> partition : partitions) {
+                results.add(completionService.submit(new PartitionProcessor(formSubmissions, partition, watermark, cancelled)));
+            }
+            for (int i = 0; i < results.size() && failure == null; i++) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = e;
+        } finally {
+            if (failure != null) {
+                cancelled.set(true);
+                for (Future<Void> result : results) {
+                    result.cancel(true);
+                }
+            }
+            executor.shutdownNow();
+            awaitTermination(executor);
+            watermark.checkpoint();
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    // Saves which were already running when the partitions were cancelled still complete, and are
+    // only checkpointed once they have.
+    private void awaitTermination(ExecutorService executor) {
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<List<Integer>> partition(List<FormSubmission> formSubmissions) {
+        List<List<Integer>> partitions = new ArrayList<>();
+        for (int i = 0; i < numberOfWorkers; i++) {
+            partitions.add(new ArrayList<Integer>());
+        }
+        for (int index = 0; index < formSubmissions.size(); index++) {
+            String anmId = formSubmissions.get(index).anmId();
+            int hash = anmId == null ? 0 : anmId.hashCode();
+            partitions.get((hash & Integer.MAX_VALUE) % numberOfWorkers).add(index);
+        }
+        List<List<Integer>> nonEmptyPartitions = new ArrayList<>();
+        for (List<Integer> partition : partitions) {
+            if (!partition.isEmpty()) {
+                nonEmptyPartitions.add(partition);
+            }
+        }
+        return nonEmptyPartitions;
+    }
+
+    private void save(FormSubmission submission) {
+        logger.info(format("Invoking save for form with instance Id: {0} and for entity Id: {1}",
+                submission.instanceId(), submission.entityId()));
+        if (useNativeEntityMapper) {
+            ziggyService.saveForm(submission);
+            return;
+        }
+        ziggyService.saveForm(getParams(submission), new Gson().toJson(submission.instance()), submission);
+    }
+
+    private class PartitionProcessor implements Callable<Void> {
+        private final List<FormSubmission> formSubmissions;
+        private final List<Integer> partition;
+        private final FormProcessingWatermark watermark;
+        private final AtomicBoolean cancelled;
+
+        PartitionProcessor(List<FormSubmission> formSubmissions, List<Integer> partition, FormProcessingWatermark watermark,
+                           AtomicBoolean cancelled) {
+            this.formSubmissions = formSubmissions;
+            this.partition = partition;
+            this.watermark = watermark;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            for (Integer index : partition) {
+                if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                try {
+                    save(formSubmissions.get(index));
+                } catch (Exception e) {
+                    cancelled.set(true);
+                    throw e;
+                }
+                watermark.complete(index);
+            }
+            return null;
         }
     }
 
@@ -0,0 +1,61 @@
+package org.ei.drishti.service.formSubmission;
+
+import org.ei.drishti.domain.FormExportToken;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.repository.AllFormExportTokens;
+
+import java.util.List;
+
+class FormProcessingWatermark {
+    private final long[] serverVersions;
+    private final boolean[] completed;
+    private final FormExportToken exportToken;
+    private final AllFormExportTokens allFormExportTokens;
+    private final int checkpointInterval;
+    private int contiguouslyCompleted = 0;
+    private int completedSinceCheckpoint = 0;
+    private long checkpointedVersion;
+
+    FormProcessingWatermark(List<FormSubmission> sortedSubmissions, FormExportToken exportToken,
+                            AllFormExportTokens allFormExportTokens, int checkpointInterval) {
+        this.serverVersions = new long[sortedSubmissions.size()];
+        for (int i = 0; i < serverVersions.length; i++) {
+            serverVersions[i] = sortedSubmissions.get(i).serverVersion();
+        }
+        this.completed = new boolean[serverVersions.length];
+        this.exportToken = exportToken;
+        this.allFormExportTokens = allFormExportTokens;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointedVersion = exportToken.getVersion();
+    }
+
+    synchronized void complete(int index) {
+        completed[index] = true;
+        while (contiguouslyCompleted < completed.length && completed[contiguouslyCompleted]) {
+            contiguouslyCompleted++;
+        }
+        if (++completedSinceCheckpoint >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    synchronized void checkpoint() {
+        completedSinceCheckpoint = 0;
+        long version = lowWatermark();
+        if (version <= checkpointedVersion) {
+            return;
+        }
+        allFormExportTokens.update(exportToken.withVersion(version));
+        checkpointedVersion = version;
+    }
+
+    // Highest server version below which every submission has been processed. The export token only
+    // remembers a version, so it never stops in the middle of submissions sharing the same one.
+    private long lowWatermark() {
+        int end = contiguouslyCompleted;
+        while (end > 0 && end < serverVersions.length && serverVersions[end] == serverVersions[end - 1]) {
+            end--;
+        }
+        return end == 0 ? checkpointedVersion : serverVersions[end - 1];
+    }
+}
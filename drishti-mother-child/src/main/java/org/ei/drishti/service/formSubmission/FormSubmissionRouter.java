@@ -97,7 +97,10 @@ public class FormSubmissionRouter {
     }
 
     public void route(String instanceId) throws Exception {
-        FormSubmission submission = formSubmissionsRepository.findByInstanceId(instanceId);
+        route(formSubmissionsRepository.findByInstanceId(instanceId));
+    }
+
+    public void route(FormSubmission submission) throws Exception {
         FormSubmissionHandler handler = handlerMap.get(submission.formName());
         if (handler == null) {
             logger.warn("Could not find a handler due to unknown form submission: " + submission);
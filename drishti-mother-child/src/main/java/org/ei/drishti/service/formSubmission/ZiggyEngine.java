@@ -0,0 +1,81 @@
+package org.ei.drishti.service.formSubmission;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.util.Map;
+
+import static javax.script.ScriptContext.ENGINE_SCOPE;
+
+/**
+ * A scope of its own in which the Ziggy scripts run. The scripts are compiled once into {@link Scripts} shared by
+ * all engines, and each engine evaluates them into its own bindings, so engines never share the globals the
+ * scripts define.
+ */
+class ZiggyEngine {
+    private static final String PARAMS = "ziggySaveParams";
+    private static final String FORM_INSTANCE = "ziggySaveFormInstance";
+
+    private final Scripts scripts;
+    private final ScriptContext context;
+
+    ZiggyEngine(Scripts scripts, Map<String, Object> javaObjects) throws ScriptException {
+        this.scripts = scripts;
+        Bindings bindings = scripts.engine.createBindings();
+        bindings.putAll(javaObjects);
+        context = new SimpleScriptContext();
+        context.setBindings(bindings, ENGINE_SCOPE);
+
+        scripts.eval(scripts.ziggy, scripts.ziggySource, context);
+        scripts.eval(scripts.init, Scripts.INIT_SCRIPT, context);
+    }
+
+    void saveForm(String params, String formInstance) throws Exception {
+        Bindings bindings = context.getBindings(ENGINE_SCOPE);
+        bindings.put(PARAMS, params);
+        bindings.put(FORM_INSTANCE, formInstance);
+        try {
+            scripts.eval(scripts.save, Scripts.SAVE_SCRIPT, context);
+        } finally {
+            bindings.remove(PARAMS);
+            bindings.remove(FORM_INSTANCE);
+        }
+    }
+
+    static class Scripts {
+        private static final String INIT_SCRIPT = "require([\"ziggy/FormDataController\"], function (FormDataController) {\n" +
+                "    controller = FormDataController;\n" +
+                "});";
+        private static final String SAVE_SCRIPT = "controller.createOrUpdateEntity(" + PARAMS + ", " + FORM_INSTANCE + ");";
+
+        private final ScriptEngine engine;
+        private final String ziggySource;
+        private final CompiledScript ziggy;
+        private final CompiledScript init;
+        private final CompiledScript save;
+
+        Scripts(ScriptEngineManager manager, String jsFiles) throws ScriptException {
+            engine = manager.getEngineByName(ZiggyService.JAVA_SCRIPT);
+            ziggySource = jsFiles;
+            if (engine instanceof Compilable) {
+                Compilable compiler = (Compilable) engine;
+                ziggy = compiler.compile(jsFiles);
+                init = compiler.compile(INIT_SCRIPT);
+                save = compiler.compile(SAVE_SCRIPT);
+            } else {
+                ziggy = null;
+                init = null;
+                save = null;
+            }
+        }
+
+        private Object eval(CompiledScript compiled, String source, ScriptContext context) throws ScriptException {
+            return compiled == null ? engine.eval(source, context) : compiled.eval(context);
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package org.ei.drishti.service.formSubmission;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.ei.drishti.form.domain.FormData;
+import org.ei.drishti.form.domain.FormField;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.form.domain.SubFormData;
+import org.ei.drishti.repository.FormDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.text.MessageFormat.format;
+import static org.apache.commons.lang.StringUtils.equals;
+import static org.apache.commons.lang.StringUtils.isEmpty;
+
+/**
+ * Java port of Ziggy's FormModelMapper.mapToEntityAndSave: walks the bind paths of a submitted form,
+ * groups its fields into entities, links them through entity_relationship.json and saves parents
+ * before their children, exactly in the order the JS FormDataController does.
+ */
+@Component
+public class ZiggyEntityMapper {
+    private static final String ENTITY_RELATIONSHIP_FILE = "entity_relationship.json";
+    private static final String FORM_DEFINITION_FILE = "/form_definition.json";
+    private static final String ID = "id";
+    private static final String AS_PARENT = "parent";
+    private static final String AS_CHILD = "child";
+    private static final String ONE_TO_ONE = "one_to_one";
+    private static final String ONE_TO_MANY = "one_to_many";
+    private static final String MANY_TO_ONE = "many_to_one";
+
+    private ZiggyFileLoader ziggyFileLoader;
+    private FormDataRepository formDataRepository;
+    private Map<String, List<Relation>> relationsByEntityType;
+    private final ConcurrentMap<String, String> bindTypeByFormName = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ZiggyEntityMapper(ZiggyFileLoader ziggyFileLoader, FormDataRepository formDataRepository) {
+        this.ziggyFileLoader = ziggyFileLoader;
+        this.formDataRepository = formDataRepository;
+        this.relationsByEntityType = loadRelations();
+    }
+
+    public void createOrUpdateEntities(FormSubmission submission) {
+        FormData form = submission.instance().form();
+        String formBindType = bindTypeOf(submission.formName());
+
+        List<Entity> entities = new ArrayList<>();
+        for (FormField field : form.fields()) {
+            String[] path = pathOf(field);
+            Entity entity = findByType(entities, path[path.length - 2]);
+            if (entity == null) {
+                entity = newEntity(path[path.length - 2], formBindType);
+                entity.source = field.source().substring(0, field.source().lastIndexOf('.'));
+                entities.add(entity);
+            }
+            entity.addField(path[path.length - 1], field.value());
+        }
+
+        List<Entity> subFormEntities = new ArrayList<>();
+        if (form.subForms() != null) {
+            for (SubFormData subForm : form.subForms()) {
+                for (Map<String, String> instance : subForm.instances()) {
+                    Entity entity = newEntity(subForm.bindType(), formBindType);
+                    for (FormField field : subForm.fields()) {
+                        String[] path = pathOf(field);
+                        entity.addField(path[path.length - 1], instance.get(field.name()));
+                    }
+                    entity.source = subForm.bindType();
+                    ensureId(entity);
+                    subFormEntities.add(entity);
+                }
+            }
+        }
+        for (Entity entity : entities) {
+            ensureId(entity);
+        }
+        entities.addAll(subFormEntities);
+
+        Entity baseEntity = findByType(entities, form.bindType());
+        if (baseEntity == null) {
+            throw new IllegalArgumentException(format("Form {0} has no fields bound to its bind type {1}", submission.formName(), form.bindType()));
+        }
+        save(baseEntity, entities, new ArrayList<Entity>());
+    }
+
+    private void save(Entity entity, List<Entity> entities, List<Entity> savedEntities) {
+        for (Relation relation : entity.relationsAs(AS_CHILD)) {
+            Entity parent = findByType(entities, relation.type);
+            if (isUnsaved(parent, entities, savedEntities)) {
+                save(parent, entities, savedEntities);
+            }
+        }
+
+        String entityId = null;
+        if (isUnsaved(entity, entities, savedEntities)) {
+            formDataRepository.saveEntity(entity.type, entity.fieldValues());
+            entityId = entity.id();
+            savedEntities.add(entity);
+        }
+
+        for (Relation relation : entity.relationsAs(AS_PARENT)) {
+            if (ONE_TO_MANY.equals(relation.kind)) {
+                for (Entity child : findAllByType(entities, relation.type)) {
+                    linkAndSave(child, entities, savedEntities, entityId, relation);
+                }
+            } else {
+                linkAndSave(findByType(entities, relation.type), entities, savedEntities, entityId, relation);
+            }
+        }
+    }
+
+    private void linkAndSave(Entity child, List<Entity> entities, List<Entity> savedEntities, String parentId, Relation relation) {
+        if (!isUnsaved(child, entities, savedEntities)) {
+            return;
+        }
+        String foreignKey = relation.to.split("\\.", -1)[1];
+        findByTypeAndId(entities, child).addField(foreignKey, parentId);
+        save(child, entities, savedEntities);
+    }
+
+    private boolean isUnsaved(Entity entity, List<Entity> entities, List<Entity> savedEntities) {
+        return entity != null && findByTypeAndId(entities, entity) != null && findByTypeAndId(savedEntities, entity) == null;
+    }
+
+    private void ensureId(Entity entity) {
+        EntityField idField = entity.idField();
+        if (idField == null || isEmpty(idField.value)) {
+            throw new IllegalArgumentException(format("Entity of type {0} at {1} has no id. Ids have to be generated by the client.",
+                    entity.type, entity.source));
+        }
+    }
+
+    private String[] pathOf(FormField field) {
+        if (field.source() == null || field.source().indexOf('.') < 0) {
+            throw new IllegalArgumentException(format("Field {0} is not bound to an entity. Source: {1}", field.name(), field.source()));
+        }
+        return field.source().split("\\.", -1);
+    }
+
+    private Entity newEntity(String type, String formBindType) {
+        List<Relation> relations = relationsByEntityType.get(type);
+        if (relations == null && !equals(type, formBindType)) {
+            throw new IllegalArgumentException(format("Unknown entity type: {0}", type));
+        }
+        return new Entity(type, relations == null ? new ArrayList<Relation>() : relations);
+    }
+
+    private Entity findByType(List<Entity> entities, String type) {
+        for (Entity entity : entities) {
+            if (entity.type.equals(type)) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    private List<Entity> findAllByType(List<Entity> entities, String type) {
+        List<Entity> entitiesOfType = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (entity.type.equals(type)) {
+                entitiesOfType.add(entity);
+            }
+        }
+        return entitiesOfType;
+    }
+
+    private Entity findByTypeAndId(List<Entity> entities, Entity entityToFind) {
+        for (Entity entity : entities) {
+            if (entity.type.equals(entityToFind.type) && equals(entity.id(), entityToFind.id())) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    private String bindTypeOf(String formName) {
+        String bindType = bindTypeByFormName.get(formName);
+        if (bindType == null) {
+            FormDefinition definition = new Gson().fromJson(ziggyFileLoader.loadAppData(formName + FORM_DEFINITION_FILE), FormDefinition.class);
+            bindType = definition == null || definition.form == null ? "" : definition.form.bind_type;
+            bindTypeByFormName.putIfAbsent(formName, bindType);
+        }
+        return bindType;
+    }
+
+    private Map<String, List<Relation>> loadRelations() {
+        List<EntityRelationship> relationships = new Gson().fromJson(ziggyFileLoader.loadAppData(ENTITY_RELATIONSHIP_FILE),
+                new TypeToken<List<EntityRelationship>>() {
+                }.getType());
+        Map<String, List<Relation>> relations = new HashMap<>();
+        if (relationships == null) {
+            return relations;
+        }
+        for (EntityRelationship relationship : relationships) {
+            relationsOf(relations, relationship.parent);
+            relationsOf(relations, relationship.child);
+        }
+        for (EntityRelationship relationship : relationships) {
+            relationsOf(relations, relationship.parent).add(
+                    new Relation(relationship.child, relationship.kind, AS_PARENT, relationship.to));
+            relationsOf(relations, relationship.child).add(
+                    new Relation(relationship.parent, inverseOf(relationship.kind), AS_CHILD, relationship.from));
+        }
+        return relations;
+    }
+
+    private List<Relation> relationsOf(Map<String, List<Relation>> relations, String type) {
+        if (!relations.containsKey(type)) {
+            relations.put(type, new ArrayList<Relation>());
+        }
+        return relations.get(type);
+    }
+
+    private String inverseOf(String kind) {
+        if (ONE_TO_MANY.equals(kind)) {
+            return MANY_TO_ONE;
+        }
+        if (MANY_TO_ONE.equals(kind)) {
+            return ONE_TO_MANY;
+        }
+        return ONE_TO_ONE;
+    }
+
+    private static class EntityRelationship {
+        private String parent;
+        private String child;
+        private String kind;
+        private String from;
+        private String to;
+    }
+
+    private static class FormDefinition {
+        private FormDefinitionForm form;
+    }
+
+    private static class FormDefinitionForm {
+        private String bind_type;
+    }
+
+    private static class Relation {
+        private final String type;
+        private final String kind;
+        private final String as;
+        private final String to;
+
+        Relation(String type, String kind, String as, String to) {
+            this.type = type;
+            this.kind = kind;
+            this.as = as;
+            this.to = to;
+        }
+    }
+
+    private static class EntityField {
+        private final String persistenceName;
+        private final String value;
+
+        EntityField(String persistenceName, String value) {
+            this.persistenceName = persistenceName;
+            this.value = value;
+        }
+    }
+
+    private static class Entity {
+        private final String type;
+        private final List<Relation> relations;
+        private final List<EntityField> fields = new ArrayList<>();
+        private String source;
+
+        Entity(String type, List<Relation> relations) {
+            this.type = type;
+            this.relations = relations;
+        }
+
+        void addField(String persistenceName, String value) {
+            fields.add(new EntityField(persistenceName, value));
+        }
+
+        EntityField idField() {
+            for (EntityField field : fields) {
+                if (ID.equals(field.persistenceName)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        String id() {
+            EntityField idField = idField();
+            return idField == null ? null : idField.value;
+        }
+
+        List<Relation> relationsAs(String as) {
+            List<Relation> matchingRelations = new ArrayList<>();
+            for (Relation relation : relations) {
+                if (relation.as.equals(as)) {
+                    matchingRelations.add(relation);
+                }
+            }
+            return matchingRelations;
+        }
+
+        // A later field with the same persistence name wins, and a field without a value removes the
+        // key, the same as JSON.stringify dropping undefined values on the JS side.
+        Map<String, String> fieldValues() {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (EntityField field : fields) {
+                if (field.value == null) {
+                    values.remove(field.persistenceName);
+                } else {
+                    values.put(field.persistenceName, field.value);
+                }
+            }
+            return values;
+        }
+    }
+}
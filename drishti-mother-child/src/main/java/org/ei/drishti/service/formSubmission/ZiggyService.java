@@ -1,27 +1,30 @@
 package org.ei.drishti.service.formSubmission;
 
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.repository.FormDataRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.script.Bindings;
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import static java.text.MessageFormat.format;
-import static javax.script.ScriptContext.ENGINE_SCOPE;
+import static org.ei.drishti.common.monitor.Metric.ZIGGY_ENGINES_IN_USE;
+import static org.ei.drishti.common.monitor.Metric.ZIGGY_ENGINE_BORROW_TIME;
+import static org.ei.drishti.common.monitor.Metric.ZIGGY_SAVE_FORM_TIME;
 
 @Service
 public class ZiggyService {
     public static final String JAVA_SCRIPT = "JavaScript";
     private static Logger logger = LoggerFactory.getLogger(ZiggyService.class.toString());
-    private static final String SAVE_METHOD_NAME = "createOrUpdateEntity";
-    private static final String JS_INIT_SCRIPT = "require([\"ziggy/FormDataController\"], function (FormDataController) {\n" +
-            "    controller = FormDataController;\n" +
-            "});";
     private static final String ZIGGY_FILE_LOADER = "ziggyFileLoader";
     private static final String REPOSITORY = "formDataRepositoryContext";
     private static final String FORM_SUBMISSION_ROUTER = "formSubmissionRouter";
@@ -29,48 +32,133 @@ public class ZiggyService {
     private ZiggyFileLoader ziggyFileLoader;
     private FormDataRepository dataRepository;
     private FormSubmissionRouter formSubmissionRouter;
-    private Object ziggyFormController;
-    private Invocable invocable;
+    private Monitor monitor;
+    private int poolSize;
+    private BlockingQueue<ZiggyEngine> engines;
+    private ZiggyEntityMapper entityMapper;
+    private CommittingFormSubmissionRouter scriptRouter;
 
     @Autowired
-    public ZiggyService(ZiggyFileLoader ziggyFileLoader, FormDataRepository dataRepository, FormSubmissionRouter formSubmissionRouter) throws Exception {
+    public ZiggyService(ZiggyFileLoader ziggyFileLoader, FormDataRepository dataRepository, FormSubmissionRouter formSubmissionRouter,
+                        Monitor monitor, @Value("#{drishti['ziggy.engine.pool.size']}") int poolSize,
+                        ZiggyEntityMapper entityMapper) throws Exception {
         this.ziggyFileLoader = ziggyFileLoader;
         this.dataRepository = dataRepository;
         this.formSubmissionRouter = formSubmissionRouter;
+        this.monitor = monitor;
+        this.poolSize = Math.max(1, poolSize);
+        this.entityMapper = entityMapper;
         initRhino();
     }
 
+    public void saveForm(FormSubmission submission) {
+        Probe probeForSave = monitor.start(ZIGGY_SAVE_FORM_TIME);
+        dataRepository.beginUnitOfWork();
+        try {
+            entityMapper.createOrUpdateEntities(submission);
+            dataRepository.commitUnitOfWork();
+            formSubmissionRouter.route(submission);
+            logger.info(format("Saving form successful, with instance id: {0}.", submission.instanceId()));
+        } catch (Exception e) {
+            logger.error(format("Form save failed, with instance id: {0}. Exception: {1}", submission.instanceId(), e));
+        } finally {
+            dataRepository.rollbackUnitOfWork();
+            monitor.end(probeForSave);
+        }
+    }
+
     public void saveForm(String params, String formInstance) {
+        saveForm(params, formInstance, null);
+    }
+
+    /**
+     * Saves the form through Ziggy. When the submission being saved is passed in, the router callback made by
+     * the script routes it as is, instead of reading it back from the database by its instance id.
+     */
+    public void saveForm(String params, String formInstance, FormSubmission submission) {
+        ZiggyEngine engine;
+        try {
+            engine = borrowEngine();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error(format("Interrupted while waiting for a Ziggy engine, form not saved. Params: {0}", params));
+            return;
+        }
+        Probe probeForSave = monitor.start(ZIGGY_SAVE_FORM_TIME);
+        dataRepository.beginUnitOfWork();
+        scriptRouter.submissionInFlight(submission);
         try {
-            invocable.invokeMethod(ziggyFormController, SAVE_METHOD_NAME, params, formInstance);
+            engine.saveForm(params, formInstance);
             logger.info(format("Saving form successful, with params: {0}.", params));
             logger.debug(format("Saving form successful, with params: {0}, with instance {1}.", params, formInstance));
         } catch (Exception e) {
             logger.error(format("Form save failed, with params: {0}, with instance {1}. Exception: {2}", params, formInstance, e));
+        } finally {
+            scriptRouter.submissionInFlight(null);
+            dataRepository.rollbackUnitOfWork();
+            monitor.end(probeForSave);
+            engines.offer(engine);
         }
     }
 
+    private ZiggyEngine borrowEngine() throws InterruptedException {
+        Probe probeForBorrow = monitor.start(ZIGGY_ENGINE_BORROW_TIME);
+        ZiggyEngine engine = engines.take();
+        monitor.end(probeForBorrow);
+        monitor.addObservationFor(ZIGGY_ENGINES_IN_USE, poolSize - engines.size());
+        return engine;
+    }
+
     private void initRhino() throws Exception {
         ScriptEngineManager manager = new ScriptEngineManager();
-        ScriptEngine engine = manager.getEngineByName(JAVA_SCRIPT);
-
-        Bindings bindings = getBindings(engine);
-        engine.setBindings(bindings, ENGINE_SCOPE);
-
         String jsFiles = ziggyFileLoader.getJSFiles();
+        scriptRouter = new CommittingFormSubmissionRouter(dataRepository, formSubmissionRouter);
 
-        engine.eval(jsFiles);
-        engine.eval(JS_INIT_SCRIPT);
+        ZiggyEngine.Scripts scripts = new ZiggyEngine.Scripts(manager, jsFiles);
+        engines = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            engines.add(new ZiggyEngine(scripts, javaObjectsForScripts()));
+        }
+        logger.info(format("Warmed up {0} Ziggy engines.", poolSize));
+    }
 
-        ziggyFormController = engine.get("controller");
-        invocable = (Invocable) engine;
+    private Map<String, Object> javaObjectsForScripts() {
+        Map<String, Object> javaObjects = new HashMap<>();
+        javaObjects.put(ZIGGY_FILE_LOADER, ziggyFileLoader);
+        javaObjects.put(REPOSITORY, dataRepository);
+        javaObjects.put(FORM_SUBMISSION_ROUTER, scriptRouter);
+        return javaObjects;
     }
 
-    private Bindings getBindings(ScriptEngine engine) {
-        Bindings bindings = engine.createBindings();
-        bindings.put(ZIGGY_FILE_LOADER, ziggyFileLoader);
-        bindings.put(REPOSITORY, dataRepository);
-        bindings.put(FORM_SUBMISSION_ROUTER, formSubmissionRouter);
-        return bindings;
+    // Ziggy routes a submission right after saving its entities, and the handlers read those entities
+    // back, so the entities saved by the script have to be flushed before the submission is routed.
+    // The submission being saved on a thread is routed from memory; any other instance id is looked up.
+    public static class CommittingFormSubmissionRouter {
+        private final FormDataRepository dataRepository;
+        private final FormSubmissionRouter formSubmissionRouter;
+        private final ThreadLocal<FormSubmission> submissionInFlight = new ThreadLocal<>();
+
+        CommittingFormSubmissionRouter(FormDataRepository dataRepository, FormSubmissionRouter formSubmissionRouter) {
+            this.dataRepository = dataRepository;
+            this.formSubmissionRouter = formSubmissionRouter;
+        }
+
+        void submissionInFlight(FormSubmission submission) {
+            if (submission == null) {
+                submissionInFlight.remove();
+            } else {
+                submissionInFlight.set(submission);
+            }
+        }
+
+        public void route(String instanceId) throws Exception {
+            dataRepository.commitUnitOfWork();
+            FormSubmission submission = submissionInFlight.get();
+            if (submission != null && submission.instanceId().equals(instanceId)) {
+                formSubmissionRouter.route(submission);
+            } else {
+                formSubmissionRouter.route(instanceId);
+            }
+        }
     }
 }
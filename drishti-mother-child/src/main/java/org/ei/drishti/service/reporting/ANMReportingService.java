@@ -29,8 +29,19 @@ public class ANMReportingService {
         this.childReportingService = childReportingService;
     }
 
+    /**
+     * Replaces the report actions of all ANMs with those of the given reports.
+     */
     public void processReports(List<ANMReport> reports) {
         actionService.deleteReportActions();
+        processMoreReports(reports);
+    }
+
+    /**
+     * Adds the report actions of more ANMs to those of the last processReports, so that the reports of all ANMs
+     * can be processed a chunk at a time.
+     */
+    public void processMoreReports(List<ANMReport> reports) {
         for (ANMReport report : reports) {
             for (ANMIndicatorSummary summary : report.summaries()) {
                 LambdaList<Object> monthSummaryData = with(summary.monthlySummaries()).convert(new Converter<MonthSummary, Object>() {
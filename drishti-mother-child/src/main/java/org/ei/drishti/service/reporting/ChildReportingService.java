@@ -58,12 +58,14 @@ public class ChildReportingService {
     private final AllInfantBalanceOnHandReportTokens allInfantBalanceOnHandReportTokens;
     private final ReportMonth reportMonth;
     private MCTSReporter mctsReporter;
+    private ILocationLoader locationLoader;
     private Map<String, List<Indicator>> immunizationToIndicator;
 
     @Autowired
     public ChildReportingService(ReportingService reportingService, AllChildren allChildren, AllMothers allMothers,
                                  AllEligibleCouples allEligibleCouples,
-                                 AllInfantBalanceOnHandReportTokens allInfantBalanceOnHandReportTokens, ReportMonth reportMonth, MCTSReporter mctsReporter) {
+                                 AllInfantBalanceOnHandReportTokens allInfantBalanceOnHandReportTokens, ReportMonth reportMonth, MCTSReporter mctsReporter,
+                                 ILocationLoader locationLoader) {
         this.reportingService = reportingService;
         this.allChildren = allChildren;
         this.allMothers = allMothers;
@@ -71,6 +73,7 @@ public class ChildReportingService {
         this.allInfantBalanceOnHandReportTokens = allInfantBalanceOnHandReportTokens;
         this.reportMonth = reportMonth;
         this.mctsReporter = mctsReporter;
+        this.locationLoader = locationLoader;
 
         immunizationToIndicator = new HashMap<>();
 
@@ -310,8 +313,7 @@ public class ChildReportingService {
     }
 
     private Location loadLocationOfChild(Child child) {
-        EligibleCouple couple = getEligibleCouple(child);
-        return new Location(couple.village(), couple.subCenter(), couple.phc());
+        return locationLoader.loadLocationFor(AllConstants.FormEntityTypes.MOTHER_TYPE, child.motherCaseId());
     }
 
     private void reportBirthWeight(Child child, String submissionDate, Location location) {
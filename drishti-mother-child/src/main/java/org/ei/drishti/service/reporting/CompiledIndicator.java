@@ -0,0 +1,45 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+
+public class CompiledIndicator<T extends IndicatorDefinition> {
+    private final T definition;
+    private final List<String> ruleNames;
+    private final List<IRule> rules;
+    private final List<String> formFields;
+
+    public CompiledIndicator(T definition, List<String> ruleNames, List<IRule> rules) {
+        this.definition = definition;
+        this.ruleNames = unmodifiableList(ruleNames);
+        this.rules = unmodifiableList(rules);
+        this.formFields = definition.formFields() == null
+                ? unmodifiableList(new ArrayList<String>())
+                : unmodifiableList(new ArrayList<>(new LinkedHashSet<>(definition.formFields())));
+    }
+
+    public T definition() {
+        return definition;
+    }
+
+    public List<String> ruleNames() {
+        return ruleNames;
+    }
+
+    public List<IRule> rules() {
+        return rules;
+    }
+
+    /**
+     * The form fields the indicator reads from a submission, without duplicates, so they are projected out of
+     * the submission once per indicator.
+     */
+    public List<String> formFields() {
+        return formFields;
+    }
+}
@@ -1,22 +1,29 @@
 package org.ei.drishti.service.reporting;
 
 import org.ei.drishti.common.AllConstants;
+import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.domain.Location;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.service.reporting.rules.IReferenceDataRepository;
-import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.util.ParsedFieldCache;
 import org.ei.drishti.util.SafeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.text.MessageFormat;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getFullStackTrace;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import static org.ei.drishti.common.AllConstants.CommonFormFields.*;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_RULE_EVALUATIONS;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_RULE_MEMO_HITS;
 
 @Component
 public class FormSubmissionReportService {
@@ -27,58 +34,83 @@ public class FormSubmissionReportService {
     private IReporterFactory reporterFactory;
     private IReferenceDataRepository referenceDataRepository;
     private IReportDefinitionLoader reportDefinitionLoader;
-    private ReportDefinition reportDefinition;
+    private Monitor monitor;
+    private volatile IndicatorPlan<ReportIndicator> indicatorPlan;
 
     @Autowired
-    public FormSubmissionReportService(ILocationLoader locationLoader, IRulesFactory rulesFactory, IReporterFactory reporterFactory, IReferenceDataRepository referenceDataRepository, IReportDefinitionLoader reportDefinitionLoader) {
+    public FormSubmissionReportService(ILocationLoader locationLoader, IRulesFactory rulesFactory, IReporterFactory reporterFactory, IReferenceDataRepository referenceDataRepository, IReportDefinitionLoader reportDefinitionLoader, Monitor monitor) {
         this.locationLoader = locationLoader;
         this.rulesFactory = rulesFactory;
         this.reporterFactory = reporterFactory;
         this.referenceDataRepository = referenceDataRepository;
         this.reportDefinitionLoader = reportDefinitionLoader;
+        this.monitor = monitor;
     }
 
     public void reportFor(FormSubmission submission) throws Exception {
-        if (reportDefinition == null) {
-            logger.info("Loading report definition.");
-            reportDefinition = reportDefinitionLoader.load();
+        ParsedFieldCache parsedFields = new ParsedFieldCache();
+        RuleResults ruleResults = new RuleResults();
+        IndicatorPlan<ReportIndicator> plan = indicatorPlan();
+        referenceDataRepository.beginScope(asList(submission), plan.referenceDataFor(submission.formName()));
+        try {
+            for (CompiledIndicator<ReportIndicator> compiledIndicator : plan.indicatorsFor(submission.formName())) {
+                ReportIndicator reportIndicator = compiledIndicator.definition();
+                Map<String, String> formFields = submission.getFields(compiledIndicator.formFields());
+                SafeMap reportFields = createReportFields(submission, reportIndicator, formFields).withParsedFieldCache(parsedFields);
+                boolean didAllRulesSucceed = processRules(compiledIndicator, reportFields, ruleResults);
+                if (didAllRulesSucceed) {
+                    String entityId = reportIndicator.reportEntityIdField() == null
+                            ? submission.entityId()
+                            : submission.getField(reportIndicator.reportEntityIdField());
+
+                    Location location = locationLoader.loadLocationFor(reportIndicator.reportEntityType(), entityId);
+                    report(submission, reportIndicator, location, formFields, reportFields);
+                }
+            }
+        } finally {
+            referenceDataRepository.endScope();
         }
+        monitor.addObservationFor(REPORTING_RULE_EVALUATIONS, ruleResults.evaluations());
+        monitor.addObservationFor(REPORTING_RULE_MEMO_HITS, ruleResults.hits());
+    }
 
-        List<ReportIndicator> reportIndicators = reportDefinition.getIndicatorsByFormName(submission.formName());
-
-        for (ReportIndicator reportIndicator : reportIndicators) {
-            SafeMap reportFields = createReportFields(submission, reportIndicator);
-            boolean didAllRulesSucceed = processRules(reportIndicator.reportingRules(), reportFields, reportIndicator.indicator());
-            if (didAllRulesSucceed) {
-                String entityId = reportIndicator.reportEntityIdField() == null
-                        ? submission.entityId()
-                        : submission.getField(reportIndicator.reportEntityIdField());
+    /**
+     * Compiles the report definition when the context starts, so that an unknown rule or an invalid definition
+     * stops the application from starting instead of failing every report later.
+     */
+    @PostConstruct
+    public void loadReportDefinition() throws Exception {
+        logger.info("Loading report definition.");
+        indicatorPlan = IndicatorPlan.compile(reportDefinitionLoader.load().indicatorsByFormName(), rulesFactory);
+    }
 
-                Location location = locationLoader.loadLocationFor(reportIndicator.reportEntityType(), entityId);
-                report(submission, reportIndicator, location, reportFields);
-            }
+    private IndicatorPlan<ReportIndicator> indicatorPlan() {
+        IndicatorPlan<ReportIndicator> plan = indicatorPlan;
+        if (plan == null) {
+            throw new IllegalStateException("Report definition has not been loaded.");
         }
+        return plan;
     }
 
-    private boolean processRules(List<String> rules, SafeMap reportFields, String indicator) {
+    private boolean processRules(CompiledIndicator<ReportIndicator> compiledIndicator, SafeMap reportFields, RuleResults ruleResults) {
         try {
-            for (String ruleName : rules) {
-                IRule rule = rulesFactory.ruleByName(ruleName);
-                if (!rule.apply(reportFields)) {
+            List<String> ruleNames = compiledIndicator.ruleNames();
+            for (int i = 0; i < ruleNames.size(); i++) {
+                if (!ruleResults.apply(ruleNames.get(i), compiledIndicator.rules().get(i), reportFields)) {
                     return false;
                 }
             }
         } catch (Exception e) {
             logger.error(MessageFormat.format("Exception while applying rules. Indicator: {0}. Message: {1}",
-                    indicator, e.getMessage()));
+                    compiledIndicator.definition().indicator(), e.getMessage()));
             logger.error(getFullStackTrace(e));
             return false;
         }
         return true;
     }
 
-    private SafeMap createReportFields(FormSubmission submission, ReportIndicator reportIndicator) {
-        SafeMap reportFields = new SafeMap(submission.getFields(reportIndicator.formFields()));
+    private SafeMap createReportFields(FormSubmission submission, ReportIndicator reportIndicator, Map<String, String> formFields) {
+        SafeMap reportFields = new SafeMap(new HashMap<>(formFields));
         reportFields.put(SERVICE_PROVIDED_DATE, getServiceProvidedDate(submission, reportIndicator));
         addServiceProvidedPlaceFieldIfNeeded(submission, reportFields, reportIndicator.serviceProvidedPlaceField());
         addExternalIDToReportFieldsIfNeeded(submission, reportIndicator.externalIdField(), reportFields);
@@ -109,9 +141,9 @@ public class FormSubmissionReportService {
         }
     }
 
-    private void report(FormSubmission submission, ReportIndicator reportIndicator, Location location, SafeMap reportFields) {
+    private void report(FormSubmission submission, ReportIndicator reportIndicator, Location location, Map<String, String> formFields, SafeMap reportFields) {
         IReporter reporter = reporterFactory.reporterFor(reportIndicator.reportEntityType());
-        SafeMap reportData = createReportData(submission, reportIndicator.formFields(), reportIndicator.quantityField(), reportIndicator.serviceProvidedPlaceField(), reportIndicator.externalIdField(), reportFields);
+        SafeMap reportData = createReportData(submission, formFields, reportIndicator.quantityField(), reportIndicator.serviceProvidedPlaceField(), reportIndicator.externalIdField(), reportFields);
         String serviceProvidedDate = getServiceProvidedDate(submission, reportIndicator);
         String reportEntityId = reportIndicator.reportEntityIdField() == null
                 ? submission.entityId()
@@ -119,8 +151,8 @@ public class FormSubmissionReportService {
         reporter.report(reportEntityId, reportIndicator.indicator(), location, serviceProvidedDate, reportData);
     }
 
-    private SafeMap createReportData(FormSubmission submission, List<String> formFields, String quantityField, String serviceProvidedPlaceField, String externalIdField, SafeMap reportFields) {
-        SafeMap reportData = new SafeMap(submission.getFields(formFields));
+    private SafeMap createReportData(FormSubmission submission, Map<String, String> formFields, String quantityField, String serviceProvidedPlaceField, String externalIdField, SafeMap reportFields) {
+        SafeMap reportData = new SafeMap(new HashMap<>(formFields));
 
         reportData.put(SUBMISSION_DATE_FIELD_NAME, submission.getField(SUBMISSION_DATE_FIELD_NAME));
         if (quantityField != null) {
@@ -1,7 +1,14 @@
 package org.ei.drishti.service.reporting;
 
 import org.ei.drishti.domain.Location;
+import org.ei.drishti.form.domain.FormSubmission;
+
+import java.util.List;
 
 public interface ILocationLoader {
     public Location loadLocationFor(String bindType, String entityId);
-}
\ No newline at end of file
+
+    public void preloadFor(String anmIdentifier);
+
+    public void preloadFor(List<FormSubmission> submissions);
+}
@@ -0,0 +1,13 @@
+package org.ei.drishti.service.reporting;
+
+import java.util.List;
+
+public interface IndicatorDefinition {
+    String indicator();
+
+    List<String> reportingRules();
+
+    List<String> formFields();
+
+    ReferenceData referenceData();
+}
@@ -0,0 +1,75 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * A report definition compiled for lookups on the submission path: indicators are indexed by form name and
+ * every reporting rule is resolved to its IRule once, when the plan is built. Building the plan fails if any
+ * rule cannot be resolved. The reference data each form needs is collected up front as well, so it can be
+ * fetched in one go before the indicators are evaluated, and so are the form fields each indicator reads. A plan
+ * is immutable, so it can be shared by all threads processing submissions.
+ */
+public class IndicatorPlan<T extends IndicatorDefinition> {
+    private final Map<String, List<CompiledIndicator<T>>> indicatorsByFormName;
+    private final Map<String, Set<ReferenceData>> referenceDataByFormName;
+
+    private IndicatorPlan(Map<String, List<CompiledIndicator<T>>> indicatorsByFormName,
+                          Map<String, Set<ReferenceData>> referenceDataByFormName) {
+        this.indicatorsByFormName = indicatorsByFormName;
+        this.referenceDataByFormName = referenceDataByFormName;
+    }
+
+    public static <T extends IndicatorDefinition> IndicatorPlan<T> compile(Map<String, List<T>> indicatorsByFormName,
+                                                                           IRulesFactory rulesFactory) throws Exception {
+        Map<String, IRule> rulesByName = new HashMap<>();
+        Map<String, List<CompiledIndicator<T>>> compiledIndicators = new HashMap<>();
+        Map<String, Set<ReferenceData>> referenceData = new HashMap<>();
+        for (Map.Entry<String, List<T>> formIndicators : indicatorsByFormName.entrySet()) {
+            List<CompiledIndicator<T>> indicators = new ArrayList<>();
+            Set<ReferenceData> formReferenceData = new LinkedHashSet<>();
+            for (T indicator : formIndicators.getValue()) {
+                List<String> ruleNames = indicator.reportingRules() == null ? new ArrayList<String>() : indicator.reportingRules();
+                indicators.add(new CompiledIndicator<>(indicator, ruleNames, resolveRules(ruleNames, rulesFactory, rulesByName)));
+                if (indicator.referenceData() != null) {
+                    formReferenceData.add(indicator.referenceData());
+                }
+            }
+            compiledIndicators.put(formIndicators.getKey(), unmodifiableList(indicators));
+            referenceData.put(formIndicators.getKey(), unmodifiableSet(formReferenceData));
+        }
+        return new IndicatorPlan<>(compiledIndicators, referenceData);
+    }
+
+    public List<CompiledIndicator<T>> indicatorsFor(String formName) {
+        List<CompiledIndicator<T>> indicators = indicatorsByFormName.get(formName);
+        return indicators == null ? Collections.<CompiledIndicator<T>>emptyList() : indicators;
+    }
+
+    public Set<ReferenceData> referenceDataFor(String formName) {
+        Set<ReferenceData> referenceData = referenceDataByFormName.get(formName);
+        return referenceData == null ? Collections.<ReferenceData>emptySet() : referenceData;
+    }
+
+    private static List<IRule> resolveRules(List<String> ruleNames, IRulesFactory rulesFactory,
+                                            Map<String, IRule> rulesByName) throws Exception {
+        List<IRule> rules = new ArrayList<>();
+        for (String ruleName : ruleNames) {
+            if (!rulesByName.containsKey(ruleName)) {
+                rulesByName.put(ruleName, rulesFactory.ruleByName(ruleName));
+            }
+            rules.add(rulesByName.get(ruleName));
+        }
+        return rules;
+    }
+}
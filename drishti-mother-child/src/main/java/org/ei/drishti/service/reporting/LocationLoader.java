@@ -4,26 +4,43 @@ import org.ei.drishti.domain.Child;
 import org.ei.drishti.domain.EligibleCouple;
 import org.ei.drishti.domain.Location;
 import org.ei.drishti.domain.Mother;
+import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.repository.AllChildren;
 import org.ei.drishti.repository.AllEligibleCouples;
 import org.ei.drishti.repository.AllMothers;
+import org.ei.drishti.repository.LocationCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.text.MessageFormat.format;
 import static org.ei.drishti.common.AllConstants.FormEntityTypes.*;
 
 @Component
 public class LocationLoader implements ILocationLoader {
+    private static Logger logger = LoggerFactory.getLogger(LocationLoader.class.toString());
 
     private AllChildren allChildren;
     private AllEligibleCouples allEligibleCouples;
     private AllMothers allMothers;
+    private LocationCache locationCache;
+    private int preloadThreshold;
 
     @Autowired
-    public LocationLoader(AllEligibleCouples allEligibleCouples, AllMothers allMothers, AllChildren allChildren) {
+    public LocationLoader(AllEligibleCouples allEligibleCouples, AllMothers allMothers, AllChildren allChildren,
+                          LocationCache locationCache,
+                          @Value("#{drishti['location.cache.preload.threshold']}") int preloadThreshold) {
         this.allChildren = allChildren;
         this.allEligibleCouples = allEligibleCouples;
         this.allMothers = allMothers;
+        this.locationCache = locationCache;
+        this.preloadThreshold = preloadThreshold;
     }
 
     @Override
@@ -37,18 +54,72 @@ public class LocationLoader implements ILocationLoader {
         return null;
     }
 
+    /**
+     * Preloads the locations of the entities of every ANM with at least the preload threshold of submissions in
+     * the batch. Loading all of an ANM's entities only pays off when many of their submissions are reported.
+     */
+    @Override
+    public void preloadFor(List<FormSubmission> submissions) {
+        if (preloadThreshold <= 0) {
+            return;
+        }
+        Map<String, Integer> submissionsByANM = new HashMap<>();
+        for (FormSubmission submission : submissions) {
+            Integer count = submissionsByANM.get(submission.anmId());
+            submissionsByANM.put(submission.anmId(), count == null ? 1 : count + 1);
+        }
+        for (Map.Entry<String, Integer> anmSubmissions : submissionsByANM.entrySet()) {
+            if (anmSubmissions.getKey() != null && anmSubmissions.getValue() >= preloadThreshold) {
+                logger.info(format("Preloading locations of ANM: {0} for {1} submissions.", anmSubmissions.getKey(), anmSubmissions.getValue()));
+                preloadFor(anmSubmissions.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void preloadFor(String anmIdentifier) {
+        LocationCache.Versions versions = locationCache.versions();
+        for (EligibleCouple couple : allEligibleCouples.all(anmIdentifier)) {
+            locationCache.cacheLocation(couple.caseId(), couple.location(), versions);
+        }
+        for (Mother mother : allMothers.all(anmIdentifier)) {
+            locationCache.cacheParent(mother.caseId(), mother.ecCaseId(), versions);
+        }
+        for (Child child : allChildren.all(anmIdentifier)) {
+            locationCache.cacheParent(child.caseId(), child.motherCaseId(), versions);
+        }
+    }
+
     private Location loadLocationForEC(String caseId) {
-        EligibleCouple couple = allEligibleCouples.findByCaseId(caseId);
-        return couple.location();
+        Location location = locationCache.locationOf(caseId);
+        if (location == null) {
+            LocationCache.Versions versions = locationCache.versions();
+            EligibleCouple couple = allEligibleCouples.findByCaseId(caseId);
+            location = couple.location();
+            locationCache.cacheLocation(caseId, location, versions);
+        }
+        return location;
     }
 
     private Location loadLocationForMother(String caseId) {
-        Mother mother = allMothers.findByCaseId(caseId);
-        return loadLocationForEC(mother.ecCaseId());
+        String ecCaseId = locationCache.parentOf(caseId);
+        if (ecCaseId == null) {
+            LocationCache.Versions versions = locationCache.versions();
+            Mother mother = allMothers.findByCaseId(caseId);
+            ecCaseId = mother.ecCaseId();
+            locationCache.cacheParent(caseId, ecCaseId, versions);
+        }
+        return loadLocationForEC(ecCaseId);
     }
 
     private Location loadLocationForChild(String caseId) {
-        Child child = allChildren.findByCaseId(caseId);
-        return loadLocationForMother(child.motherCaseId());
+        String motherCaseId = locationCache.parentOf(caseId);
+        if (motherCaseId == null) {
+            LocationCache.Versions versions = locationCache.versions();
+            Child child = allChildren.findByCaseId(caseId);
+            motherCaseId = child.motherCaseId();
+            locationCache.cacheParent(caseId, motherCaseId, versions);
+        }
+        return loadLocationForMother(motherCaseId);
     }
 }
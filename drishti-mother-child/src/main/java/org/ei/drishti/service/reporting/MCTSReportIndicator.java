@@ -6,7 +6,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import java.util.List;
 
-public class MCTSReportIndicator {
+public class MCTSReportIndicator implements IndicatorDefinition {
     private String indicator;
     private String reportEntityType;
     private String serviceProvidedDateField;
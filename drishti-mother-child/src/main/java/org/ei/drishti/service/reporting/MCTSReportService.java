@@ -3,15 +3,18 @@ package org.ei.drishti.service.reporting;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.service.reporting.rules.IReferenceDataRepository;
 import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.util.ParsedFieldCache;
 import org.ei.drishti.util.SafeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.text.MessageFormat;
 import java.util.List;
 
+import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getFullStackTrace;
 import static org.ei.drishti.common.AllConstants.ANCFormFields.REGISTRATION_DATE;
 import static org.ei.drishti.common.AllConstants.ANCFormFields.THAYI_CARD_NUMBER;
@@ -27,7 +30,7 @@ public class MCTSReportService {
     private IReferenceDataRepository referenceDataRepository;
     private IMCTSReportDefinitionLoader reportDefinitionLoader;
     private MCTSReporter reporter;
-    private MCTSReportDefinition reportDefinition;
+    private volatile IndicatorPlan<MCTSReportIndicator> indicatorPlan;
 
     @Autowired
     public MCTSReportService(IRulesFactory rulesFactory,
@@ -40,21 +43,36 @@ public class MCTSReportService {
     }
 
     public void reportFor(FormSubmission submission) throws Exception {
-        if (reportDefinition == null) {
-            logger.info("Loading MCTS report definition.");
-            reportDefinition = reportDefinitionLoader.load();
+        ParsedFieldCache parsedFields = new ParsedFieldCache();
+        IndicatorPlan<MCTSReportIndicator> plan = indicatorPlan();
+        referenceDataRepository.beginScope(asList(submission), plan.referenceDataFor(submission.formName()));
+        try {
+            for (CompiledIndicator<MCTSReportIndicator> compiledIndicator : plan.indicatorsFor(submission.formName())) {
+                MCTSReportIndicator reportIndicator = compiledIndicator.definition();
+                SafeMap reportFields = createReportFields(submission, compiledIndicator).withParsedFieldCache(parsedFields);
+                boolean didAllRulesSucceed = processRules(compiledIndicator.rules(), reportFields, reportIndicator.indicator());
+                if (didAllRulesSucceed) {
+                    logger.info(MessageFormat.format("Sending MCTS Report for indicator: {0} for entity with id {1} ", reportIndicator, submission.entityId()));
+                    reportToMCTS(submission.entityId(), reportFields, reportIndicator, getServiceProvidedDate(submission, reportIndicator));
+                }
+            }
+        } finally {
+            referenceDataRepository.endScope();
         }
+    }
 
-        List<MCTSReportIndicator> reportIndicators = reportDefinition.getIndicatorsByFormName(submission.formName());
+    @PostConstruct
+    public void loadReportDefinition() throws Exception {
+        logger.info("Loading MCTS report definition.");
+        indicatorPlan = IndicatorPlan.compile(reportDefinitionLoader.load().indicatorsByFormName(), rulesFactory);
+    }
 
-        for (MCTSReportIndicator reportIndicator : reportIndicators) {
-            SafeMap reportFields = createReportFields(submission, reportIndicator);
-            boolean didAllRulesSucceed = processRules(reportIndicator.reportingRules(), reportFields, reportIndicator.indicator());
-            if (didAllRulesSucceed) {
-                logger.info(MessageFormat.format("Sending MCTS Report for indicator: {0} for entity with id {1} ", reportIndicator, submission.entityId()));
-                reportToMCTS(submission.entityId(), reportFields, reportIndicator, getServiceProvidedDate(submission, reportIndicator));
-            }
+    private IndicatorPlan<MCTSReportIndicator> indicatorPlan() {
+        IndicatorPlan<MCTSReportIndicator> plan = indicatorPlan;
+        if (plan == null) {
+            throw new IllegalStateException("MCTS report definition has not been loaded.");
         }
+        return plan;
     }
 
     private void reportToMCTS(String entityId, SafeMap reportFields,
@@ -66,10 +84,9 @@ public class MCTSReportService {
                 reportFields.get(REGISTRATION_DATE), serviceProvidedDate);
     }
 
-    private boolean processRules(List<String> rules, SafeMap reportFields, String indicator) {
+    private boolean processRules(List<IRule> rules, SafeMap reportFields, String indicator) {
         try {
-            for (String ruleName : rules) {
-                IRule rule = rulesFactory.ruleByName(ruleName);
+            for (IRule rule : rules) {
                 if (!rule.apply(reportFields)) {
                     return false;
                 }
@@ -83,8 +100,9 @@ public class MCTSReportService {
         return true;
     }
 
-    private SafeMap createReportFields(FormSubmission submission, MCTSReportIndicator reportIndicator) {
-        SafeMap reportData = new SafeMap(submission.getFields(reportIndicator.formFields()));
+    private SafeMap createReportFields(FormSubmission submission, CompiledIndicator<MCTSReportIndicator> compiledIndicator) {
+        MCTSReportIndicator reportIndicator = compiledIndicator.definition();
+        SafeMap reportData = new SafeMap(submission.getFields(compiledIndicator.formFields()));
         reportData.put(SUBMISSION_DATE_FIELD_NAME, submission.getField(SUBMISSION_DATE_FIELD_NAME));
 
         SafeMap referenceDataFields = referenceDataRepository.getReferenceData(submission, reportIndicator.referenceData());
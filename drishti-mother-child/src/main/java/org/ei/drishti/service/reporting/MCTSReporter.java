@@ -10,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class MCTSReporter {
 
@@ -17,6 +19,7 @@ public class MCTSReporter {
 
     private AllMCTSReports reports;
     private String mctsReportDelay;
+    private final ThreadLocal<List<MCTSReport>> capturedReports = new ThreadLocal<>();
 
     @Autowired
     public MCTSReporter(AllMCTSReports reports, @Value("#{drishti['mcts-report-delay-in-days']}") String mctsReportDelay) {
@@ -29,9 +32,22 @@ public class MCTSReporter {
         MCTSReport report = new MCTSReport(entityId,
                 MCTSServiceCode.valueOf(indicator).messageFor(thayiCardNumber, LocalDate.parse(serviceProvidedDate)),
                 registrationDate, serviceProvidedDate, getSendDate(LocalDate.parse(serviceProvidedDate)));
+        List<MCTSReport> captured = capturedReports.get();
+        if (captured != null) {
+            captured.add(report);
+            return;
+        }
         reports.add(report);
     }
 
+    public void captureReportsInto(List<MCTSReport> reports) {
+        capturedReports.set(reports);
+    }
+
+    public void stopCapturing() {
+        capturedReports.remove();
+    }
+
     private String getSendDate(LocalDate serviceProvidedDate) {
         int delay = IntegerUtil.tryParse(mctsReportDelay, DEFAULT_MCTS_REPORT_DELAY);
         return serviceProvidedDate.plusDays(delay).toString();
@@ -0,0 +1,104 @@
+package org.ei.drishti.service.reporting;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.UUID;
+
+/**
+ * A report backfill running in the background. The job is QUEUED until the backfills started before it are
+ * done, and while it is RUNNING its result shows the progress so far.
+ */
+public class ReportBackfillJob {
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    @JsonProperty
+    private String id;
+    @JsonProperty
+    private String formName;
+    @JsonProperty
+    private long fromServerVersion;
+    @JsonProperty
+    private long toServerVersion;
+    @JsonProperty
+    private boolean dryRun;
+    @JsonProperty
+    private State state = State.QUEUED;
+    @JsonProperty
+    private String error;
+    @JsonProperty
+    private ReportBackfillResult result;
+
+    public ReportBackfillJob(String formName, long fromServerVersion, long toServerVersion, boolean dryRun) {
+        this.id = UUID.randomUUID().toString();
+        this.formName = formName;
+        this.fromServerVersion = fromServerVersion;
+        this.toServerVersion = toServerVersion;
+        this.dryRun = dryRun;
+    }
+
+    public synchronized void running(ReportBackfillResult result) {
+        this.state = State.RUNNING;
+        this.result = result;
+    }
+
+    public synchronized void succeeded() {
+        this.state = State.SUCCEEDED;
+    }
+
+    public synchronized void failed(Exception e) {
+        this.state = State.FAILED;
+        this.error = String.valueOf(e.getMessage());
+    }
+
+    /**
+     * A copy of the job as it is now, which does not change while it is being written out.
+     */
+    public synchronized ReportBackfillJob snapshot() {
+        ReportBackfillJob snapshot = new ReportBackfillJob(formName, fromServerVersion, toServerVersion, dryRun);
+        snapshot.id = id;
+        snapshot.state = state;
+        snapshot.error = error;
+        snapshot.result = result == null ? null : result.copy();
+        return snapshot;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String formName() {
+        return formName;
+    }
+
+    public long fromServerVersion() {
+        return fromServerVersion;
+    }
+
+    public long toServerVersion() {
+        return toServerVersion;
+    }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized String error() {
+        return error;
+    }
+
+    public synchronized ReportBackfillResult result() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
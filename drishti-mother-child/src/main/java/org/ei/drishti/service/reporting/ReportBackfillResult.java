@@ -0,0 +1,174 @@
+package org.ei.drishti.service.reporting;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.domain.MCTSReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.ei.drishti.common.AllConstants.ReportDataParameters.INDICATOR;
+import static org.ei.drishti.common.AllConstants.ReportDataParameters.QUANTITY;
+
+/**
+ * What a backfill replayed, and how that differs from the reports which were already saved: the reports it
+ * added, or on a dry run would add, the reports that already existed and the reports that were rejected.
+ * Report counts by indicator are in reports, so a record with a quantity counts as that many reports.
+ */
+public class ReportBackfillResult {
+    public static final int MAXIMUM_ADDED_REPORTS_LISTED = 100;
+
+    @JsonProperty
+    private String formName;
+    @JsonProperty
+    private boolean dryRun;
+    @JsonProperty
+    private long startedAfterServerVersion;
+    @JsonProperty
+    private long lastServerVersion;
+    @JsonProperty
+    private int submissionCount;
+    @JsonProperty
+    private int mctsReportCount;
+    @JsonProperty
+    private int addedMCTSReportCount;
+    @JsonProperty
+    private int existingMCTSReportCount;
+    @JsonProperty
+    private int rejectedReportCount;
+    @JsonProperty
+    private Map<String, Integer> reportCountByTypeAndIndicator = new TreeMap<>();
+    @JsonProperty
+    private Map<String, Integer> addedReportCountByTypeAndIndicator = new TreeMap<>();
+    @JsonProperty
+    private Map<String, Integer> existingReportCountByTypeAndIndicator = new TreeMap<>();
+    @JsonProperty
+    private List<ReportingData> addedReports = new ArrayList<>();
+
+    public ReportBackfillResult(String formName, boolean dryRun, long startedAfterServerVersion) {
+        this.formName = formName;
+        this.dryRun = dryRun;
+        this.startedAfterServerVersion = startedAfterServerVersion;
+        this.lastServerVersion = startedAfterServerVersion;
+    }
+
+    /**
+     * Adds a replayed batch. The batch result of the reporting application tells, by position in reportingData,
+     * which reports already existed and which were rejected.
+     */
+    public synchronized ReportBackfillResult add(int submissionCount, List<ReportingData> reportingData, ReportDataBatchResult batchResult,
+                                                 List<MCTSReport> mctsReports, int existingMCTSReportCount, long lastServerVersion) {
+        this.submissionCount += submissionCount;
+        this.mctsReportCount += mctsReports.size();
+        this.existingMCTSReportCount += existingMCTSReportCount;
+        this.addedMCTSReportCount += mctsReports.size() - existingMCTSReportCount;
+        this.lastServerVersion = lastServerVersion;
+        for (int i = 0; i < reportingData.size(); i++) {
+            ReportingData data = reportingData.get(i);
+            String key = data.type() + "/" + data.get(INDICATOR);
+            int units = unitsOf(data);
+            increment(reportCountByTypeAndIndicator, key, units);
+            if (batchResult.failures().containsKey(i)) {
+                rejectedReportCount += units;
+                continue;
+            }
+            int existingCount = batchResult.existingCount(i);
+            int addedCount = units - existingCount;
+            increment(existingReportCountByTypeAndIndicator, key, existingCount);
+            increment(addedReportCountByTypeAndIndicator, key, addedCount);
+            if (addedCount > 0 && addedReports.size() < MAXIMUM_ADDED_REPORTS_LISTED) {
+                addedReports.add(data);
+            }
+        }
+        return this;
+    }
+
+    public synchronized ReportBackfillResult copy() {
+        ReportBackfillResult copy = new ReportBackfillResult(formName, dryRun, startedAfterServerVersion);
+        copy.lastServerVersion = lastServerVersion;
+        copy.submissionCount = submissionCount;
+        copy.mctsReportCount = mctsReportCount;
+        copy.addedMCTSReportCount = addedMCTSReportCount;
+        copy.existingMCTSReportCount = existingMCTSReportCount;
+        copy.rejectedReportCount = rejectedReportCount;
+        copy.reportCountByTypeAndIndicator.putAll(reportCountByTypeAndIndicator);
+        copy.addedReportCountByTypeAndIndicator.putAll(addedReportCountByTypeAndIndicator);
+        copy.existingReportCountByTypeAndIndicator.putAll(existingReportCountByTypeAndIndicator);
+        copy.addedReports.addAll(addedReports);
+        return copy;
+    }
+
+    public synchronized int submissionCount() {
+        return submissionCount;
+    }
+
+    public synchronized int mctsReportCount() {
+        return mctsReportCount;
+    }
+
+    public synchronized int addedMCTSReportCount() {
+        return addedMCTSReportCount;
+    }
+
+    public synchronized int existingMCTSReportCount() {
+        return existingMCTSReportCount;
+    }
+
+    public synchronized int rejectedReportCount() {
+        return rejectedReportCount;
+    }
+
+    public synchronized long lastServerVersion() {
+        return lastServerVersion;
+    }
+
+    public synchronized Map<String, Integer> reportCountByTypeAndIndicator() {
+        return reportCountByTypeAndIndicator;
+    }
+
+    public synchronized Map<String, Integer> addedReportCountByTypeAndIndicator() {
+        return addedReportCountByTypeAndIndicator;
+    }
+
+    public synchronized Map<String, Integer> existingReportCountByTypeAndIndicator() {
+        return existingReportCountByTypeAndIndicator;
+    }
+
+    public synchronized List<ReportingData> addedReports() {
+        return addedReports;
+    }
+
+    private void increment(Map<String, Integer> counts, String key, int by) {
+        if (by <= 0) {
+            return;
+        }
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? by : count + by);
+    }
+
+    private int unitsOf(ReportingData data) {
+        String quantity = data.get(QUANTITY);
+        return quantity == null ? 1 : Integer.parseInt(quantity);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
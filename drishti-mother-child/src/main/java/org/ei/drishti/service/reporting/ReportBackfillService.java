@@ -0,0 +1,293 @@
+package org.ei.drishti.service.reporting;
+
+import com.google.gson.Gson;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.common.util.HttpAgent;
+import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.domain.MCTSReport;
+import org.ei.drishti.domain.ReportBackfillToken;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.form.repository.AllFormSubmissions;
+import org.ei.drishti.repository.AllMCTSReports;
+import org.ei.drishti.repository.AllReportBackfillTokens;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static java.text.MessageFormat.format;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+/**
+ * Recomputes the reports of already processed form submissions, for example after the report definition
+ * changed or a rule was fixed. Only the reporting rules run: entities are not touched. Submissions are
+ * streamed in server version order and replayed in parallel a batch at a time. The reports of a batch are
+ * sent together to the reporting application, which saves only those reports that are not saved yet, after
+ * which the progress is saved so an interrupted backfill resumes where it stopped. MCTS reports that already
+ * exist are not saved again either. A dry run saves nothing and tells how the replayed reports differ from
+ * the saved ones. Backfills run in the background one at a time, and the most recent ones can be looked up.
+ * Reports that the replayed submissions no longer produce are left as they are.
+ */
+@Service
+public class ReportBackfillService {
+    public static final String BACKFILL_REPORT_BATCH_ACTION = "backfill-batch";
+    private static final int MAXIMUM_JOBS_KEPT = 50;
+    private static Logger logger = LoggerFactory.getLogger(ReportBackfillService.class.toString());
+    private AllFormSubmissions allFormSubmissions;
+    private FormSubmissionReportService formSubmissionReportService;
+    private MCTSReportService mctsReportService;
+    private ReportingService reportingService;
+    private MCTSReporter mctsReporter;
+    private AllMCTSReports allMCTSReports;
+    private AllReportBackfillTokens allReportBackfillTokens;
+    private ILocationLoader locationLoader;
+    private HttpAgent httpAgent;
+    private String url;
+    private int numberOfWorkers;
+    private int batchSize;
+    private final ExecutorService jobExecutor = newSingleThreadExecutor();
+    private final Map<String, ReportBackfillJob> jobs = Collections.synchronizedMap(new LinkedHashMap<String, ReportBackfillJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReportBackfillJob> eldest) {
+            return size() > MAXIMUM_JOBS_KEPT;
+        }
+    });
+
+    @Autowired
+    public ReportBackfillService(AllFormSubmissions allFormSubmissions, FormSubmissionReportService formSubmissionReportService,
+                                 MCTSReportService mctsReportService, ReportingService reportingService, MCTSReporter mctsReporter,
+                                 AllMCTSReports allMCTSReports, AllReportBackfillTokens allReportBackfillTokens,
+                                 ILocationLoader locationLoader, HttpAgent httpAgent,
+                                 @Value("#{drishti['drishti.reporting.url']}") String url,
+                                 @Value("#{drishti['report.backfill.workers']}") int numberOfWorkers,
+                                 @Value("#{drishti['report.backfill.batch.size']}") int batchSize) {
+        this.allFormSubmissions = allFormSubmissions;
+        this.formSubmissionReportService = formSubmissionReportService;
+        this.mctsReportService = mctsReportService;
+        this.reportingService = reportingService;
+        this.mctsReporter = mctsReporter;
+        this.allMCTSReports = allMCTSReports;
+        this.allReportBackfillTokens = allReportBackfillTokens;
+        this.locationLoader = locationLoader;
+        this.httpAgent = httpAgent;
+        this.url = url;
+        this.numberOfWorkers = Math.max(1, numberOfWorkers);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Queues a backfill to run in the background once the backfills started before it are done.
+     */
+    public ReportBackfillJob start(String formName, long fromServerVersion, long toServerVersion, boolean dryRun) {
+        final ReportBackfillJob job = new ReportBackfillJob(formName, fromServerVersion, toServerVersion, dryRun);
+        jobs.put(job.id(), job);
+        jobExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    backfill(job);
+                    job.succeeded();
+                } catch (Exception e) {
+                    logger.error(format("Report backfill of form: {0} failed. Running it again resumes after the last completed batch.",
+                            job.formName()), e);
+                    job.failed(e);
+                }
+            }
+        });
+        return job;
+    }
+
+    public ReportBackfillJob job(String id) {
+        return jobs.get(id);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    /**
+     * Replays the submissions of the given form with a server version after fromServerVersion and up to
+     * toServerVersion. Running the same backfill again continues after the last batch that was saved.
+     */
+    public ReportBackfillResult backfill(String formName, long fromServerVersion, long toServerVersion, boolean dryRun) {
+        return backfill(new ReportBackfillJob(formName, fromServerVersion, toServerVersion, dryRun));
+    }
+
+    private ReportBackfillResult backfill(ReportBackfillJob job) {
+        String formName = job.formName();
+        long fromServerVersion = job.fromServerVersion();
+        long toServerVersion = job.toServerVersion();
+        boolean dryRun = job.isDryRun();
+        ReportBackfillToken token = dryRun ? null
+                : allReportBackfillTokens.tokenFor(formName + ":" + fromServerVersion + "-" + toServerVersion, fromServerVersion);
+        long startAfter = token == null ? fromServerVersion : Math.max(fromServerVersion, token.version());
+        logger.info(format("Starting report backfill of form: {0} after server version: {1} up to: {2}. Dry run: {3}",
+                formName, String.valueOf(startAfter), String.valueOf(toServerVersion), dryRun));
+
+        ReportBackfillResult result = new ReportBackfillResult(formName, dryRun, startAfter);
+        job.running(result);
+        ExecutorService executor = newFixedThreadPool(numberOfWorkers);
+        try {
+            List<FormSubmission> batch = new ArrayList<>();
+            for (FormSubmission submission : allFormSubmissions.streamByFormNameAndServerVersion(formName, startAfter, null)) {
+                if (submission.serverVersion() > toServerVersion) {
+                    break;
+                }
+                // Progress is saved as a server version, so submissions sharing one always go in the same batch.
+                if (batch.size() >= batchSize && submission.serverVersion() != lastOf(batch).serverVersion()) {
+                    replay(batch, executor, job, token, result);
+                    batch = new ArrayList<>();
+                }
+                batch.add(submission);
+            }
+            if (!batch.isEmpty()) {
+                replay(batch, executor, job, token, result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info(format("Finished report backfill: {0}", result));
+        return result;
+    }
+
+    private void replay(List<FormSubmission> batch, ExecutorService executor, ReportBackfillJob job, ReportBackfillToken token,
+                        ReportBackfillResult result) {
+        locationLoader.preloadFor(batch);
+        List<Future<ReplayedReports>> replays = new ArrayList<>();
+        for (FormSubmission submission : batch) {
+            replays.add(executor.submit(new SubmissionReplay(submission)));
+        }
+        List<ReportingData> reportingData = new ArrayList<>();
+        List<MCTSReport> mctsReports = new ArrayList<>();
+        for (int i = 0; i < replays.size(); i++) {
+            ReplayedReports replayed = resultOf(replays.get(i), batch.get(i));
+            reportingData.addAll(replayed.reportingData);
+            mctsReports.addAll(replayed.mctsReports);
+        }
+
+        ReportDataBatchResult batchResult = sendForBackfill(reportingData, job);
+        List<MCTSReport> newMCTSReports = withoutExisting(mctsReports);
+        long lastServerVersion = lastOf(batch).serverVersion();
+        if (!job.isDryRun()) {
+            allMCTSReports.addAll(newMCTSReports);
+            allReportBackfillTokens.update(token.withVersion(lastServerVersion));
+        }
+        result.add(batch.size(), reportingData, batchResult, mctsReports, mctsReports.size() - newMCTSReports.size(), lastServerVersion);
+    }
+
+    /**
+     * Sends the reports of a batch with the id of the backfill, so that a saved report is only matched once across
+     * the batches of the backfill.
+     */
+    private ReportDataBatchResult sendForBackfill(List<ReportingData> reportingData, ReportBackfillJob job) {
+        if (reportingData.isEmpty()) {
+            return new ReportDataBatchResult(0);
+        }
+        String backfillURL = url + "/" + BACKFILL_REPORT_BATCH_ACTION + "?dry-run=" + job.isDryRun() + "&backfill-id=" + job.id();
+        HttpResponse response = httpAgent.post(backfillURL, new Gson().toJson(reportingData), MediaType.APPLICATION_JSON_VALUE);
+        if (!response.isSuccess()) {
+            throw new RuntimeException(format("Reporting data backfill post failed. URL: {0}. Batch size: {1}. Response: {2}",
+                    backfillURL, reportingData.size(), response.body()));
+        }
+        ReportDataBatchResult batchResult = new Gson().fromJson(response.body(), ReportDataBatchResult.class);
+        for (Integer index : batchResult.failures().keySet()) {
+            logger.error(format("Reporting data was rejected by backfill: {0}. Data: {1}",
+                    batchResult.failures().get(index), reportingData.get(index)));
+        }
+        return batchResult;
+    }
+
+    private List<MCTSReport> withoutExisting(List<MCTSReport> mctsReports) {
+        if (mctsReports.isEmpty()) {
+            return mctsReports;
+        }
+        Set<String> entityIds = new HashSet<>();
+        for (MCTSReport report : mctsReports) {
+            entityIds.add(report.entityId());
+        }
+        Map<String, Integer> savedCounts = new HashMap<>();
+        for (MCTSReport saved : allMCTSReports.allFor(entityIds)) {
+            String key = keyOf(saved);
+            Integer count = savedCounts.get(key);
+            savedCounts.put(key, count == null ? 1 : count + 1);
+        }
+        List<MCTSReport> newReports = new ArrayList<>();
+        for (MCTSReport report : mctsReports) {
+            String key = keyOf(report);
+            Integer savedCount = savedCounts.get(key);
+            if (savedCount != null && savedCount > 0) {
+                savedCounts.put(key, savedCount - 1);
+            } else {
+                newReports.add(report);
+            }
+        }
+        return newReports;
+    }
+
+    private String keyOf(MCTSReport report) {
+        return report.entityId() + "|" + report.serviceProvidedDate() + "|" + report.reportText();
+    }
+
+    private ReplayedReports resultOf(Future<ReplayedReports> replay, FormSubmission submission) {
+        try {
+            return replay.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(format("Report backfill failed for submission with instance id: {0}",
+                    submission.instanceId()), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private FormSubmission lastOf(List<FormSubmission> batch) {
+        return batch.get(batch.size() - 1);
+    }
+
+    private static class ReplayedReports {
+        private final List<ReportingData> reportingData = new ArrayList<>();
+        private final List<MCTSReport> mctsReports = new ArrayList<>();
+    }
+
+    private class SubmissionReplay implements Callable<ReplayedReports> {
+        private final FormSubmission submission;
+
+        SubmissionReplay(FormSubmission submission) {
+            this.submission = submission;
+        }
+
+        @Override
+        public ReplayedReports call() throws Exception {
+            ReplayedReports replayed = new ReplayedReports();
+            reportingService.captureReportDataInto(replayed.reportingData);
+            mctsReporter.captureReportsInto(replayed.mctsReports);
+            try {
+                formSubmissionReportService.reportFor(submission);
+                mctsReportService.reportFor(submission);
+            } finally {
+                reportingService.stopCapturing();
+                mctsReporter.stopCapturing();
+            }
+            return replayed;
+        }
+    }
+}
@@ -8,7 +8,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static ch.lambdaj.Lambda.*;
 import static org.hamcrest.Matchers.equalTo;
@@ -33,6 +35,17 @@ public class ReportDefinition {
         }
     }
 
+    public Map<String, List<ReportIndicator>> indicatorsByFormName() {
+        Map<String, List<ReportIndicator>> indicatorsByFormName = new HashMap<>();
+        for (FormIndicator formIndicator : formIndicators) {
+            if (indicatorsByFormName.containsKey(formIndicator.form())) {
+                throw new IllegalStateException("There are more than one form indicator definition for the form: " + formIndicator.form());
+            }
+            indicatorsByFormName.put(formIndicator.form(), formIndicator.indicators());
+        }
+        return indicatorsByFormName;
+    }
+
     @Override
     public boolean equals(Object o) {
         return EqualsBuilder.reflectionEquals(this, o);
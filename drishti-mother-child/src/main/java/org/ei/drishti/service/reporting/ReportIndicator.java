@@ -6,7 +6,7 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import java.util.List;
 
-public class ReportIndicator {
+public class ReportIndicator implements IndicatorDefinition {
     private String indicator;
     private String reportEntityType;
     private String serviceProvidedDateField;
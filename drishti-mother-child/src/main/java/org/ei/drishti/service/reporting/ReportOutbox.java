@@ -0,0 +1,286 @@
+package org.ei.drishti.service.reporting;
+
+import com.google.gson.Gson;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+import org.ei.drishti.common.domain.ReportDataDeleteRequest;
+import org.ei.drishti.common.domain.ReportDataUpdateRequest;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+import org.ei.drishti.common.util.HttpAgent;
+import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.domain.ReportOutboxEntry;
+import org.ei.drishti.repository.AllReportOutboxEntries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.text.MessageFormat.format;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.ei.drishti.common.AllConstants.ReportDataParameters.REPORT_KEY;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_DEPTH;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_LAG;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_SUBMIT_TIME;
+import static org.ei.drishti.common.util.DateUtil.millis;
+import static org.joda.time.DateTimeConstants.MILLIS_PER_SECOND;
+
+/**
+ * Durable queue of report data on its way to the reporting application. Report data is appended to the outbox
+ * in CouchDB, so it survives the reporting application being slow or down, and is submitted oldest first in
+ * batches: as soon as a full batch is waiting, and otherwise whenever the outbox flush schedule fires. Requests
+ * to update or delete reports go through the outbox as well, one at a time and in order with the report data,
+ * so they never overtake the report data they replace. Batches are
+ * submitted on the outbox's own thread, never on the thread that appends or schedules the flush. A batch
+ * that cannot be submitted, or that the reporting application fails on with a server error, stays in the outbox
+ * and is retried after a delay that doubles on every failure. A batch the reporting application refuses with a
+ * client error is split in halves until the entry it cannot take is found, so that one bad entry does not hold
+ * back the others. That entry is dead-lettered once it has been rejected the maximum number of times. Each entry is sent with its report key, so an entry that is delivered
+ * again, for example after its batch timed out, is not counted twice.
+ */
+@Component
+public class ReportOutbox {
+    public static final String SUBMIT_REPORT_BATCH_ACTION = "submit-batch";
+    public static final String UPDATE_REPORT_ACTION = "update";
+    public static final String DELETE_REPORT_ACTION = "delete";
+    private static Logger logger = LoggerFactory.getLogger(ReportOutbox.class.toString());
+
+    private final AllReportOutboxEntries allReportOutboxEntries;
+    private final HttpAgent httpAgent;
+    private final Monitor monitor;
+    private final String url;
+    private final int batchSize;
+    private final long initialBackoffInMillis;
+    private final long maximumBackoffInMillis;
+    private final int maximumRejectedAttempts;
+    private final ExecutorService flushExecutor;
+    private final AtomicInteger appendedSinceFlush = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong sequence = new AtomicLong();
+    private long backoffInMillis;
+    private long nextAttemptAt;
+
+    @Autowired
+    public ReportOutbox(AllReportOutboxEntries allReportOutboxEntries, HttpAgent httpAgent, Monitor monitor,
+                        @Value("#{drishti['drishti.reporting.url']}") String url,
+                        @Value("#{drishti['report.outbox.batch.size']}") int batchSize,
+                        @Value("#{drishti['report.outbox.retry.initial.backoff.in.seconds']}") long initialBackoffInSeconds,
+                        @Value("#{drishti['report.outbox.retry.maximum.backoff.in.seconds']}") long maximumBackoffInSeconds,
+                        @Value("#{drishti['report.outbox.maximum.rejected.attempts']}") int maximumRejectedAttempts) {
+        this(allReportOutboxEntries, httpAgent, monitor, url, batchSize, initialBackoffInSeconds, maximumBackoffInSeconds,
+                maximumRejectedAttempts, newSingleThreadExecutor());
+    }
+
+    ReportOutbox(AllReportOutboxEntries allReportOutboxEntries, HttpAgent httpAgent, Monitor monitor, String url, int batchSize,
+                 long initialBackoffInSeconds, long maximumBackoffInSeconds, int maximumRejectedAttempts,
+                 ExecutorService flushExecutor) {
+        this.allReportOutboxEntries = allReportOutboxEntries;
+        this.httpAgent = httpAgent;
+        this.monitor = monitor;
+        this.url = url;
+        this.batchSize = Math.max(1, batchSize);
+        this.initialBackoffInMillis = initialBackoffInSeconds * MILLIS_PER_SECOND;
+        this.maximumBackoffInMillis = Math.max(initialBackoffInMillis, maximumBackoffInSeconds * MILLIS_PER_SECOND);
+        this.maximumRejectedAttempts = Math.max(1, maximumRejectedAttempts);
+        this.flushExecutor = flushExecutor;
+    }
+
+    public void append(List<ReportingData> reportingData) {
+        long now = millis();
+        List<ReportOutboxEntry> entries = new ArrayList<>();
+        for (ReportingData data : reportingData) {
+            entries.add(new ReportOutboxEntry(data, now));
+        }
+        add(entries);
+    }
+
+    public void appendUpdate(ReportDataUpdateRequest updateRequest) {
+        add(asList(new ReportOutboxEntry(updateRequest, millis())));
+    }
+
+    public void appendDelete(ReportDataDeleteRequest deleteRequest) {
+        add(asList(new ReportOutboxEntry(deleteRequest, millis())));
+    }
+
+    private void add(List<ReportOutboxEntry> entries) {
+        for (ReportOutboxEntry entry : entries) {
+            entry.withSequence(sequence.incrementAndGet());
+        }
+        allReportOutboxEntries.addAll(entries);
+        if (appendedSinceFlush.addAndGet(entries.size()) >= batchSize) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Flushes the outbox on its own thread. Does nothing if a flush is already waiting to run.
+     */
+    public void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        flushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushScheduled.set(false);
+                try {
+                    flush();
+                } catch (Exception e) {
+                    logger.error("Report outbox flush failed.", e);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+    }
+
+    /**
+     * Submits the waiting report data a batch at a time, and the waiting update and delete requests one at a
+     * time, until the outbox is empty or a submission fails. Does nothing while waiting to retry after a failure.
+     */
+    public synchronized void flush() {
+        appendedSinceFlush.set(0);
+        if (millis() < nextAttemptAt) {
+            return;
+        }
+        List<ReportOutboxEntry> entries = allReportOutboxEntries.oldest(batchSize);
+        reportDepthAndLag(entries);
+        while (!entries.isEmpty()) {
+            List<ReportOutboxEntry> leadingEntries = leadingEntriesSentTogether(entries);
+            if (!deliver(leadingEntries)) {
+                backoffInMillis = backoffInMillis == 0 ? initialBackoffInMillis : Math.min(maximumBackoffInMillis, backoffInMillis * 2);
+                nextAttemptAt = millis() + backoffInMillis;
+                logger.warn(format("Will retry submitting report outbox in {0} seconds.", backoffInMillis / MILLIS_PER_SECOND));
+                return;
+            }
+            backoffInMillis = 0;
+            nextAttemptAt = 0;
+            boolean isEmpty = entries.size() < batchSize && leadingEntries.size() == entries.size();
+            entries = isEmpty ? new ArrayList<ReportOutboxEntry>() : allReportOutboxEntries.oldest(batchSize);
+        }
+    }
+
+    private List<ReportOutboxEntry> leadingEntriesSentTogether(List<ReportOutboxEntry> entries) {
+        if (entries.get(0).action() != ReportOutboxEntry.Action.SUBMIT) {
+            return entries.subList(0, 1);
+        }
+        int end = 1;
+        while (end < entries.size() && entries.get(end).action() == ReportOutboxEntry.Action.SUBMIT) {
+            end++;
+        }
+        return entries.subList(0, end);
+    }
+
+    private boolean deliver(List<ReportOutboxEntry> entries) {
+        Submission submission = submit(entries);
+        if (submission == Submission.ACCEPTED) {
+            allReportOutboxEntries.removeAll(entries);
+            return true;
+        }
+        if (submission == Submission.NOT_SENT) {
+            return false;
+        }
+        if (entries.size() > 1) {
+            int middle = entries.size() / 2;
+            return deliver(entries.subList(0, middle)) && deliver(entries.subList(middle, entries.size()));
+        }
+        ReportOutboxEntry entry = entries.get(0).rejected();
+        if (entry.rejectedAttempts() < maximumRejectedAttempts) {
+            allReportOutboxEntries.update(entry);
+            return false;
+        }
+        logger.error(format("Dead-lettering report outbox entry rejected {0} times: {1}", entry.rejectedAttempts(), entry));
+        allReportOutboxEntries.update(entry.deadLetter());
+        return true;
+    }
+
+    public int depth() {
+        return allReportOutboxEntries.depth();
+    }
+
+    public long lagInMillis() {
+        List<ReportOutboxEntry> oldest = allReportOutboxEntries.oldest(1);
+        return oldest.isEmpty() ? 0 : millis() - oldest.get(0).createdAt();
+    }
+
+    private Submission submit(List<ReportOutboxEntry> entries) {
+        ReportOutboxEntry first = entries.get(0);
+        if (first.action() == ReportOutboxEntry.Action.UPDATE) {
+            return submissionOf(post(UPDATE_REPORT_ACTION, new Gson().toJson(first.updateRequest()), entries.size()));
+        }
+        if (first.action() == ReportOutboxEntry.Action.DELETE) {
+            return submissionOf(post(DELETE_REPORT_ACTION, new Gson().toJson(first.deleteRequest()), entries.size()));
+        }
+        List<ReportingData> batch = new ArrayList<>();
+        for (ReportOutboxEntry entry : entries) {
+            batch.add(entry.data().with(REPORT_KEY, entry.reportKey()));
+        }
+        HttpResponse response = post(SUBMIT_REPORT_BATCH_ACTION, new Gson().toJson(batch), entries.size());
+        Submission submission = submissionOf(response);
+        if (submission == Submission.ACCEPTED) {
+            logRejectedReportingData(batch, response);
+        }
+        return submission;
+    }
+
+    private HttpResponse post(String action, String data, int numberOfEntries) {
+        Probe probe = monitor.start(REPORTING_OUTBOX_SUBMIT_TIME);
+        try {
+            HttpResponse response = httpAgent.post(url + "/" + action, data, MediaType.APPLICATION_JSON_VALUE);
+            if (!response.isSuccess()) {
+                logger.error(format("Reporting data post failed. URL: {0}. Entries: {1}. Status: {2}. Response: {3}",
+                        url + "/" + action, numberOfEntries, response.statusCode(), response.body()));
+            }
+            return response;
+        } catch (Exception e) {
+            logger.error(format("Reporting data post failed. URL: {0}. Entries: {1}", url + "/" + action, numberOfEntries), e);
+            return null;
+        } finally {
+            monitor.end(probe);
+        }
+    }
+
+    private Submission submissionOf(HttpResponse response) {
+        if (response == null) {
+            return Submission.NOT_SENT;
+        }
+        if (response.isSuccess()) {
+            return Submission.ACCEPTED;
+        }
+        return response.isClientError() ? Submission.REJECTED : Submission.NOT_SENT;
+    }
+
+    private void logRejectedReportingData(List<ReportingData> batch, HttpResponse response) {
+        // Rejected records would be rejected again, so they are logged and leave the outbox with the rest.
+        ReportDataBatchResult result = new Gson().fromJson(response.body(), ReportDataBatchResult.class);
+        if (result == null) {
+            return;
+        }
+        for (Integer index : result.failures().keySet()) {
+            logger.error(format("Reporting data was rejected: {0}. Data: {1}", result.failures().get(index), batch.get(index)));
+        }
+    }
+
+    private void reportDepthAndLag(List<ReportOutboxEntry> oldestEntries) {
+        monitor.addObservationFor(REPORTING_OUTBOX_DEPTH, oldestEntries.size() < batchSize ? oldestEntries.size() : depth());
+        monitor.addObservationFor(REPORTING_OUTBOX_LAG, oldestEntries.isEmpty() ? 0 : millis() - oldestEntries.get(0).createdAt());
+    }
+
+    private enum Submission {
+        ACCEPTED, REJECTED, NOT_SENT
+    }
+}
@@ -10,9 +10,12 @@ import org.motechproject.scheduler.gateway.OutboundEventGateway;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class ReportingService {
     private OutboundEventGateway gateway;
+    private final ThreadLocal<List<ReportingData>> capturedReportData = new ThreadLocal<>();
 
     @Autowired
     public ReportingService(OutboundEventGateway gateway) {
@@ -20,9 +23,26 @@ public class ReportingService {
     }
 
     public void sendReportData(ReportingData data) {
+        List<ReportingData> captured = capturedReportData.get();
+        if (captured != null) {
+            captured.add(data);
+            return;
+        }
         gateway.sendEventMessage(new ReportEvent(data).toEvent());
     }
 
+    /**
+     * Collects the report data sent on this thread into the given list instead of publishing it, until
+     * {@link #stopCapturing()} is called. Used to replay reports without sending them one at a time.
+     */
+    public void captureReportDataInto(List<ReportingData> data) {
+        capturedReportData.set(data);
+    }
+
+    public void stopCapturing() {
+        capturedReportData.remove();
+    }
+
     public void updateReportData(ReportDataUpdateRequest dataRequest) {
         gateway.sendEventMessage(new ReportUpdateEvent(dataRequest).toEvent());
     }
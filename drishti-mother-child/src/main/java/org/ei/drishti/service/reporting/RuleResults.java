@@ -0,0 +1,89 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.util.SafeMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.commons.lang3.ObjectUtils.equals;
+
+/**
+ * Memo of the rule results of one submission. A rule is evaluated once and its result is remembered along with
+ * the values of the report fields it read; any later indicator that hands the rule the same values for those
+ * fields gets the remembered result. Rules that throw are not remembered. Not thread safe: use one per submission.
+ */
+public class RuleResults {
+    private final Map<String, List<RuleResult>> resultsByRuleName = new HashMap<>();
+    private long evaluations;
+    private long hits;
+
+    public boolean apply(String ruleName, IRule rule, SafeMap reportFields) {
+        List<RuleResult> results = resultsByRuleName.get(ruleName);
+        if (results == null) {
+            results = new ArrayList<>();
+            resultsByRuleName.put(ruleName, results);
+        }
+        for (RuleResult result : results) {
+            if (result.appliesTo(reportFields)) {
+                hits++;
+                return result.value;
+            }
+        }
+
+        Set<String> readKeys = new HashSet<>();
+        boolean value;
+        reportFields.recordReadsInto(readKeys);
+        try {
+            evaluations++;
+            value = rule.apply(reportFields);
+        } finally {
+            reportFields.recordReadsInto(null);
+        }
+        results.add(new RuleResult(readKeys, reportFields, value));
+        return value;
+    }
+
+    public long evaluations() {
+        return evaluations;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    private static class RuleResult {
+        private final Map<String, String> readValues = new HashMap<>();
+        private final Set<String> missingKeys = new HashSet<>();
+        private final boolean value;
+
+        RuleResult(Set<String> readKeys, SafeMap reportFields, boolean value) {
+            for (String key : readKeys) {
+                if (reportFields.has(key)) {
+                    readValues.put(key, reportFields.get(key));
+                } else {
+                    missingKeys.add(key);
+                }
+            }
+            this.value = value;
+        }
+
+        boolean appliesTo(SafeMap reportFields) {
+            for (String key : missingKeys) {
+                if (reportFields.has(key)) {
+                    return false;
+                }
+            }
+            for (Map.Entry<String, String> readValue : readValues.entrySet()) {
+                if (!reportFields.has(readValue.getKey()) || !equals(readValue.getValue(), reportFields.get(readValue.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
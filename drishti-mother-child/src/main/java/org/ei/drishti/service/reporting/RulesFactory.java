@@ -1,5 +1,6 @@
 package org.ei.drishti.service.reporting;
 
+import org.ei.drishti.service.reporting.expression.ExpressionCompiler;
 import org.ei.drishti.service.reporting.rules.IRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,8 +19,21 @@ public class RulesFactory implements IRulesFactory, ApplicationContextAware {
     private ApplicationContext applicationContext;
 
     public IRule ruleByName(String ruleName) throws RuleNotFoundException {
+        if (ExpressionCompiler.isExpression(ruleName)) {
+            return ExpressionCompiler.compile(ruleName);
+        }
+        Class<?> ruleClass;
+        try {
+            ruleClass = Class.forName(RULES_PACKAGE_NAME + "." + ruleName);
+        } catch (ClassNotFoundException e) {
+            if (ExpressionCompiler.isFieldName(ruleName)) {
+                return ExpressionCompiler.compile(ruleName);
+            }
+            logger.error(e.getMessage() + getFullStackTrace(e));
+            throw new RuleNotFoundException(ruleName);
+        }
         try {
-            return (IRule) applicationContext.getBean(Class.forName(RULES_PACKAGE_NAME + "." + ruleName));
+            return (IRule) applicationContext.getBean(ruleClass);
         } catch (Exception e) {
             logger.error(e.getMessage() + getFullStackTrace(e));
             throw new RuleNotFoundException(ruleName);
@@ -0,0 +1,337 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.service.reporting.expression.Node.Type;
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compiles the inline conditions of a report definition into rules. An entry of reportWhen that is not a plain
+ * rule name, or that is a field name no rule is called, is an expression over the report fields, for example:
+ * <pre>
+ *     dateOfBirth + 1 years > serviceProvidedDate && caste in ('sc', 'st')
+ * </pre>
+ * Expressions support {@code && || !}, the comparisons {@code == != < <= > >=}, membership with {@code in (...)},
+ * adding days, weeks, months or years to a date, integer arithmetic, and the literals {@code 'text'}, numbers,
+ * {@code date('2013-01-01')}, {@code true}, {@code false} and {@code null}.
+ * <p/>
+ * A field is read as a date, a number or a boolean depending on what it is compared with or used for, and as
+ * text otherwise. Text is compared ignoring case. A blank date or number field compares unequal to everything
+ * except null. All of this is decided here, once, so evaluating a rule only walks the compiled nodes.
+ */
+public class ExpressionCompiler {
+    private static final Pattern RULE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Pattern FIELD_NAME = Pattern.compile("[a-z_][A-Za-z0-9_]*");
+    private static final List<String> OPERATORS = asList("&&", "||", "==", "!=", "<=", ">=", "<", ">", "!", "+", "-", "(", ")", ",");
+    private static final List<String> COMPARISONS = asList("==", "!=", "<=", ">=", "<", ">");
+    private static final List<String> DATE_UNITS = asList("days", "weeks", "months", "years");
+
+    private final String expression;
+    private final List<Token> tokens;
+    private int position;
+
+    private ExpressionCompiler(String expression) {
+        this.expression = expression;
+        this.tokens = tokenize(expression);
+    }
+
+    public static boolean isExpression(String ruleName) {
+        return !RULE_NAME.matcher(ruleName).matches();
+    }
+
+    /**
+     * Tells whether a plain name that no rule is called can be read as a boolean field. Rules are named like
+     * classes, so a capitalized name is still taken to be a missing rule rather than silently becoming a field.
+     */
+    public static boolean isFieldName(String ruleName) {
+        return FIELD_NAME.matcher(ruleName).matches();
+    }
+
+    public static IRule compile(String expression) {
+        ExpressionCompiler compiler = new ExpressionCompiler(expression);
+        Node condition = compiler.condition(compiler.or());
+        compiler.expect(TokenKind.END, null);
+        return new ExpressionRule(expression, condition);
+    }
+
+    private Node or() {
+        Node left = and();
+        while (accept("||")) {
+            left = new Nodes.Or(condition(left), condition(and()));
+        }
+        return left;
+    }
+
+    private Node and() {
+        Node left = not();
+        while (accept("&&")) {
+            left = new Nodes.And(condition(left), condition(not()));
+        }
+        return left;
+    }
+
+    private Node not() {
+        if (accept("!")) {
+            return new Nodes.Not(condition(not()));
+        }
+        return comparison();
+    }
+
+    private Node comparison() {
+        Node left = additive();
+        if (peek().is(TokenKind.IDENTIFIER, "in")) {
+            next();
+            return in(left);
+        }
+        if (peek().kind == TokenKind.OPERATOR && COMPARISONS.contains(peek().text)) {
+            String operator = next().text;
+            return compare(left, operator, additive());
+        }
+        return left;
+    }
+
+    private Node in(Node value) {
+        if (value.type() != Type.FIELD && value.type() != Type.STRING && value.type() != Type.NUMBER) {
+            throw error("only text and numbers can be looked up with in");
+        }
+        expect(TokenKind.OPERATOR, "(");
+        Set<String> candidates = new HashSet<>();
+        do {
+            Token candidate = next();
+            if (candidate.kind != TokenKind.STRING && candidate.kind != TokenKind.NUMBER) {
+                throw error("expected text or a number but found " + candidate.text);
+            }
+            candidates.add(candidate.text.toLowerCase());
+        } while (accept(","));
+        expect(TokenKind.OPERATOR, ")");
+        return new Nodes.In(value, candidates);
+    }
+
+    private Node compare(Node left, String operator, Node right) {
+        Type type = commonTypeOf(left, right);
+        boolean isOrdering = !"==".equals(operator) && !"!=".equals(operator);
+        if (isOrdering && type != Type.DATE && type != Type.NUMBER) {
+            throw error("only dates and numbers can be compared with " + operator);
+        }
+        return new Nodes.Comparison(as(left, type), operator, as(right, type));
+    }
+
+    private Type commonTypeOf(Node left, Node right) {
+        List<Type> types = asList(left.type(), right.type());
+        if (types.contains(Type.DATE)) {
+            return Type.DATE;
+        }
+        if (types.contains(Type.NUMBER)) {
+            return Type.NUMBER;
+        }
+        if (types.contains(Type.BOOLEAN)) {
+            return Type.BOOLEAN;
+        }
+        return Type.STRING;
+    }
+
+    private Node additive() {
+        Node left = primary();
+        while (peek().is(TokenKind.OPERATOR, "+") || peek().is(TokenKind.OPERATOR, "-")) {
+            int sign = next().text.equals("+") ? 1 : -1;
+            if (peek().kind == TokenKind.NUMBER && peek(1).kind == TokenKind.IDENTIFIER && DATE_UNITS.contains(peek(1).text)) {
+                int amount = number(next());
+                left = new Nodes.DateShift(as(left, Type.DATE), sign * amount, next().text);
+            } else {
+                left = new Nodes.Sum(as(left, Type.NUMBER), as(primary(), Type.NUMBER), sign);
+            }
+        }
+        return left;
+    }
+
+    private Node primary() {
+        Token token = next();
+        switch (token.kind) {
+            case NUMBER:
+                return new Nodes.Literal(number(token), Type.NUMBER);
+            case STRING:
+                return new Nodes.Literal(token.text, Type.STRING);
+            case IDENTIFIER:
+                return identifier(token);
+            default:
+                if (token.is(TokenKind.OPERATOR, "(")) {
+                    Node node = or();
+                    expect(TokenKind.OPERATOR, ")");
+                    return node;
+                }
+                throw error("unexpected " + (token.kind == TokenKind.END ? "end of expression" : token.text));
+        }
+    }
+
+    private Node identifier(Token token) {
+        switch (token.text) {
+            case "true":
+                return new Nodes.Literal(Boolean.TRUE, Type.BOOLEAN);
+            case "false":
+                return new Nodes.Literal(Boolean.FALSE, Type.BOOLEAN);
+            case "null":
+                return new Nodes.Literal(null, Type.NULL);
+            case "date":
+                expect(TokenKind.OPERATOR, "(");
+                Node date = as(new Nodes.Literal(expect(TokenKind.STRING, null).text, Type.STRING), Type.DATE);
+                expect(TokenKind.OPERATOR, ")");
+                return date;
+            default:
+                return new Nodes.Field(token.text);
+        }
+    }
+
+    private int number(Token token) {
+        try {
+            return Integer.parseInt(token.text);
+        } catch (NumberFormatException e) {
+            throw error(token.text + " is too large a number");
+        }
+    }
+
+    private Node condition(Node node) {
+        return as(node, Type.BOOLEAN);
+    }
+
+    private Node as(Node node, Type type) {
+        if (node.type() == type || (node.type() == Type.NULL && type != Type.BOOLEAN)) {
+            return node;
+        }
+        if (node instanceof Nodes.Field) {
+            String name = ((Nodes.Field) node).name();
+            switch (type) {
+                case DATE:
+                    return new Nodes.DateField(name);
+                case NUMBER:
+                    return new Nodes.NumberField(name);
+                case BOOLEAN:
+                    return new Nodes.BooleanField(name);
+                default:
+                    return node;
+            }
+        }
+        if (node.type() == Type.STRING && type == Type.DATE) {
+            String text = (String) node.evaluate(null);
+            try {
+                return new Nodes.Literal(LocalDate.parse(text), Type.DATE);
+            } catch (IllegalArgumentException e) {
+                throw error(text + " is not a date");
+            }
+        }
+        throw error("expected " + type.name().toLowerCase() + " but found " + node.type().name().toLowerCase());
+    }
+
+    private boolean accept(String operator) {
+        if (peek().is(TokenKind.OPERATOR, operator)) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(TokenKind kind, String text) {
+        Token token = next();
+        if (token.kind != kind || (text != null && !text.equals(token.text))) {
+            throw error("expected " + (text == null ? kind.name().toLowerCase() : text)
+                    + " but found " + (token.kind == TokenKind.END ? "end of expression" : token.text));
+        }
+        return token;
+    }
+
+    private Token peek() {
+        return peek(0);
+    }
+
+    private Token peek(int offset) {
+        return tokens.get(Math.min(position + offset, tokens.size() - 1));
+    }
+
+    private Token next() {
+        Token token = peek();
+        if (position < tokens.size() - 1) {
+            position++;
+        }
+        return token;
+    }
+
+    private InvalidExpressionException error(String message) {
+        return new InvalidExpressionException(expression, tokens.get(Math.max(position - 1, 0)).offset, message);
+    }
+
+    private List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int index = 0;
+        while (index < expression.length()) {
+            char character = expression.charAt(index);
+            if (Character.isWhitespace(character)) {
+                index++;
+            } else if (Character.isLetter(character) || character == '_') {
+                int end = index;
+                while (end < expression.length() && (Character.isLetterOrDigit(expression.charAt(end)) || expression.charAt(end) == '_')) {
+                    end++;
+                }
+                tokens.add(new Token(TokenKind.IDENTIFIER, expression.substring(index, end), index));
+                index = end;
+            } else if (Character.isDigit(character)) {
+                int end = index;
+                while (end < expression.length() && Character.isDigit(expression.charAt(end))) {
+                    end++;
+                }
+                tokens.add(new Token(TokenKind.NUMBER, expression.substring(index, end), index));
+                index = end;
+            } else if (character == '\'') {
+                int end = expression.indexOf('\'', index + 1);
+                if (end < 0) {
+                    throw new InvalidExpressionException(expression, index, "unterminated text");
+                }
+                tokens.add(new Token(TokenKind.STRING, expression.substring(index + 1, end), index));
+                index = end + 1;
+            } else {
+                String operator = operatorAt(expression, index);
+                if (operator == null) {
+                    throw new InvalidExpressionException(expression, index, "unexpected character " + character);
+                }
+                tokens.add(new Token(TokenKind.OPERATOR, operator, index));
+                index += operator.length();
+            }
+        }
+        tokens.add(new Token(TokenKind.END, "", expression.length()));
+        return tokens;
+    }
+
+    private String operatorAt(String expression, int index) {
+        for (String operator : OPERATORS) {
+            if (expression.startsWith(operator, index)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
+    private enum TokenKind {
+        IDENTIFIER, NUMBER, STRING, OPERATOR, END
+    }
+
+    private static class Token {
+        private final TokenKind kind;
+        private final String text;
+        private final int offset;
+
+        Token(TokenKind kind, String text, int offset) {
+            this.kind = kind;
+            this.text = text;
+            this.offset = offset;
+        }
+
+        boolean is(TokenKind kind, String text) {
+            return this.kind == kind && this.text.equals(text);
+        }
+    }
+}
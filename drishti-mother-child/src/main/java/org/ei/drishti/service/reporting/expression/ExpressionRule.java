@@ -0,0 +1,24 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.util.SafeMap;
+
+public class ExpressionRule implements IRule {
+    private final String expression;
+    private final Node condition;
+
+    ExpressionRule(String expression, Node condition) {
+        this.expression = expression;
+        this.condition = condition;
+    }
+
+    @Override
+    public boolean apply(SafeMap reportFields) {
+        return (Boolean) condition.evaluate(reportFields);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,9 @@
+package org.ei.drishti.service.reporting.expression;
+
+import java.text.MessageFormat;
+
+public class InvalidExpressionException extends RuntimeException {
+    public InvalidExpressionException(String expression, int position, String message) {
+        super(MessageFormat.format("Invalid reporting expression: {0}. At position {1}: {2}", expression, position, message));
+    }
+}
@@ -0,0 +1,25 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.util.SafeMap;
+
+/**
+ * A node of a compiled expression. The type of every node is known when the expression is compiled, so
+ * evaluating a node never has to inspect or convert the values its children return.
+ */
+abstract class Node {
+    enum Type {
+        BOOLEAN, STRING, NUMBER, DATE, FIELD, NULL
+    }
+
+    private final Type type;
+
+    protected Node(Type type) {
+        this.type = type;
+    }
+
+    Type type() {
+        return type;
+    }
+
+    abstract Object evaluate(SafeMap reportFields);
+}
@@ -0,0 +1,254 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.util.SafeMap;
+import org.joda.time.LocalDate;
+
+import java.util.Set;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+final class Nodes {
+    private Nodes() {
+    }
+
+    static class Literal extends Node {
+        private final Object value;
+
+        Literal(Object value, Type type) {
+            super(type);
+            this.value = value;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return value;
+        }
+    }
+
+    static class Field extends Node {
+        private final String name;
+
+        Field(String name) {
+            super(Type.FIELD);
+            this.name = name;
+        }
+
+        String name() {
+            return name;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return reportFields.get(name);
+        }
+    }
+
+    static class DateField extends Node {
+        private final String name;
+
+        DateField(String name) {
+            super(Type.DATE);
+            this.name = name;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return isBlank(reportFields.get(name)) ? null : reportFields.localDate(name);
+        }
+    }
+
+    static class NumberField extends Node {
+        private final String name;
+
+        NumberField(String name) {
+            super(Type.NUMBER);
+            this.name = name;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return isBlank(reportFields.get(name)) ? null : reportFields.integer(name);
+        }
+    }
+
+    static class BooleanField extends Node {
+        private final String name;
+
+        BooleanField(String name) {
+            super(Type.BOOLEAN);
+            this.name = name;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return reportFields.bool(name);
+        }
+    }
+
+    static class DateShift extends Node {
+        private final Node date;
+        private final int amount;
+        private final String unit;
+
+        DateShift(Node date, int amount, String unit) {
+            super(Type.DATE);
+            this.date = date;
+            this.amount = amount;
+            this.unit = unit;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            LocalDate value = (LocalDate) date.evaluate(reportFields);
+            if (value == null) {
+                return null;
+            }
+            switch (unit) {
+                case "days":
+                    return value.plusDays(amount);
+                case "weeks":
+                    return value.plusWeeks(amount);
+                case "months":
+                    return value.plusMonths(amount);
+                default:
+                    return value.plusYears(amount);
+            }
+        }
+    }
+
+    static class Sum extends Node {
+        private final Node left;
+        private final Node right;
+        private final int sign;
+
+        Sum(Node left, Node right, int sign) {
+            super(Type.NUMBER);
+            this.left = left;
+            this.right = right;
+            this.sign = sign;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            Integer leftValue = (Integer) left.evaluate(reportFields);
+            Integer rightValue = (Integer) right.evaluate(reportFields);
+            if (leftValue == null || rightValue == null) {
+                return null;
+            }
+            return leftValue + sign * rightValue;
+        }
+    }
+
+    static class Comparison extends Node {
+        private final Node left;
+        private final String operator;
+        private final Node right;
+
+        Comparison(Node left, String operator, Node right) {
+            super(Type.BOOLEAN);
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object evaluate(SafeMap reportFields) {
+            Object leftValue = left.evaluate(reportFields);
+            Object rightValue = right.evaluate(reportFields);
+            if ("==".equals(operator)) {
+                return areEqual(leftValue, rightValue);
+            }
+            if ("!=".equals(operator)) {
+                return !areEqual(leftValue, rightValue);
+            }
+            if (leftValue == null || rightValue == null) {
+                return false;
+            }
+            int comparison = ((Comparable<Object>) leftValue).compareTo(rightValue);
+            switch (operator) {
+                case "<":
+                    return comparison < 0;
+                case "<=":
+                    return comparison <= 0;
+                case ">":
+                    return comparison > 0;
+                default:
+                    return comparison >= 0;
+            }
+        }
+
+        private boolean areEqual(Object leftValue, Object rightValue) {
+            if (leftValue == null || rightValue == null) {
+                return leftValue == rightValue;
+            }
+            if (leftValue instanceof String) {
+                return ((String) leftValue).equalsIgnoreCase((String) rightValue);
+            }
+            return leftValue.equals(rightValue);
+        }
+    }
+
+    static class In extends Node {
+        private final Node value;
+        private final Set<String> candidates;
+
+        In(Node value, Set<String> lowerCaseCandidates) {
+            super(Type.BOOLEAN);
+            this.value = value;
+            this.candidates = lowerCaseCandidates;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            Object candidate = value.evaluate(reportFields);
+            return candidate != null && candidates.contains(candidate.toString().toLowerCase());
+        }
+    }
+
+    static class And extends Node {
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            super(Type.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return (Boolean) left.evaluate(reportFields) && (Boolean) right.evaluate(reportFields);
+        }
+    }
+
+    static class Or extends Node {
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            super(Type.BOOLEAN);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return (Boolean) left.evaluate(reportFields) || (Boolean) right.evaluate(reportFields);
+        }
+    }
+
+    static class Not extends Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            super(Type.BOOLEAN);
+            this.operand = operand;
+        }
+
+        @Override
+        Object evaluate(SafeMap reportFields) {
+            return !(Boolean) operand.evaluate(reportFields);
+        }
+    }
+}
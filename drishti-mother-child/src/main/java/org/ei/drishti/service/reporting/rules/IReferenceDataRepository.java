@@ -4,7 +4,14 @@ import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.service.reporting.ReferenceData;
 import org.ei.drishti.util.SafeMap;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface IReferenceDataRepository {
     SafeMap getReferenceData(FormSubmission submission, ReferenceData referenceData);
+
+    void beginScope(List<FormSubmission> submissions, Collection<ReferenceData> referenceData);
+
+    void endScope();
 }
 
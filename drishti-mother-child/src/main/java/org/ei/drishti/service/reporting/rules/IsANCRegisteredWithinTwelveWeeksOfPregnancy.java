@@ -5,7 +5,6 @@ import org.springframework.stereotype.Component;
 
 import static org.ei.drishti.common.AllConstants.CommonFormFields.REFERENCE_DATE;
 import static org.ei.drishti.common.AllConstants.CommonFormFields.SERVICE_PROVIDED_DATE;
-import static org.joda.time.LocalDate.parse;
 
 @Component
 public class IsANCRegisteredWithinTwelveWeeksOfPregnancy implements IRule {
@@ -14,7 +13,7 @@ public class IsANCRegisteredWithinTwelveWeeksOfPregnancy implements IRule {
     @Override
     public boolean apply(SafeMap reportFields) {
 
-        return !(parse(reportFields.get(SERVICE_PROVIDED_DATE)).minusDays(NUMBER_OF_DAYS_IN_12_WEEKS)
-                .isAfter(parse(reportFields.get(REFERENCE_DATE))));
+        return !(reportFields.localDate(SERVICE_PROVIDED_DATE).minusDays(NUMBER_OF_DAYS_IN_12_WEEKS)
+                .isAfter(reportFields.localDate(REFERENCE_DATE)));
     }
 }
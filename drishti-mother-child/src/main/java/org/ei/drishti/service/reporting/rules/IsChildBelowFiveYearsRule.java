@@ -12,8 +12,8 @@ public class IsChildBelowFiveYearsRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
-        LocalDate reportDate = LocalDate.parse(reportFields.get(REPORT_CHILD_DISEASE_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
+        LocalDate reportDate = reportFields.localDate(REPORT_CHILD_DISEASE_DATE);
         return dateOfBirth.plusYears(5).isAfter(reportDate);
     }
 }
\ No newline at end of file
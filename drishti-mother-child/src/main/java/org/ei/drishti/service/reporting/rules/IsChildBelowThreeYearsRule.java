@@ -12,8 +12,8 @@ public class IsChildBelowThreeYearsRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
-        LocalDate reportDate = LocalDate.parse(reportFields.get(VITAMIN_A_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
+        LocalDate reportDate = reportFields.localDate(VITAMIN_A_DATE);
         return dateOfBirth.plusYears(3).isAfter(reportDate);
     }
 }
\ No newline at end of file
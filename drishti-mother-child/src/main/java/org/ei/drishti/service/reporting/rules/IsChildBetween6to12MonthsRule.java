@@ -12,8 +12,8 @@ public class IsChildBetween6to12MonthsRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
-        LocalDate reportDate = LocalDate.parse(reportFields.get(SERVICE_PROVIDED_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
+        LocalDate reportDate = reportFields.localDate(SERVICE_PROVIDED_DATE);
         return dateOfBirth.plusYears(1).isAfter(reportDate) && dateOfBirth.plusMonths(6).isBefore(reportDate);
     }
 }
@@ -12,9 +12,9 @@ public class IsChildLessThanFourWeeksOldRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
         String serviceProvidedDate = reportFields.get(SERVICE_PROVIDED_DATE);
 
-        return serviceProvidedDate != null ? dateOfBirth.plusWeeks(4).isAfter(LocalDate.parse(serviceProvidedDate)) : false;
+        return serviceProvidedDate != null ? dateOfBirth.plusWeeks(4).isAfter(reportFields.localDate(SERVICE_PROVIDED_DATE)) : false;
     }
 }
@@ -13,10 +13,10 @@ public class IsChildLessThanOneYearOldRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
         if (isBlank(reportFields.get(SERVICE_PROVIDED_DATE)))
             return false;
-        LocalDate serviceProvidedDate = LocalDate.parse(reportFields.get(SERVICE_PROVIDED_DATE));
+        LocalDate serviceProvidedDate = reportFields.localDate(SERVICE_PROVIDED_DATE);
         return dateOfBirth.plusYears(1).isAfter(serviceProvidedDate);
     }
 }
@@ -12,8 +12,8 @@ public class IsChildMoreThan5YearsOldRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(DATE_OF_BIRTH));
-        LocalDate serviceProvidedDate = LocalDate.parse(reportFields.get(SERVICE_PROVIDED_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(DATE_OF_BIRTH);
+        LocalDate serviceProvidedDate = reportFields.localDate(SERVICE_PROVIDED_DATE);
 
         return dateOfBirth.plusYears(5).isBefore(serviceProvidedDate);
     }
@@ -12,8 +12,8 @@ public class IsDeliveryDateOneYearInThePastRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(REFERENCE_DATE));
-        LocalDate serviceProvidedDate = LocalDate.parse(reportFields.get(SERVICE_PROVIDED_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(REFERENCE_DATE);
+        LocalDate serviceProvidedDate = reportFields.localDate(SERVICE_PROVIDED_DATE);
 
         return dateOfBirth.plusYears(1).isAfter(serviceProvidedDate);
     }
@@ -12,8 +12,8 @@ public class IsPNCVisit48HoursOfDeliveryRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate pncVisitDate = LocalDate.parse(reportFields.get(VISIT_DATE_FIELD_NAME));
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(REFERENCE_DATE));
+        LocalDate pncVisitDate = reportFields.localDate(VISIT_DATE_FIELD_NAME);
+        LocalDate dateOfBirth = reportFields.localDate(REFERENCE_DATE);
 
         LocalDate threeDaysAfterDateOfBirth = dateOfBirth.plusDays(3);
         
@@ -15,7 +15,7 @@ public class IsPNCVisitFirstBetween2And14DaysOfDeliveryRule implements IRule {
     public boolean apply(SafeMap reportFields) {
         String pncVisitDate = reportFields.get(VISIT_DATE_FIELD_NAME);
         String pncVisitDates = reportFields.get(VISIT_DATES_FIELD_NAME);
-        LocalDate dateOfBirth = LocalDate.parse(reportFields.get(REFERENCE_DATE));
+        LocalDate dateOfBirth = reportFields.localDate(REFERENCE_DATE);
         if (pncVisitDates != null) {
             String[] pncVisitDatesList = pncVisitDates.split(" ");
             for (String date : pncVisitDatesList) {
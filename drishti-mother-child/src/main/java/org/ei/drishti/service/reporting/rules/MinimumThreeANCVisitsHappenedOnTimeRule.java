@@ -26,8 +26,8 @@ public class MinimumThreeANCVisitsHappenedOnTimeRule implements IRule {
 
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate lmp = LocalDate.parse(reportFields.get(REFERENCE_DATE));
-        LocalDate ancVisitDate = LocalDate.parse(reportFields.get(AllConstants.ANCFormFields.ANC_VISIT_DATE_FIELD));
+        LocalDate lmp = reportFields.localDate(REFERENCE_DATE);
+        LocalDate ancVisitDate = reportFields.localDate(AllConstants.ANCFormFields.ANC_VISIT_DATE_FIELD);
         Mother mother = mothers.findByCaseId(reportFields.get(ID));
         int numberOfANCVisitsHappened = mother.ancVisits().size();
 
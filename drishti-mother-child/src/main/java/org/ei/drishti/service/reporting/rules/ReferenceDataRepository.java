@@ -16,9 +16,12 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.text.MessageFormat;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.ei.drishti.common.AllConstants.FormEntityTypes.*;
 
@@ -31,6 +34,7 @@ public class ReferenceDataRepository implements IReferenceDataRepository {
     private static final String CASE_ID_VIEW_NAME = "by_caseId";
     private static final String DETAILS = "details";
     private Map<String, String> designDocMap;
+    private final ThreadLocal<Map<String, JsonNode>> scopedDocuments = new ThreadLocal<>();
 
     @Autowired
     public ReferenceDataRepository(@Qualifier(AllConstants.DRISHTI_DATABASE_CONNECTOR) CouchDbConnector db) {
@@ -47,16 +51,12 @@ public class ReferenceDataRepository implements IReferenceDataRepository {
         String docEntityType = designDocMap.get(referenceData.type());
         SafeMap referenceDataFields = new SafeMap();
 
-        List<ViewResult.Row> viewQueryResult = getDBViewQueryResult(submission.getField(referenceData.idField()), docEntityType);
-        ObjectNode entity;
-        ObjectNode details;
-
-        if (viewQueryResult.isEmpty()) {
+        JsonNode document = findDocument(docEntityType, submission.getField(referenceData.idField()));
+        if (document == null) {
             return referenceDataFields;
         }
-        JsonNode document = viewQueryResult.get(0).getDocAsNode();
-        entity = (ObjectNode) document;
-        details = (ObjectNode) document.get(DETAILS);
+        ObjectNode entity = (ObjectNode) document;
+        ObjectNode details = (ObjectNode) document.get(DETAILS);
         for (String field : referenceData.fields()) {
             if (entity.get(field) != null) {
                 referenceDataFields.put(field, entity.get(field).getTextValue());
@@ -71,6 +71,71 @@ public class ReferenceDataRepository implements IReferenceDataRepository {
         return referenceDataFields;
     }
 
+    /**
+     * Loads every entity the given reference data points to from the given submissions, one multi-key query per
+     * entity type, and keeps them for the reference data lookups made on this thread until {@link #endScope()}.
+     */
+    public void beginScope(List<FormSubmission> submissions, Collection<ReferenceData> referenceData) {
+        Map<String, Set<String>> idsByDocEntityType = new HashMap<>();
+        for (ReferenceData data : referenceData) {
+            String docEntityType = designDocMap.get(data.type());
+            if (!idsByDocEntityType.containsKey(docEntityType)) {
+                idsByDocEntityType.put(docEntityType, new HashSet<String>());
+            }
+            for (FormSubmission submission : submissions) {
+                String id = submission.getField(data.idField());
+                if (id != null) {
+                    idsByDocEntityType.get(docEntityType).add(id);
+                }
+            }
+        }
+
+        Map<String, JsonNode> documents = new HashMap<>();
+        for (Map.Entry<String, Set<String>> ids : idsByDocEntityType.entrySet()) {
+            if (ids.getValue().isEmpty()) {
+                continue;
+            }
+            for (String id : ids.getValue()) {
+                documents.put(documentKey(ids.getKey(), id), null);
+            }
+            for (ViewResult.Row row : getDBViewQueryResult(ids.getValue(), ids.getKey())) {
+                String key = documentKey(ids.getKey(), row.getKey());
+                if (documents.get(key) == null) {
+                    documents.put(key, row.getDocAsNode());
+                }
+            }
+        }
+        scopedDocuments.set(documents);
+    }
+
+    public void endScope() {
+        scopedDocuments.remove();
+    }
+
+    private JsonNode findDocument(String docEntityType, String id) {
+        Map<String, JsonNode> documents = scopedDocuments.get();
+        String key = documentKey(docEntityType, id);
+        if (documents != null && documents.containsKey(key)) {
+            return documents.get(key);
+        }
+        List<ViewResult.Row> viewQueryResult = getDBViewQueryResult(id, docEntityType);
+        JsonNode document = viewQueryResult.isEmpty() ? null : viewQueryResult.get(0).getDocAsNode();
+        if (documents != null) {
+            documents.put(key, document);
+        }
+        return document;
+    }
+
+    private String documentKey(String docEntityType, String id) {
+        return docEntityType + "/" + id;
+    }
+
+    private List<ViewResult.Row> getDBViewQueryResult(Collection<String> ids, String docEntityType) {
+        logger.info(MessageFormat.format("Trying to load {0} entities of entityType: {1}", ids.size(), docEntityType));
+        return db.queryView(new ViewQuery().viewName(CASE_ID_VIEW_NAME).designDocId("_design/" + docEntityType).keys(ids)
+                .includeDocs(true)).getRows();
+    }
+
     public List<ViewResult.Row> getDBViewQueryResult(String id, String docEntityType) {
         logger.info(MessageFormat.format("Trying to load entityType: {0}, with id: {1}", docEntityType, id));
         List<ViewResult.Row> rows = db.queryView(new ViewQuery().viewName(CASE_ID_VIEW_NAME).designDocId("_design/" + docEntityType).key(id)
@@ -11,8 +11,8 @@ import static org.ei.drishti.common.AllConstants.CommonFormFields.REFERENCE_DATE
 public class WomanIsDischargedWithin48HoursOfDeliveryRule implements IRule {
     @Override
     public boolean apply(SafeMap reportFields) {
-        LocalDate deliveryDate = LocalDate.parse(reportFields.get(REFERENCE_DATE));
-        LocalDate dischargeDate = LocalDate.parse(reportFields.get(AllConstants.PNCVisitFormFields.DISCHARGE_DATE));
+        LocalDate deliveryDate = reportFields.localDate(REFERENCE_DATE);
+        LocalDate dischargeDate = reportFields.localDate(AllConstants.PNCVisitFormFields.DISCHARGE_DATE);
 
         return dischargeDate.equals(deliveryDate)
                 || dischargeDate.equals(deliveryDate.plusDays(1))
@@ -0,0 +1,34 @@
+package org.ei.drishti.util;
+
+import org.joda.time.LocalDate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the typed value of every field value parsed while reporting one submission, so the same date or
+ * number is parsed only once however many indicators and rules look at it. Not thread safe: use one cache
+ * per submission being reported.
+ */
+public class ParsedFieldCache {
+    private final Map<String, LocalDate> dates = new HashMap<>();
+    private final Map<String, Integer> integers = new HashMap<>();
+
+    public LocalDate localDate(String value) {
+        LocalDate date = dates.get(value);
+        if (date == null) {
+            date = LocalDate.parse(value);
+            dates.put(value, date);
+        }
+        return date;
+    }
+
+    public Integer integer(String value) {
+        Integer integer = integers.get(value);
+        if (integer == null) {
+            integer = Integer.valueOf(value);
+            integers.put(value, integer);
+        }
+        return integer;
+    }
+}
@@ -3,12 +3,16 @@ package org.ei.drishti.util;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
+import org.joda.time.LocalDate;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class SafeMap {
     private Map<String, String> data;
+    private transient ParsedFieldCache parsedFields = new ParsedFieldCache();
+    private transient Set<String> readKeys;
 
     public SafeMap() {
         this(new HashMap<String, String>());
@@ -26,12 +30,30 @@ public class SafeMap {
     }
 
     public String get(String key) {
+        recordRead(key);
         if (!data.containsKey(key)) {
             throw new RuntimeException("Key: " + key + " does not exist in: " + this);
         }
         return data.get(key);
     }
 
+    public LocalDate localDate(String key) {
+        return parsedFields.localDate(get(key));
+    }
+
+    public Integer integer(String key) {
+        return parsedFields.integer(get(key));
+    }
+
+    public boolean bool(String key) {
+        return Boolean.parseBoolean(get(key));
+    }
+
+    public SafeMap withParsedFieldCache(ParsedFieldCache parsedFields) {
+        this.parsedFields = parsedFields;
+        return this;
+    }
+
     public SafeMap put(String key, String value) {
         data.put(key, value);
         return this;
@@ -42,9 +64,24 @@ public class SafeMap {
     }
 
     public boolean has(String key) {
+        recordRead(key);
         return data.containsKey(key);
     }
 
+    /**
+     * Adds the key of every field looked up through this map to the given set, until called again with null.
+     */
+    public SafeMap recordReadsInto(Set<String> readKeys) {
+        this.readKeys = readKeys;
+        return this;
+    }
+
+    private void recordRead(String key) {
+        if (readKeys != null) {
+            readKeys.add(key);
+        }
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this);
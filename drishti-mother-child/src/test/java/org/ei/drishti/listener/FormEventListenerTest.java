@@ -10,6 +10,7 @@ import org.ei.drishti.repository.AllFormExportTokens;
 import org.ei.drishti.service.formSubmission.FormEntityService;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.motechproject.scheduler.domain.MotechEvent;
 
@@ -34,7 +35,7 @@ public class FormEventListenerTest {
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        listener = new FormEventListener(formSubmissionService, formEntityService, formExportTokens);
+        listener = new FormEventListener(formSubmissionService, formEntityService, formExportTokens, false, 100);
     }
 
     @Test
@@ -47,12 +48,24 @@ public class FormEventListenerTest {
         verify(formSubmissionService).submit(formSubmissions);
     }
 
+    @Test
+    public void shouldDelegateFormSubmissionToBulkSubmissionWhenBulkIngestionIsEnabled() throws Exception {
+        List<FormSubmissionDTO> formSubmissions = asList(new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name", null, "0", "1"),
+                new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name", null, "0", "1"));
+        listener = new FormEventListener(formSubmissionService, formEntityService, formExportTokens, true, 100);
+
+        listener.submitForms(new MotechEvent(FormSubmissionEvent.SUBJECT, mapOf("data", (Object) new Gson().toJson(formSubmissions))));
+
+        verify(formSubmissionService).submitInBulk(formSubmissions);
+        verify(formSubmissionService, never()).submit(formSubmissions);
+    }
+
     @Test
     public void shouldFetchFormSubmissionsFromSubmissionService() throws Exception {
         List<FormSubmissionDTO> formSubmissions = asList(new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name", null, "0", "1").withServerVersion("0"),
                 new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name", null, "0", "1").withServerVersion("0"));
         when(formExportTokens.getAll()).thenReturn(asList(new FormExportToken(1L)));
-        when(formSubmissionService.fetch(1L)).thenReturn(formSubmissions);
+        when(formSubmissionService.fetch(1L, 100)).thenReturn(formSubmissions);
 
         listener.fetchForms(new MotechEvent("SUBJECT", null));
 
@@ -65,7 +78,7 @@ public class FormEventListenerTest {
         List<FormSubmissionDTO> formSubmissions = asList(new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name", null, "0", "1").withServerVersion("0"),
                 new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name", null, "0", "1").withServerVersion("0"));
         when(formExportTokens.getAll()).thenReturn(Collections.EMPTY_LIST);
-        when(formSubmissionService.fetch(1L)).thenReturn(formSubmissions);
+        when(formSubmissionService.fetch(1L, 100)).thenReturn(formSubmissions);
 
         listener.fetchForms(new MotechEvent("SUBJECT", null));
 
@@ -75,10 +88,32 @@ public class FormEventListenerTest {
     @Test
     public void shouldNotDoAnythingIfFetchFromSubmissionServiceReturnsEmptyList() throws Exception {
         when(formExportTokens.getAll()).thenReturn(asList(new FormExportToken(1L)));
-        when(formSubmissionService.fetch(1L)).thenReturn(Collections.EMPTY_LIST);
+        when(formSubmissionService.fetch(1L, 100)).thenReturn(Collections.EMPTY_LIST);
 
         listener.fetchForms(new MotechEvent("SUBJECT", null));
 
         verifyZeroInteractions(formEntityService);
     }
+
+    @Test
+    public void shouldKeepFetchingPagesOfFormSubmissionsUntilCaughtUp() throws Exception {
+        List<FormSubmissionDTO> firstPage = asList(new FormSubmissionDTO("anm id 1", "instance id 1", "entity id 1", "form name", null, "0", "1").withServerVersion("2"),
+                new FormSubmissionDTO("anm id 2", "instance id 2", "entity id 2", "form name", null, "0", "1").withServerVersion("3"));
+        List<FormSubmissionDTO> secondPage = asList(new FormSubmissionDTO("anm id 1", "instance id 3", "entity id 3", "form name", null, "0", "1").withServerVersion("4"));
+        when(formExportTokens.getAll()).thenReturn(asList(new FormExportToken(1L)));
+        when(formSubmissionService.fetch(1L, 100)).thenReturn(firstPage);
+        when(formSubmissionService.fetch(3L, 100)).thenReturn(secondPage);
+        when(formSubmissionService.fetch(4L, 100)).thenReturn(Collections.<FormSubmissionDTO>emptyList());
+
+        listener.fetchForms(new MotechEvent("SUBJECT", null));
+
+        InOrder inOrder = inOrder(formEntityService, formSubmissionService);
+        inOrder.verify(formSubmissionService).fetch(1L, 100);
+        inOrder.verify(formEntityService).process(asList(new FormSubmission("anm id 1", "instance id 1", "form name", "entity id 1", 0L, "1", null, 2L),
+                new FormSubmission("anm id 2", "instance id 2", "form name", "entity id 2", 0L, "1", null, 3L)));
+        inOrder.verify(formSubmissionService).fetch(3L, 100);
+        inOrder.verify(formEntityService).process(asList(new FormSubmission("anm id 1", "instance id 3", "form name", "entity id 3", 0L, "1", null, 4L)));
+        inOrder.verify(formSubmissionService).fetch(4L, 100);
+        verifyNoMoreInteractions(formEntityService);
+    }
 }
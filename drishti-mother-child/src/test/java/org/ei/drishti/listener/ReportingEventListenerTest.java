@@ -6,13 +6,18 @@ import org.ei.drishti.common.domain.ReportDataDeleteRequest;
 import org.ei.drishti.common.domain.ReportDataUpdateRequest;
 import org.ei.drishti.common.domain.ReportingData;
 import org.ei.drishti.common.util.HttpAgent;
-import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.common.util.HttpResponseReader;
 import org.ei.drishti.service.reporting.ANMReportingService;
+import org.ei.drishti.service.reporting.ReportOutbox;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.scheduler.domain.MotechEvent;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,28 +33,39 @@ public class ReportingEventListenerTest {
     private HttpAgent agent;
     @Mock
     private ANMReportingService anmReportingService;
+    @Mock
+    private ReportOutbox reportOutbox;
 
     private ReportingEventListener listener;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        listener = new ReportingEventListener(anmReportingService, agent, "http://drishti");
+        listener = new ReportingEventListener(anmReportingService, agent, reportOutbox, "http://drishti");
     }
 
     @Test
-    public void shouldSubmitReportingData() throws Exception {
+    public void shouldAppendReportingDataToTheOutbox() throws Exception {
         Map<String, Object> data = new HashMap<>();
-        data.put("data", new ReportingData("Boo").with("abc", "def"));
-        when(agent.post(eq("http://drishti/submit"), any(String.class), eq("application/json"))).thenReturn(new HttpResponse(true, null));
+        ReportingData reportingData = new ReportingData("Boo").with("abc", "def");
+        data.put("data", reportingData);
 
         listener.submitReportingData(new MotechEvent("SUBJECT", data));
 
-        verify(agent).post("http://drishti/submit", "{\"type\":\"Boo\",\"data\":{\"abc\":\"def\"}}", "application/json");
+        verify(reportOutbox).append(asList(reportingData));
+        verifyZeroInteractions(agent);
     }
 
     @Test
-    public void shouldUpdateReportingData() throws Exception {
+    public void shouldScheduleAnOutboxFlushWhenItsScheduleFires() throws Exception {
+        listener.flushReportOutbox(new MotechEvent("SUBJECT", new HashMap<String, Object>()));
+
+        verify(reportOutbox).scheduleFlush();
+        verify(reportOutbox, never()).flush();
+    }
+
+    @Test
+    public void shouldAppendAnUpdateOfReportingDataToTheOutbox() throws Exception {
         Map<String, Object> data = new HashMap<>();
         ReportingData reportingData = new ReportingData("Boo").with("abc", "def");
         ReportDataUpdateRequest dataRequest = new ReportDataUpdateRequest().withType("Boo")
@@ -57,13 +73,11 @@ public class ReportingEventListenerTest {
                 .withStartDate("2013-01-26")
                 .withEndDate("2013-02-25");
         data.put("data", dataRequest);
-        when(agent.post(eq("http://drishti/update"), any(String.class), eq("application/json"))).thenReturn(new HttpResponse(true, null));
 
         listener.updateReportingData(new MotechEvent("SUBJECT", data));
 
-        verify(agent).post("http://drishti/update",
-                "{\"startDate\":\"2013-01-26\",\"endDate\":\"2013-02-25\",\"type\":\"Boo\",\"reportingData\":[{\"type\":\"Boo\",\"data\":{\"abc\":\"def\"}}]}",
-                "application/json");
+        verify(reportOutbox).appendUpdate(dataRequest);
+        verifyZeroInteractions(agent);
     }
 
     @Test
@@ -71,18 +85,33 @@ public class ReportingEventListenerTest {
         Map<String, Object> data = new HashMap<>();
         List<ANMReport> anmReports = new ArrayList<>();
         anmReports.add(new ANMReport("ANM X", asList(createSummaryForIUD())));
-        when(agent.getWithSocketTimeout(eq("http://drishti/fetchForAllANMs"))).thenReturn(new HttpResponse(true, new Gson().toJson(anmReports)));
+        anmReportsFetchRespondsWith(true, new Gson().toJson(anmReports));
 
         listener.fetchANMReports(new MotechEvent("SUBJECT", data));
 
-        verify(agent).getWithSocketTimeout("http://drishti/fetchForAllANMs");
+        verify(agent).get(eq("http://drishti/fetchForAllANMs"), any(HttpResponseReader.class));
         verify(anmReportingService).processReports(anmReports);
     }
 
+    @Test
+    public void shouldPassTheFetchedANMReportsToANMReportServiceAChunkAtATime() throws Exception {
+        List<ANMReport> anmReports = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            anmReports.add(new ANMReport("ANM " + i, asList(createSummaryForIUD())));
+        }
+        anmReportsFetchRespondsWith(true, new Gson().toJson(anmReports));
+
+        listener.fetchANMReports(new MotechEvent("SUBJECT", new HashMap<String, Object>()));
+
+        InOrder inOrder = inOrder(anmReportingService);
+        inOrder.verify(anmReportingService).processReports(anmReports.subList(0, 100));
+        inOrder.verify(anmReportingService).processMoreReports(anmReports.subList(100, 101));
+    }
+
     @Test
     public void shouldAddANMReportsThatAreGeneratedFromEntities() throws Exception {
         Map<String, Object> data = new HashMap<>();
-        when(agent.getWithSocketTimeout(eq("http://drishti/fetchForAllANMs"))).thenReturn(new HttpResponse(true, new Gson().toJson(new ArrayList<ANMReport>())));
+        anmReportsFetchRespondsWith(true, new Gson().toJson(new ArrayList<ANMReport>()));
 
         listener.fetchANMReports(new MotechEvent("SUBJECT", data));
 
@@ -92,11 +121,11 @@ public class ReportingEventListenerTest {
     @Test
     public void shouldNotPassDataToANMReportServiceIfRequestFailed() throws Exception {
         Map<String, Object> data = new HashMap<>();
-        when(agent.getWithSocketTimeout(eq("http://drishti/fetchForAllANMs"))).thenReturn(new HttpResponse(false, null));
+        anmReportsFetchRespondsWith(false, "Internal error");
 
         listener.fetchANMReports(new MotechEvent("SUBJECT", data));
 
-        verify(agent).getWithSocketTimeout("http://drishti/fetchForAllANMs");
+        verify(agent).get(eq("http://drishti/fetchForAllANMs"), any(HttpResponseReader.class));
         verify(anmReportingService, times(0)).processReports(anyList());
     }
 
@@ -104,24 +133,35 @@ public class ReportingEventListenerTest {
     @Test
     public void shouldNotPassDataToANMReportServiceIfNoReportIsFetched() throws Exception {
         Map<String, Object> data = new HashMap<>();
-        when(agent.getWithSocketTimeout(eq("http://drishti/fetchForAllANMs"))).thenReturn(new HttpResponse(true, new Gson().toJson(new ArrayList<ANMReport>())));
+        anmReportsFetchRespondsWith(true, new Gson().toJson(new ArrayList<ANMReport>()));
 
         listener.fetchANMReports(new MotechEvent("SUBJECT", data));
 
-        verify(agent).getWithSocketTimeout("http://drishti/fetchForAllANMs");
+        verify(agent).get(eq("http://drishti/fetchForAllANMs"), any(HttpResponseReader.class));
         verify(anmReportingService, times(0)).processReports(anyList());
     }
 
     @Test
-    public void shouldDeleteReportingData() throws Exception {
+    public void shouldAppendADeleteOfReportingDataToTheOutbox() throws Exception {
         Map<String, Object> data = new HashMap<>();
         ReportDataDeleteRequest dataRequest = new ReportDataDeleteRequest().withType("Boo")
                 .withDristhiEntityId("entity id 1");
         data.put("data", dataRequest);
-        when(agent.post(eq("http://drishti/delete"), any(String.class), eq("application/json"))).thenReturn(new HttpResponse(true, null));
 
         listener.deleteReportingData(new MotechEvent("SUBJECT", data));
 
-        verify(agent).post("http://drishti/delete", "{\"type\":\"Boo\",\"dristhiEntityId\":\"entity id 1\"}", "application/json");
+        verify(reportOutbox).appendDelete(dataRequest);
+        verifyZeroInteractions(agent);
+    }
+
+    private void anmReportsFetchRespondsWith(final boolean isSuccess, final String body) {
+        when(agent.get(eq("http://drishti/fetchForAllANMs"), any(HttpResponseReader.class)))
+                .thenAnswer(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        HttpResponseReader reader = (HttpResponseReader) invocation.getArguments()[1];
+                        return reader.read(isSuccess, new ByteArrayInputStream(body.getBytes("UTF-8")));
+                    }
+                });
     }
 }
@@ -18,6 +18,7 @@ import java.util.Map;
 import static org.ei.drishti.common.util.EasyMap.create;
 import static org.ei.drishti.common.util.EasyMap.mapOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration("classpath:test-applicationContext-drishti.xml")
@@ -150,4 +151,35 @@ public class FormDataRepositoryIntegrationTest {
         Mother expectedMother = new Mother("entity id 1", "ec 123", "thayi1").withDetails(expectedDetails);
         assertEquals(expectedMother, savedMother);
     }
+
+    @Test
+    public void shouldMergeSavesOfTheSameEntityInAUnitOfWorkAndWriteThemOnlyOnCommit() throws Exception {
+        Mother oldMother = new Mother("entity id 1", "ec 123", "thayi2");
+        mothers.add(oldMother);
+
+        repository.beginUnitOfWork();
+        repository.saveEntity("mother", create("id", "entity id 1").put("thayiCardNumber", "thayi1").map());
+        repository.saveEntity("mother", create("id", "entity id 1").put("isHighPriority", "no").map());
+        repository.saveEntity("eligible_couple", create("id", "ec 123").put("ecNumber", "ec number 1").map());
+
+        assertEquals(oldMother, mothers.findByCaseId("entity id 1"));
+        assertNull(eligibleCouples.findByCaseId("ec 123"));
+
+        repository.commitUnitOfWork();
+
+        Mother expectedMother = new Mother("entity id 1", "ec 123", "thayi1").withDetails(mapOf("isHighPriority", "no"));
+        assertEquals(expectedMother, mothers.findByCaseId("entity id 1"));
+        assertEquals("ec number 1", eligibleCouples.findByCaseId("ec 123").ecNumber());
+    }
+
+    @Test
+    public void shouldDiscardSavesOfAUnitOfWorkThatIsRolledBack() throws Exception {
+        repository.beginUnitOfWork();
+        repository.saveEntity("eligible_couple", create("id", "ec 123").put("ecNumber", "ec number 1").map());
+
+        repository.rollbackUnitOfWork();
+        repository.commitUnitOfWork();
+
+        assertNull(eligibleCouples.findByCaseId("ec 123"));
+    }
 }
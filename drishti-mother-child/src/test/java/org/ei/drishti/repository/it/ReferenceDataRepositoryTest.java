@@ -141,4 +141,27 @@ public class ReferenceDataRepositoryTest {
         assertEquals(null,referenceData.get("fieldNotPresent"));
         assertEquals("bherya",referenceData.get("village"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldResolveReferenceDataOfAllSubmissionsInAScopeFromEntitiesLoadedUpFront() {
+        FormSubmission firstSubmission = create().withFormName("child_close").withEntityId("child id 1").build();
+        FormSubmission secondSubmission = create().withFormName("child_close").withEntityId("child id 2").build();
+        FormSubmission submissionWithoutEntity = create().withFormName("child_close").withEntityId("child id 3").build();
+        children.add(new Child("child id 1", "MOTHER-CASE-1", "bcg", "3", "male").withDateOfBirth("2013-01-01"));
+        children.add(new Child("child id 2", "MOTHER-CASE-2", "bcg", "3", "female").withDateOfBirth("2013-02-01"));
+        ReferenceData referenceData = new ReferenceData("child", "id", asList("dateOfBirth"));
+
+        referenceDataRepository.beginScope(asList(firstSubmission, secondSubmission, submissionWithoutEntity), asList(referenceData));
+        try {
+            children.add(new Child("child id 3", "MOTHER-CASE-3", "bcg", "3", "male").withDateOfBirth("2013-03-01"));
+
+            assertEquals("2013-01-01", referenceDataRepository.getReferenceData(firstSubmission, referenceData).get("dateOfBirth"));
+            assertEquals("2013-02-01", referenceDataRepository.getReferenceData(secondSubmission, referenceData).get("dateOfBirth"));
+            assertTrue(referenceDataRepository.getReferenceData(submissionWithoutEntity, referenceData).isEmpty());
+        } finally {
+            referenceDataRepository.endScope();
+        }
+
+        assertEquals("2013-03-01", referenceDataRepository.getReferenceData(submissionWithoutEntity, referenceData).get("dateOfBirth"));
+    }
+}
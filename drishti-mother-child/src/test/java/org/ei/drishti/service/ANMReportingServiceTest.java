@@ -19,6 +19,7 @@ import static org.ei.drishti.common.util.ANMIndicatorSummaryFactory.createSummar
 import static org.ei.drishti.common.util.ANMIndicatorSummaryFactory.createSummaryForIUD;
 import static org.ei.drishti.dto.ActionData.reportForIndicator;
 import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -55,6 +56,15 @@ public class ANMReportingServiceTest {
                 reportForIndicator("ANC", "30", new Gson().toJson(asList(new MonthSummaryDatum("6", "2012", "2", "2", asList("CASE 5", "CASE 6"))))));
     }
 
+    @Test
+    public void shouldAddActionsForMoreReportsWithoutDeletingTheEarlierOnes() throws Exception {
+        anmReportingService.processMoreReports(asList(new ANMReport("ANM Y", asList(createSummaryForANC()))));
+
+        verify(actionService, never()).deleteReportActions();
+        verify(actionService).reportForIndicator("ANM Y",
+                reportForIndicator("ANC", "30", new Gson().toJson(asList(new MonthSummaryDatum("6", "2012", "2", "2", asList("CASE 5", "CASE 6"))))));
+    }
+
     @Test
     public void shouldReportEntityDataToServices() throws Exception {
         anmReportingService.reportFromEntityData();
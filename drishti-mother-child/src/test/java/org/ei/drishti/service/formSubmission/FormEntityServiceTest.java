@@ -4,18 +4,26 @@ import com.google.gson.Gson;
 import org.ei.drishti.domain.FormExportToken;
 import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.repository.AllFormExportTokens;
+import org.ei.drishti.service.reporting.ILocationLoader;
 import org.ei.drishti.util.FormSubmissionBuilder;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.motechproject.util.DateUtil;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Arrays.asList;
 import static org.ei.drishti.common.AllConstants.Form.*;
 import static org.ei.drishti.common.util.EasyMap.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -26,13 +34,15 @@ public class FormEntityServiceTest {
     private FormSubmissionRouter formSubmissionRouter;
     @Mock
     private AllFormExportTokens allFormExportTokens;
+    @Mock
+    private ILocationLoader locationLoader;
 
     private FormEntityService submissionService;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        submissionService = new FormEntityService(ziggyService, allFormExportTokens);
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 1, 1, false);
     }
 
     @Test
@@ -51,12 +61,126 @@ public class FormEntityServiceTest {
         submissionService.process(formSubmissions);
 
         InOrder inOrder = inOrder(ziggyService, allFormExportTokens);
-        inOrder.verify(ziggyService).saveForm(paramsForEarlierFormSubmission, new Gson().toJson(earlierFormSubmission.instance()));
+        inOrder.verify(ziggyService).saveForm(paramsForEarlierFormSubmission, new Gson().toJson(earlierFormSubmission.instance()), earlierFormSubmission);
         inOrder.verify(allFormExportTokens).update(formExportToken.withVersion(1L));
-        inOrder.verify(ziggyService).saveForm(paramsForLaterFormSubmission, new Gson().toJson(laterFormSubmission.instance()));
+        inOrder.verify(ziggyService).saveForm(paramsForLaterFormSubmission, new Gson().toJson(laterFormSubmission.instance()), laterFormSubmission);
         inOrder.verify(allFormExportTokens).update(formExportToken.withVersion(2L));
-        inOrder.verify(ziggyService).saveForm(paramsForVeryLateFormSubmission, new Gson().toJson(veryLateFormSubmission.instance()));
+        inOrder.verify(ziggyService).saveForm(paramsForVeryLateFormSubmission, new Gson().toJson(veryLateFormSubmission.instance()), veryLateFormSubmission);
         inOrder.verify(allFormExportTokens).update(formExportToken.withVersion(3L));
         verifyNoMoreInteractions(ziggyService);
     }
+
+    @Test
+    public void shouldPreloadLocationsForTheBatchBeforeSavingIt() throws Exception {
+        FormSubmission formSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 1").withServerVersion(1L).build();
+        List<FormSubmission> formSubmissions = new ArrayList<>(asList(formSubmission));
+        when(allFormExportTokens.getAll()).thenReturn(asList(new FormExportToken(0L)));
+
+        submissionService.process(formSubmissions);
+
+        InOrder inOrder = inOrder(locationLoader, ziggyService);
+        inOrder.verify(locationLoader).preloadFor(formSubmissions);
+        inOrder.verify(ziggyService).saveForm(anyString(), anyString(), eq(formSubmission));
+    }
+
+    @Test
+    public void shouldCheckpointExportTokenOncePerIntervalAndAtTheEndOfTheBatch() throws Exception {
+        FormSubmission firstFormSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 1").withServerVersion(1L).build();
+        FormSubmission secondFormSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 2").withServerVersion(2L).build();
+        FormSubmission thirdFormSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 3").withServerVersion(3L).build();
+        FormExportToken formExportToken = new FormExportToken(0L);
+        when(allFormExportTokens.getAll()).thenReturn(asList(formExportToken));
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 2, 1, false);
+
+        submissionService.process(asList(firstFormSubmission, secondFormSubmission, thirdFormSubmission));
+
+        verify(ziggyService, times(3)).saveForm(anyString(), anyString(), any(FormSubmission.class));
+        verify(allFormExportTokens, times(2)).update(formExportToken);
+        assertEquals(3L, formExportToken.getVersion());
+    }
+
+    @Test
+    public void shouldCheckpointProcessedSubmissionsWhenSaveFails() throws Exception {
+        FormSubmission firstFormSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 1").withServerVersion(1L).build();
+        FormSubmission secondFormSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 2").withServerVersion(2L).build();
+        FormExportToken formExportToken = new FormExportToken(0L);
+        when(allFormExportTokens.getAll()).thenReturn(asList(formExportToken));
+        doNothing().doThrow(new RuntimeException("save failed")).when(ziggyService).saveForm(anyString(), anyString(), any(FormSubmission.class));
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 10, 1, false);
+
+        try {
+            submissionService.process(asList(firstFormSubmission, secondFormSubmission));
+            fail("Expected save to fail");
+        } catch (RuntimeException expected) {
+        }
+
+        verify(allFormExportTokens, times(1)).update(formExportToken);
+        assertEquals(1L, formExportToken.getVersion());
+    }
+
+    @Test
+    public void shouldProcessSubmissionsOfDifferentANMsInParallelAndCheckpointTheHighestProcessedVersion() throws Exception {
+        FormSubmission firstFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 1").withInstanceId("instance id 1").withServerVersion(1L).build();
+        FormSubmission secondFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 2").withInstanceId("instance id 2").withServerVersion(2L).build();
+        FormSubmission thirdFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 1").withInstanceId("instance id 3").withServerVersion(3L).build();
+        FormExportToken formExportToken = new FormExportToken(0L);
+        when(allFormExportTokens.getAll()).thenReturn(asList(formExportToken));
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 100, 4, false);
+
+        submissionService.process(asList(thirdFormSubmission, secondFormSubmission, firstFormSubmission));
+
+        verify(ziggyService, times(3)).saveForm(anyString(), anyString(), any(FormSubmission.class));
+        verify(allFormExportTokens).update(formExportToken);
+        assertEquals(3L, formExportToken.getVersion());
+    }
+
+    @Test
+    public void shouldStopTheOtherPartitionsAndOnlyCheckpointFullyProcessedSubmissionsWhenOnePartitionFails() throws Exception {
+        final FormSubmission firstFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 2").withInstanceId("instance id 1").withServerVersion(1L).build();
+        final FormSubmission secondFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 1").withInstanceId("instance id 2").withServerVersion(2L).build();
+        final FormSubmission thirdFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 2").withInstanceId("instance id 3").withServerVersion(3L).build();
+        final FormSubmission fourthFormSubmission = FormSubmissionBuilder.create().withANMId("anm id 1").withInstanceId("instance id 4").withServerVersion(4L).build();
+        FormExportToken formExportToken = new FormExportToken(0L);
+        when(allFormExportTokens.getAll()).thenReturn(asList(formExportToken));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                FormSubmission submission = (FormSubmission) invocation.getArguments()[2];
+                if (submission == secondFormSubmission) {
+                    throw new RuntimeException("save failed");
+                }
+                if (submission == firstFormSubmission) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return null;
+            }
+        }).when(ziggyService).saveForm(anyString(), anyString(), any(FormSubmission.class));
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 100, 2, false);
+
+        try {
+            submissionService.process(asList(fourthFormSubmission, thirdFormSubmission, secondFormSubmission, firstFormSubmission));
+            fail("Expected save to fail");
+        } catch (RuntimeException expected) {
+        }
+
+        verify(ziggyService, never()).saveForm(anyString(), anyString(), eq(thirdFormSubmission));
+        verify(ziggyService, never()).saveForm(anyString(), anyString(), eq(fourthFormSubmission));
+        assertTrue(formExportToken.getVersion() <= 1L);
+    }
+
+    @Test
+    public void shouldSaveThroughNativeEntityMapperWhenItIsEnabled() throws Exception {
+        FormSubmission formSubmission = FormSubmissionBuilder.create().withInstanceId("instance id 1").withServerVersion(1L).build();
+        when(allFormExportTokens.getAll()).thenReturn(asList(new FormExportToken(0L)));
+        submissionService = new FormEntityService(ziggyService, allFormExportTokens, locationLoader, 1, 1, true);
+
+        submissionService.process(asList(formSubmission));
+
+        verify(ziggyService).saveForm(formSubmission);
+        verifyNoMoreInteractions(ziggyService);
+    }
 }
@@ -0,0 +1,83 @@
+package org.ei.drishti.service.formSubmission;
+
+import org.ei.drishti.domain.FormExportToken;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.repository.AllFormExportTokens;
+import org.ei.drishti.util.FormSubmissionBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class FormProcessingWatermarkTest {
+    @Mock
+    private AllFormExportTokens allFormExportTokens;
+
+    private FormExportToken exportToken;
+    private List<FormSubmission> submissions;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        exportToken = new FormExportToken(0L);
+        submissions = asList(
+                FormSubmissionBuilder.create().withServerVersion(1L).build(),
+                FormSubmissionBuilder.create().withServerVersion(2L).build(),
+                FormSubmissionBuilder.create().withServerVersion(2L).build(),
+                FormSubmissionBuilder.create().withServerVersion(3L).build());
+    }
+
+    @Test
+    public void shouldNotAdvancePastASubmissionWhichIsNotProcessedYet() throws Exception {
+        FormProcessingWatermark watermark = new FormProcessingWatermark(submissions, exportToken, allFormExportTokens, 100);
+
+        watermark.complete(0);
+        watermark.complete(3);
+        watermark.checkpoint();
+
+        assertEquals(1L, exportToken.getVersion());
+        verify(allFormExportTokens, times(1)).update(exportToken);
+    }
+
+    @Test
+    public void shouldNotStopHalfWayThroughSubmissionsSharingAServerVersion() throws Exception {
+        FormProcessingWatermark watermark = new FormProcessingWatermark(submissions, exportToken, allFormExportTokens, 100);
+
+        watermark.complete(0);
+        watermark.complete(1);
+        watermark.checkpoint();
+        assertEquals(1L, exportToken.getVersion());
+
+        watermark.complete(2);
+        watermark.complete(3);
+        watermark.checkpoint();
+        assertEquals(3L, exportToken.getVersion());
+    }
+
+    @Test
+    public void shouldCheckpointOnceEveryIntervalOfCompletedSubmissions() throws Exception {
+        FormProcessingWatermark watermark = new FormProcessingWatermark(submissions, exportToken, allFormExportTokens, 2);
+
+        watermark.complete(0);
+        verifyZeroInteractions(allFormExportTokens);
+        watermark.complete(1);
+
+        verify(allFormExportTokens).update(exportToken);
+        assertEquals(1L, exportToken.getVersion());
+    }
+
+    @Test
+    public void shouldNotRewriteTheTokenWhenNothingNewWasCompleted() throws Exception {
+        FormProcessingWatermark watermark = new FormProcessingWatermark(submissions, exportToken, allFormExportTokens, 100);
+
+        watermark.checkpoint();
+
+        verifyZeroInteractions(allFormExportTokens);
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.Test;
 import org.mockito.Mock;
 
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -136,6 +137,17 @@ public class FormSubmissionRouterTest {
         verify(formSubmissionReportService).reportFor(formSubmission);
     }
 
+    @Test
+    public void shouldRouteASubmissionAlreadyInMemoryWithoutReadingItAgain() throws Exception {
+        FormSubmission formSubmission = new FormSubmission("anm id 1", "instance id 1", "ec_registration", "entity id 1", 0L, "1", null, 0L);
+
+        router.route(formSubmission);
+
+        verify(ecRegistrationHandler).handle(formSubmission);
+        verify(formSubmissionReportService).reportFor(formSubmission);
+        verifyZeroInteractions(formSubmissionsRepository);
+    }
+
     @Test
     public void shouldDelegateRenewFPProductFormSubmissionHandlingToRenewFPProductHandler() throws Exception {
         FormSubmission formSubmission = new FormSubmission("anm id 1", "instance id 1", "renew_fp_product", "entity id 1", 0L, "1", null, 0L);
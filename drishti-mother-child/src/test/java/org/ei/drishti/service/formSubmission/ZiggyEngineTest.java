@@ -0,0 +1,42 @@
+package org.ei.drishti.service.formSubmission;
+
+import org.junit.Test;
+
+import javax.script.ScriptEngineManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.common.util.EasyMap.create;
+import static org.junit.Assert.assertEquals;
+
+public class ZiggyEngineTest {
+    private static final String ZIGGY_JS = "var count = 0;\n" +
+            "var require = function (modules, callback) {\n" +
+            "    callback({createOrUpdateEntity: function (params, formInstance) {\n" +
+            "        count = count + 1;\n" +
+            "        saved.add(params + ':' + formInstance + ':' + count);\n" +
+            "    }});\n" +
+            "};";
+
+    @Test
+    public void shouldRunScriptsCompiledOnceInAScopeOfItsOwnForEachEngine() throws Exception {
+        ZiggyEngine.Scripts scripts = new ZiggyEngine.Scripts(new ScriptEngineManager(), ZIGGY_JS);
+        List<String> savedByFirstEngine = new ArrayList<>();
+        List<String> savedBySecondEngine = new ArrayList<>();
+        ZiggyEngine firstEngine = new ZiggyEngine(scripts, javaObjects(savedByFirstEngine));
+        ZiggyEngine secondEngine = new ZiggyEngine(scripts, javaObjects(savedBySecondEngine));
+
+        firstEngine.saveForm("params 1", "instance 1");
+        firstEngine.saveForm("params 2", "instance 2");
+        secondEngine.saveForm("params 3", "instance 3");
+
+        assertEquals(asList("params 1:instance 1:1", "params 2:instance 2:2"), savedByFirstEngine);
+        assertEquals(asList("params 3:instance 3:1"), savedBySecondEngine);
+    }
+
+    private Map<String, Object> javaObjects(List<String> saved) {
+        return create("saved", (Object) saved).map();
+    }
+}
@@ -0,0 +1,118 @@
+package org.ei.drishti.service.formSubmission;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.form.domain.FormInstance;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.repository.FormDataRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ZiggyEntityMapperTest {
+    @Mock
+    private FormDataRepository formDataRepository;
+    @Mock
+    private FormDataRepository jsFormDataRepository;
+    @Mock
+    private FormSubmissionRouter formSubmissionRouter;
+
+    private ZiggyFileLoader ziggyFileLoader;
+    private ZiggyEntityMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        ziggyFileLoader = new ZiggyFileLoader("/ziggy", "/form");
+        mapper = new ZiggyEntityMapper(ziggyFileLoader, formDataRepository);
+    }
+
+    @Test
+    public void shouldSaveEntityOfASingleEntityFormTheSameWayAsZiggy() throws Exception {
+        String formInstance = "{\"form\":{\"bind_type\":\"eligible_couple\",\"fields\":[" +
+                "{\"name\":\"id\",\"source\":\"eligible_couple.id\",\"value\":\"ec id 1\"}," +
+                "{\"name\":\"case_familyplanning_method\",\"source\":\"eligible_couple.currentMethod\",\"value\":\"iud\"}," +
+                "{\"name\":\"iud_removal_date\",\"source\":\"eligible_couple.iudRemovalDate\"}," +
+                "{\"name\":\"familyplanning_method\",\"source\":\"eligible_couple.currentMethod\",\"value\":\"condom\"}," +
+                "{\"name\":\"complication_date\",\"source\":\"eligible_couple.fpComplicationDate\",\"value\":\"2013-04-05\"}]}}";
+
+        assertSameEntitiesSavedAsZiggy("fp_complications", "ec id 1", formInstance);
+    }
+
+    @Test
+    public void shouldSaveParentsBeforeChildrenAndLinkThemTheSameWayAsZiggy() throws Exception {
+        String formInstance = "{\"form\":{\"bind_type\":\"eligible_couple\",\"fields\":[" +
+                "{\"name\":\"id\",\"source\":\"eligible_couple.id\",\"value\":\"ec id 1\"}," +
+                "{\"name\":\"motherId\",\"source\":\"eligible_couple.mother.id\",\"value\":\"mother id 1\"}," +
+                "{\"name\":\"childId\",\"source\":\"eligible_couple.mother.child.id\",\"value\":\"child id 1\"}," +
+                "{\"name\":\"gender\",\"source\":\"eligible_couple.mother.child.gender\",\"value\":\"female\"}," +
+                "{\"name\":\"thayiCardNumber\",\"source\":\"eligible_couple.mother.thayiCardNumber\",\"value\":\"12345\"}," +
+                "{\"name\":\"shouldCloseMother\",\"source\":\"eligible_couple.mother.isClosed\",\"value\":\"true\"}]}}";
+
+        assertSameEntitiesSavedAsZiggy("child_registration_ec", "ec id 1", formInstance);
+    }
+
+    @Test
+    public void shouldSaveSubFormInstancesAsChildrenTheSameWayAsZiggy() throws Exception {
+        String formInstance = "{\"form\":{\"bind_type\":\"mother\",\"fields\":[" +
+                "{\"name\":\"id\",\"source\":\"mother.id\",\"value\":\"mother id 1\"}," +
+                "{\"name\":\"ecId\",\"source\":\"mother.eligible_couple.id\",\"value\":\"ec id 1\"}," +
+                "{\"name\":\"numberOfLiveBirths\",\"source\":\"mother.eligible_couple.numberOfLiveBirths\",\"value\":\"2\"}," +
+                "{\"name\":\"type\",\"source\":\"mother.type\",\"value\":\"PNC\"}]," +
+                "\"sub_forms\":[{\"name\":\"child_registration\",\"bind_type\":\"child\",\"fields\":[" +
+                "{\"name\":\"id\",\"source\":\"child.id\"},{\"name\":\"gender\",\"source\":\"child.gender\"}," +
+                "{\"name\":\"weight\",\"source\":\"child.weight\"}]," +
+                "\"instances\":[{\"id\":\"child id 1\",\"gender\":\"female\",\"weight\":\"2.5\"}," +
+                "{\"id\":\"child id 2\",\"gender\":\"male\"}]}]}}";
+
+        assertSameEntitiesSavedAsZiggy("delivery_outcome", "mother id 1", formInstance);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotGenerateIdsForEntitiesSubmittedWithoutOne() throws Exception {
+        String formInstance = "{\"form\":{\"bind_type\":\"eligible_couple\",\"fields\":[" +
+                "{\"name\":\"case_familyplanning_method\",\"source\":\"eligible_couple.currentMethod\",\"value\":\"iud\"}]}}";
+
+        mapper.createOrUpdateEntities(submission("fp_complications", "ec id 1", formInstance));
+    }
+
+    private void assertSameEntitiesSavedAsZiggy(String formName, String entityId, String formInstance) throws Exception {
+        FormSubmission submission = submission(formName, entityId, formInstance);
+        ZiggyService ziggyService = new ZiggyService(ziggyFileLoader, jsFormDataRepository, formSubmissionRouter, new Monitor(), 1, mapper);
+        String params = "{\"instanceId\":\"instance id 1\", \"anmId\":\"anm id 1\", \"entityId\":\"" + entityId + "\",\"formName\":\"" + formName + "\"}";
+
+        ziggyService.saveForm(params, new Gson().toJson(submission.instance()));
+        mapper.createOrUpdateEntities(submission);
+
+        ArgumentCaptor<String> jsEntityTypes = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> jsFields = ArgumentCaptor.forClass(String.class);
+        verify(jsFormDataRepository, atLeastOnce()).saveEntity(jsEntityTypes.capture(), jsFields.capture());
+        ArgumentCaptor<String> entityTypes = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Map> fields = ArgumentCaptor.forClass(Map.class);
+        verify(formDataRepository, atLeastOnce()).saveEntity(entityTypes.capture(), fields.capture());
+
+        List<Map<String, String>> jsFieldMaps = new ArrayList<>();
+        for (String json : jsFields.getAllValues()) {
+            jsFieldMaps.add(new Gson().<Map<String, String>>fromJson(json, new TypeToken<Map<String, String>>() {
+            }.getType()));
+        }
+        assertEquals(jsEntityTypes.getAllValues(), entityTypes.getAllValues());
+        assertEquals(jsFieldMaps, fields.getAllValues());
+    }
+
+    private FormSubmission submission(String formName, String entityId, String formInstance) {
+        return new FormSubmission("anm id 1", "instance id 1", formName, entityId, 0L, "1",
+                new Gson().fromJson(formInstance, FormInstance.class), 0L);
+    }
+}
@@ -1,5 +1,6 @@
 package org.ei.drishti.service.formSubmission;
 
+import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.form.repository.AllFormSubmissions;
 import org.ei.drishti.repository.FormDataRepository;
 import org.ei.drishti.service.formSubmission.handler.*;
@@ -119,9 +120,11 @@ public class ZiggyServiceIntegrationTest {
                         pncCloseHandler, pncVisitHandler, childRegistrationECHandler, childRegistrationOAHandler, vitaminAHandler,
                         childImmunizationsHandler, childIllnessHandler, childCloseHandler,
                         deliveryPlanHandler, postpartumFamilyPlanningHandler, recordECPsHandler,
-                        ecEditHandler, ancInvestigationsHandler, formSubmissionReportService, mctsReportService)
+                        ecEditHandler, ancInvestigationsHandler, formSubmissionReportService, mctsReportService),
+                new Monitor(), 2, new ZiggyEntityMapper(ziggyFileLoader, formDataRepository)
         );
 
         service.saveForm(params, formInstance);
+        service.saveForm(params, formInstance);
     }
 }
@@ -8,6 +8,7 @@ import org.ei.drishti.repository.AllChildren;
 import org.ei.drishti.repository.AllEligibleCouples;
 import org.ei.drishti.repository.AllInfantBalanceOnHandReportTokens;
 import org.ei.drishti.repository.AllMothers;
+import org.ei.drishti.repository.LocationCache;
 import org.ei.drishti.util.SafeMap;
 import org.joda.time.LocalDate;
 import org.junit.Before;
@@ -54,7 +55,8 @@ public class ChildReportingServiceTest {
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        service = new ChildReportingService(reportingService, allChildren, allMothers, allEligibleCouples, allInfantBalanceOnHandTokens, reportMonth, mctsReporter);
+        service = new ChildReportingService(reportingService, allChildren, allMothers, allEligibleCouples, allInfantBalanceOnHandTokens, reportMonth, mctsReporter,
+                locationLoader());
     }
 
     @Test
@@ -1551,7 +1553,8 @@ public class ChildReportingServiceTest {
 
     private void assertIndicatorBasedOnImmunization(String immunizationProvided, Indicator... expectedIndicators) {
         ReportingService fakeReportingService = mock(ReportingService.class);
-        ChildReportingService childReportingService = new ChildReportingService(fakeReportingService, allChildren, allMothers, allEligibleCouples, allInfantBalanceOnHandTokens, reportMonth, mctsReporter);
+        ChildReportingService childReportingService = new ChildReportingService(fakeReportingService, allChildren, allMothers, allEligibleCouples, allInfantBalanceOnHandTokens, reportMonth, mctsReporter,
+                locationLoader());
         SafeMap reportingData = reportDataForImmunization(immunizationProvided, "", "2012-01-01");
         when(allChildren.findByCaseId("CASE X")).thenReturn(CHILD);
         when(allMothers.findByCaseId("MOTHER-CASE-1")).thenReturn(new Mother("MOTHER-CASE-1", "EC-CASE-1", "TC 1"));
@@ -1671,4 +1674,8 @@ public class ChildReportingServiceTest {
         verify(reportingService, times(0)).sendReportData(serviceProvidedData);
         verify(reportingService, times(0)).sendReportData(anmReportData);
     }
+
+    private LocationLoader locationLoader() {
+        return new LocationLoader(allEligibleCouples, allMothers, allChildren, new LocationCache(100), 0);
+    }
 }
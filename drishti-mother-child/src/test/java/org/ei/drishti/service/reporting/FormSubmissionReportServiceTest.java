@@ -1,5 +1,6 @@
 package org.ei.drishti.service.reporting;
 
+import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.util.EasyMap;
 import org.ei.drishti.domain.Location;
 import org.ei.drishti.form.domain.FormSubmission;
@@ -43,17 +44,19 @@ public class FormSubmissionReportServiceTest {
     private IReporter reporter;
     @Mock
     private IReferenceDataRepository referenceDataRepository;
+    @Mock
+    private Monitor monitor;
 
     private FormSubmissionReportService service;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        service = new FormSubmissionReportService(locationLoader, rulesFactory, reporterFactory, referenceDataRepository, reportDefinitionLoader);
+        service = new FormSubmissionReportService(locationLoader, rulesFactory, reporterFactory, referenceDataRepository, reportDefinitionLoader, monitor);
     }
 
     @Test
-    public void shouldLoadReportDefinitionOnlyWhenItIsNull() throws Exception {
+    public void shouldLoadReportDefinitionOnceWhenTheServiceStarts() throws Exception {
         FormSubmission submission = create()
                 .withFormName("new_form")
                 .withANMId("anm id 1")
@@ -62,6 +65,7 @@ public class FormSubmissionReportServiceTest {
                 .build();
         when(reportDefinitionLoader.load()).thenReturn(reportDefinition());
 
+        service.loadReportDefinition();
         service.reportFor(submission);
         service.reportFor(submission);
 
@@ -88,6 +92,7 @@ public class FormSubmissionReportServiceTest {
                 .put("id", submission.entityId())
                 .put("closeReason", submission.getField("closeReason"));
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         Map<String, String> expectedReportFields = EasyMap
@@ -122,6 +127,7 @@ public class FormSubmissionReportServiceTest {
                 .put("submissionDate", submission.getField("submissionDate"))
                 .put("motherId", submission.getField("motherId"));
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verify(locationLoader).loadLocationFor("eligible_couple", "mother id 1");
@@ -152,6 +158,7 @@ public class FormSubmissionReportServiceTest {
                 .put("familyPlanningMethodChangeDate", "2013-01-01")
                 .put("quantity", submission.getField("numberOfCondomsSupplied"));
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         Map<String, String> expectedReportFields = EasyMap
@@ -201,6 +208,7 @@ public class FormSubmissionReportServiceTest {
         when(reporterFactory.reporterFor("eligible_couple")).thenReturn(reporter);
         when(locationLoader.loadLocationFor("eligible_couple", "ec id 1")).thenReturn(location);
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verify(rule).apply(new SafeMap(expectedReportFields));
@@ -228,6 +236,7 @@ public class FormSubmissionReportServiceTest {
                 .put("id", submission.entityId())
                 .put("closeReason", submission.getField("closeReason"));
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         Map<String, String> expectedReportFields = EasyMap
@@ -243,6 +252,40 @@ public class FormSubmissionReportServiceTest {
         verify(reporter).report(submission.entityId(), "INFANT_LEFT", location, "2012-01-01", reportData);
     }
 
+    @Test
+    public void shouldResolveRulesOnceWhenTheReportDefinitionIsLoaded() throws Exception {
+        FormSubmission submission = create()
+                .withFormName("child_close")
+                .withANMId("anm id 1")
+                .withEntityId("child id 1")
+                .addFormField("submissionDate", "2013-03-01")
+                .build();
+        when(reportDefinitionLoader.load()).thenReturn(reportDefinition());
+        when(rulesFactory.ruleByName(any(String.class))).thenReturn(rule);
+        when(referenceDataRepository.getReferenceData(any(FormSubmission.class), any(ReferenceData.class))).thenReturn(new SafeMap());
+
+        service.loadReportDefinition();
+        service.reportFor(submission);
+        service.reportFor(submission);
+
+        verify(reportDefinitionLoader, times(1)).load();
+        verify(rulesFactory, times(1)).ruleByName("IsChildLessThanOneYearOldRule");
+        verify(rulesFactory, times(1)).ruleByName("RelocationIsPermanentRule");
+    }
+
+    @Test(expected = RuleNotFoundException.class)
+    public void shouldFailToLoadAReportDefinitionWithAnUnknownRule() throws Exception {
+        when(reportDefinitionLoader.load()).thenReturn(reportDefinition());
+        when(rulesFactory.ruleByName("IsChildLessThanOneYearOldRule")).thenThrow(new RuleNotFoundException("IsChildLessThanOneYearOldRule"));
+
+        service.loadReportDefinition();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotReportBeforeTheReportDefinitionIsLoaded() throws Exception {
+        service.reportFor(create().withFormName("child_close").build());
+    }
+
     @Test
     public void shouldNotReportWhenRulesAreNotSatisfied() throws Exception {
         FormSubmission submission = create()
@@ -258,6 +301,7 @@ public class FormSubmissionReportServiceTest {
         when(referenceDataRepository.getReferenceData(any(FormSubmission.class), any(ReferenceData.class))).thenReturn(new SafeMap());
         when(rule.apply(any(SafeMap.class))).thenReturn(false);
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verifyZeroInteractions(reportingService);
@@ -287,6 +331,7 @@ public class FormSubmissionReportServiceTest {
                 .put("motherId", submission.getField("motherId"))
                 .put("serviceProvidedPlace", submission.getField("registrationPlace"));
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verify(locationLoader).loadLocationFor("eligible_couple", "mother id 1");
@@ -0,0 +1,89 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.common.util.EasyMap.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class IndicatorPlanTest {
+    @Mock
+    private IRulesFactory rulesFactory;
+    @Mock
+    private IRule ageRule;
+    @Mock
+    private IRule relocationRule;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void shouldIndexIndicatorsByFormNameWithTheirRulesResolvedOnce() throws Exception {
+        ReportIndicator infantLeft = indicator("INFANT_LEFT", "AgeIsLessThanOneYearRule", "RelocationIsPermanentRule");
+        ReportIndicator childLeft = indicator("CHILD_LEFT", "RelocationIsPermanentRule");
+        ReportIndicator ancRegistered = indicator("ANC", "AgeIsLessThanOneYearRule");
+        when(rulesFactory.ruleByName("AgeIsLessThanOneYearRule")).thenReturn(ageRule);
+        when(rulesFactory.ruleByName("RelocationIsPermanentRule")).thenReturn(relocationRule);
+
+        IndicatorPlan<ReportIndicator> plan = IndicatorPlan.compile(
+                create("child_close", asList(infantLeft, childLeft)).put("anc_registration", asList(ancRegistered)).map(),
+                rulesFactory);
+
+        List<CompiledIndicator<ReportIndicator>> indicators = plan.indicatorsFor("child_close");
+        assertEquals(2, indicators.size());
+        assertEquals(infantLeft, indicators.get(0).definition());
+        assertEquals(asList(ageRule, relocationRule), indicators.get(0).rules());
+        assertEquals(childLeft, indicators.get(1).definition());
+        assertEquals(asList(relocationRule), indicators.get(1).rules());
+        assertEquals(asList(ageRule), plan.indicatorsFor("anc_registration").get(0).rules());
+        verify(rulesFactory, times(1)).ruleByName("AgeIsLessThanOneYearRule");
+        verify(rulesFactory, times(1)).ruleByName("RelocationIsPermanentRule");
+    }
+
+    @Test
+    public void shouldReturnNoIndicatorsForAFormWithoutDefinition() throws Exception {
+        IndicatorPlan<ReportIndicator> plan = IndicatorPlan.compile(
+                create("child_close", asList(indicator("INFANT_LEFT"))).map(), rulesFactory);
+
+        assertTrue(plan.indicatorsFor("form without definition").isEmpty());
+    }
+
+    @Test
+    public void shouldCollectTheDistinctReferenceDataNeededByTheIndicatorsOfAForm() throws Exception {
+        ReferenceData child = new ReferenceData("child", "id", asList("dateOfBirth"));
+        ReferenceData mother = new ReferenceData("mother", "motherId", asList("thayiCardNumber"));
+        ReportIndicator infantLeft = new ReportIndicator("INFANT_LEFT", "child", null, null, asList("id"), child, null, null, null);
+        ReportIndicator childLeft = new ReportIndicator("CHILD_LEFT", "child", null, null, asList("id"), child, null, null, null);
+        ReportIndicator motherLeft = new ReportIndicator("MOTHER_LEFT", "mother", null, null, asList("id"), mother, null, null, null);
+
+        IndicatorPlan<ReportIndicator> plan = IndicatorPlan.compile(
+                create("child_close", asList(infantLeft, childLeft, motherLeft, indicator("ANC"))).map(), rulesFactory);
+
+        assertEquals(new LinkedHashSet<>(asList(child, mother)), plan.referenceDataFor("child_close"));
+        assertTrue(plan.referenceDataFor("form without definition").isEmpty());
+    }
+
+    @Test(expected = RuleNotFoundException.class)
+    public void shouldFailToCompileWhenARuleCannotBeResolved() throws Exception {
+        when(rulesFactory.ruleByName("UnknownRule")).thenThrow(new RuleNotFoundException("UnknownRule"));
+
+        IndicatorPlan.compile(create("child_close", asList(indicator("INFANT_LEFT", "UnknownRule"))).map(), rulesFactory);
+    }
+
+    private ReportIndicator indicator(String name, String... rules) {
+        return new ReportIndicator(name, "child", null, null, asList("id"), null, asList(rules), null, null);
+    }
+}
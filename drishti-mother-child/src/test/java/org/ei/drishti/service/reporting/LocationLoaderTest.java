@@ -2,14 +2,27 @@ package org.ei.drishti.service.reporting;
 
 import org.ei.drishti.domain.Child;
 import org.ei.drishti.domain.EligibleCouple;
+import org.ei.drishti.domain.Location;
 import org.ei.drishti.domain.Mother;
+import org.ei.drishti.form.domain.FormSubmission;
 import org.ei.drishti.repository.AllChildren;
 import org.ei.drishti.repository.AllEligibleCouples;
 import org.ei.drishti.repository.AllMothers;
+import org.ei.drishti.repository.LocationCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -28,12 +41,14 @@ public class LocationLoaderTest {
     @Mock
     private EligibleCouple eligibleCouple;
 
+    private LocationCache locationCache;
     private ILocationLoader locationLoader;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        locationLoader = new LocationLoader(allEligibleCouples, allMothers, allChildren);
+        locationCache = new LocationCache(100);
+        locationLoader = new LocationLoader(allEligibleCouples, allMothers, allChildren, locationCache, 2);
         when(allChildren.findByCaseId("child id 1")).thenReturn(child);
         when(allMothers.findByCaseId("mother id 1")).thenReturn(mother);
         when(allEligibleCouples.findByCaseId("ec id 1")).thenReturn(eligibleCouple);
@@ -70,4 +85,122 @@ public class LocationLoaderTest {
 
         verify(eligibleCouple).location();
     }
+
+    @Test
+    public void shouldWalkFromChildToEligibleCoupleOnlyOnceForACaseId() {
+        Location location = new Location("bherya", "Sub Center", "PHC X");
+        when(eligibleCouple.location()).thenReturn(location);
+
+        locationLoader.loadLocationFor("child", "child id 1");
+        Location cachedLocation = locationLoader.loadLocationFor("child", "child id 1");
+        locationLoader.loadLocationFor("mother", "mother id 1");
+
+        assertSame(location, cachedLocation);
+        verify(allChildren, times(1)).findByCaseId("child id 1");
+        verify(allMothers, times(1)).findByCaseId("mother id 1");
+        verify(allEligibleCouples, times(1)).findByCaseId("ec id 1");
+    }
+
+    @Test
+    public void shouldReloadOnlyTheInvalidatedPartOfTheChain() {
+        Location oldLocation = new Location("bherya", "Sub Center", "PHC X");
+        Location newLocation = new Location("keelanapura", "Sub Center", "PHC X");
+        when(eligibleCouple.location()).thenReturn(oldLocation, newLocation);
+
+        locationLoader.loadLocationFor("child", "child id 1");
+        locationCache.invalidate("ec id 1");
+        Location location = locationLoader.loadLocationFor("child", "child id 1");
+
+        assertSame(newLocation, location);
+        verify(allChildren, times(1)).findByCaseId("child id 1");
+        verify(allMothers, times(1)).findByCaseId("mother id 1");
+        verify(allEligibleCouples, times(2)).findByCaseId("ec id 1");
+    }
+
+    @Test
+    public void shouldPreloadTheLocationsOfAllEntitiesOfAnANM() {
+        Location location = new Location("bherya", "Sub Center", "PHC X");
+        when(eligibleCouple.caseId()).thenReturn("ec id 1");
+        when(eligibleCouple.location()).thenReturn(location);
+        when(mother.caseId()).thenReturn("mother id 1");
+        when(child.caseId()).thenReturn("child id 1");
+        when(allEligibleCouples.all("anm id 1")).thenReturn(asList(eligibleCouple));
+        when(allMothers.all("anm id 1")).thenReturn(asList(mother));
+        when(allChildren.all("anm id 1")).thenReturn(asList(child));
+
+        locationLoader.preloadFor("anm id 1");
+        Location childLocation = locationLoader.loadLocationFor("child", "child id 1");
+
+        assertEquals(location, childLocation);
+        verify(allChildren, times(0)).findByCaseId("child id 1");
+        verify(allMothers, times(0)).findByCaseId("mother id 1");
+        verify(allEligibleCouples, times(0)).findByCaseId("ec id 1");
+    }
+
+    @Test
+    public void shouldPreloadOnlyTheANMsWithEnoughSubmissionsInABatch() {
+        FormSubmission firstSubmission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, 1L);
+        FormSubmission secondSubmission = new FormSubmission("anm id 1", "instance id 2", "form name 1", "entity id 2", 0L, "1", null, 2L);
+        FormSubmission thirdSubmission = new FormSubmission("anm id 2", "instance id 3", "form name 1", "entity id 3", 0L, "1", null, 3L);
+
+        locationLoader.preloadFor(asList(firstSubmission, secondSubmission, thirdSubmission));
+
+        verify(allEligibleCouples).all("anm id 1");
+        verify(allMothers).all("anm id 1");
+        verify(allChildren).all("anm id 1");
+        verify(allEligibleCouples, never()).all("anm id 2");
+    }
+
+    @Test
+    public void shouldNotPreloadWhenThePreloadThresholdIsNotPositive() {
+        locationLoader = new LocationLoader(allEligibleCouples, allMothers, allChildren, locationCache, 0);
+        FormSubmission submission = new FormSubmission("anm id 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, 1L);
+
+        locationLoader.preloadFor(asList(submission, submission, submission));
+
+        verify(allEligibleCouples, never()).all(anyString());
+    }
+
+    @Test
+    public void shouldNotCacheALocationReadBeforeItWasInvalidated() {
+        final Location oldLocation = new Location("bherya", "Sub Center", "PHC X");
+        Location newLocation = new Location("keelanapura", "Sub Center", "PHC X");
+        when(allEligibleCouples.findByCaseId("ec id 1")).thenAnswer(new Answer<EligibleCouple>() {
+            @Override
+            public EligibleCouple answer(InvocationOnMock invocation) throws Throwable {
+                locationCache.invalidate("ec id 1");
+                return eligibleCouple;
+            }
+        });
+        when(eligibleCouple.location()).thenReturn(oldLocation, newLocation);
+
+        Location firstLocation = locationLoader.loadLocationFor("eligible_couple", "ec id 1");
+        Location secondLocation = locationLoader.loadLocationFor("eligible_couple", "ec id 1");
+
+        assertSame(oldLocation, firstLocation);
+        assertSame(newLocation, secondLocation);
+        verify(allEligibleCouples, times(2)).findByCaseId("ec id 1");
+    }
+
+    @Test
+    public void shouldNotCachePreloadedLocationsOfEntitiesInvalidatedWhilePreloading() {
+        Location location = new Location("bherya", "Sub Center", "PHC X");
+        when(eligibleCouple.caseId()).thenReturn("ec id 1");
+        when(eligibleCouple.location()).thenReturn(location);
+        when(allEligibleCouples.all("anm id 1")).thenReturn(asList(eligibleCouple));
+        when(allMothers.all("anm id 1")).thenAnswer(new Answer<List<Mother>>() {
+            @Override
+            public List<Mother> answer(InvocationOnMock invocation) throws Throwable {
+                locationCache.invalidate("mother id 1");
+                return asList(mother);
+            }
+        });
+        when(mother.caseId()).thenReturn("mother id 1");
+
+        locationLoader.preloadFor("anm id 1");
+        locationLoader.loadLocationFor("mother", "mother id 1");
+
+        verify(allMothers, times(1)).findByCaseId("mother id 1");
+        verify(allEligibleCouples, times(0)).findByCaseId("ec id 1");
+    }
 }
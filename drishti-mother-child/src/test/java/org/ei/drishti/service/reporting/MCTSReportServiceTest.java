@@ -36,7 +36,7 @@ public class MCTSReportServiceTest {
     }
 
     @Test
-    public void shouldLoadReportDefinitionOnlyWhenItIsNull() throws Exception {
+    public void shouldLoadReportDefinitionOnceWhenTheServiceStarts() throws Exception {
         FormSubmission submission = create()
                 .withFormName("new_form")
                 .withANMId("anm id 1")
@@ -45,6 +45,7 @@ public class MCTSReportServiceTest {
                 .build();
         when(reportDefinitionLoader.load()).thenReturn(reportDefinition());
 
+        service.loadReportDefinition();
         service.reportFor(submission);
         service.reportFor(submission);
 
@@ -72,6 +73,7 @@ public class MCTSReportServiceTest {
                 );
         when(rule.apply(any(SafeMap.class))).thenReturn(true);
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verify(reporter).report("mother id 1", "thayi card 1", "ANC1", "2012-02-01", "2012-03-01");
@@ -97,6 +99,7 @@ public class MCTSReportServiceTest {
                                 .put("registrationDate", "2012-02-01").map())
                 );
 
+        service.loadReportDefinition();
         service.reportFor(submission);
 
         verify(rule).apply(new SafeMap(EasyMap
@@ -0,0 +1,32 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.domain.MCTSReport;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+
+public class ReportBackfillResultTest {
+    @Test
+    public void shouldCountARecordWithAQuantityAsThatManyReports() throws Exception {
+        List<ReportingData> reportingData = asList(
+                new ReportingData("serviceProvided").with("indicator", "OPV").with("quantity", "3"),
+                new ReportingData("serviceProvided").with("indicator", "OPV"),
+                new ReportingData("serviceProvided").with("indicator", "OPV").with("quantity", "2"));
+        ReportDataBatchResult batchResult = new ReportDataBatchResult(3).withExistingCount(0, 1).withFailure(2, "Unknown ANM: ANM X");
+
+        ReportBackfillResult result = new ReportBackfillResult("anc_visit", true, 0L)
+                .add(2, reportingData, batchResult, Collections.<MCTSReport>emptyList(), 0, 2L);
+
+        assertEquals(singletonMap("serviceProvided/OPV", 6), result.reportCountByTypeAndIndicator());
+        assertEquals(singletonMap("serviceProvided/OPV", 1), result.existingReportCountByTypeAndIndicator());
+        assertEquals(singletonMap("serviceProvided/OPV", 3), result.addedReportCountByTypeAndIndicator());
+        assertEquals(2, result.rejectedReportCount());
+    }
+}
@@ -0,0 +1,282 @@
+package org.ei.drishti.service.reporting;
+
+import com.google.gson.Gson;
+import org.ei.drishti.common.domain.Indicator;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.common.util.HttpAgent;
+import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.domain.MCTSReport;
+import org.ei.drishti.domain.ReportBackfillToken;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.form.repository.AllFormSubmissions;
+import org.ei.drishti.repository.AllMCTSReports;
+import org.ei.drishti.repository.AllReportBackfillTokens;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.motechproject.scheduler.gateway.OutboundEventGateway;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.util.FormSubmissionBuilder.create;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReportBackfillServiceTest {
+    private static final String BACKFILL_URL = "http://drishti/report/backfill-batch?dry-run=false&backfill-id=";
+
+    @Mock
+    private AllFormSubmissions allFormSubmissions;
+    @Mock
+    private FormSubmissionReportService formSubmissionReportService;
+    @Mock
+    private MCTSReportService mctsReportService;
+    @Mock
+    private OutboundEventGateway gateway;
+    @Mock
+    private AllMCTSReports allMCTSReports;
+    @Mock
+    private AllReportBackfillTokens allReportBackfillTokens;
+    @Mock
+    private ILocationLoader locationLoader;
+    @Mock
+    private HttpAgent httpAgent;
+
+    private ReportingService reportingService;
+    private MCTSReporter mctsReporter;
+    private ReportBackfillService service;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        reportingService = new ReportingService(gateway);
+        mctsReporter = new MCTSReporter(allMCTSReports, "10");
+        service = new ReportBackfillService(allFormSubmissions, formSubmissionReportService, mctsReportService,
+                reportingService, mctsReporter, allMCTSReports, allReportBackfillTokens, locationLoader, httpAgent, "http://drishti/report", 2, 2);
+        when(httpAgent.post(anyString(), anyString(), anyString())).thenReturn(new HttpResponse(true, "{\"failures\":{},\"existingCounts\":{}}"));
+    }
+
+    @Test
+    public void shouldSendTheReportsOfEachBatchTogetherForBackfillAndSaveProgressAfterIt() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        FormSubmission second = submission("instance id 2", 2L);
+        FormSubmission third = submission("instance id 3", 3L);
+        ReportBackfillToken token = new ReportBackfillToken("anc_visit:0-10", 0L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(token);
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first, second, third));
+        doAnswer(reportFor(Indicator.ANC)).when(formSubmissionReportService).reportFor(any(FormSubmission.class));
+        doAnswer(mctsReportFor()).when(mctsReportService).reportFor(any(FormSubmission.class));
+
+        ReportBackfillResult result = service.backfill("anc_visit", 0L, 10L, false);
+
+        ArgumentCaptor<String> backfillURLs = ArgumentCaptor.forClass(String.class);
+        verify(httpAgent).post(backfillURLs.capture(), eq(new Gson().toJson(reportingDataFor(first, second))), eq("application/json"));
+        verify(httpAgent).post(backfillURLs.capture(), eq(new Gson().toJson(reportingDataFor(third))), eq("application/json"));
+        assertTrue(backfillURLs.getAllValues().get(0).startsWith(BACKFILL_URL));
+        assertEquals(backfillURLs.getAllValues().get(0), backfillURLs.getAllValues().get(1));
+        verifyZeroInteractions(gateway);
+        verify(allMCTSReports, times(2)).addAll(anyListOf(MCTSReport.class));
+        verify(allMCTSReports, never()).add(any(MCTSReport.class));
+        verify(allReportBackfillTokens, times(2)).update(token);
+        verify(locationLoader).preloadFor(asList(first, second));
+        verify(locationLoader).preloadFor(asList(third));
+        assertEquals(3L, token.version());
+        assertEquals(3, result.submissionCount());
+        assertEquals(3, result.mctsReportCount());
+        assertEquals(3L, result.lastServerVersion());
+    }
+
+    @Test
+    public void shouldResumeAfterTheLastSavedServerVersionAndStopAtTheUpperBound() throws Exception {
+        FormSubmission fifth = submission("instance id 5", 5L);
+        FormSubmission eleventh = submission("instance id 11", 11L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(new ReportBackfillToken("anc_visit:0-10", 4L));
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 4L, null)).thenReturn(asList(fifth, eleventh));
+
+        ReportBackfillResult result = service.backfill("anc_visit", 0L, 10L, false);
+
+        verify(formSubmissionReportService).reportFor(fifth);
+        verify(formSubmissionReportService, never()).reportFor(eleventh);
+        assertEquals(1, result.submissionCount());
+        assertEquals(5L, result.lastServerVersion());
+    }
+
+    @Test
+    public void shouldKeepSubmissionsWithTheSameServerVersionInOneBatch() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        FormSubmission second = submission("instance id 2", 2L);
+        FormSubmission third = submission("instance id 3", 2L);
+        ReportBackfillToken token = new ReportBackfillToken("anc_visit:0-10", 0L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(token);
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first, second, third));
+        doAnswer(reportFor(Indicator.ANC)).when(formSubmissionReportService).reportFor(any(FormSubmission.class));
+
+        service.backfill("anc_visit", 0L, 10L, false);
+
+        verify(httpAgent).post(startsWith(BACKFILL_URL), eq(new Gson().toJson(reportingDataFor(first, second, third))), eq("application/json"));
+        verify(allReportBackfillTokens).update(token);
+        assertEquals(2L, token.version());
+    }
+
+    @Test
+    public void shouldNotSaveAgainTheReportsWhichAlreadyExist() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        FormSubmission second = submission("instance id 2", 2L);
+        ReportBackfillToken token = new ReportBackfillToken("anc_visit:0-10", 0L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(token);
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first, second));
+        doAnswer(reportFor(Indicator.ANC)).when(formSubmissionReportService).reportFor(any(FormSubmission.class));
+        doAnswer(mctsReportFor()).when(mctsReportService).reportFor(any(FormSubmission.class));
+        when(httpAgent.post(anyString(), anyString(), anyString()))
+                .thenReturn(new HttpResponse(true, "{\"failures\":{},\"existingCounts\":{\"0\":1}}"));
+        when(allMCTSReports.allFor(Collections.singleton("entity id"))).thenReturn(asList(mctsReportFor("entity id")));
+
+        ReportBackfillResult result = service.backfill("anc_visit", 0L, 10L, false);
+
+        verify(allMCTSReports).addAll(asList(mctsReportFor("entity id")));
+        assertEquals(singletonMap("anmReportData/ANC", 2), result.reportCountByTypeAndIndicator());
+        assertEquals(singletonMap("anmReportData/ANC", 1), result.existingReportCountByTypeAndIndicator());
+        assertEquals(singletonMap("anmReportData/ANC", 1), result.addedReportCountByTypeAndIndicator());
+        assertEquals(asList(reportingDataFor(second, Indicator.ANC)), result.addedReports());
+        assertEquals(1, result.existingMCTSReportCount());
+        assertEquals(1, result.addedMCTSReportCount());
+    }
+
+    @Test
+    public void shouldTellHowTheReplayedReportsDifferFromTheSavedOnesOnADryRunWithoutSavingAnything() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        FormSubmission second = submission("instance id 2", 2L);
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first, second));
+        doAnswer(reportFor(Indicator.ANC)).when(formSubmissionReportService).reportFor(any(FormSubmission.class));
+        when(httpAgent.post(anyString(), anyString(), anyString()))
+                .thenReturn(new HttpResponse(true, "{\"failures\":{\"1\":\"Unknown ANM: ANM X\"},\"existingCounts\":{\"0\":1}}"));
+
+        ReportBackfillResult result = service.backfill("anc_visit", 0L, 10L, true);
+
+        verify(httpAgent).post(startsWith("http://drishti/report/backfill-batch?dry-run=true&backfill-id="),
+                eq(new Gson().toJson(reportingDataFor(first, second))), eq("application/json"));
+        assertEquals(singletonMap("anmReportData/ANC", 2), result.reportCountByTypeAndIndicator());
+        assertEquals(singletonMap("anmReportData/ANC", 1), result.existingReportCountByTypeAndIndicator());
+        assertEquals(Collections.<String, Integer>emptyMap(), result.addedReportCountByTypeAndIndicator());
+        assertEquals(1, result.rejectedReportCount());
+        verify(allMCTSReports, never()).addAll(anyListOf(MCTSReport.class));
+        verifyZeroInteractions(gateway, allReportBackfillTokens);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldNotSaveProgressOfABatchWhenTheReportingApplicationDoesNotBackfillIt() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(new ReportBackfillToken("anc_visit:0-10", 0L));
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first));
+        doAnswer(reportFor(Indicator.ANC)).when(formSubmissionReportService).reportFor(any(FormSubmission.class));
+        when(httpAgent.post(anyString(), anyString(), anyString())).thenReturn(new HttpResponse(false, "down"));
+
+        try {
+            service.backfill("anc_visit", 0L, 10L, false);
+        } finally {
+            verify(allReportBackfillTokens, never()).update(any(ReportBackfillToken.class));
+            verify(allMCTSReports, never()).addAll(anyListOf(MCTSReport.class));
+        }
+    }
+
+    @Test
+    public void shouldRunABackfillInTheBackgroundAndKeepItsJob() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first));
+        doThrow(new IllegalArgumentException("bad rule")).when(formSubmissionReportService).reportFor(first);
+
+        when(allFormSubmissions.streamByFormNameAndServerVersion("other_form", 0L, null)).thenReturn(Collections.<FormSubmission>emptyList());
+        ReportBackfillJob succeededJob = service.start("other_form", 0L, 10L, true);
+        ReportBackfillJob failedJob = service.start("anc_visit", 0L, 10L, true);
+
+        waitUntilDone(failedJob);
+        assertEquals(ReportBackfillJob.State.SUCCEEDED, service.job(succeededJob.id()).state());
+        assertEquals(ReportBackfillJob.State.FAILED, service.job(failedJob.id()).state());
+        assertEquals(0, service.job(failedJob.id()).result().submissionCount());
+        assertNull(service.job("unknown id"));
+        service.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldNotSaveProgressOfABatchWhenReplayingOneOfItsSubmissionsFails() throws Exception {
+        FormSubmission first = submission("instance id 1", 1L);
+        when(allReportBackfillTokens.tokenFor("anc_visit:0-10", 0L)).thenReturn(new ReportBackfillToken("anc_visit:0-10", 0L));
+        when(allFormSubmissions.streamByFormNameAndServerVersion("anc_visit", 0L, null)).thenReturn(asList(first));
+        doThrow(new IllegalArgumentException("bad rule")).when(formSubmissionReportService).reportFor(first);
+
+        try {
+            service.backfill("anc_visit", 0L, 10L, false);
+        } finally {
+            verify(allReportBackfillTokens, never()).update(any(ReportBackfillToken.class));
+            verifyZeroInteractions(httpAgent);
+        }
+    }
+
+    private void waitUntilDone(ReportBackfillJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && (job.state() == ReportBackfillJob.State.QUEUED || job.state() == ReportBackfillJob.State.RUNNING); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private MCTSReport mctsReportFor(String entityId) {
+        List<MCTSReport> reports = new ArrayList<>();
+        mctsReporter.captureReportsInto(reports);
+        try {
+            mctsReporter.report(entityId, "7777777", "ANC1", "2014-01-01", "2014-01-05");
+        } finally {
+            mctsReporter.stopCapturing();
+        }
+        return reports.get(0);
+    }
+
+    private FormSubmission submission(String instanceId, long serverVersion) {
+        return create().withFormName("anc_visit").withInstanceId(instanceId).withEntityId("entity id")
+                .withServerVersion(serverVersion).build();
+    }
+
+    private List<ReportingData> reportingDataFor(FormSubmission... submissions) {
+        ReportingData[] data = new ReportingData[submissions.length];
+        for (int i = 0; i < submissions.length; i++) {
+            data[i] = reportingDataFor(submissions[i], Indicator.ANC);
+        }
+        return asList(data);
+    }
+
+    private ReportingData reportingDataFor(FormSubmission submission, Indicator indicator) {
+        return ReportingData.anmReportData("ANM X", submission.instanceId(), indicator, "2013-01-01");
+    }
+
+    private Answer<Void> reportFor(final Indicator indicator) {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                reportingService.sendReportData(reportingDataFor((FormSubmission) invocation.getArguments()[0], indicator));
+                return null;
+            }
+        };
+    }
+
+    private Answer<Void> mctsReportFor() {
+        return new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                FormSubmission submission = (FormSubmission) invocation.getArguments()[0];
+                mctsReporter.report(submission.entityId(), "7777777", "ANC1", "2014-01-01", "2014-01-05");
+                return null;
+            }
+        };
+    }
+}
@@ -43,4 +43,13 @@ public class ReportDefinitionTest {
 
         assertTrue(indicators.isEmpty());
     }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotIndexADefinitionWithMoreThanOneFormIndicatorForAForm() throws Exception {
+        ReportDefinition reportDefinition = new ReportDefinition(asList(
+                new FormIndicator("form 1", Collections.<ReportIndicator>emptyList()),
+                new FormIndicator("form 1", Collections.<ReportIndicator>emptyList())));
+
+        reportDefinition.indicatorsByFormName();
+    }
 }
@@ -0,0 +1,359 @@
+package org.ei.drishti.service.reporting;
+
+import com.google.gson.Gson;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+import org.ei.drishti.common.domain.ReportDataDeleteRequest;
+import org.ei.drishti.common.domain.ReportDataUpdateRequest;
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+import org.ei.drishti.common.util.DateUtil;
+import org.ei.drishti.common.util.HttpAgent;
+import org.ei.drishti.common.util.HttpResponse;
+import org.ei.drishti.domain.ReportOutboxEntry;
+import org.ei.drishti.repository.AllReportOutboxEntries;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_DEPTH;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_LAG;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_OUTBOX_SUBMIT_TIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ReportOutboxTest {
+    private static final String BATCH_URL = "http://drishti/submit-batch";
+
+    @Mock
+    private AllReportOutboxEntries allReportOutboxEntries;
+    @Mock
+    private HttpAgent httpAgent;
+    @Mock
+    private Monitor monitor;
+
+    private long now;
+    private PendingTasksExecutor flushExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        DateUtil.fakeIt(LocalDate.parse("2013-01-01"));
+        now = DateUtil.millis();
+        flushExecutor = new PendingTasksExecutor();
+        when(monitor.start(REPORTING_OUTBOX_SUBMIT_TIME)).thenReturn(new Probe(REPORTING_OUTBOX_SUBMIT_TIME));
+    }
+
+    @Test
+    public void shouldStoreAppendedReportingDataAndOnlySubmitOnTheFlushThreadOnceAFullBatchIsWaiting() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        ReportingData first = new ReportingData("Boo").with("abc", "def");
+        ReportingData second = new ReportingData("Foo").with("ghi", "jkl");
+        List<ReportOutboxEntry> entries = asList(new ReportOutboxEntry(first, now, "key 1"), new ReportOutboxEntry(second, now, "key 2"));
+        when(allReportOutboxEntries.oldest(2)).thenReturn(entries, Collections.<ReportOutboxEntry>emptyList());
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenReturn(new HttpResponse(true, null));
+
+        outbox.append(asList(first));
+
+        ArgumentCaptor<List> appended = ArgumentCaptor.forClass(List.class);
+        verify(allReportOutboxEntries).addAll(appended.capture());
+        ReportOutboxEntry appendedEntry = (ReportOutboxEntry) appended.getValue().get(0);
+        assertEquals(first, appendedEntry.data());
+        assertEquals(now, appendedEntry.createdAt());
+        assertNotNull(appendedEntry.reportKey());
+        verifyZeroInteractions(httpAgent);
+
+        outbox.append(asList(second));
+        verifyZeroInteractions(httpAgent);
+        flushExecutor.runPendingTasks();
+
+        verify(httpAgent).post(BATCH_URL, new Gson().toJson(asList(
+                new ReportingData("Boo").with("abc", "def").with("reportKey", "key 1"),
+                new ReportingData("Foo").with("ghi", "jkl").with("reportKey", "key 2"))), "application/json");
+        verify(allReportOutboxEntries).removeAll(entries);
+        verify(monitor).addObservationFor(REPORTING_OUTBOX_LAG, 0);
+    }
+
+    @Test
+    public void shouldScheduleOnlyOneFlushAtATime() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        when(allReportOutboxEntries.oldest(2)).thenReturn(Collections.<ReportOutboxEntry>emptyList());
+
+        outbox.scheduleFlush();
+        outbox.scheduleFlush();
+        flushExecutor.runPendingTasks();
+        outbox.scheduleFlush();
+        flushExecutor.runPendingTasks();
+
+        verify(allReportOutboxEntries, times(2)).oldest(2);
+    }
+
+    @Test
+    public void shouldSubmitBatchesUntilTheOutboxIsEmpty() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        List<ReportOutboxEntry> firstBatch = entries("1", "2");
+        List<ReportOutboxEntry> lastBatch = entries("3");
+        when(allReportOutboxEntries.oldest(2)).thenReturn(firstBatch, lastBatch);
+        when(allReportOutboxEntries.depth()).thenReturn(3);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenReturn(new HttpResponse(true, null));
+
+        outbox.flush();
+
+        verify(allReportOutboxEntries).removeAll(firstBatch);
+        verify(allReportOutboxEntries).removeAll(lastBatch);
+        verify(allReportOutboxEntries, times(2)).oldest(2);
+        verify(monitor).addObservationFor(REPORTING_OUTBOX_DEPTH, 3);
+    }
+
+    @Test
+    public void shouldKeepAFailedBatchInTheOutboxAndNotRetryBeforeTheBackoffIsOver() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        List<ReportOutboxEntry> batch = entries("1");
+        when(allReportOutboxEntries.oldest(2)).thenReturn(batch);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenReturn(new HttpResponse(false, "down"));
+
+        outbox.flush();
+        outbox.flush();
+
+        verify(httpAgent, times(1)).post(anyString(), anyString(), anyString());
+        verify(allReportOutboxEntries, never()).removeAll(anyListOf(ReportOutboxEntry.class));
+    }
+
+    @Test
+    public void shouldRetryAFailedBatchOnceTheBackoffIsOver() throws Exception {
+        ReportOutbox outbox = outbox(2, 0);
+        List<ReportOutboxEntry> batch = entries("1");
+        when(allReportOutboxEntries.oldest(2)).thenReturn(batch);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json")))
+                .thenThrow(new RuntimeException("connection refused"))
+                .thenReturn(new HttpResponse(true, null));
+
+        outbox.flush();
+        verify(allReportOutboxEntries, never()).removeAll(anyListOf(ReportOutboxEntry.class));
+
+        outbox.flush();
+        verify(httpAgent, times(2)).post(anyString(), anyString(), anyString());
+        verify(allReportOutboxEntries).removeAll(batch);
+    }
+
+    @Test
+    public void shouldRemoveRecordsRejectedByTheReportingApplicationWithTheRestOfTheBatch() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        List<ReportOutboxEntry> batch = entries("1");
+        when(allReportOutboxEntries.oldest(2)).thenReturn(batch);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json")))
+                .thenReturn(new HttpResponse(true, new Gson().toJson(new ReportDataBatchResult(1).withFailure(0, "Unknown location"))));
+
+        outbox.flush();
+
+        verify(allReportOutboxEntries).removeAll(batch);
+    }
+
+    @Test
+    public void shouldSplitARejectedBatchSoThatOnlyTheEntryTheReportingApplicationCannotTakeIsHeldBack() throws Exception {
+        ReportOutbox outbox = outbox(4, 5, 3);
+        List<ReportOutboxEntry> batch = entries("1", "2", "3", "4");
+        when(allReportOutboxEntries.oldest(4)).thenReturn(batch);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenAnswer(rejectingBatchesWith("3"));
+
+        outbox.flush();
+
+        verify(allReportOutboxEntries).removeAll(batch.subList(0, 2));
+        verify(allReportOutboxEntries).update(batch.get(2));
+        verify(allReportOutboxEntries, never()).removeAll(batch.subList(3, 4));
+        assertEquals(1, batch.get(2).rejectedAttempts());
+        assertFalse(batch.get(2).isDeadLettered());
+    }
+
+    @Test
+    public void shouldDeadLetterAnEntryRejectedTheMaximumNumberOfTimesAndSubmitTheRest() throws Exception {
+        ReportOutbox outbox = outbox(4, 5, 1);
+        List<ReportOutboxEntry> batch = entries("1", "2", "3", "4");
+        when(allReportOutboxEntries.oldest(4)).thenReturn(batch, Collections.<ReportOutboxEntry>emptyList());
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenAnswer(rejectingBatchesWith("3"));
+
+        outbox.flush();
+
+        verify(allReportOutboxEntries).removeAll(batch.subList(0, 2));
+        verify(allReportOutboxEntries).update(batch.get(2));
+        verify(allReportOutboxEntries).removeAll(batch.subList(3, 4));
+        assertTrue(batch.get(2).isDeadLettered());
+    }
+
+    @Test
+    public void shouldNeitherSplitABatchNorCountARejectionWhenTheReportingApplicationFailsWithAServerError() throws Exception {
+        ReportOutbox outbox = outbox(4, 5, 1);
+        List<ReportOutboxEntry> batch = entries("1", "2", "3", "4");
+        when(allReportOutboxEntries.oldest(4)).thenReturn(batch);
+        when(httpAgent.post(eq(BATCH_URL), anyString(), eq("application/json"))).thenReturn(new HttpResponse(false, 503, "Service unavailable"));
+
+        outbox.flush();
+
+        verify(httpAgent, times(1)).post(anyString(), anyString(), anyString());
+        verify(allReportOutboxEntries, never()).update(any(ReportOutboxEntry.class));
+        verify(allReportOutboxEntries, never()).removeAll(anyListOf(ReportOutboxEntry.class));
+        for (ReportOutboxEntry entry : batch) {
+            assertEquals(0, entry.rejectedAttempts());
+        }
+    }
+
+    @Test
+    public void shouldStoreUpdateAndDeleteRequestsInTheOrderTheyWereAppended() throws Exception {
+        ReportOutbox outbox = outbox(10, 5);
+        ReportDataUpdateRequest updateRequest = new ReportDataUpdateRequest().withType("Boo").withIndicator("IUD");
+        ReportDataDeleteRequest deleteRequest = ReportDataDeleteRequest.serviceProvidedDataDeleteRequest("entity id 1");
+
+        outbox.append(asList(new ReportingData("Boo").with("abc", "def")));
+        outbox.appendUpdate(updateRequest);
+        outbox.appendDelete(deleteRequest);
+
+        ArgumentCaptor<List> appended = ArgumentCaptor.forClass(List.class);
+        verify(allReportOutboxEntries, times(3)).addAll(appended.capture());
+        ReportOutboxEntry submitEntry = (ReportOutboxEntry) appended.getAllValues().get(0).get(0);
+        ReportOutboxEntry updateEntry = (ReportOutboxEntry) appended.getAllValues().get(1).get(0);
+        ReportOutboxEntry deleteEntry = (ReportOutboxEntry) appended.getAllValues().get(2).get(0);
+        assertEquals(ReportOutboxEntry.Action.UPDATE, updateEntry.action());
+        assertEquals(updateRequest, updateEntry.updateRequest());
+        assertEquals(ReportOutboxEntry.Action.DELETE, deleteEntry.action());
+        assertEquals(deleteRequest, deleteEntry.deleteRequest());
+        assertTrue(submitEntry.sequence() < updateEntry.sequence());
+        assertTrue(updateEntry.sequence() < deleteEntry.sequence());
+        verifyZeroInteractions(httpAgent);
+    }
+
+    @Test
+    public void shouldSendUpdateAndDeleteRequestsOneAtATimeAfterTheReportDataBeforeThem() throws Exception {
+        ReportOutbox outbox = outbox(4, 5);
+        ReportDataUpdateRequest updateRequest = new ReportDataUpdateRequest().withType("Boo").withIndicator("IUD");
+        ReportDataDeleteRequest deleteRequest = ReportDataDeleteRequest.serviceProvidedDataDeleteRequest("entity id 1");
+        List<ReportOutboxEntry> reportData = entries("1", "2");
+        List<ReportOutboxEntry> waiting = asList(reportData.get(0), reportData.get(1),
+                new ReportOutboxEntry(updateRequest, now), new ReportOutboxEntry(deleteRequest, now));
+        when(allReportOutboxEntries.oldest(4)).thenReturn(waiting, waiting.subList(2, 4), waiting.subList(3, 4));
+        when(httpAgent.post(anyString(), anyString(), eq("application/json"))).thenReturn(new HttpResponse(true, null));
+
+        outbox.flush();
+
+        InOrder inOrder = inOrder(httpAgent, allReportOutboxEntries);
+        inOrder.verify(httpAgent).post(eq(BATCH_URL), anyString(), eq("application/json"));
+        inOrder.verify(allReportOutboxEntries).removeAll(waiting.subList(0, 2));
+        inOrder.verify(httpAgent).post("http://drishti/update", new Gson().toJson(updateRequest), "application/json");
+        inOrder.verify(allReportOutboxEntries).removeAll(waiting.subList(2, 3));
+        inOrder.verify(httpAgent).post("http://drishti/delete", new Gson().toJson(deleteRequest), "application/json");
+        inOrder.verify(allReportOutboxEntries).removeAll(waiting.subList(3, 4));
+    }
+
+    @Test
+    public void shouldKeepAnUpdateThatCouldNotBeSentAndNotSendWhatCameAfterIt() throws Exception {
+        ReportOutbox outbox = outbox(4, 5);
+        ReportDataUpdateRequest updateRequest = new ReportDataUpdateRequest().withType("Boo").withIndicator("IUD");
+        List<ReportOutboxEntry> waiting = asList(new ReportOutboxEntry(updateRequest, now), entries("1").get(0));
+        when(allReportOutboxEntries.oldest(4)).thenReturn(waiting);
+        when(httpAgent.post(eq("http://drishti/update"), anyString(), eq("application/json"))).thenReturn(new HttpResponse(false, 503, "down"));
+
+        outbox.flush();
+
+        verify(httpAgent, times(1)).post(anyString(), anyString(), anyString());
+        verify(allReportOutboxEntries, never()).removeAll(anyListOf(ReportOutboxEntry.class));
+        verify(allReportOutboxEntries, never()).update(any(ReportOutboxEntry.class));
+    }
+
+    @Test
+    public void shouldDoNothingWhenTheOutboxIsEmpty() throws Exception {
+        ReportOutbox outbox = outbox(2, 5);
+        when(allReportOutboxEntries.oldest(2)).thenReturn(Collections.<ReportOutboxEntry>emptyList());
+
+        outbox.flush();
+
+        verifyZeroInteractions(httpAgent);
+        verify(allReportOutboxEntries, never()).removeAll(anyListOf(ReportOutboxEntry.class));
+        verify(monitor, never()).start(any(org.ei.drishti.common.monitor.Metric.class));
+    }
+
+    private ReportOutbox outbox(int batchSize, long initialBackoffInSeconds) {
+        return outbox(batchSize, initialBackoffInSeconds, 10);
+    }
+
+    private ReportOutbox outbox(int batchSize, long initialBackoffInSeconds, int maximumRejectedAttempts) {
+        return new ReportOutbox(allReportOutboxEntries, httpAgent, monitor, "http://drishti", batchSize, initialBackoffInSeconds, 600,
+                maximumRejectedAttempts, flushExecutor);
+    }
+
+    private List<ReportOutboxEntry> entries(String... externalIds) {
+        ReportOutboxEntry[] entries = new ReportOutboxEntry[externalIds.length];
+        for (int i = 0; i < externalIds.length; i++) {
+            entries[i] = new ReportOutboxEntry(new ReportingData("Boo").with("externalId", externalIds[i]), now, "key " + externalIds[i]);
+        }
+        return asList(entries);
+    }
+
+    private Answer<HttpResponse> rejectingBatchesWith(final String externalId) {
+        return new Answer<HttpResponse>() {
+            @Override
+            public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                String batch = (String) invocation.getArguments()[1];
+                boolean isRejected = batch.contains("\"externalId\":\"" + externalId + "\"");
+                return isRejected ? new HttpResponse(false, 400, "Bad request") : new HttpResponse(true, null);
+            }
+        };
+    }
+
+    private static class PendingTasksExecutor extends AbstractExecutorService {
+        private final List<Runnable> pendingTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            pendingTasks.add(task);
+        }
+
+        void runPendingTasks() {
+            List<Runnable> tasks = new ArrayList<>(pendingTasks);
+            pendingTasks.clear();
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return pendingTasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -12,7 +12,13 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.motechproject.scheduler.gateway.OutboundEventGateway;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class ReportingServiceTest {
@@ -53,4 +59,21 @@ public class ReportingServiceTest {
 
         verify(gateway).sendEventMessage(new ReportDeleteEvent(request).toEvent());
     }
+
+    @Test
+    public void shouldCaptureReportingDataSentOnThisThreadInsteadOfQueueingIt() throws Exception {
+        ReportingService service = new ReportingService(gateway);
+        ReportingData data = new ReportingData("Registration").with("mom", "Theresa");
+        List<ReportingData> captured = new ArrayList<>();
+
+        service.captureReportDataInto(captured);
+        service.sendReportData(data);
+        service.stopCapturing();
+
+        assertEquals(asList(data), captured);
+        verifyZeroInteractions(gateway);
+
+        service.sendReportData(data);
+        verify(gateway).sendEventMessage(new ReportEvent(data).toEvent());
+    }
 }
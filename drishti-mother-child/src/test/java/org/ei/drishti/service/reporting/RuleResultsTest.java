@@ -0,0 +1,67 @@
+package org.ei.drishti.service.reporting;
+
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.util.SafeMap;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleResultsTest {
+    private RuleResults ruleResults;
+    private CountingRule closeReasonIsDeathRule;
+
+    @Before
+    public void setUp() throws Exception {
+        ruleResults = new RuleResults();
+        closeReasonIsDeathRule = new CountingRule();
+    }
+
+    @Test
+    public void shouldEvaluateARuleOnlyOnceForTheSameValuesOfTheFieldsItReads() throws Exception {
+        SafeMap firstIndicatorFields = new SafeMap().put("closeReason", "death_of_child").put("id", "child id 1");
+        SafeMap secondIndicatorFields = new SafeMap().put("closeReason", "death_of_child").put("submissionDate", "2012-03-01");
+
+        assertTrue(ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, firstIndicatorFields));
+        assertTrue(ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, secondIndicatorFields));
+
+        assertEquals(1, closeReasonIsDeathRule.evaluations);
+        assertEquals(1, ruleResults.evaluations());
+        assertEquals(1, ruleResults.hits());
+    }
+
+    @Test
+    public void shouldEvaluateARuleAgainWhenAFieldItReadsHasADifferentValueOrIsMissing() throws Exception {
+        assertTrue(ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, new SafeMap().put("closeReason", "death_of_child")));
+        assertFalse(ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, new SafeMap().put("closeReason", "permanent_relocation")));
+        assertFalse(ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, new SafeMap()));
+
+        assertEquals(3, closeReasonIsDeathRule.evaluations);
+        assertEquals(3, ruleResults.evaluations());
+        assertEquals(0, ruleResults.hits());
+    }
+
+    @Test
+    public void shouldKeepResultsOfDifferentRulesApart() throws Exception {
+        SafeMap reportFields = new SafeMap().put("closeReason", "death_of_child");
+        CountingRule anotherRule = new CountingRule();
+
+        ruleResults.apply("CloseReasonIsDeathRule", closeReasonIsDeathRule, reportFields);
+        ruleResults.apply("IsChildClosedDueToDeathRule", anotherRule, reportFields);
+
+        assertEquals(1, closeReasonIsDeathRule.evaluations);
+        assertEquals(1, anotherRule.evaluations);
+    }
+
+    private static class CountingRule implements IRule {
+        private int evaluations;
+
+        @Override
+        public boolean apply(SafeMap reportFields) {
+            evaluations++;
+            return reportFields.has("closeReason") && "death_of_child".equals(reportFields.get("closeReason"));
+        }
+    }
+}
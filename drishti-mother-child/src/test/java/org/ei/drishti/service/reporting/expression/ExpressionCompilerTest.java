@@ -0,0 +1,102 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.service.reporting.rules.CasteIsSCRule;
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.service.reporting.rules.IsChildBetween12And23MonthsRule;
+import org.ei.drishti.util.SafeMap;
+import org.junit.Test;
+
+import static org.ei.drishti.common.util.EasyMap.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExpressionCompilerTest {
+    @Test
+    public void shouldTellRuleNamesFromExpressions() {
+        assertFalse(ExpressionCompiler.isExpression("IsChildBetween12And23MonthsRule"));
+        assertTrue(ExpressionCompiler.isExpression("caste == 'sc'"));
+        assertTrue(ExpressionCompiler.isFieldName("isHighRisk"));
+        assertFalse(ExpressionCompiler.isFieldName("IsChildBetween12And23MonthsRule"));
+    }
+
+    @Test
+    public void shouldReadAFieldNameOnItsOwnAsABooleanCondition() {
+        IRule expression = ExpressionCompiler.compile("isHighRisk");
+
+        assertTrue(expression.apply(new SafeMap(create("isHighRisk", "true").map())));
+        assertFalse(expression.apply(new SafeMap(create("isHighRisk", "false").map())));
+    }
+
+    @Test
+    public void shouldEvaluateDateArithmeticTheSameWayAsTheHandWrittenRule() {
+        IRule expression = ExpressionCompiler.compile(
+                "dateOfBirth + 2 years > serviceProvidedDate && dateOfBirth + 12 months < serviceProvidedDate");
+        IRule handWrittenRule = new IsChildBetween12And23MonthsRule();
+
+        for (String serviceProvidedDate : new String[]{"2012-10-01", "2012-12-31", "2013-01-01", "2013-01-02", "2013-12-31", "2014-01-01"}) {
+            SafeMap reportFields = new SafeMap(create("serviceProvidedDate", serviceProvidedDate).put("dateOfBirth", "2012-01-01").map());
+
+            assertEquals(serviceProvidedDate, handWrittenRule.apply(reportFields), expression.apply(reportFields));
+        }
+    }
+
+    @Test
+    public void shouldCompareTextIgnoringCaseTheSameWayAsTheHandWrittenRule() {
+        IRule expression = ExpressionCompiler.compile("caste == 'sc'");
+        IRule handWrittenRule = new CasteIsSCRule();
+
+        for (String caste : new String[]{"sc", "SC", "st", ""}) {
+            SafeMap reportFields = new SafeMap(create("caste", caste).map());
+
+            assertEquals(caste, handWrittenRule.apply(reportFields), expression.apply(reportFields));
+        }
+    }
+
+    @Test
+    public void shouldSupportSetMembershipNumbersBooleansAndNegation() {
+        SafeMap reportFields = new SafeMap(create("caste", "ST").put("numberOfLiveBirths", "2")
+                .put("isHighRisk", "true").put("deliveryDate", "2013-01-01").put("closeReason", null).map());
+
+        assertTrue(ExpressionCompiler.compile("caste in ('sc', 'st')").apply(reportFields));
+        assertFalse(ExpressionCompiler.compile("!(caste in ('sc', 'st'))").apply(reportFields));
+        assertTrue(ExpressionCompiler.compile("numberOfLiveBirths + 1 >= 3").apply(reportFields));
+        assertTrue(ExpressionCompiler.compile("isHighRisk && numberOfLiveBirths != 1").apply(reportFields));
+        assertTrue(ExpressionCompiler.compile("deliveryDate - 1 days < date('2013-01-01')").apply(reportFields));
+        assertTrue(ExpressionCompiler.compile("deliveryDate == '2013-01-01' || caste == 'sc'").apply(reportFields));
+        assertTrue(ExpressionCompiler.compile("closeReason == null").apply(reportFields));
+    }
+
+    @Test
+    public void shouldNotMatchABlankDateWithAnyDate() {
+        SafeMap reportFields = new SafeMap(create("dateOfBirth", "").put("serviceProvidedDate", "2013-01-01").map());
+
+        assertFalse(ExpressionCompiler.compile("dateOfBirth + 1 years > serviceProvidedDate").apply(reportFields));
+        assertFalse(ExpressionCompiler.compile("dateOfBirth + 1 years <= serviceProvidedDate").apply(reportFields));
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldFailToCompileAnOrderingComparisonOfText() {
+        ExpressionCompiler.compile("caste > 'sc'");
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldFailToCompileAnExpressionThatIsNotACondition() {
+        ExpressionCompiler.compile("numberOfLiveBirths + 1");
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldFailToCompileAnIncompleteExpression() {
+        ExpressionCompiler.compile("caste == 'sc' &&");
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldFailToCompileANumberTooLargeToHold() {
+        ExpressionCompiler.compile("numberOfLiveBirths > 99999999999");
+    }
+
+    @Test(expected = InvalidExpressionException.class)
+    public void shouldFailToCompileADateShiftTooLargeToHold() {
+        ExpressionCompiler.compile("dateOfBirth + 99999999999 days > serviceProvidedDate");
+    }
+}
@@ -0,0 +1,100 @@
+package org.ei.drishti.service.reporting.expression;
+
+import org.ei.drishti.service.reporting.rules.CasteIsSCRule;
+import org.ei.drishti.service.reporting.rules.DeliveryHappenedAtHomeRule;
+import org.ei.drishti.service.reporting.rules.IRule;
+import org.ei.drishti.service.reporting.rules.IsChildBetween12And23MonthsRule;
+import org.ei.drishti.service.reporting.rules.IsChildLessThanOneYearOldRule;
+import org.ei.drishti.util.SafeMap;
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.text.MessageFormat.format;
+import static org.ei.drishti.common.util.EasyMap.create;
+
+/**
+ * Compares compiled expressions with the hand-written rules they can replace. Every rule and its expression are
+ * applied to the same report fields, the results must agree, and the time per evaluation of each is printed.
+ * Fresh report fields are built for every pass so neither side gains from values parsed in an earlier pass.
+ * Run its main method from the test classpath of this module, optionally passing the number of measured passes.
+ */
+public class ExpressionRuleBenchmark {
+    private static final int WARM_UP_PASSES = 20;
+    private static final int REPORT_FIELDS_PER_PASS = 10000;
+
+    private static volatile int matchesSeen;
+
+    public static void main(String[] args) {
+        int passes = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        List<Map<String, String>> fields = reportFields(new Random(42));
+
+        compare("IsChildBetween12And23MonthsRule", new IsChildBetween12And23MonthsRule(),
+                "dateOfBirth + 2 years > serviceProvidedDate && dateOfBirth + 12 months < serviceProvidedDate", fields, passes);
+        compare("IsChildLessThanOneYearOldRule", new IsChildLessThanOneYearOldRule(),
+                "dateOfBirth + 1 years > serviceProvidedDate", fields, passes);
+        compare("CasteIsSCRule", new CasteIsSCRule(), "caste == 'sc'", fields, passes);
+        compare("DeliveryHappenedAtHomeRule", new DeliveryHappenedAtHomeRule(), "deliveryPlace == 'home'", fields, passes);
+    }
+
+    private static void compare(String name, IRule handWrittenRule, String expression, List<Map<String, String>> fields, int passes) {
+        IRule compiledRule = ExpressionCompiler.compile(expression);
+        for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+            checkParity(name, handWrittenRule, compiledRule, fields);
+        }
+
+        long handWrittenNanos = 0;
+        long compiledNanos = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            handWrittenNanos += time(handWrittenRule, fields);
+            compiledNanos += time(compiledRule, fields);
+        }
+
+        long evaluations = (long) passes * fields.size();
+        System.out.println(format("{0}: hand-written {1} ns, expression {2} ns per evaluation",
+                name, handWrittenNanos / (double) evaluations, compiledNanos / (double) evaluations));
+    }
+
+    private static void checkParity(String name, IRule handWrittenRule, IRule compiledRule, List<Map<String, String>> fields) {
+        for (Map<String, String> reportFields : fields) {
+            if (handWrittenRule.apply(new SafeMap(reportFields)) != compiledRule.apply(new SafeMap(reportFields))) {
+                throw new IllegalStateException(format("{0} and its expression disagree on {1}", name, reportFields));
+            }
+        }
+    }
+
+    private static long time(IRule rule, List<Map<String, String>> fields) {
+        List<SafeMap> reportFields = new ArrayList<>(fields.size());
+        for (Map<String, String> field : fields) {
+            reportFields.add(new SafeMap(field));
+        }
+        int matches = 0;
+        long start = System.nanoTime();
+        for (SafeMap field : reportFields) {
+            if (rule.apply(field)) {
+                matches++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        matchesSeen += matches;
+        return elapsed;
+    }
+
+    private static List<Map<String, String>> reportFields(Random random) {
+        String[] castes = {"sc", "SC", "st", "others", ""};
+        String[] deliveryPlaces = {"home", "HOME", "phc", "subcenter", ""};
+        LocalDate start = LocalDate.parse("2012-01-01");
+        List<Map<String, String>> fields = new ArrayList<>(REPORT_FIELDS_PER_PASS);
+        for (int i = 0; i < REPORT_FIELDS_PER_PASS; i++) {
+            fields.add(create("dateOfBirth", start.plusDays(random.nextInt(730)).toString())
+                    .put("serviceProvidedDate", start.plusDays(random.nextInt(1460)).toString())
+                    .put("caste", castes[random.nextInt(castes.length)])
+                    .put("deliveryPlace", deliveryPlaces[random.nextInt(deliveryPlaces.length)])
+                    .map());
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,45 @@
+package org.ei.drishti.util;
+
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SafeMapTest {
+    @Test
+    public void shouldParseTypedValuesOfFields() throws Exception {
+        SafeMap reportFields = new SafeMap()
+                .put("dateOfBirth", "2012-01-01")
+                .put("numberOfANCVisits", "3")
+                .put("isHighPriority", "true");
+
+        assertEquals(new LocalDate(2012, 1, 1), reportFields.localDate("dateOfBirth"));
+        assertEquals(Integer.valueOf(3), reportFields.integer("numberOfANCVisits"));
+        assertTrue(reportFields.bool("isHighPriority"));
+    }
+
+    @Test
+    public void shouldParseTheSameValueOnlyOnceAcrossMapsSharingAParsedFieldCache() throws Exception {
+        ParsedFieldCache parsedFields = new ParsedFieldCache();
+        SafeMap firstIndicatorFields = new SafeMap().put("submissionDate", "2012-03-01").withParsedFieldCache(parsedFields);
+        SafeMap secondIndicatorFields = new SafeMap().put("serviceProvidedDate", "2012-03-01").withParsedFieldCache(parsedFields);
+
+        assertSame(firstIndicatorFields.localDate("submissionDate"), secondIndicatorFields.localDate("serviceProvidedDate"));
+    }
+
+    @Test
+    public void shouldIgnoreParsedValuesWhenComparingMaps() throws Exception {
+        SafeMap reportFields = new SafeMap().put("dateOfBirth", "2012-01-01");
+        reportFields.localDate("dateOfBirth");
+
+        assertEquals(new SafeMap().put("dateOfBirth", "2012-01-01"), reportFields);
+        assertEquals(new SafeMap().put("dateOfBirth", "2012-01-01").hashCode(), reportFields.hashCode());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldFailToParseAFieldThatDoesNotExist() throws Exception {
+        new SafeMap().localDate("dateOfBirth");
+    }
+}
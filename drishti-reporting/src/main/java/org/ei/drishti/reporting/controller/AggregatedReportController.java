@@ -7,6 +7,7 @@ import org.ei.drishti.dto.report.AggregatedReportsDTO;
 import org.ei.drishti.reporting.domain.Location;
 import org.ei.drishti.reporting.service.ANMService;
 import org.ei.drishti.reporting.service.AggregateReportsService;
+import org.ei.drishti.reporting.service.AggregatedReportsCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
@@ -28,22 +29,30 @@ public class AggregatedReportController {
     private final AggregateReportsService aggregateReportsService;
     private final String drishtiSiteUrl;
     private final ANMService anmService;
+    private final AggregatedReportsCache aggregatedReportsCache;
 
     @Autowired
     public AggregatedReportController(AggregateReportsService aggregateReportsService,
                                       @Value("#{drishti['drishti.site.url']}") String drishtiSiteUrl,
-                                      ANMService anmService) {
+                                      ANMService anmService, AggregatedReportsCache aggregatedReportsCache) {
         this.aggregateReportsService = aggregateReportsService;
         this.drishtiSiteUrl = drishtiSiteUrl;
         this.anmService = anmService;
+        this.aggregatedReportsCache = aggregatedReportsCache;
     }
 
     @ResponseBody
     @RequestMapping(value = "/report/aggregated-reports", method = RequestMethod.GET)
     public ResponseEntity<AggregatedReportsDTO> get(@RequestParam("anm-id") String anmIdentifier, @RequestParam("month") int month, @RequestParam("year") int year) {
-        Map<String, Integer> indicatorSummary = buildIndicatorSummary(anmIdentifier, month, year);
-        LocationDTO locationDTO = getLocation(anmIdentifier);
-        return new ResponseEntity<>(new AggregatedReportsDTO(indicatorSummary, locationDTO), allowOrigin(drishtiSiteUrl), OK);
+        AggregatedReportsDTO aggregatedReports = aggregatedReportsCache.get(anmIdentifier, month, year);
+        if (aggregatedReports == null) {
+            long cacheVersion = aggregatedReportsCache.version(anmIdentifier, month, year);
+            Map<String, Integer> indicatorSummary = buildIndicatorSummary(anmIdentifier, month, year);
+            LocationDTO locationDTO = getLocation(anmIdentifier);
+            aggregatedReports = new AggregatedReportsDTO(indicatorSummary, locationDTO);
+            aggregatedReportsCache.put(anmIdentifier, month, year, aggregatedReports, cacheVersion);
+        }
+        return new ResponseEntity<>(aggregatedReports, allowOrigin(drishtiSiteUrl), OK);
     }
 
     private LocationDTO getLocation(String anmIdentifier) {
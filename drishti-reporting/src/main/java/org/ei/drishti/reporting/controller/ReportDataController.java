@@ -1,12 +1,17 @@
 package org.ei.drishti.reporting.controller;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.ei.drishti.common.domain.ANMReport;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
 import org.ei.drishti.common.domain.ReportDataDeleteRequest;
 import org.ei.drishti.common.domain.ReportDataUpdateRequest;
 import org.ei.drishti.common.domain.ReportingData;
 import org.ei.drishti.reporting.DristhiEntityIdMissingException;
 import org.ei.drishti.reporting.ReportDataMissingException;
 import org.ei.drishti.reporting.repository.ANMReportsRepository;
+import org.ei.drishti.reporting.repository.ResultHandler;
 import org.ei.drishti.reporting.repository.ServicesProvidedRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,11 +20,15 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.ei.drishti.common.AllConstants.ReportDataParameters;
@@ -66,6 +75,79 @@ public class ReportDataController {
         return "Success.";
     }
 
+    @RequestMapping(value = "/report/submit-batch", method = RequestMethod.POST)
+    @ResponseBody
+    public ReportDataBatchResult submitBatch(@RequestBody ReportingData[] reportingData) {
+        logger.info(MessageFormat.format("Reporting on a batch of {0} records", reportingData.length));
+        return saveBatch(reportingData, false, false, null);
+    }
+
+    /**
+     * Saves report data recomputed from form submissions that were already reported on, leaving out the reports
+     * that are already saved. The batches of one backfill share its id, so that a saved report is matched only once
+     * across them. On a dry run nothing is saved and the result only tells which reports already exist.
+     */
+    @RequestMapping(value = "/report/backfill-batch", method = RequestMethod.POST)
+    @ResponseBody
+    public ReportDataBatchResult backfillBatch(@RequestBody ReportingData[] reportingData,
+                                               @RequestParam(value = "dry-run", defaultValue = "false") boolean dryRun,
+                                               @RequestParam(value = "backfill-id", required = false) String backfillId) {
+        logger.info(MessageFormat.format("Backfilling a batch of {0} records of backfill {1}. Dry run: {2}",
+                reportingData.length, backfillId, dryRun));
+        return saveBatch(reportingData, true, dryRun, backfillId);
+    }
+
+    private ReportDataBatchResult saveBatch(ReportingData[] reportingData, boolean backfill, boolean dryRun,
+                                            String backfillId) {
+        ReportDataBatchResult result = new ReportDataBatchResult(reportingData.length);
+        List<ReportingData> serviceProvidedData = new ArrayList<>();
+        List<Integer> serviceProvidedIndices = new ArrayList<>();
+        List<ReportingData> anmReportData = new ArrayList<>();
+        List<Integer> anmReportIndices = new ArrayList<>();
+        for (int i = 0; i < reportingData.length; i++) {
+            ReportingData data = reportingData[i];
+            ArrayList missingData;
+            if (ReportDataParameters.SERVICE_PROVIDED_DATA_TYPE.equals(data.type())) {
+                missingData = data.getMissingReportDataForServiceProvided();
+                if (missingData.isEmpty()) {
+                    serviceProvidedData.add(data);
+                    serviceProvidedIndices.add(i);
+                }
+            } else if (ReportDataParameters.ANM_REPORT_DATA_TYPE.equals(data.type())) {
+                missingData = data.getMissingReportDataForANMReport();
+                if (missingData.isEmpty()) {
+                    anmReportData.add(data);
+                    anmReportIndices.add(i);
+                }
+            } else {
+                result.withFailure(i, "Unknown report type: " + data.type());
+                continue;
+            }
+            if (!missingData.isEmpty()) {
+                result.withFailure(i, "Missing report data: " + missingData);
+            }
+        }
+        if (!serviceProvidedData.isEmpty()) {
+            if (backfill) {
+                addResult(result, servicesProvidedRepository.backfillAll(serviceProvidedData, dryRun, backfillId), serviceProvidedIndices);
+            } else {
+                addFailures(result, servicesProvidedRepository.saveAll(serviceProvidedData), serviceProvidedIndices);
+            }
+        }
+        if (!anmReportData.isEmpty()) {
+            if (backfill) {
+                addResult(result, anmReportsRepository.backfillAll(anmReportData, dryRun, backfillId), anmReportIndices);
+            } else {
+                addFailures(result, anmReportsRepository.saveAll(anmReportData), anmReportIndices);
+            }
+        }
+        if (!result.failures().isEmpty()) {
+            logger.warn(MessageFormat.format("{0} of {1} records of the batch could not be saved: {2}",
+                    result.failures().size(), reportingData.length, result.failures()));
+        }
+        return result;
+    }
+
     @RequestMapping(headers = {"Accept=application/json"}, value = "/report/update", method = RequestMethod.POST)
     @ResponseBody
     public String updateReports(@RequestBody ReportDataUpdateRequest request) throws ReportDataMissingException {
@@ -96,10 +178,50 @@ public class ReportDataController {
         return "Success.";
     }
 
+    /**
+     * Writes the JSON array of the reports of all ANMs as each report is put together, rather than building the
+     * whole array first.
+     */
     @RequestMapping(value = "/report/fetchForAllANMs", method = RequestMethod.GET)
+    public void getAllANMsIndicatorSummaries(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final JsonGenerator generator = objectMapper.getJsonFactory().createJsonGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        generator.writeStartArray();
+        anmReportsRepository.fetchAllANMsReport(new ResultHandler<ANMReport>() {
+            @Override
+            public void handle(ANMReport report) {
+                try {
+                    objectMapper.writeValue(generator, report);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        generator.writeEndArray();
+        generator.close();
+    }
+
+    @RequestMapping(value = "/report/rebuild-anm-report-summaries", method = RequestMethod.POST)
     @ResponseBody
-    public List<ANMReport> getAllANMsIndicatorSummaries() {
-        return anmReportsRepository.fetchAllANMsReport();
+    public String rebuildANMReportSummaries() {
+        logger.info("Rebuilding monthly summaries of ANM reports.");
+        anmReportsRepository.rebuildMonthlySummaries();
+        return "Success.";
+    }
+
+    private void addFailures(ReportDataBatchResult result, Map<Integer, String> failures, List<Integer> indices) {
+        for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+            result.withFailure(indices.get(failure.getKey()), failure.getValue());
+        }
+    }
+
+    private void addResult(ReportDataBatchResult result, ReportDataBatchResult partResult, List<Integer> indices) {
+        addFailures(result, partResult.failures(), indices);
+        for (Map.Entry<Integer, Integer> existingCount : partResult.existingCounts().entrySet()) {
+            result.withExistingCount(indices.get(existingCount.getKey()), existingCount.getValue());
+        }
     }
 
     private void throwExceptionIfMandatoryDataIsNotPresentForANMReport(ReportingData reportingData) throws ReportDataMissingException {
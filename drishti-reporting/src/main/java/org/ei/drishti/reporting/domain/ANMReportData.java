@@ -20,13 +20,19 @@ import java.util.Date;
                 query = "select r from ANMReportData r, ANM a, Indicator i " +
                         "where r.anm=a.id and r.indicator = i.id and a.anmIdentifier = ? and r.date >= ? and r.date < ?"),
         @NamedQuery(name = ANMReportData.FIND_BY_EXTERNAL_IDENTIFIER,
-                query = "select r from ANMReportData r where r.externalId = ?")
+                query = "select r from ANMReportData r where r.externalId = ?"),
+        @NamedQuery(name = ANMReportData.FIND_BY_EXTERNAL_IDENTIFIERS,
+                query = "select r from ANMReportData r where r.externalId in (:externalIds)"),
+        @NamedQuery(name = ANMReportData.FIND_WITHOUT_EXTERNAL_IDENTIFIER_ON_DATES,
+                query = "select r from ANMReportData r where r.externalId is null and r.date in (:dates)")
 })
 public class ANMReportData {
     public static final String FIND_BY_ANM_IDENTIFIER_AND_DATE = "find.by.anm.identifier.and.date";
     public static final String FIND_BY_ANM_IDENTIFIER_WITH_INDICATOR_FOR_MONTH = "find.by.anm.identifier.with.indicator.for.month";
     public static final String FIND_BY_ANM_IDENTIFIER_FOR_REPORTING_MONTH = "find.by.anm.identifier.for.reporting.month";
     public static final String FIND_BY_EXTERNAL_IDENTIFIER = "find.by.external.identifier";
+    public static final String FIND_BY_EXTERNAL_IDENTIFIERS = "find.by.external.identifiers";
+    public static final String FIND_WITHOUT_EXTERNAL_IDENTIFIER_ON_DATES = "find.without.external.identifier.on.dates";
 
     public String id() {
         return id.toString();
@@ -61,6 +67,10 @@ public class ANMReportData {
         this.date = date;
     }
 
+    public ANM anm() {
+        return anm;
+    }
+
     public Indicator indicator() {
         return indicator;
     }
@@ -92,4 +102,8 @@ public class ANMReportData {
         return anm.anmIdentifier();
     }
 
+    public Integer anmId() {
+        return anm.id();
+    }
+
 }
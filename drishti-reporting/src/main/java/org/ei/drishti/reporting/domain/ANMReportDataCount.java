@@ -0,0 +1,58 @@
+package org.ei.drishti.reporting.domain;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import java.util.Date;
+
+public class ANMReportDataCount {
+    private final String anmIdentifier;
+    private final String indicator;
+    private final Date date;
+    private final String externalId;
+    private final long count;
+
+    public ANMReportDataCount(String anmIdentifier, String indicator, Date date, String externalId, Long count) {
+        this.anmIdentifier = anmIdentifier;
+        this.indicator = indicator;
+        this.date = date;
+        this.externalId = externalId;
+        this.count = count;
+    }
+
+    public String anmIdentifier() {
+        return anmIdentifier;
+    }
+
+    public String indicator() {
+        return indicator;
+    }
+
+    public Date date() {
+        return date;
+    }
+
+    public String externalId() {
+        return externalId;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
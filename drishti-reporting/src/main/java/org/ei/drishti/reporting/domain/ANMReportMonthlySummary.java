@@ -0,0 +1,113 @@
+package org.ei.drishti.reporting.domain;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * How many times an external id was reported against an indicator by an ANM in one reporting month, kept up to
+ * date as ANM report data is saved and deleted so that summaries do not have to be counted from the report data.
+ */
+@Entity
+@Table(name = "anm_report_monthly_summary")
+@NamedQueries({
+        @NamedQuery(name = ANMReportMonthlySummary.ADD_TO_TOTAL,
+                query = "update ANMReportMonthlySummary s set s.total = s.total + :quantity " +
+                        "where s.anm = :anm and s.indicator = :indicator " +
+                        "and s.reportingMonthEndDate = :reportingMonthEndDate and s.externalId = :externalId"),
+        @NamedQuery(name = ANMReportMonthlySummary.DELETE_EMPTY,
+                query = "delete from ANMReportMonthlySummary s where s.total <= 0"),
+        @NamedQuery(name = ANMReportMonthlySummary.COUNT_BY_ANM_IDENTIFIER_AND_DATE_RANGE,
+                query = "select new org.ei.drishti.reporting.domain.ANMReportDataCount(a.anmIdentifier, i.indicator, s.reportingMonthEndDate, s.externalId, s.total) " +
+                        "from ANMReportMonthlySummary s, ANM a, Indicator i " +
+                        "where s.anm = a.id and s.indicator = i.id and a.anmIdentifier = :anmIdentifier " +
+                        "and s.reportingMonthEndDate >= :startDate and s.reportingMonthEndDate < :endDate " +
+                        "order by i.indicator, s.reportingMonthEndDate"),
+        @NamedQuery(name = ANMReportMonthlySummary.COUNT_BY_DATE_RANGE,
+                query = "select a.anmIdentifier, i.indicator, s.reportingMonthEndDate, s.externalId, s.total " +
+                        "from ANMReportMonthlySummary s, ANM a, Indicator i " +
+                        "where s.anm = a.id and s.indicator = i.id " +
+                        "and s.reportingMonthEndDate >= :startDate and s.reportingMonthEndDate < :endDate " +
+                        "order by a.anmIdentifier, i.indicator, s.reportingMonthEndDate")
+})
+public class ANMReportMonthlySummary {
+    public static final String ADD_TO_TOTAL = "add.to.anm.report.monthly.summary.total";
+    public static final String DELETE_EMPTY = "delete.empty.anm.report.monthly.summaries";
+    public static final String COUNT_BY_ANM_IDENTIFIER_AND_DATE_RANGE = "count.by.anm.identifier.and.date.range";
+    public static final String COUNT_BY_DATE_RANGE = "count.by.date.range";
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @ManyToOne
+    @JoinColumn(name = "anmIdentifier", insertable = true, updatable = true)
+    private ANM anm;
+
+    @ManyToOne
+    @JoinColumn(name = "indicator", insertable = true, updatable = true)
+    private Indicator indicator;
+
+    @Column(name = "reporting_month_end_date")
+    private Date reportingMonthEndDate;
+
+    @Column(name = "externalId")
+    private String externalId;
+
+    @Column(name = "total")
+    private long total;
+
+    private ANMReportMonthlySummary() {
+    }
+
+    public ANMReportMonthlySummary(ANM anm, Indicator indicator, Date reportingMonthEndDate, String externalId, long total) {
+        this.anm = anm;
+        this.indicator = indicator;
+        this.reportingMonthEndDate = reportingMonthEndDate;
+        this.externalId = externalId;
+        this.total = total;
+    }
+
+    public ANM anm() {
+        return anm;
+    }
+
+    public Indicator indicator() {
+        return indicator;
+    }
+
+    public Date reportingMonthEndDate() {
+        return reportingMonthEndDate;
+    }
+
+    public String externalId() {
+        return externalId;
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public ANMReportMonthlySummary withTotal(long total) {
+        return new ANMReportMonthlySummary(anm, indicator, reportingMonthEndDate, externalId, total);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o, new String[]{"id"});
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, new String[]{"id"});
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
@@ -9,9 +9,15 @@ import java.util.Date;
 
 @Entity
 @Table(name = "annual_target")
-@NamedQuery(name = AnnualTarget.FIND_BY_ANM_AND_INDICATOR_AND_DATE, query = "select r from AnnualTarget r, ANM a, Indicator i where r.anmIdentifier=a.id and r.indicator=i.id and a.anmIdentifier=:anmIdentifier and i.indicator=:indicator and r.startDate<=:reportDate and r.endDate>=:reportDate")
+@NamedQueries({
+        @NamedQuery(name = AnnualTarget.FIND_BY_ANM_AND_INDICATOR_AND_DATE, query = "select r from AnnualTarget r, ANM a, Indicator i where r.anmIdentifier=a.id and r.indicator=i.id and a.anmIdentifier=:anmIdentifier and i.indicator=:indicator and r.startDate<=:reportDate and r.endDate>=:reportDate"),
+        @NamedQuery(name = AnnualTarget.FIND_INDICATOR_AND_TARGET_BY_ANM_AND_DATE, query = "select i.indicator, r.target from AnnualTarget r, ANM a, Indicator i where r.anmIdentifier=a.id and r.indicator=i.id and a.anmIdentifier=:anmIdentifier and r.startDate<=:reportDate and r.endDate>=:reportDate"),
+        @NamedQuery(name = AnnualTarget.FIND_ANM_INDICATOR_AND_TARGET_BY_DATE, query = "select a.anmIdentifier, i.indicator, r.target from AnnualTarget r, ANM a, Indicator i where r.anmIdentifier=a.id and r.indicator=i.id and r.startDate<=:reportDate and r.endDate>=:reportDate")
+})
 public class AnnualTarget {
     public static final String FIND_BY_ANM_AND_INDICATOR_AND_DATE = "find.by.anm.and.indicator.and.date";
+    public static final String FIND_INDICATOR_AND_TARGET_BY_ANM_AND_DATE = "find.indicator.and.target.by.anm.and.date";
+    public static final String FIND_ANM_INDICATOR_AND_TARGET_BY_DATE = "find.anm.indicator.and.target.by.date";
 
     @Id
     @Column(name = "id")
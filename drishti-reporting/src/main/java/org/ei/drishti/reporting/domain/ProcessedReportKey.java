@@ -0,0 +1,50 @@
+package org.ei.drishti.reporting.domain;
+
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+import javax.persistence.*;
+
+@Entity
+@Table(name = "processed_report_key")
+@NamedQuery(name = ProcessedReportKey.FIND_PROCESSED_REPORT_KEYS,
+        query = "select k.reportKey from ProcessedReportKey k where k.reportKey in (:reportKeys)")
+public class ProcessedReportKey {
+
+    public static final String FIND_PROCESSED_REPORT_KEYS = "find.processed.report.keys";
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "report_key")
+    private String reportKey;
+
+    private ProcessedReportKey() {
+    }
+
+    public ProcessedReportKey(String reportKey) {
+        this.reportKey = reportKey;
+    }
+
+    public String reportKey() {
+        return reportKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return EqualsBuilder.reflectionEquals(this, o, new String[]{"id"});
+    }
+
+    @Override
+    public int hashCode() {
+        return HashCodeBuilder.reflectionHashCode(this, new String[]{"id"});
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this);
+    }
+}
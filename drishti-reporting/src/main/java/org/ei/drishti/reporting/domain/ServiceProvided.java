@@ -18,13 +18,19 @@ import java.util.Date;
                         " where r.indicator = i.id and r.serviceProvider = p.id and p.type = spt.id" +
                         " and r.date >= ? and r.date < ?"),
         @NamedQuery(name = ServiceProvided.FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_ID,
-                query = "select r from ServiceProvided r where r.dristhiEntityId = ?")
+                query = "select r from ServiceProvided r where r.dristhiEntityId = ?"),
+        @NamedQuery(name = ServiceProvided.FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_IDS,
+                query = "select r from ServiceProvided r where r.dristhiEntityId in (:dristhiEntityIds)"),
+        @NamedQuery(name = ServiceProvided.FIND_SERVICE_PROVIDED_WITHOUT_DRISTHI_ENTITY_ID_ON_DATES,
+                query = "select r from ServiceProvided r where r.dristhiEntityId is null and r.date in (:dates)")
 })
 
 public class ServiceProvided {
     public static final String FIND_BY_ANM_IDENTIFIER_WITH_INDICATOR_FOR_MONTH = "find.service.provided.by.anm.identifier.with.indicator.for.month";
     public static final String FIND_SERVICE_PROVIDED_FOR_REPORTING_MONTH = "find.service.provided.for.reporting.month";
     public static final String FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_ID = "find.service.provided.for.dristhi.entity.id";
+    public static final String FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_IDS = "find.service.provided.for.dristhi.entity.ids";
+    public static final String FIND_SERVICE_PROVIDED_WITHOUT_DRISTHI_ENTITY_ID_ON_DATES = "find.service.provided.without.dristhi.entity.id.on.dates";
 
     @Id
     @Column(name = "id")
@@ -61,6 +67,26 @@ public class ServiceProvided {
         return this.dristhiEntityId;
     }
 
+    public String externalId() {
+        return externalId;
+    }
+
+    public Integer serviceProviderId() {
+        return serviceProvider.id();
+    }
+
+    public Integer indicatorId() {
+        return indicator.id();
+    }
+
+    public Integer locationId() {
+        return location.id();
+    }
+
+    public Date serviceProvidedDate() {
+        return date;
+    }
+
     public org.ei.drishti.domain.Location location() {
         return new org.ei.drishti.domain.Location(location.village(), location.subCenter(), location.phc().phcIdentifier());
     }
@@ -10,11 +10,15 @@ import javax.persistence.*;
 @Table(name = "dim_service_provider")
 @NamedQueries({
         @NamedQuery(name = ServiceProvider.FIND_BY_PHC_IDENTIFIER, query = "select r from ServiceProvider r, PHC p, ServiceProviderType s where r.serviceProvider = p.id and r.type = s.id and p.phcIdentifier=:phcIdentifier and s.type='PHC'"),
-        @NamedQuery(name = ServiceProvider.FIND_BY_ANM_IDENTIFIER, query = "select r from ServiceProvider r, SP_ANM a, ServiceProviderType s where r.serviceProvider = a.id and r.type = s.id and a.anmIdentifier=:anmIdentifier and s.type='ANM'")
+        @NamedQuery(name = ServiceProvider.FIND_BY_ANM_IDENTIFIER, query = "select r from ServiceProvider r, SP_ANM a, ServiceProviderType s where r.serviceProvider = a.id and r.type = s.id and a.anmIdentifier=:anmIdentifier and s.type='ANM'"),
+        @NamedQuery(name = ServiceProvider.FIND_ALL_PHCS_WITH_IDENTIFIER, query = "select p.phcIdentifier, r from ServiceProvider r, PHC p, ServiceProviderType s where r.serviceProvider = p.id and r.type = s.id and s.type='PHC'"),
+        @NamedQuery(name = ServiceProvider.FIND_ALL_ANMS_WITH_IDENTIFIER, query = "select a.anmIdentifier, r from ServiceProvider r, SP_ANM a, ServiceProviderType s where r.serviceProvider = a.id and r.type = s.id and s.type='ANM'")
 })
 public class ServiceProvider {
     public static final String FIND_BY_PHC_IDENTIFIER = "find.service.provider.by.phc.identifier";
     public static final String FIND_BY_ANM_IDENTIFIER = "find.service.provider.by.anm.identifier";
+    public static final String FIND_ALL_PHCS_WITH_IDENTIFIER = "find.all.phc.service.providers.with.identifier";
+    public static final String FIND_ALL_ANMS_WITH_IDENTIFIER = "find.all.anm.service.providers.with.identifier";
 
     @Id
     @Column(name = "id")
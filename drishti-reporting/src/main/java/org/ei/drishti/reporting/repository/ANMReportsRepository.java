@@ -5,7 +5,7 @@ import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.monitor.Probe;
 import org.ei.drishti.reporting.domain.ANM;
 import org.ei.drishti.reporting.domain.ANMReportData;
-import org.ei.drishti.reporting.domain.AnnualTarget;
+import org.ei.drishti.reporting.domain.ANMReportDataCount;
 import org.ei.drishti.reporting.domain.Indicator;
 import org.ei.drishti.reporting.repository.cache.ANMCacheableRepository;
 import org.ei.drishti.reporting.repository.cache.IndicatorCacheableRepository;
@@ -13,30 +13,42 @@ import org.ei.drishti.reporting.repository.cache.ReadOnlyCachingRepository;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
-import static ch.lambdaj.Lambda.*;
 import static java.lang.String.valueOf;
 import static org.ei.drishti.common.AllConstants.ReportDataParameters.*;
 import static org.ei.drishti.common.monitor.Metric.REPORTING_ANM_REPORTS_CACHE_TIME;
 import static org.ei.drishti.common.monitor.Metric.REPORTING_ANM_REPORTS_INSERT_TIME;
 import static org.ei.drishti.common.util.DateUtil.today;
-import static org.hamcrest.Matchers.*;
+import static org.ei.drishti.reporting.repository.ProcessedReportKeys.removeProcessed;
+import static org.ei.drishti.reporting.repository.ProcessedReportKeys.reportKeysOf;
 
 @Repository
 public class ANMReportsRepository {
     private ReportMonth reportMonth;
     private AllANMReportDataRepository anmReportDataRepository;
+    private AllANMReportMonthlySummariesRepository monthlySummariesRepository;
     private AllAnnualTargetsRepository annualTargetsRepository;
     private Monitor monitor;
 
     private ReadOnlyCachingRepository<ANM> cachedANMs;
     private ReadOnlyCachingRepository<Indicator> cachedIndicators;
+    private final BackfillMatches backfillMatches = new BackfillMatches();
 
     protected ANMReportsRepository() {
     }
@@ -45,13 +57,17 @@ public class ANMReportsRepository {
     public ANMReportsRepository(ANMCacheableRepository anmRepository,
                                 @Qualifier("anmReportsIndicatorRepository") IndicatorCacheableRepository indicatorRepository,
                                 AllANMReportDataRepository anmReportDataRepository,
-                                AllAnnualTargetsRepository annualTargetsRepository, Monitor monitor, ReportMonth reportMonth) {
+                                AllANMReportMonthlySummariesRepository monthlySummariesRepository,
+                                AllAnnualTargetsRepository annualTargetsRepository, Monitor monitor, ReportMonth reportMonth,
+                                @Value("#{drishti['reporting.cache.max.size']}") int cacheMaxSize,
+                                @Value("#{drishti['reporting.cache.time.to.live.in.seconds']}") long cacheTimeToLiveInSeconds) {
         this.anmReportDataRepository = anmReportDataRepository;
+        this.monthlySummariesRepository = monthlySummariesRepository;
         this.annualTargetsRepository = annualTargetsRepository;
         this.monitor = monitor;
         this.reportMonth = reportMonth;
-        cachedANMs = new ReadOnlyCachingRepository<>(anmRepository);
-        cachedIndicators = new ReadOnlyCachingRepository<>(indicatorRepository);
+        cachedANMs = new ReadOnlyCachingRepository<>(anmRepository, monitor, cacheMaxSize, cacheTimeToLiveInSeconds);
+        cachedIndicators = new ReadOnlyCachingRepository<>(indicatorRepository, monitor, cacheMaxSize, cacheTimeToLiveInSeconds);
     }
 
     @Transactional("anm_report")
@@ -62,86 +78,238 @@ public class ANMReportsRepository {
         monitor.end(probeForCache);
 
         int count = getCount(quantity);
+        List<ANMReportData> savedReportData = new ArrayList<>();
         Probe probeForInsert = monitor.start(REPORTING_ANM_REPORTS_INSERT_TIME);
         for (int i = 0; i < count; i++) {
             try {
-                anmReportDataRepository.save(anm, externalId, fetchedIndicator, LocalDate.parse(date).toDate());
+                Date reportDate = LocalDate.parse(date).toDate();
+                anmReportDataRepository.save(anm, externalId, fetchedIndicator, reportDate);
+                savedReportData.add(new ANMReportData(anm, externalId, fetchedIndicator, reportDate));
             } catch (Exception e) {
                 cachedANMs.clear(anm);
                 cachedIndicators.clear(fetchedIndicator);
             }
         }
+        monthlySummariesRepository.addAll(savedReportData);
         monitor.end(probeForInsert);
     }
 
-    //Todo: Need to refactor
+    /**
+     * Saves a batch of ANM report data in one transaction, looking up each distinct ANM and indicator once and
+     * inserting the rows with JDBC batches. A record that cannot be saved, for example because of an unknown ANM or
+     * indicator, does not stop the others. A record whose report key was already processed is skipped, as it was
+     * delivered before.
+     *
+     * @return the reason each record that was not saved failed, by its position in the batch
+     */
     @Transactional("anm_report")
-    public List<ANMIndicatorSummary> fetchANMSummary(String anmIdentifier) {
-        List<ANMIndicatorSummary> anmIndicatorSummaries = new ArrayList<>();
+    public Map<Integer, String> saveAll(List<ReportingData> reportingData) {
+        Map<Integer, String> failures = new HashMap<>();
+        Map<Integer, List<ANMReportData>> reportDataByRecord = resolveAll(reportingData, failures);
+        List<String> newReportKeys = removeProcessed(reportingData, reportDataByRecord,
+                anmReportDataRepository.findProcessedReportKeys(reportKeysOf(reportingData)));
+        List<ANMReportData> reportData = new ArrayList<>();
+        for (List<ANMReportData> reportDataOfRecord : reportDataByRecord.values()) {
+            reportData.addAll(reportDataOfRecord);
+        }
 
-        List<ANMReportData> allReportData = anmReportDataRepository.fetchByANMIdAndDate(anmIdentifier, reportMonth.startDateOfReportingYear());
+        Probe probeForInsert = monitor.start(REPORTING_ANM_REPORTS_INSERT_TIME);
+        anmReportDataRepository.saveAll(reportData);
+        anmReportDataRepository.saveProcessedReportKeys(newReportKeys);
+        monthlySummariesRepository.addAll(reportData);
+        monitor.end(probeForInsert);
+        return failures;
+    }
 
-        Collection<Indicator> indicators = getDistinctIndicators(allReportData);
-        for (Indicator indicator : indicators) {
-            List<ANMReportData> allReportDataForIndicator = filterReportsByIndicator(allReportData, indicator);
-            int aggregatedProgress = 0;
-            List<MonthSummary> monthSummaries = new ArrayList<>();
+    /**
+     * Saves a batch of recomputed ANM report data, skipping the reports that are already saved, so that replaying
+     * form submissions does not count their reports twice. A report is already saved when one with the same ANM,
+     * external id, indicator and date exists, and the backfill has not matched it to another replayed report yet; a
+     * record with a quantity only adds the reports it has beyond those. Reports without an external id are matched
+     * to the saved reports without one. On a dry run nothing is saved and only the counts are returned.
+     */
+    @Transactional("anm_report")
+    public ReportDataBatchResult backfillAll(List<ReportingData> reportingData, boolean dryRun, String backfillId) {
+        ReportDataBatchResult result = new ReportDataBatchResult(reportingData.size());
+        Map<Integer, String> failures = new HashMap<>();
+        Map<Integer, List<ANMReportData>> reportDataByRecord = resolveAll(reportingData, failures);
+        for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+            result.withFailure(failure.getKey(), failure.getValue());
+        }
 
-            for (LocalDate indexDate = new LocalDate(reportMonth.startDateOfReportingYear()); indexDate.isBefore(reportMonth.startDateOfNextReportingMonth(today())); indexDate = indexDate.plusMonths(1)) {
-                LocalDate reportingMonthEndDate = new LocalDate(indexDate).plusMonths(1);
-                List<ANMReportData> allReportDataForAMonth = filterReportsByMonth(allReportDataForIndicator, indexDate, reportMonth.endDateOfReportingMonthGivenStartDate(indexDate));
-                if (allReportDataForAMonth.size() == 0) {
-                    continue;
+        Set<String> externalIds = new HashSet<>();
+        Set<Date> datesWithoutExternalId = new HashSet<>();
+        for (List<ANMReportData> reportDataOfRecord : reportDataByRecord.values()) {
+            for (ANMReportData data : reportDataOfRecord) {
+                if (data.externalId() != null) {
+                    externalIds.add(data.externalId());
+                } else {
+                    datesWithoutExternalId.add(data.date());
                 }
+            }
+        }
+        List<ANMReportData> savedReportData = new ArrayList<>(anmReportDataRepository.findByExternalIds(externalIds));
+        savedReportData.addAll(anmReportDataRepository.findWithoutExternalIdOn(datesWithoutExternalId));
+        List<ANMReportData> reportData = backfillMatches.match(backfillId, reportDataByRecord, savedReportData,
+                new BackfillMatches.NaturalKey<ANMReportData>() {
+                    @Override
+                    public String of(ANMReportData data) {
+                        return backfillKeyOf(data);
+                    }
+                }, dryRun, result);
 
-                int currentProgress = allReportDataForAMonth.size();
-                aggregatedProgress += currentProgress;
-                List<String> externalIds = getAllExternalIds(allReportDataForAMonth);
+        if (!dryRun) {
+            Probe probeForInsert = monitor.start(REPORTING_ANM_REPORTS_INSERT_TIME);
+            anmReportDataRepository.saveAll(reportData);
+            monthlySummariesRepository.addAll(reportData);
+            monitor.end(probeForInsert);
+        }
+        return result;
+    }
 
-                monthSummaries.add(new MonthSummary(valueOf(reportingMonthEndDate.getMonthOfYear()), valueOf(reportingMonthEndDate.getYear()),
-                        valueOf(currentProgress), valueOf(aggregatedProgress), externalIds));
+    private Map<Integer, List<ANMReportData>> resolveAll(List<ReportingData> reportingData, Map<Integer, String> failures) {
+        Map<String, ANM> anms = new HashMap<>();
+        Map<String, Indicator> indicators = new HashMap<>();
+        Map<Integer, List<ANMReportData>> reportDataByRecord = new LinkedHashMap<>();
+
+        Probe probeForCache = monitor.start(REPORTING_ANM_REPORTS_CACHE_TIME);
+        for (int i = 0; i < reportingData.size(); i++) {
+            ReportingData data = reportingData.get(i);
+            try {
+                if (!anms.containsKey(data.get(ANM_IDENTIFIER))) {
+                    anms.put(data.get(ANM_IDENTIFIER), cachedANMs.fetch(new ANM(data.get(ANM_IDENTIFIER))));
+                }
+                if (!indicators.containsKey(data.get(INDICATOR))) {
+                    indicators.put(data.get(INDICATOR), cachedIndicators.fetch(new Indicator(data.get(INDICATOR))));
+                }
+                ANM anm = anms.get(data.get(ANM_IDENTIFIER));
+                Indicator indicator = indicators.get(data.get(INDICATOR));
+                if (anm == null || indicator == null) {
+                    failures.put(i, anm == null ? "Unknown ANM: " + data.get(ANM_IDENTIFIER) : "Unknown indicator: " + data.get(INDICATOR));
+                    continue;
+                }
+                Date date = LocalDate.parse(data.get(SERVICE_PROVIDED_DATE)).toDate();
+                int count = getCount(data.get(QUANTITY));
+                List<ANMReportData> reportData = new ArrayList<>();
+                for (int unit = 0; unit < count; unit++) {
+                    reportData.add(new ANMReportData(anm, data.get(EXTERNAL_ID), indicator, date));
+                }
+                reportDataByRecord.put(i, reportData);
+            } catch (Exception e) {
+                failures.put(i, e.toString());
             }
-            AnnualTarget annualTarget = annualTargetsRepository.fetchFor(anmIdentifier, indicator, today().toDate());
-            String target = annualTarget == null ? null : annualTarget.target();
-            anmIndicatorSummaries.add(new ANMIndicatorSummary(indicator.indicator(), target, monthSummaries));
         }
-        return anmIndicatorSummaries;
+        monitor.end(probeForCache);
+        return reportDataByRecord;
     }
 
-    @Transactional("anm_report")
-    public List<ANMReport> fetchAllANMsReport() {
-        List<ANM> allANMs = cachedANMs.fetchAll();
-        ArrayList<ANMReport> anmReports = new ArrayList<>();
-        for (ANM anm : allANMs) {
-            anmReports.add(new ANMReport(anm.anmIdentifier(), fetchANMSummary(anm.anmIdentifier())));
-        }
-        return anmReports;
+    private String backfillKeyOf(ANMReportData data) {
+        return data.anmId() + "|" + data.externalId() + "|" + data.indicator().id() + "|" + new LocalDate(data.date());
     }
 
-    private List<String> getAllExternalIds(List<ANMReportData> reportDataList) {
-        Collection<String> externalIds = selectDistinct(collect(reportDataList, on(ANMReportData.class).externalId()));
-        return new ArrayList<>(externalIds);
+    /**
+     * Summarises the reports of an ANM for the reporting year so far, per indicator and reporting month, from the
+     * monthly summaries kept up to date as report data is saved and deleted.
+     */
+    @Transactional("anm_report")
+    public List<ANMIndicatorSummary> fetchANMSummary(String anmIdentifier) {
+        List<ANMReportDataCount> counts = monthlySummariesRepository.countByANMIdAndDateRange(anmIdentifier,
+                reportMonth.startDateOfReportingYear(), reportMonth.startDateOfNextReportingMonth(today()).toDate());
+        Map<String, String> targets = counts.isEmpty()
+                ? Collections.<String, String>emptyMap()
+                : annualTargetsRepository.fetchAllFor(anmIdentifier, today().toDate());
+        return summarise(counts, targets);
     }
 
-    private Collection<Indicator> getDistinctIndicators(List<ANMReportData> reportDataList) {
-        return selectDistinct(collect(reportDataList, on(ANMReportData.class).indicator()));
+    /**
+     * Hands the report of every ANM to the handler, one ANM at a time. The monthly summaries of all ANMs are read
+     * in one pass ordered by ANM, so only those of the ANM being summarised are held in memory. ANMs without
+     * reports for the year come last, with no summaries.
+     */
+    @Transactional("anm_report")
+    public void fetchAllANMsReport(final ResultHandler<ANMReport> handler) {
+        final Map<String, Map<String, String>> targetsByANM = annualTargetsRepository.fetchAllByANMFor(today().toDate());
+        final Set<String> reportedANMs = new HashSet<>();
+        final List<ANMReportDataCount> countsOfANM = new ArrayList<>();
+
+        monthlySummariesRepository.countByDateRange(reportMonth.startDateOfReportingYear(),
+                reportMonth.startDateOfNextReportingMonth(today()).toDate(), new ResultHandler<ANMReportDataCount>() {
+            @Override
+            public void handle(ANMReportDataCount count) {
+                if (!countsOfANM.isEmpty() && !countsOfANM.get(0).anmIdentifier().equals(count.anmIdentifier())) {
+                    reportFor(countsOfANM, targetsByANM, handler);
+                    reportedANMs.add(countsOfANM.get(0).anmIdentifier());
+                    countsOfANM.clear();
+                }
+                countsOfANM.add(count);
+            }
+        });
+        if (!countsOfANM.isEmpty()) {
+            reportFor(countsOfANM, targetsByANM, handler);
+            reportedANMs.add(countsOfANM.get(0).anmIdentifier());
+        }
+
+        for (ANM anm : cachedANMs.fetchAll()) {
+            if (!reportedANMs.contains(anm.anmIdentifier())) {
+                handler.handle(new ANMReport(anm.anmIdentifier(), new ArrayList<ANMIndicatorSummary>()));
+            }
+        }
     }
 
-    private List<ANMReportData> filterReportsByMonth(List<ANMReportData> reportDataList, LocalDate startDate, LocalDate endDate) {
-        return filter(having(on(ANMReportData.class).date(), allOf(greaterThanOrEqualTo(startDate.toDate()), lessThanOrEqualTo(endDate.toDate()))), reportDataList);
+    private void reportFor(List<ANMReportDataCount> countsOfANM, Map<String, Map<String, String>> targetsByANM,
+                           ResultHandler<ANMReport> handler) {
+        String anmIdentifier = countsOfANM.get(0).anmIdentifier();
+        Map<String, String> targets = targetsByANM.get(anmIdentifier);
+        handler.handle(new ANMReport(anmIdentifier,
+                summarise(countsOfANM, targets == null ? Collections.<String, String>emptyMap() : targets)));
     }
 
-    private List<ANMReportData> filterReportsByIndicator(List<ANMReportData> reportDataList, Indicator indicator) {
-        return filter(having(on(ANMReportData.class).indicator(), equalTo(indicator)), reportDataList);
+    private List<ANMIndicatorSummary> summarise(List<ANMReportDataCount> counts, Map<String, String> targets) {
+        Map<String, SortedMap<LocalDate, MonthCount>> monthCountsByIndicator = new LinkedHashMap<>();
+        for (ANMReportDataCount count : counts) {
+            SortedMap<LocalDate, MonthCount> monthCounts = monthCountsByIndicator.get(count.indicator());
+            if (monthCounts == null) {
+                monthCounts = new TreeMap<>();
+                monthCountsByIndicator.put(count.indicator(), monthCounts);
+            }
+            LocalDate reportingMonthEndDate = reportMonth.endOfCurrentReportMonth(new LocalDate(count.date()));
+            MonthCount monthCount = monthCounts.get(reportingMonthEndDate);
+            if (monthCount == null) {
+                monthCount = new MonthCount();
+                monthCounts.put(reportingMonthEndDate, monthCount);
+            }
+            monthCount.add(count);
+        }
+
+        List<ANMIndicatorSummary> anmIndicatorSummaries = new ArrayList<>();
+        for (Map.Entry<String, SortedMap<LocalDate, MonthCount>> indicatorMonthCounts : monthCountsByIndicator.entrySet()) {
+            long aggregatedProgress = 0;
+            List<MonthSummary> monthSummaries = new ArrayList<>();
+            for (Map.Entry<LocalDate, MonthCount> monthCount : indicatorMonthCounts.getValue().entrySet()) {
+                LocalDate reportingMonthEndDate = monthCount.getKey();
+                long currentProgress = monthCount.getValue().count;
+                aggregatedProgress += currentProgress;
+                monthSummaries.add(new MonthSummary(valueOf(reportingMonthEndDate.getMonthOfYear()), valueOf(reportingMonthEndDate.getYear()),
+                        valueOf(currentProgress), valueOf(aggregatedProgress), new ArrayList<>(monthCount.getValue().externalIds)));
+            }
+            String indicator = indicatorMonthCounts.getKey();
+            anmIndicatorSummaries.add(new ANMIndicatorSummary(indicator, targets.get(indicator), monthSummaries));
+        }
+        return anmIndicatorSummaries;
     }
 
     private int getCount(String quantity) {
         return quantity == null ? 1 : Integer.parseInt(quantity);
     }
 
+    @Transactional("anm_report")
+    public void rebuildMonthlySummaries() {
+        monthlySummariesRepository.rebuild();
+    }
+
     @Transactional("anm_report")
     public void update(ReportDataUpdateRequest request) {
-        anmReportDataRepository.delete(request.indicator(), request.startDate(), request.endDate());
+        monthlySummariesRepository.removeAll(anmReportDataRepository.delete(request.indicator(), request.startDate(), request.endDate()));
         saveReportDataForIndicator(request.reportingData(), request.indicator());
     }
 
@@ -158,6 +326,16 @@ public class ANMReportsRepository {
 
     @Transactional("anm_report")
     public void delete(ReportDataDeleteRequest request) {
-        anmReportDataRepository.deleteReportsForExternalId(request.dristhiEntityId());
+        monthlySummariesRepository.removeAll(anmReportDataRepository.deleteReportsForExternalId(request.dristhiEntityId()));
+    }
+
+    private static class MonthCount {
+        private long count;
+        private final Set<String> externalIds = new LinkedHashSet<>();
+
+        private void add(ANMReportDataCount reportDataCount) {
+            count += reportDataCount.count();
+            externalIds.add(reportDataCount.externalId());
+        }
     }
 }
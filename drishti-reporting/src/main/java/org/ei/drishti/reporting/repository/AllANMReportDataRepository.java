@@ -8,14 +8,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
+import static java.util.Arrays.asList;
 import static org.ei.drishti.reporting.domain.ANMReportData.*;
 
 @Repository
 public class AllANMReportDataRepository {
+    private static final List<String> COLUMNS = asList("anmIdentifier", "externalId", "indicator", "date_");
     private DataAccessTemplate dataAccessTemplate;
+    private ProcessedReportKeys processedReportKeys;
 
     protected AllANMReportDataRepository() {
     }
@@ -23,22 +30,56 @@ public class AllANMReportDataRepository {
     @Autowired
     public AllANMReportDataRepository(@Qualifier("anmReportsDataAccessTemplate") DataAccessTemplate dataAccessTemplate) {
         this.dataAccessTemplate = dataAccessTemplate;
+        this.processedReportKeys = new ProcessedReportKeys(dataAccessTemplate);
     }
 
     public void save(ANM anm, String externalId, Indicator indicator, Date date) {
         dataAccessTemplate.save(new ANMReportData(anm, externalId, indicator, date));
     }
 
+    public void saveAll(List<ANMReportData> reportData) {
+        List<Object[]> rows = new ArrayList<>();
+        for (ANMReportData data : reportData) {
+            rows.add(new Object[]{data.anmId(), data.externalId(), data.indicator().id(), new java.sql.Date(data.date().getTime())});
+        }
+        dataAccessTemplate.batchInsert(ANMReportData.class, COLUMNS, rows);
+    }
+
+    public Set<String> findProcessedReportKeys(Collection<String> reportKeys) {
+        return processedReportKeys.findAmong(reportKeys);
+    }
+
+    public void saveProcessedReportKeys(Collection<String> reportKeys) {
+        processedReportKeys.addAll(reportKeys);
+    }
+
+    public List<ANMReportData> findByExternalIds(Collection<String> externalIds) {
+        if (externalIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return (List<ANMReportData>) dataAccessTemplate.findByNamedQueryAndNamedParam(FIND_BY_EXTERNAL_IDENTIFIERS,
+                "externalIds", externalIds);
+    }
+
+    public List<ANMReportData> findWithoutExternalIdOn(Collection<Date> dates) {
+        if (dates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return (List<ANMReportData>) dataAccessTemplate.findByNamedQueryAndNamedParam(FIND_WITHOUT_EXTERNAL_IDENTIFIER_ON_DATES,
+                "dates", dates);
+    }
+
     public List<ANMReportData> fetchByANMIdAndDate(String anmIdentifier, Date date) {
         return (List<ANMReportData>) dataAccessTemplate.findByNamedQueryAndNamedParam(FIND_BY_ANM_IDENTIFIER_AND_DATE,
                 new String[]{"anmIdentifier", "date"}, new Object[]{anmIdentifier, date});
 
     }
 
-    public void delete(String indicator, String startDate, String endDate) {
-        List result = dataAccessTemplate.findByNamedQuery(FIND_BY_ANM_IDENTIFIER_WITH_INDICATOR_FOR_MONTH,
+    public List<ANMReportData> delete(String indicator, String startDate, String endDate) {
+        List<ANMReportData> result = (List<ANMReportData>) dataAccessTemplate.findByNamedQuery(FIND_BY_ANM_IDENTIFIER_WITH_INDICATOR_FOR_MONTH,
                 new Object[]{indicator, LocalDate.parse(startDate).toDate(), LocalDate.parse(endDate).toDate()});
         dataAccessTemplate.deleteAll(result);
+        return result;
     }
 
     public List getReportsFor(String anmId, String startDate, String endDate) {
@@ -50,7 +91,9 @@ public class AllANMReportDataRepository {
         return dataAccessTemplate.findByNamedQuery(FIND_BY_EXTERNAL_IDENTIFIER, externalId);
     }
 
-    public void deleteReportsForExternalId(String externalId) {
-        dataAccessTemplate.deleteAll(getReportsForExternalId(externalId));
+    public List<ANMReportData> deleteReportsForExternalId(String externalId) {
+        List<ANMReportData> reports = (List<ANMReportData>) getReportsForExternalId(externalId);
+        dataAccessTemplate.deleteAll(reports);
+        return reports;
     }
 }
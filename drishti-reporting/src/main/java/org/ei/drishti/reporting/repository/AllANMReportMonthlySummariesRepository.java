@@ -0,0 +1,122 @@
+package org.ei.drishti.reporting.repository;
+
+import org.ei.drishti.common.domain.ReportMonth;
+import org.ei.drishti.reporting.domain.ANMReportData;
+import org.ei.drishti.reporting.domain.ANMReportDataCount;
+import org.ei.drishti.reporting.domain.ANMReportMonthlySummary;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.text.MessageFormat.format;
+import static org.ei.drishti.common.AllConstants.Report.REPORTING_MONTH_END_DAY;
+import static org.ei.drishti.reporting.domain.ANMReportMonthlySummary.*;
+
+@Repository
+public class AllANMReportMonthlySummariesRepository {
+    private DataAccessTemplate dataAccessTemplate;
+    private ReportMonth reportMonth;
+
+    protected AllANMReportMonthlySummariesRepository() {
+    }
+
+    @Autowired
+    public AllANMReportMonthlySummariesRepository(@Qualifier("anmReportsDataAccessTemplate") DataAccessTemplate dataAccessTemplate,
+                                                  ReportMonth reportMonth) {
+        this.dataAccessTemplate = dataAccessTemplate;
+        this.reportMonth = reportMonth;
+    }
+
+    /**
+     * Adds the report data to the totals of their summaries, creating the summaries that do not exist yet. The key
+     * of every summary is locked until the end of the transaction first, so that a concurrent transaction adding to
+     * the same summary waits for this one and then adds to the summary it created, instead of failing to insert it
+     * a second time.
+     */
+    public void addAll(List<ANMReportData> reportData) {
+        Map<ANMReportMonthlySummary, Long> totals = totalsByMonth(reportData);
+        List<String> keys = new ArrayList<>();
+        for (ANMReportMonthlySummary summary : totals.keySet()) {
+            keys.add(lockKeyOf(summary));
+        }
+        dataAccessTemplate.lockUntilEndOfTransaction(keys);
+        for (Map.Entry<ANMReportMonthlySummary, Long> summary : totals.entrySet()) {
+            if (addToTotal(summary.getKey(), summary.getValue()) == 0) {
+                dataAccessTemplate.save(summary.getKey().withTotal(summary.getValue()));
+            }
+        }
+    }
+
+    public void removeAll(List<ANMReportData> reportData) {
+        if (reportData.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<ANMReportMonthlySummary, Long> summary : totalsByMonth(reportData).entrySet()) {
+            addToTotal(summary.getKey(), -summary.getValue());
+        }
+        dataAccessTemplate.bulkUpdateByNamedQueryAndNamedParam(DELETE_EMPTY, new String[0], new Object[0]);
+    }
+
+    public List<ANMReportDataCount> countByANMIdAndDateRange(String anmIdentifier, Date startDate, Date endDate) {
+        return (List<ANMReportDataCount>) dataAccessTemplate.findByNamedQueryAndNamedParam(COUNT_BY_ANM_IDENTIFIER_AND_DATE_RANGE,
+                new String[]{"anmIdentifier", "startDate", "endDate"}, new Object[]{anmIdentifier, startDate, endDate});
+    }
+
+    public void countByDateRange(Date startDate, Date endDate, final ResultHandler<ANMReportDataCount> handler) {
+        dataAccessTemplate.scrollByNamedQueryAndNamedParam(COUNT_BY_DATE_RANGE, new String[]{"startDate", "endDate"},
+                new Object[]{startDate, endDate}, new ResultHandler<Object[]>() {
+            @Override
+            public void handle(Object[] row) {
+                handler.handle(new ANMReportDataCount((String) row[0], (String) row[1], (Date) row[2], (String) row[3], (Long) row[4]));
+            }
+        });
+    }
+
+    /**
+     * Throws the summaries away and counts them again from all the ANM report data, for when they are suspected
+     * to have drifted from it.
+     */
+    public void rebuild() {
+        String summaryTable = dataAccessTemplate.tableName(ANMReportMonthlySummary.class);
+        dataAccessTemplate.executeSQLUpdate("DELETE FROM " + summaryTable);
+        dataAccessTemplate.executeSQLUpdate(format(
+                "INSERT INTO {0} (anmIdentifier, indicator, reporting_month_end_date, externalId, total) " +
+                        "SELECT anmIdentifier, indicator, " +
+                        "CASE WHEN EXTRACT(DAY FROM date_) > {2} " +
+                        "THEN CAST(date_trunc(''month'', date_) + INTERVAL ''1 month {3} days'' AS DATE) " +
+                        "ELSE CAST(date_trunc(''month'', date_) + INTERVAL ''{3} days'' AS DATE) END, " +
+                        "externalId, COUNT(*) FROM {1} GROUP BY 1, 2, 3, 4",
+                summaryTable, dataAccessTemplate.tableName(ANMReportData.class),
+                String.valueOf(REPORTING_MONTH_END_DAY), String.valueOf(REPORTING_MONTH_END_DAY - 1)));
+    }
+
+    private int addToTotal(ANMReportMonthlySummary summary, long quantity) {
+        return dataAccessTemplate.bulkUpdateByNamedQueryAndNamedParam(ADD_TO_TOTAL,
+                new String[]{"quantity", "anm", "indicator", "reportingMonthEndDate", "externalId"},
+                new Object[]{quantity, summary.anm(), summary.indicator(), summary.reportingMonthEndDate(), summary.externalId()});
+    }
+
+    private String lockKeyOf(ANMReportMonthlySummary summary) {
+        return "anm_report_monthly_summary|" + summary.anm().id() + "|" + summary.indicator().id() + "|"
+                + new LocalDate(summary.reportingMonthEndDate()) + "|" + summary.externalId();
+    }
+
+    private Map<ANMReportMonthlySummary, Long> totalsByMonth(List<ANMReportData> reportData) {
+        Map<ANMReportMonthlySummary, Long> totals = new LinkedHashMap<>();
+        for (ANMReportData data : reportData) {
+            Date reportingMonthEndDate = reportMonth.endOfCurrentReportMonth(new LocalDate(data.date())).toDate();
+            ANMReportMonthlySummary summary = new ANMReportMonthlySummary(data.anm(), data.indicator(), reportingMonthEndDate,
+                    data.externalId(), 0);
+            Long total = totals.get(summary);
+            totals.put(summary, total == null ? 1 : total + 1);
+        }
+        return totals;
+    }
+}
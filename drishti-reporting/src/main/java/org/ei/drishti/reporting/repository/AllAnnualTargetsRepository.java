@@ -7,8 +7,13 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import static org.ei.drishti.reporting.domain.AnnualTarget.FIND_ANM_INDICATOR_AND_TARGET_BY_DATE;
 import static org.ei.drishti.reporting.domain.AnnualTarget.FIND_BY_ANM_AND_INDICATOR_AND_DATE;
+import static org.ei.drishti.reporting.domain.AnnualTarget.FIND_INDICATOR_AND_TARGET_BY_ANM_AND_DATE;
 
 @Repository
 public class AllAnnualTargetsRepository {
@@ -26,4 +31,30 @@ public class AllAnnualTargetsRepository {
         return (AnnualTarget) dataAccessTemplate.getUniqueResult(FIND_BY_ANM_AND_INDICATOR_AND_DATE,
                 new String[]{"anmIdentifier", "indicator", "reportDate"}, new Object[]{anmIdentifier, indicator.indicator(), reportDate});
     }
+
+    public Map<String, String> fetchAllFor(String anmIdentifier, Date reportDate) {
+        List<Object[]> indicatorsAndTargets = (List<Object[]>) dataAccessTemplate.findByNamedQueryAndNamedParam(
+                FIND_INDICATOR_AND_TARGET_BY_ANM_AND_DATE, new String[]{"anmIdentifier", "reportDate"},
+                new Object[]{anmIdentifier, reportDate});
+        Map<String, String> targets = new HashMap<>();
+        for (Object[] indicatorAndTarget : indicatorsAndTargets) {
+            targets.put((String) indicatorAndTarget[0], (String) indicatorAndTarget[1]);
+        }
+        return targets;
+    }
+
+    public Map<String, Map<String, String>> fetchAllByANMFor(Date reportDate) {
+        List<Object[]> anmsIndicatorsAndTargets = (List<Object[]>) dataAccessTemplate.findByNamedQueryAndNamedParam(
+                FIND_ANM_INDICATOR_AND_TARGET_BY_DATE, "reportDate", reportDate);
+        Map<String, Map<String, String>> targetsByANM = new HashMap<>();
+        for (Object[] anmIndicatorAndTarget : anmsIndicatorsAndTargets) {
+            Map<String, String> targets = targetsByANM.get((String) anmIndicatorAndTarget[0]);
+            if (targets == null) {
+                targets = new HashMap<>();
+                targetsByANM.put((String) anmIndicatorAndTarget[0], targets);
+            }
+            targets.put((String) anmIndicatorAndTarget[1], (String) anmIndicatorAndTarget[2]);
+        }
+        return targetsByANM;
+    }
 }
@@ -26,6 +26,10 @@ public class AllLocationsRepository {
 
     }
 
+    public List<Location> fetchAll() {
+        return dataAccessTemplate.loadAll(Location.class);
+    }
+
     public Location fetchByANMIdentifier(String anmIdentifier) {
         return (Location) dataAccessTemplate.findByNamedQueryAndNamedParam(Location.FIND_BY_ANM_IDENTIFIER,
                 new String[]{"anmIdentifier"}, new Object[]{anmIdentifier}).get(0);
@@ -6,6 +6,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.ei.drishti.reporting.domain.ServiceProvider.FIND_ALL_ANMS_WITH_IDENTIFIER;
+import static org.ei.drishti.reporting.domain.ServiceProvider.FIND_ALL_PHCS_WITH_IDENTIFIER;
 import static org.ei.drishti.reporting.domain.ServiceProvider.FIND_BY_ANM_IDENTIFIER;
 import static org.ei.drishti.reporting.domain.ServiceProvider.FIND_BY_PHC_IDENTIFIER;
 import static org.ei.drishti.reporting.domain.ServiceProviderType.ANM;
@@ -30,4 +36,14 @@ public class AllServiceProvidersRepository {
         return (ServiceProvider) dataAccessTemplate.getUniqueResult(FIND_BY_PHC_IDENTIFIER,
                 new String[]{"phcIdentifier"}, new Object[]{serviceProviderIdentifier});
     }
+
+    public Map<String, ServiceProvider> fetchAllBy(ServiceProviderType type) {
+        List<Object[]> rows = (List<Object[]>) dataAccessTemplate.findByNamedQuery(
+                ANM.equals(type) ? FIND_ALL_ANMS_WITH_IDENTIFIER : FIND_ALL_PHCS_WITH_IDENTIFIER);
+        Map<String, ServiceProvider> serviceProviders = new HashMap<>();
+        for (Object[] row : rows) {
+            serviceProviders.put((String) row[0], (ServiceProvider) row[1]);
+        }
+        return serviceProviders;
+    }
 }
@@ -6,12 +6,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
 
 @Repository
 public class  AllServicesProvidedRepository {
+    private static final List<String> COLUMNS = asList("service_provider", "externalId", "indicator", "date_", "location", "dristhi_entity_id");
     private DataAccessTemplate dataAccessTemplate;
+    private ProcessedReportKeys processedReportKeys;
 
     protected AllServicesProvidedRepository() {
     }
@@ -19,12 +27,23 @@ public class  AllServicesProvidedRepository {
     @Autowired
     public AllServicesProvidedRepository(@Qualifier("serviceProvidedDataAccessTemplate") DataAccessTemplate dataAccessTemplate) {
         this.dataAccessTemplate = dataAccessTemplate;
+        this.processedReportKeys = new ProcessedReportKeys(dataAccessTemplate);
     }
 
     public void save(ServiceProvider serviceProvider, String externalId, Indicator indicator, Date date, Location location, String dristhiEntityId) {
         dataAccessTemplate.save(new ServiceProvided(serviceProvider, externalId, indicator, date, location, dristhiEntityId));
     }
 
+    public void saveAll(List<ServiceProvided> servicesProvided) {
+        List<Object[]> rows = new ArrayList<>();
+        for (ServiceProvided serviceProvided : servicesProvided) {
+            rows.add(new Object[]{serviceProvided.serviceProviderId(), serviceProvided.externalId(), serviceProvided.indicatorId(),
+                    new java.sql.Date(serviceProvided.serviceProvidedDate().getTime()), serviceProvided.locationId(),
+                    serviceProvided.dristhiEntityId()});
+        }
+        dataAccessTemplate.batchInsert(ServiceProvided.class, COLUMNS, rows);
+    }
+
     public void delete(String indicator, String startDate, String endDate) {
         List result = dataAccessTemplate.findByNamedQuery(ServiceProvided.FIND_BY_ANM_IDENTIFIER_WITH_INDICATOR_FOR_MONTH,
                 indicator, LocalDate.parse(startDate).toDate(), LocalDate.parse(endDate).toDate());
@@ -35,6 +54,30 @@ public class  AllServicesProvidedRepository {
         return dataAccessTemplate.findByNamedQuery(ServiceProvidedReport.FIND_NEW_SERVICE_PROVIDED, token);
     }
 
+    public Set<String> findProcessedReportKeys(Collection<String> reportKeys) {
+        return processedReportKeys.findAmong(reportKeys);
+    }
+
+    public void saveProcessedReportKeys(Collection<String> reportKeys) {
+        processedReportKeys.addAll(reportKeys);
+    }
+
+    public List<ServiceProvided> findByDristhiEntityIds(Collection<String> dristhiEntityIds) {
+        if (dristhiEntityIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return (List<ServiceProvided>) dataAccessTemplate.findByNamedQueryAndNamedParam(
+                ServiceProvided.FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_IDS, "dristhiEntityIds", dristhiEntityIds);
+    }
+
+    public List<ServiceProvided> findWithoutDristhiEntityIdOn(Collection<Date> dates) {
+        if (dates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return (List<ServiceProvided>) dataAccessTemplate.findByNamedQueryAndNamedParam(
+                ServiceProvided.FIND_SERVICE_PROVIDED_WITHOUT_DRISTHI_ENTITY_ID_ON_DATES, "dates", dates);
+    }
+
     public List<ServiceProvided> getAllReportsForDristhiEntityID(String dristhiEntityID) {
         return dataAccessTemplate.findByNamedQuery(ServiceProvided.FIND_SERVICE_PROVIDED_FOR_DRISTHI_ENTITY_ID, dristhiEntityID);
     }
@@ -49,6 +92,10 @@ public class  AllServicesProvidedRepository {
 
     }
 
+    public long countNewReports(Integer token) {
+        return (Long) dataAccessTemplate.findByNamedQuery(ServiceProvidedReport.COUNT_NEW_SERVICE_PROVIDED, token).get(0);
+    }
+
     public void deleteReportsFor(String dristhiEntityId) {
         dataAccessTemplate.deleteAll(getAllReportsForDristhiEntityID(dristhiEntityId));
     }
@@ -6,13 +6,27 @@ import org.ei.drishti.reporting.domain.Token;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.join;
 
 @Repository
 public class AllTokensRepository {
     private static final String NAME_PARAMETER = "name";
     private static final String AGGREGATE_REPORTS_TOKEN_NAME = "aggregate-reports-token";
+    private static final String AGGREGATE_REPORTS_ACCEPTED_AHEAD_TOKEN_NAME = "aggregate-reports-accepted-ahead";
     private DataAccessTemplate dataAccessTemplate;
 
+    protected AllTokensRepository() {
+    }
+
     @Autowired
     public AllTokensRepository(@Qualifier("serviceProvidedDataAccessTemplate")
                                DataAccessTemplate dataAccessTemplate) {
@@ -20,22 +34,54 @@ public class AllTokensRepository {
     }
 
     public Integer getAggregateReportsToken() {
-        Token token = (Token) dataAccessTemplate
-                .getUniqueResult(Token.FIND_TOKEN_BY_NAME,
-                        new String[]{NAME_PARAMETER},
-                        new String[]{AGGREGATE_REPORTS_TOKEN_NAME});
+        Token token = tokenNamed(AGGREGATE_REPORTS_TOKEN_NAME);
         return token == null ? 0 : IntegerUtil.tryParse(token.value(), 0);
     }
 
+    @Transactional("service_provided")
     public void saveAggregateReportsToken(Integer newToken) {
-        Token token = (Token) dataAccessTemplate
+        save(AGGREGATE_REPORTS_TOKEN_NAME, newToken.toString());
+    }
+
+    /**
+     * The ranges of report ids, first id to last id, which the aggregator accepted although a batch before them
+     * was not accepted, so the aggregate reports token could not move past them yet.
+     */
+    public SortedMap<Integer, Integer> getAggregateReportsAcceptedAhead() {
+        Token token = tokenNamed(AGGREGATE_REPORTS_ACCEPTED_AHEAD_TOKEN_NAME);
+        SortedMap<Integer, Integer> ranges = new TreeMap<>();
+        if (token == null || isBlank(token.value())) {
+            return ranges;
+        }
+        for (String range : token.value().split(",")) {
+            String[] ids = range.split("-");
+            ranges.put(Integer.valueOf(ids[0]), Integer.valueOf(ids[1]));
+        }
+        return ranges;
+    }
+
+    @Transactional("service_provided")
+    public void saveAggregateReportsAcceptedAhead(SortedMap<Integer, Integer> ranges) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> range : ranges.entrySet()) {
+            values.add(range.getKey() + "-" + range.getValue());
+        }
+        save(AGGREGATE_REPORTS_ACCEPTED_AHEAD_TOKEN_NAME, join(values, ","));
+    }
+
+    private Token tokenNamed(String name) {
+        return (Token) dataAccessTemplate
                 .getUniqueResult(Token.FIND_TOKEN_BY_NAME,
                         new String[]{NAME_PARAMETER},
-                        new String[]{AGGREGATE_REPORTS_TOKEN_NAME});
+                        new String[]{name});
+    }
+
+    private void save(String name, String value) {
+        Token token = tokenNamed(name);
         if (token == null) {
-            dataAccessTemplate.save(new Token(AGGREGATE_REPORTS_TOKEN_NAME, newToken.toString()));
+            dataAccessTemplate.save(new Token(name, value));
         } else {
-            dataAccessTemplate.save(token.withValue(newToken.toString()));
+            dataAccessTemplate.save(token.withValue(value));
         }
     }
 }
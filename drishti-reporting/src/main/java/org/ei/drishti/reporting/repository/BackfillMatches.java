@@ -0,0 +1,95 @@
+package org.ei.drishti.reporting.repository;
+
+import org.ei.drishti.common.domain.ReportDataBatchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the reports a backfill replays to the reports that are already saved, by their natural key. A backfill
+ * sends its reports in batches, so for each of the most recent backfills it is remembered how many saved reports
+ * of each key it has accounted for: the saved reports it matched and, unless it is a dry run, the reports it
+ * added. A batch only matches the saved reports that the batches before it did not account for, so the result
+ * does not depend on where the batches split.
+ */
+class BackfillMatches {
+    private static final int MAXIMUM_BACKFILLS_KEPT = 10;
+
+    interface NaturalKey<T> {
+        String of(T report);
+    }
+
+    private final Map<String, Map<String, Integer>> accountedCountsByBackfill =
+            Collections.synchronizedMap(new LinkedHashMap<String, Map<String, Integer>>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Map<String, Integer>> eldest) {
+                    return size() > MAXIMUM_BACKFILLS_KEPT;
+                }
+            });
+
+    /**
+     * Leaves out of the reports of each record those that match a saved report, and tells the result how many
+     * that were by the position of the record.
+     *
+     * @return the reports to add
+     */
+    <T> List<T> match(String backfillId, Map<Integer, List<T>> reportsByRecord, List<T> savedReports,
+                      NaturalKey<T> naturalKey, boolean dryRun, ReportDataBatchResult result) {
+        Map<String, Integer> accountedCounts = accountedCountsOf(backfillId);
+        synchronized (accountedCounts) {
+            Map<String, Integer> unmatchedCounts = new HashMap<>();
+            for (T saved : savedReports) {
+                increment(unmatchedCounts, naturalKey.of(saved), 1);
+            }
+            for (Map.Entry<String, Integer> accounted : accountedCounts.entrySet()) {
+                if (unmatchedCounts.containsKey(accounted.getKey())) {
+                    increment(unmatchedCounts, accounted.getKey(), -accounted.getValue());
+                }
+            }
+
+            List<T> newReports = new ArrayList<>();
+            for (Map.Entry<Integer, List<T>> record : reportsByRecord.entrySet()) {
+                List<T> reportsOfRecord = record.getValue();
+                if (reportsOfRecord.isEmpty()) {
+                    continue;
+                }
+                String key = naturalKey.of(reportsOfRecord.get(0));
+                Integer unmatchedCount = unmatchedCounts.get(key);
+                int existingCount = Math.min(unmatchedCount == null ? 0 : Math.max(0, unmatchedCount), reportsOfRecord.size());
+                if (existingCount > 0) {
+                    increment(unmatchedCounts, key, -existingCount);
+                    result.withExistingCount(record.getKey(), existingCount);
+                }
+                increment(accountedCounts, key, dryRun ? existingCount : reportsOfRecord.size());
+                newReports.addAll(reportsOfRecord.subList(existingCount, reportsOfRecord.size()));
+            }
+            return newReports;
+        }
+    }
+
+    private Map<String, Integer> accountedCountsOf(String backfillId) {
+        if (backfillId == null) {
+            return new HashMap<>();
+        }
+        synchronized (accountedCountsByBackfill) {
+            Map<String, Integer> accountedCounts = accountedCountsByBackfill.get(backfillId);
+            if (accountedCounts == null) {
+                accountedCounts = new HashMap<>();
+                accountedCountsByBackfill.put(backfillId, accountedCounts);
+            }
+            return accountedCounts;
+        }
+    }
+
+    private void increment(Map<String, Integer> counts, String key, int by) {
+        if (by == 0) {
+            return;
+        }
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? by : count + by);
+    }
+}
@@ -1,15 +1,37 @@
 package org.ei.drishti.reporting.repository;
 
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.orm.hibernate3.HibernateCallback;
 import org.springframework.orm.hibernate3.HibernateTemplate;
 import org.springframework.stereotype.Component;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import static java.text.MessageFormat.format;
+import static org.apache.commons.lang3.StringUtils.join;
+import static org.apache.commons.lang3.StringUtils.repeat;
+
 @Component
 @Scope(value = "prototype")
 public class DataAccessTemplate extends HibernateTemplate {
+    private static final int JDBC_BATCH_SIZE = 500;
+    private static final int SCROLL_FETCH_SIZE = 1000;
 
     @Autowired
     public DataAccessTemplate(SessionFactory sessionFactory) {
@@ -19,4 +41,123 @@ public class DataAccessTemplate extends HibernateTemplate {
     public Object getUniqueResult(String namedQueryName, String[] parameterNames, Object[] parameterValues) {
         return DataAccessUtils.uniqueResult(findByNamedQueryAndNamedParam(namedQueryName, parameterNames, parameterValues));
     }
+
+    /**
+     * Runs the named query and hands each result row to the handler as it is read, fetching rows from the
+     * database a chunk at a time instead of loading the whole result. Must be called within a transaction.
+     */
+    public void scrollByNamedQueryAndNamedParam(final String queryName, final String[] parameterNames,
+                                                final Object[] parameterValues, final ResultHandler<Object[]> handler) {
+        execute(new HibernateCallback<Void>() {
+            @Override
+            public Void doInHibernate(Session session) throws HibernateException, SQLException {
+                Query query = session.getNamedQuery(queryName);
+                for (int i = 0; i < parameterNames.length; i++) {
+                    query.setParameter(parameterNames[i], parameterValues[i]);
+                }
+                query.setFetchSize(SCROLL_FETCH_SIZE);
+                ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        handler.handle(results.get());
+                    }
+                } finally {
+                    results.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Inserts the rows into the table of the given entity with JDBC batches, on the connection of the current
+     * session so that they are part of its transaction. Unlike save, nothing is loaded into the session, and the
+     * rows are not sent one statement at a time, which the identity ids of our tables would otherwise force.
+     */
+    public void batchInsert(final Class<?> entityClass, final List<String> columns, final List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        execute(new HibernateCallback<Void>() {
+            @Override
+            public Void doInHibernate(Session session) throws HibernateException, SQLException {
+                final String insert = format("INSERT INTO {0} ({1}) VALUES ({2})", tableName(entityClass), join(columns, ", "),
+                        repeat("?", ", ", columns.size()));
+                session.doWork(new Work() {
+                    @Override
+                    public void execute(Connection connection) throws SQLException {
+                        PreparedStatement statement = connection.prepareStatement(insert);
+                        try {
+                            for (int i = 0; i < rows.size(); i++) {
+                                Object[] row = rows.get(i);
+                                for (int column = 0; column < row.length; column++) {
+                                    statement.setObject(column + 1, row[column]);
+                                }
+                                statement.addBatch();
+                                if ((i + 1) % JDBC_BATCH_SIZE == 0) {
+                                    statement.executeBatch();
+                                }
+                            }
+                            statement.executeBatch();
+                        } finally {
+                            statement.close();
+                        }
+                    }
+                });
+                return null;
+            }
+        });
+    }
+
+    public int bulkUpdateByNamedQueryAndNamedParam(final String queryName, final String[] parameterNames,
+                                                   final Object[] parameterValues) {
+        return execute(new HibernateCallback<Integer>() {
+            @Override
+            public Integer doInHibernate(Session session) throws HibernateException, SQLException {
+                Query query = session.getNamedQuery(queryName);
+                for (int i = 0; i < parameterNames.length; i++) {
+                    query.setParameter(parameterNames[i], parameterValues[i]);
+                }
+                return query.executeUpdate();
+            }
+        });
+    }
+
+    public int executeSQLUpdate(final String sql) {
+        return execute(new HibernateCallback<Integer>() {
+            @Override
+            public Integer doInHibernate(Session session) throws HibernateException, SQLException {
+                return session.createSQLQuery(sql).executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Locks each of the keys until the end of the current transaction, taking the locks in order so that
+     * transactions locking some of the same keys wait for one another instead of deadlocking. Must be called within
+     * a transaction, as the locks are released as soon as it ends.
+     */
+    public void lockUntilEndOfTransaction(Collection<String> keys) {
+        final List<String> keysInOrder = new ArrayList<>(new TreeSet<>(keys));
+        if (keysInOrder.isEmpty()) {
+            return;
+        }
+        execute(new HibernateCallback<Void>() {
+            @Override
+            public Void doInHibernate(Session session) throws HibernateException, SQLException {
+                Query lock = session.createSQLQuery("SELECT 1 FROM (SELECT pg_advisory_xact_lock(hashtext(:key))) AS advisory_lock");
+                for (String key : keysInOrder) {
+                    lock.setParameter("key", key).uniqueResult();
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * The table of the entity, qualified with the default schema, for use in SQL.
+     */
+    public String tableName(Class<?> entityClass) {
+        return ((AbstractEntityPersister) getSessionFactory().getClassMetadata(entityClass)).getTableName();
+    }
 }
@@ -0,0 +1,78 @@
+package org.ei.drishti.reporting.repository;
+
+import org.ei.drishti.common.domain.ReportingData;
+import org.ei.drishti.reporting.domain.ProcessedReportKey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.common.AllConstants.ReportDataParameters.REPORT_KEY;
+
+/**
+ * The report keys of the report data records that were saved. Report data is delivered at least once, so a
+ * record that carries a report key is saved only if its key was not processed before, and its key is saved in
+ * the same transaction as its reports.
+ */
+class ProcessedReportKeys {
+    private static final List<String> COLUMNS = asList("report_key");
+    private final DataAccessTemplate dataAccessTemplate;
+
+    ProcessedReportKeys(DataAccessTemplate dataAccessTemplate) {
+        this.dataAccessTemplate = dataAccessTemplate;
+    }
+
+    Set<String> findAmong(Collection<String> reportKeys) {
+        if (reportKeys.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>((List<String>) dataAccessTemplate.findByNamedQueryAndNamedParam(
+                ProcessedReportKey.FIND_PROCESSED_REPORT_KEYS, "reportKeys", reportKeys));
+    }
+
+    void addAll(Collection<String> reportKeys) {
+        List<Object[]> rows = new ArrayList<>();
+        for (String reportKey : reportKeys) {
+            rows.add(new Object[]{reportKey});
+        }
+        dataAccessTemplate.batchInsert(ProcessedReportKey.class, COLUMNS, rows);
+    }
+
+    static Set<String> reportKeysOf(List<ReportingData> reportingData) {
+        Set<String> reportKeys = new HashSet<>();
+        for (ReportingData data : reportingData) {
+            if (data.get(REPORT_KEY) != null) {
+                reportKeys.add(data.get(REPORT_KEY));
+            }
+        }
+        return reportKeys;
+    }
+
+    /**
+     * Drops the records whose report key was processed before or appears earlier in the batch.
+     *
+     * @return the report keys of the records that are left
+     */
+    static <T> List<String> removeProcessed(List<ReportingData> reportingData, Map<Integer, T> recordsByPosition,
+                                            Set<String> processedReportKeys) {
+        Set<String> seen = new HashSet<>(processedReportKeys);
+        List<String> newReportKeys = new ArrayList<>();
+        for (Iterator<Integer> positions = recordsByPosition.keySet().iterator(); positions.hasNext(); ) {
+            String reportKey = reportingData.get(positions.next()).get(REPORT_KEY);
+            if (reportKey == null) {
+                continue;
+            }
+            if (seen.add(reportKey)) {
+                newReportKeys.add(reportKey);
+            } else {
+                positions.remove();
+            }
+        }
+        return newReportKeys;
+    }
+}
@@ -0,0 +1,8 @@
+package org.ei.drishti.reporting.repository;
+
+/**
+ * Receives query results one at a time, so that large results never have to be held in memory all together.
+ */
+public interface ResultHandler<T> {
+    void handle(T result);
+}
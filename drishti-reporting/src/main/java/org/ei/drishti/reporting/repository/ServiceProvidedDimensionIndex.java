@@ -0,0 +1,120 @@
+package org.ei.drishti.reporting.repository;
+
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+import org.ei.drishti.reporting.domain.Location;
+import org.ei.drishti.reporting.domain.ServiceProvider;
+import org.ei.drishti.reporting.domain.ServiceProviderType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.text.MessageFormat.format;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_DIMENSION_INDEX_LOAD_TIME;
+import static org.ei.drishti.common.util.DateUtil.millis;
+import static org.ei.drishti.reporting.domain.ServiceProviderType.ANM;
+import static org.ei.drishti.reporting.domain.ServiceProviderType.PHC;
+import static org.joda.time.DateTimeConstants.MILLIS_PER_MINUTE;
+
+/**
+ * In memory index of the locations and service providers that service provided reports refer to, so that saving
+ * a report does not query them. The whole index is loaded on first use and again once it is older than the
+ * refresh interval, if there is one. A location or service provider which is not in the index is looked up in the database and
+ * added to it when found, so rows inserted since the last load are picked up straight away.
+ */
+@Repository
+public class ServiceProvidedDimensionIndex {
+    private static Logger logger = LoggerFactory.getLogger(ServiceProvidedDimensionIndex.class.toString());
+
+    private AllLocationsRepository locationRepository;
+    private AllServiceProvidersRepository serviceProvidersRepository;
+    private Monitor monitor;
+    private long refreshIntervalInMillis;
+    private volatile Dimensions dimensions;
+
+    protected ServiceProvidedDimensionIndex() {
+    }
+
+    @Autowired
+    public ServiceProvidedDimensionIndex(AllLocationsRepository locationRepository,
+                                         AllServiceProvidersRepository serviceProvidersRepository, Monitor monitor,
+                                         @Value("#{drishti['reporting.dimension.index.refresh.interval.in.minutes']}") long refreshIntervalInMinutes) {
+        this.locationRepository = locationRepository;
+        this.serviceProvidersRepository = serviceProvidersRepository;
+        this.monitor = monitor;
+        this.refreshIntervalInMillis = refreshIntervalInMinutes * MILLIS_PER_MINUTE;
+    }
+
+    public Location location(String village, String subCenter, String phcIdentifier) {
+        Map<String, Location> locations = dimensions().locations;
+        String key = locationKey(village, subCenter, phcIdentifier);
+        Location location = locations.get(key);
+        if (location == null) {
+            location = locationRepository.fetchBy(village, subCenter, phcIdentifier);
+            if (location != null) {
+                locations.put(key, location);
+            }
+        }
+        return location;
+    }
+
+    public ServiceProvider serviceProvider(String serviceProviderIdentifier, ServiceProviderType type) {
+        Dimensions current = dimensions();
+        Map<String, ServiceProvider> serviceProviders = ANM.equals(type) ? current.anms : current.phcs;
+        ServiceProvider serviceProvider = serviceProviderIdentifier == null ? null : serviceProviders.get(serviceProviderIdentifier);
+        if (serviceProvider == null) {
+            serviceProvider = serviceProvidersRepository.fetchBy(serviceProviderIdentifier, type);
+            if (serviceProvider != null && serviceProviderIdentifier != null) {
+                serviceProviders.put(serviceProviderIdentifier, serviceProvider);
+            }
+        }
+        return serviceProvider;
+    }
+
+    public synchronized void refresh() {
+        Probe probe = monitor.start(REPORTING_DIMENSION_INDEX_LOAD_TIME);
+        Dimensions loadedDimensions = new Dimensions(millis());
+        for (Location location : locationRepository.fetchAll()) {
+            loadedDimensions.locations.put(locationKey(location.village(), location.subCenter(), location.phc().phcIdentifier()), location);
+        }
+        loadedDimensions.anms.putAll(serviceProvidersRepository.fetchAllBy(ANM));
+        loadedDimensions.phcs.putAll(serviceProvidersRepository.fetchAllBy(PHC));
+        dimensions = loadedDimensions;
+        monitor.end(probe);
+        logger.info(format("Loaded service provided dimension index. Locations: {0}, ANMs: {1}, PHCs: {2}",
+                loadedDimensions.locations.size(), loadedDimensions.anms.size(), loadedDimensions.phcs.size()));
+    }
+
+    private Dimensions dimensions() {
+        Dimensions current = dimensions;
+        if (current == null || (refreshIntervalInMillis > 0 && millis() - current.loadedAt >= refreshIntervalInMillis)) {
+            synchronized (this) {
+                if (current == dimensions) {
+                    refresh();
+                }
+            }
+            current = dimensions;
+        }
+        return current;
+    }
+
+    private String locationKey(String village, String subCenter, String phcIdentifier) {
+        return phcIdentifier + "|" + subCenter + "|" + village;
+    }
+
+    private static class Dimensions {
+        private final long loadedAt;
+        private final Map<String, Location> locations = new ConcurrentHashMap<>();
+        private final Map<String, ServiceProvider> anms = new ConcurrentHashMap<>();
+        private final Map<String, ServiceProvider> phcs = new ConcurrentHashMap<>();
+
+        private Dimensions(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.ei.drishti.reporting.repository;
 
 import org.ei.drishti.common.AllConstants;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
 import org.ei.drishti.common.domain.ReportDataDeleteRequest;
 import org.ei.drishti.common.domain.ReportDataUpdateRequest;
 import org.ei.drishti.common.domain.ReportingData;
@@ -8,6 +9,7 @@ import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.monitor.Probe;
 import org.ei.drishti.reporting.domain.Indicator;
 import org.ei.drishti.reporting.domain.Location;
+import org.ei.drishti.reporting.domain.ServiceProvided;
 import org.ei.drishti.reporting.domain.ServiceProvidedReport;
 import org.ei.drishti.reporting.domain.ServiceProvider;
 import org.ei.drishti.reporting.repository.cache.IndicatorCacheableRepository;
@@ -15,38 +17,50 @@ import org.ei.drishti.reporting.repository.cache.ReadOnlyCachingRepository;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import static java.util.Arrays.asList;
+import static org.apache.commons.lang3.StringUtils.join;
+import static org.ei.drishti.common.AllConstants.ReportDataParameters.*;
 import static org.ei.drishti.common.monitor.Metric.REPORTING_SERVICE_PROVIDED_CACHE_TIME;
 import static org.ei.drishti.common.monitor.Metric.REPORTING_SERVICE_PROVIDED_INSERT_TIME;
 import static org.ei.drishti.reporting.domain.ServiceProviderType.parse;
+import static org.ei.drishti.reporting.repository.ProcessedReportKeys.removeProcessed;
+import static org.ei.drishti.reporting.repository.ProcessedReportKeys.reportKeysOf;
 
 @Repository
 public class ServicesProvidedRepository {
-    private AllServiceProvidersRepository serviceProvidersRepository;
     private AllServicesProvidedRepository servicesProvidedRepository;
     private Monitor monitor;
 
     private ReadOnlyCachingRepository<Indicator> cachedIndicators;
-    private AllLocationsRepository locationRepository;
+    private ServiceProvidedDimensionIndex dimensionIndex;
+    private final BackfillMatches backfillMatches = new BackfillMatches();
 
     protected ServicesProvidedRepository() {
     }
 
     @Autowired
     public ServicesProvidedRepository(@Qualifier("serviceProvidedIndicatorRepository") IndicatorCacheableRepository indicatorRepository,
-                                      AllLocationsRepository locationRepository,
-                                      AllServiceProvidersRepository serviceProvidersRepository,
-                                      AllServicesProvidedRepository servicesProvidedRepository, Monitor monitor) {
-        this.serviceProvidersRepository = serviceProvidersRepository;
+                                      ServiceProvidedDimensionIndex dimensionIndex,
+                                      AllServicesProvidedRepository servicesProvidedRepository, Monitor monitor,
+                                      @Value("#{drishti['reporting.cache.max.size']}") int cacheMaxSize,
+                                      @Value("#{drishti['reporting.cache.time.to.live.in.seconds']}") long cacheTimeToLiveInSeconds) {
+        this.dimensionIndex = dimensionIndex;
         this.servicesProvidedRepository = servicesProvidedRepository;
         this.monitor = monitor;
-        cachedIndicators = new ReadOnlyCachingRepository<>(indicatorRepository);
-        this.locationRepository = locationRepository;
+        cachedIndicators = new ReadOnlyCachingRepository<>(indicatorRepository, monitor, cacheMaxSize, cacheTimeToLiveInSeconds);
     }
 
     @Transactional("service_provided")
@@ -55,8 +69,8 @@ public class ServicesProvidedRepository {
         Probe probeForCache = monitor.start(REPORTING_SERVICE_PROVIDED_CACHE_TIME);
         Indicator fetchedIndicator = cachedIndicators.fetch(new Indicator(indicator));
         Date dates = LocalDate.parse(date).toDate();
-        Location location = locationRepository.fetchBy(village, subCenter, phcIdentifier);
-        ServiceProvider serviceProvider = serviceProvidersRepository.fetchBy(serviceProviderIdentifier, parse(serviceProviderType));
+        Location location = dimensionIndex.location(village, subCenter, phcIdentifier);
+        ServiceProvider serviceProvider = dimensionIndex.serviceProvider(serviceProviderIdentifier, parse(serviceProviderType));
         monitor.end(probeForCache);
 
         int count = getCount(quantity);
@@ -71,6 +85,133 @@ public class ServicesProvidedRepository {
         monitor.end(probeForInsert);
     }
 
+    /**
+     * Saves a batch of service provided report data in one transaction. Each distinct indicator, location and
+     * service provider is looked up once for the whole batch and the rows are inserted with JDBC batches. A record
+     * that cannot be saved, for example because of an unknown indicator or location, does not stop the others from
+     * being saved. A record whose report key was already processed is skipped, as it was delivered before.
+     *
+     * @return the reason each record that was not saved failed, by its position in the batch
+     */
+    @Transactional("service_provided")
+    public Map<Integer, String> saveAll(List<ReportingData> reportingData) {
+        Map<Integer, String> failures = new HashMap<>();
+        Map<Integer, List<ServiceProvided>> servicesProvidedByRecord = resolveAll(reportingData, failures);
+        List<String> newReportKeys = removeProcessed(reportingData, servicesProvidedByRecord,
+                servicesProvidedRepository.findProcessedReportKeys(reportKeysOf(reportingData)));
+        List<ServiceProvided> servicesProvided = new ArrayList<>();
+        for (List<ServiceProvided> servicesProvidedOfRecord : servicesProvidedByRecord.values()) {
+            servicesProvided.addAll(servicesProvidedOfRecord);
+        }
+
+        Probe probeForInsert = monitor.start(REPORTING_SERVICE_PROVIDED_INSERT_TIME);
+        servicesProvidedRepository.saveAll(servicesProvided);
+        servicesProvidedRepository.saveProcessedReportKeys(newReportKeys);
+        monitor.end(probeForInsert);
+        return failures;
+    }
+
+    /**
+     * Saves a batch of recomputed service provided report data, skipping the reports that are already saved, so that
+     * replaying form submissions does not count their reports twice. A report is already saved when one with the
+     * same service provider, external id, indicator, date, location and entity id exists, and the backfill has not
+     * matched it to another replayed report yet; a record with a quantity only adds the reports it has beyond those.
+     * Reports without an entity id are matched to the saved reports without one. On a dry run nothing is saved and
+     * only the counts are returned.
+     */
+    @Transactional("service_provided")
+    public ReportDataBatchResult backfillAll(List<ReportingData> reportingData, boolean dryRun, String backfillId) {
+        ReportDataBatchResult result = new ReportDataBatchResult(reportingData.size());
+        Map<Integer, String> failures = new HashMap<>();
+        Map<Integer, List<ServiceProvided>> servicesProvidedByRecord = resolveAll(reportingData, failures);
+        for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+            result.withFailure(failure.getKey(), failure.getValue());
+        }
+
+        Set<String> dristhiEntityIds = new HashSet<>();
+        Set<Date> datesWithoutDristhiEntityId = new HashSet<>();
+        for (List<ServiceProvided> servicesProvidedOfRecord : servicesProvidedByRecord.values()) {
+            for (ServiceProvided serviceProvided : servicesProvidedOfRecord) {
+                if (serviceProvided.dristhiEntityId() != null) {
+                    dristhiEntityIds.add(serviceProvided.dristhiEntityId());
+                } else {
+                    datesWithoutDristhiEntityId.add(serviceProvided.serviceProvidedDate());
+                }
+            }
+        }
+        List<ServiceProvided> savedServicesProvided = new ArrayList<>(servicesProvidedRepository.findByDristhiEntityIds(dristhiEntityIds));
+        savedServicesProvided.addAll(servicesProvidedRepository.findWithoutDristhiEntityIdOn(datesWithoutDristhiEntityId));
+        List<ServiceProvided> servicesProvided = backfillMatches.match(backfillId, servicesProvidedByRecord, savedServicesProvided,
+                new BackfillMatches.NaturalKey<ServiceProvided>() {
+                    @Override
+                    public String of(ServiceProvided serviceProvided) {
+                        return backfillKeyOf(serviceProvided);
+                    }
+                }, dryRun, result);
+
+        if (!dryRun) {
+            Probe probeForInsert = monitor.start(REPORTING_SERVICE_PROVIDED_INSERT_TIME);
+            servicesProvidedRepository.saveAll(servicesProvided);
+            monitor.end(probeForInsert);
+        }
+        return result;
+    }
+
+    private Map<Integer, List<ServiceProvided>> resolveAll(List<ReportingData> reportingData, Map<Integer, String> failures) {
+        Map<String, Indicator> indicators = new HashMap<>();
+        Map<String, Location> locations = new HashMap<>();
+        Map<String, ServiceProvider> serviceProviders = new HashMap<>();
+        Map<Integer, List<ServiceProvided>> servicesProvidedByRecord = new LinkedHashMap<>();
+
+        Probe probeForCache = monitor.start(REPORTING_SERVICE_PROVIDED_CACHE_TIME);
+        for (int i = 0; i < reportingData.size(); i++) {
+            ReportingData data = reportingData.get(i);
+            try {
+                if (!indicators.containsKey(data.get(INDICATOR))) {
+                    indicators.put(data.get(INDICATOR), cachedIndicators.fetch(new Indicator(data.get(INDICATOR))));
+                }
+                String locationKey = join(asList(data.get(VILLAGE), data.get(SUB_CENTER), data.get(PHC)), "|");
+                if (!locations.containsKey(locationKey)) {
+                    locations.put(locationKey, dimensionIndex.location(data.get(VILLAGE), data.get(SUB_CENTER), data.get(PHC)));
+                }
+                String serviceProviderKey = data.get(SERVICE_PROVIDER_TYPE) + "|" + data.get(ANM_IDENTIFIER);
+                if (!serviceProviders.containsKey(serviceProviderKey)) {
+                    serviceProviders.put(serviceProviderKey,
+                            dimensionIndex.serviceProvider(data.get(ANM_IDENTIFIER), parse(data.get(SERVICE_PROVIDER_TYPE))));
+                }
+                Indicator indicator = indicators.get(data.get(INDICATOR));
+                Location location = locations.get(locationKey);
+                ServiceProvider serviceProvider = serviceProviders.get(serviceProviderKey);
+                if (indicator == null) {
+                    failures.put(i, "Unknown indicator: " + data.get(INDICATOR));
+                    continue;
+                }
+                if (location == null || serviceProvider == null) {
+                    failures.put(i, location == null ? "Unknown location: " + locationKey : "Unknown service provider: " + serviceProviderKey);
+                    continue;
+                }
+                Date date = LocalDate.parse(data.get(SERVICE_PROVIDED_DATE)).toDate();
+                int count = getCount(data.get(QUANTITY));
+                List<ServiceProvided> servicesProvided = new ArrayList<>();
+                for (int unit = 0; unit < count; unit++) {
+                    servicesProvided.add(new ServiceProvided(serviceProvider, data.get(EXTERNAL_ID), indicator, date, location,
+                            data.get(DRISTHI_ENTITY_ID)));
+                }
+                servicesProvidedByRecord.put(i, servicesProvided);
+            } catch (Exception e) {
+                failures.put(i, e.toString());
+            }
+        }
+        monitor.end(probeForCache);
+        return servicesProvidedByRecord;
+    }
+
+    private String backfillKeyOf(ServiceProvided serviceProvided) {
+        return join(asList(serviceProvided.serviceProviderId(), serviceProvided.externalId(), serviceProvided.indicatorId(),
+                new LocalDate(serviceProvided.serviceProvidedDate()), serviceProvided.locationId(),
+                serviceProvided.dristhiEntityId()), "|");
+    }
+
     @Transactional("service_provided")
     public void update(ReportDataUpdateRequest request) {
         servicesProvidedRepository.delete(request.indicator(), request.startDate(), request.endDate());
@@ -107,6 +248,11 @@ public class ServicesProvidedRepository {
        return servicesProvidedRepository.getNewReports(token, numberOfRowsToFetch);
     }
 
+    @Transactional("service_provided")
+    public long countNewReports(Integer token) {
+        return servicesProvidedRepository.countNewReports(token);
+    }
+
     @Transactional("service_provided")
     public void delete(ReportDataDeleteRequest request) {
         servicesProvidedRepository.deleteReportsFor(request.dristhiEntityId());
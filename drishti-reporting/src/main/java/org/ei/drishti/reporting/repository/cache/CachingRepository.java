@@ -1,52 +1,47 @@
 package org.ei.drishti.reporting.repository.cache;
 
-import java.util.HashMap;
+import org.ei.drishti.common.monitor.Monitor;
+
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+
+import static org.ei.drishti.reporting.repository.cache.ConcurrentCache.NO_EXPIRY;
+import static org.ei.drishti.reporting.repository.cache.ConcurrentCache.UNBOUNDED;
 
 public class CachingRepository<T> {
     private CacheableRepository<T> cacheableRepository;
-    private Map<T, T> cache;
-    private static ReentrantLock lock = new ReentrantLock();
+    private ConcurrentCache<T> cache;
 
-    public CachingRepository(CacheableRepository<T> cacheableRepository) {
+    public CachingRepository(CacheableRepository<T> cacheableRepository, Monitor monitor) {
+        this(cacheableRepository, monitor, UNBOUNDED, NO_EXPIRY);
+    }
+
+    public CachingRepository(final CacheableRepository<T> cacheableRepository, Monitor monitor,
+                             int maxSize, long timeToLiveInSeconds) {
         this.cacheableRepository = cacheableRepository;
-        cache = new HashMap<>();
+        cache = new ConcurrentCache<>(new ConcurrentCache.Loader<T>() {
+            @Override
+            public T load(T object) {
+                T objectInDB = cacheableRepository.fetch(object);
+                if (objectInDB == null) {
+                    cacheableRepository.save(object);
+                    cacheableRepository.flush();
+                    objectInDB = cacheableRepository.fetch(object);
+                }
+                return objectInDB;
+            }
+        }, monitor, maxSize, timeToLiveInSeconds);
     }
 
     public T fetch(T object) {
-        if (cache.containsKey(object)) {
-            return cache.get(object);
-        }
-
-        saveToCache(object);
         return cache.get(object);
     }
 
     public void clear(T object) {
-        if (cache.containsKey(object)) {
-            cache.remove(object);
-        }
+        cache.remove(object);
     }
 
-    private void saveToCache(T object) {
-        lock.lock();
-        try {
-            if (cache.containsKey(object)) {
-                return;
-            }
-
-            T objectInDB = cacheableRepository.fetch(object);
-            if (objectInDB == null) {
-                cacheableRepository.save(object);
-                cacheableRepository.flush();
-                objectInDB = cacheableRepository.fetch(object);
-            }
-            cache.put(object, objectInDB);
-        } finally {
-            lock.unlock();
-        }
+    public void clearAll() {
+        cache.clear();
     }
 
     public List<T> fetchAll() {
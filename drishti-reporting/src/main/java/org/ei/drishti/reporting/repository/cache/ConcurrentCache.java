@@ -0,0 +1,184 @@
+package org.ei.drishti.reporting.repository.cache;
+
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.monitor.Probe;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.ei.drishti.common.monitor.Metric.REPORTING_CACHE_HITS;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_CACHE_LOAD_TIME;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_CACHE_MISSES;
+import static org.ei.drishti.common.util.DateUtil.millis;
+import static org.joda.time.DateTimeConstants.MILLIS_PER_SECOND;
+
+/**
+ * Cache shared by the caching repositories. Threads asking for the same missing key wait for a single load
+ * instead of loading it once each, and loads of different keys do not wait for each other. A load that finds
+ * nothing is not cached. When bounded, the oldest entries are evicted first; when given a time to live, entries
+ * are loaded again once it has passed.
+ */
+class ConcurrentCache<T> {
+    static final int UNBOUNDED = 0;
+    static final long NO_EXPIRY = 0;
+    private static final int HITS_PER_STATISTICS_REPORT = 1000;
+
+    interface Loader<T> {
+        T load(T key);
+    }
+
+    private final Loader<T> loader;
+    private final Monitor monitor;
+    private final int maxSize;
+    private final long timeToLiveInMillis;
+    private final ConcurrentMap<T, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final Queue<T> keysInLoadOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ConcurrentCache(Loader<T> loader, Monitor monitor, int maxSize, long timeToLiveInSeconds) {
+        this.loader = loader;
+        this.monitor = monitor;
+        this.maxSize = Math.max(UNBOUNDED, maxSize);
+        this.timeToLiveInMillis = Math.max(NO_EXPIRY, timeToLiveInSeconds) * MILLIS_PER_SECOND;
+    }
+
+    T get(T key) {
+        while (true) {
+            Entry<T> entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.hasExpired()) {
+                    recordHit();
+                    return entry.value();
+                }
+                remove(key, entry);
+                continue;
+            }
+
+            Entry<T> newEntry = new Entry<>(key, loader);
+            if (entries.putIfAbsent(key, newEntry) == null) {
+                return load(key, newEntry);
+            }
+        }
+    }
+
+    void remove(T key) {
+        Entry<T> entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry);
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        keysInLoadOrder.clear();
+    }
+
+    private T load(T key, Entry<T> entry) {
+        misses.incrementAndGet();
+        Probe probe = monitor.start(REPORTING_CACHE_LOAD_TIME);
+        try {
+            entry.load(timeToLiveInMillis);
+            T value = entry.value();
+            if (value == null) {
+                remove(key, entry);
+                return null;
+            }
+            if (maxSize != UNBOUNDED) {
+                keysInLoadOrder.add(key);
+                evictOldestEntries();
+            }
+            return value;
+        } catch (RuntimeException e) {
+            remove(key, entry);
+            throw e;
+        } finally {
+            monitor.end(probe);
+            reportStatistics();
+        }
+    }
+
+    private void evictOldestEntries() {
+        while (entries.size() > maxSize) {
+            T oldestKey = keysInLoadOrder.poll();
+            if (oldestKey == null) {
+                return;
+            }
+            entries.remove(oldestKey);
+        }
+    }
+
+    private void remove(T key, Entry<T> entry) {
+        if (entries.remove(key, entry) && maxSize != UNBOUNDED) {
+            keysInLoadOrder.remove(key);
+        }
+    }
+
+    private void recordHit() {
+        if (hits.incrementAndGet() >= HITS_PER_STATISTICS_REPORT) {
+            reportStatistics();
+        }
+    }
+
+    private void reportStatistics() {
+        long hitsSinceLastReport = hits.getAndSet(0);
+        long missesSinceLastReport = misses.getAndSet(0);
+        if (hitsSinceLastReport + missesSinceLastReport > 0) {
+            monitor.addObservationFor(REPORTING_CACHE_HITS, hitsSinceLastReport);
+            monitor.addObservationFor(REPORTING_CACHE_MISSES, missesSinceLastReport);
+        }
+    }
+
+    private static class Entry<T> {
+        private final FutureTask<T> value;
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(final T key, final Loader<T> loader) {
+            value = new FutureTask<>(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return loader.load(key);
+                }
+            });
+        }
+
+        void load(long timeToLiveInMillis) {
+            value.run();
+            if (timeToLiveInMillis != NO_EXPIRY) {
+                expiresAt = millis() + timeToLiveInMillis;
+            }
+        }
+
+        boolean hasExpired() {
+            return millis() >= expiresAt;
+        }
+
+        T value() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return value.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -1,50 +1,41 @@
 package org.ei.drishti.reporting.repository.cache;
 
-import java.util.HashMap;
+import org.ei.drishti.common.monitor.Monitor;
+
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+
+import static org.ei.drishti.reporting.repository.cache.ConcurrentCache.NO_EXPIRY;
+import static org.ei.drishti.reporting.repository.cache.ConcurrentCache.UNBOUNDED;
 
 public class ReadOnlyCachingRepository<T> {
     private ReadOnlyCacheableRepository<T> cacheableRepository;
-    private Map<T, T> cache;
-    private static ReentrantLock lock = new ReentrantLock();
+    private ConcurrentCache<T> cache;
+
+    public ReadOnlyCachingRepository(ReadOnlyCacheableRepository<T> cacheableRepository, Monitor monitor) {
+        this(cacheableRepository, monitor, UNBOUNDED, NO_EXPIRY);
+    }
 
-    public ReadOnlyCachingRepository(ReadOnlyCacheableRepository<T> cacheableRepository) {
+    public ReadOnlyCachingRepository(final ReadOnlyCacheableRepository<T> cacheableRepository, Monitor monitor,
+                                     int maxSize, long timeToLiveInSeconds) {
         this.cacheableRepository = cacheableRepository;
-        cache = new HashMap<>();
+        cache = new ConcurrentCache<>(new ConcurrentCache.Loader<T>() {
+            @Override
+            public T load(T object) {
+                return cacheableRepository.fetch(object);
+            }
+        }, monitor, maxSize, timeToLiveInSeconds);
     }
 
     public T fetch(T object) {
-        if (cache.containsKey(object)) {
-            return cache.get(object);
-        }
-
-        return writeToCache(object);
+        return cache.get(object);
     }
 
-    public void clear(T object){
-        if (cache.containsKey(object)) {
-            cache.remove(object);
-        }
+    public void clear(T object) {
+        cache.remove(object);
     }
 
-    private T writeToCache(T object) {
-        lock.lock();
-        try {
-            if (cache.containsKey(object)) {
-                return cache.get(object);
-            }
-
-            T objectInDB = cacheableRepository.fetch(object);
-            if (objectInDB == null) {
-                return null;
-            }
-            cache.put(object, objectInDB);
-        } finally {
-            lock.unlock();
-        }
-        return cache.get(object);
+    public void clearAll() {
+        cache.clear();
     }
 
     public List<T> fetchAll() {
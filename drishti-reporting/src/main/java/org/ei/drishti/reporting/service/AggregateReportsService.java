@@ -5,6 +5,7 @@ import com.google.gson.reflect.TypeToken;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.message.BasicNameValuePair;
 import org.ei.drishti.common.domain.ReportMonth;
+import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.util.HttpAgent;
 import org.ei.drishti.common.util.HttpResponse;
 import org.ei.drishti.dto.aggregatorResponse.AggregatorResponseDTO;
@@ -18,18 +19,34 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.text.MessageFormat.format;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang.exception.ExceptionUtils.getFullStackTrace;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_AGGREGATOR_LAG_ROWS;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_AGGREGATOR_LAG_SECONDS;
+import static org.ei.drishti.common.util.DateUtil.millis;
 import static org.ei.drishti.common.util.EasyMap.mapOf;
+import static org.joda.time.DateTimeConstants.MILLIS_PER_SECOND;
 
+/**
+ * Exports service provided reports to the aggregator. Each run keeps sending batches until the aggregator has
+ * caught up. While the backlog is large, several batches are kept in flight at once, fewer when the aggregator
+ * slows down, and the token only moves past a batch once it and every batch before it have been accepted.
+ * The aggregator appends what it is sent, so when a batch is not accepted no more batches are sent, and the
+ * batches already in flight after it that are accepted are remembered and not sent again by the next run.
+ */
 @Service
 public class AggregateReportsService {
 
@@ -41,7 +58,13 @@ public class AggregateReportsService {
     private AllTokensRepository tokenRepository;
     private ServicesProvidedRepository servicesProvidedRepository;
     private ReportMonth reportMonth;
+    private Monitor monitor;
+    private AggregatedReportsCache aggregatedReportsCache;
     private int numberOfReportsSentInABatch;
+    private int maxBatchesInFlight;
+    private long targetLatencyInMillis;
+    private long catchUpLagInRows;
+    private long caughtUpAt = millis();
 
     protected AggregateReportsService() {
     }
@@ -50,18 +73,26 @@ public class AggregateReportsService {
     public AggregateReportsService(@Value("#{drishti['aggregator.dataset.url']}") String aggregatorDataSetUrl,
                                    @Value("#{drishti['aggregated.dataset.url']}") String aggregatedDataSetUrl,
                                    @Value("#{drishti['number.of.reports.sent.in.a.batch']}") int numberOfReportsSentInABatch,
+                                   @Value("#{drishti['aggregator.max.batches.in.flight']}") int maxBatchesInFlight,
+                                   @Value("#{drishti['aggregator.target.latency.in.milliseconds']}") long targetLatencyInMillis,
+                                   @Value("#{drishti['aggregator.catch.up.lag.in.rows']}") long catchUpLagInRows,
                                    HttpAgent httpAgent, AllTokensRepository tokenRepository,
-                                   ServicesProvidedRepository servicesProvidedRepository, ReportMonth reportMonth) {
+                                   ServicesProvidedRepository servicesProvidedRepository, ReportMonth reportMonth, Monitor monitor,
+                                   AggregatedReportsCache aggregatedReportsCache) {
         this.aggregatorDataSetUrl = aggregatorDataSetUrl;
         this.aggregatedDataSetUrl = aggregatedDataSetUrl;
         this.numberOfReportsSentInABatch = numberOfReportsSentInABatch;
+        this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+        this.targetLatencyInMillis = targetLatencyInMillis;
+        this.catchUpLagInRows = catchUpLagInRows;
         this.httpAgent = httpAgent;
         this.tokenRepository = tokenRepository;
         this.servicesProvidedRepository = servicesProvidedRepository;
         this.reportMonth = reportMonth;
+        this.monitor = monitor;
+        this.aggregatedReportsCache = aggregatedReportsCache;
     }
 
-    @Transactional("service_provided")
     public void sendReportsToAggregator() {
         if (!lock.tryLock()) {
             logger.warn("Not Aggregating reports. It is already in progress.");
@@ -70,13 +101,14 @@ public class AggregateReportsService {
         try {
             Integer token = tokenRepository.getAggregateReportsToken();
             logger.info(format("Trying to aggregate reports. Report Token: {0}", token));
-            List<ServiceProvidedReport> reports = servicesProvidedRepository.getNewReports(token, this.numberOfReportsSentInABatch);
-            if (reports.isEmpty()) {
+            long lagInRows = servicesProvidedRepository.countNewReports(token);
+            reportLag(lagInRows);
+            if (lagInRows == 0) {
                 logger.info("No new reports to aggregate.");
                 return;
             }
-            logger.info(format("Got reports to aggregate. Number of reports: {0}", reports.size()));
-            update(reports);
+            logger.info(format("Got reports to aggregate. Number of reports: {0}", lagInRows));
+            export(token, lagInRows);
         } catch (Exception e) {
             logger.error(MessageFormat.format("{0} occurred while trying to aggregate reports. Message: {1} with stack trace {2}",
                     e.toString(), e.getMessage(), getFullStackTrace(e)));
@@ -86,17 +118,143 @@ public class AggregateReportsService {
         }
     }
 
-    private void update(List<ServiceProvidedReport> reports) {
-        String reportJson = new Gson().toJson(mapDomainToDTO(reports));
-        HttpResponse response = sendToAggregator(reportJson);
+    private void export(Integer token, long lagInRows) {
+        SortedMap<Integer, Integer> acceptedAhead = tokenRepository.getAggregateReportsAcceptedAhead();
+        Deque<Batch> batchesInFlight = new ArrayDeque<>();
+        Integer lastSentId = token;
+        boolean allSent = false;
+        RuntimeException failure = null;
+        int window = 1;
 
-        if (!response.isSuccess()) {
-            throw new RuntimeException(format("Updating data to Aggregator with url {0} failed with error: {0}", aggregatorDataSetUrl, response.body()));
+        while (true) {
+            int batchesAllowedInFlight = lagInRows >= catchUpLagInRows ? window : 1;
+            while (!allSent && failure == null && batchesInFlight.size() < batchesAllowedInFlight) {
+                List<ServiceProvidedReport> reports = servicesProvidedRepository.getNewReports(lastSentId, numberOfReportsSentInABatch);
+                if (reports.isEmpty()) {
+                    allSent = true;
+                    break;
+                }
+                lastSentId = reports.get(reports.size() - 1).id();
+                allSent = reports.size() < numberOfReportsSentInABatch;
+                batchesInFlight.add(send(reports, acceptedAhead));
+            }
+            if (batchesInFlight.isEmpty()) {
+                break;
+            }
+
+            Batch batch = batchesInFlight.poll();
+            try {
+                long latency = batch.awaitAcceptance();
+                invalidateAggregatedReportsOf(batch);
+                if (failure == null) {
+                    tokenRepository.saveAggregateReportsToken(batch.lastId());
+                    logger.info(format("Updated report token to: {0}", batch.lastId()));
+                    if (removeRangesUpTo(acceptedAhead, batch.lastId())) {
+                        tokenRepository.saveAggregateReportsAcceptedAhead(acceptedAhead);
+                    }
+                    lagInRows = Math.max(0, lagInRows - batch.size());
+                    reportLag(lagInRows);
+                } else if (!batch.sentReports.isEmpty()) {
+                    acceptedAhead.put(batch.sentReports.get(0).id(), batch.sentReports.get(batch.sentReports.size() - 1).id());
+                    tokenRepository.saveAggregateReportsAcceptedAhead(acceptedAhead);
+                    logger.info(format("Aggregator accepted reports up to: {0} after a batch it did not accept.", batch.lastId()));
+                }
+                window = latency > targetLatencyInMillis ? Math.max(1, window / 2) : Math.min(maxBatchesInFlight, window + 1);
+            } catch (RuntimeException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
         }
+    }
 
-        Integer id = reports.get(reports.size() - 1).id();
-        tokenRepository.saveAggregateReportsToken(id);
-        logger.info(format("Updated report token to: {0}", id));
+    private Batch send(List<ServiceProvidedReport> reports, SortedMap<Integer, Integer> acceptedAhead) {
+        List<ServiceProvidedReport> reportsToSend = new ArrayList<>();
+        for (ServiceProvidedReport report : reports) {
+            if (!isIn(acceptedAhead, report.id())) {
+                reportsToSend.add(report);
+            }
+        }
+        if (reportsToSend.isEmpty()) {
+            return new Batch(reports, reportsToSend, null);
+        }
+        String reportJson = new Gson().toJson(mapDomainToDTO(reportsToSend));
+        logger.info(format("Sending report data to Aggregator. URL: {0}, data: {1}",
+                aggregatorDataSetUrl, "update=" + reportJson));
+        return new Batch(reports, reportsToSend, httpAgent.putAsync(aggregatorDataSetUrl, mapOf("update", reportJson)));
+    }
+
+    private boolean removeRangesUpTo(SortedMap<Integer, Integer> ranges, Integer id) {
+        boolean removed = false;
+        for (Iterator<Integer> lastIds = ranges.values().iterator(); lastIds.hasNext(); ) {
+            if (lastIds.next() <= id) {
+                lastIds.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    private boolean isIn(SortedMap<Integer, Integer> ranges, Integer id) {
+        SortedMap<Integer, Integer> rangesStartingUpToId = ranges.headMap(id + 1);
+        return !rangesStartingUpToId.isEmpty() && ranges.get(rangesStartingUpToId.lastKey()) >= id;
+    }
+
+    private void invalidateAggregatedReportsOf(Batch batch) {
+        for (ServiceProvidedReport report : batch.reports) {
+            LocalDate date = LocalDate.parse(report.date());
+            aggregatedReportsCache.invalidate(report.anmIdentifier(), reportMonth.reportingMonth(date), reportMonth.reportingYear(date));
+        }
+    }
+
+    private void reportLag(long lagInRows) {
+        if (lagInRows == 0) {
+            caughtUpAt = millis();
+        }
+        monitor.addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, lagInRows);
+        monitor.addObservationFor(REPORTING_AGGREGATOR_LAG_SECONDS, (millis() - caughtUpAt) / MILLIS_PER_SECOND);
+    }
+
+    private class Batch {
+        private final List<ServiceProvidedReport> reports;
+        private final List<ServiceProvidedReport> sentReports;
+        private final Future<HttpResponse> response;
+        private final long sentAt = millis();
+
+        private Batch(List<ServiceProvidedReport> reports, List<ServiceProvidedReport> sentReports, Future<HttpResponse> response) {
+            this.reports = reports;
+            this.sentReports = sentReports;
+            this.response = response;
+        }
+
+        private long awaitAcceptance() {
+            if (response == null) {
+                return 0;
+            }
+            HttpResponse httpResponse;
+            try {
+                httpResponse = response.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(format("Updating data to Aggregator with url {0} failed.", aggregatorDataSetUrl), e.getCause());
+            }
+            if (!httpResponse.isSuccess()) {
+                throw new RuntimeException(format("Updating data to Aggregator with url {0} failed with error: {1}",
+                        aggregatorDataSetUrl, httpResponse.body()));
+            }
+            return millis() - sentAt;
+        }
+
+        private Integer lastId() {
+            return reports.get(reports.size() - 1).id();
+        }
+
+        private int size() {
+            return reports.size();
+        }
     }
 
     private List<ServiceProvidedReportDTO> mapDomainToDTO(List<ServiceProvidedReport> reports) {
@@ -123,12 +281,6 @@ public class AggregateReportsService {
                 .withNRHMReportYear(reportMonth.reportingYear(LocalDate.parse(report.date())));
     }
 
-    private HttpResponse sendToAggregator(String reportJson) {
-        logger.info(format("Sending report data to Aggregator. URL: {0}, data: {1}",
-                aggregatorDataSetUrl, "update=" + reportJson));
-        return httpAgent.put(aggregatorDataSetUrl, mapOf("update", reportJson));
-    }
-
     public List<AggregatorResponseDTO> getAggregatedReports(String anmIdentifier, int month, int year) {
         //http://bamboo.io/datasets/c67218ce415e4722a9f3b00882cd5a7b\?query\='{"anm_identifier": "demo1","nrhm_report_year":2013, "nrhm_report_month":10}'
         String queryParams = URLEncodedUtils.format(
@@ -0,0 +1,120 @@
+package org.ei.drishti.reporting.service;
+
+import org.ei.drishti.common.domain.ReportMonth;
+import org.ei.drishti.dto.report.AggregatedReportsDTO;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.ei.drishti.common.util.DateUtil.millis;
+import static org.ei.drishti.common.util.DateUtil.today;
+import static org.joda.time.DateTimeConstants.MILLIS_PER_MINUTE;
+
+/**
+ * Aggregated reports of an ANM for a reporting month, as last fetched from the aggregator. Closed reporting months
+ * are kept much longer than the current one, and a month is dropped as soon as reports for it are sent to the
+ * aggregator. A version that changes when a month is invalidated lets a caller tell whether what it fetched may
+ * already be out of date, so that it is not cached. Versions are kept for stripes of months rather than each one,
+ * so an invalidation now and then needlessly stops another month from being cached.
+ */
+@Component
+public class AggregatedReportsCache {
+    private static final int VERSION_STRIPES = 1024;
+
+    private final ReportMonth reportMonth;
+    private final long closedMonthTimeToLiveInMillis;
+    private final long currentMonthTimeToLiveInMillis;
+    private final int maxSize;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    @Autowired
+    public AggregatedReportsCache(ReportMonth reportMonth,
+                                  @Value("#{drishti['aggregated.reports.cache.closed.month.ttl.in.minutes']}") long closedMonthTimeToLiveInMinutes,
+                                  @Value("#{drishti['aggregated.reports.cache.current.month.ttl.in.minutes']}") long currentMonthTimeToLiveInMinutes,
+                                  @Value("#{drishti['reporting.cache.max.size']}") int maxSize) {
+        this.reportMonth = reportMonth;
+        this.closedMonthTimeToLiveInMillis = closedMonthTimeToLiveInMinutes * MILLIS_PER_MINUTE;
+        this.currentMonthTimeToLiveInMillis = currentMonthTimeToLiveInMinutes * MILLIS_PER_MINUTE;
+        this.maxSize = maxSize;
+    }
+
+    public AggregatedReportsDTO get(String anmIdentifier, int month, int year) {
+        Entry entry = entries.get(key(anmIdentifier, month, year));
+        return entry == null || entry.hasExpired() ? null : entry.reports;
+    }
+
+    public long version(String anmIdentifier, int month, int year) {
+        return versions.get(stripe(key(anmIdentifier, month, year)));
+    }
+
+    /**
+     * Caches the reports unless the cache was invalidated after the given version was read, in which case they may
+     * have been fetched before the aggregator got the latest reports, or the cache is full of unexpired entries.
+     */
+    public void put(String anmIdentifier, int month, int year, AggregatedReportsDTO reports, long versionWhenFetched) {
+        if (maxSize > 0 && entries.size() >= maxSize) {
+            removeExpiredEntries();
+            if (entries.size() >= maxSize) {
+                return;
+            }
+        }
+        String key = key(anmIdentifier, month, year);
+        entries.put(key, new Entry(reports, millis() + timeToLiveInMillis(month, year)));
+        if (versions.get(stripe(key)) != versionWhenFetched) {
+            entries.remove(key);
+        }
+    }
+
+    public void invalidate(String anmIdentifier, int month, int year) {
+        String key = key(anmIdentifier, month, year);
+        versions.incrementAndGet(stripe(key));
+        entries.remove(key);
+    }
+
+    private long timeToLiveInMillis(int month, int year) {
+        LocalDate today = today();
+        int currentYear = reportMonth.reportingYear(today);
+        int currentMonth = reportMonth.reportingMonth(today);
+        boolean isClosed = year < currentYear || (year == currentYear && month < currentMonth);
+        return isClosed ? closedMonthTimeToLiveInMillis : currentMonthTimeToLiveInMillis;
+    }
+
+    private void removeExpiredEntries() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().hasExpired()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    private String key(String anmIdentifier, int month, int year) {
+        return anmIdentifier + "|" + month + "|" + year;
+    }
+
+    private static class Entry {
+        private final AggregatedReportsDTO reports;
+        private final long expiresAt;
+
+        private Entry(AggregatedReportsDTO reports, long expiresAt) {
+            this.reports = reports;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean hasExpired() {
+            return millis() >= expiresAt;
+        }
+    }
+}
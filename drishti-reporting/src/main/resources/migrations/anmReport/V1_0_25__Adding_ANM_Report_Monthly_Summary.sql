@@ -0,0 +1,14 @@
+CREATE TABLE anm_report.anm_report_monthly_summary (ID SERIAL, anmIdentifier INTEGER NOT NULL, indicator INTEGER NOT NULL, reporting_month_end_date DATE NOT NULL, externalId VARCHAR NOT NULL, total INTEGER NOT NULL,
+  CONSTRAINT pk_anm_report_monthly_summary PRIMARY KEY (ID),
+  CONSTRAINT FK_ARMS_DA_ID FOREIGN KEY (anmIdentifier) REFERENCES anm_report.dim_anm (ID),
+  CONSTRAINT FK_ARMS_DI_ID FOREIGN KEY (indicator) REFERENCES anm_report.dim_indicator (ID),
+  CONSTRAINT U_ARMS_AI_IN_RM_EI UNIQUE (anmIdentifier, indicator, reporting_month_end_date, externalId));
+
+CREATE INDEX I_ARMS_RM_AI ON anm_report.anm_report_monthly_summary (reporting_month_end_date, anmIdentifier);
+
+INSERT INTO anm_report.anm_report_monthly_summary (anmIdentifier, indicator, reporting_month_end_date, externalId, total)
+  SELECT anmIdentifier, indicator,
+    CASE WHEN EXTRACT(DAY FROM date_) > 25 THEN CAST(date_trunc('month', date_) + INTERVAL '1 month 24 days' AS DATE)
+    ELSE CAST(date_trunc('month', date_) + INTERVAL '24 days' AS DATE) END,
+    externalId, COUNT(*)
+  FROM anm_report.anm_report_data GROUP BY 1, 2, 3, 4;
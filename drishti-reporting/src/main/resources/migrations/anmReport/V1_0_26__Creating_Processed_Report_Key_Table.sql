@@ -0,0 +1,3 @@
+CREATE TABLE anm_report.processed_report_key (ID SERIAL, report_key VARCHAR NOT NULL,
+  CONSTRAINT pk_processed_report_key PRIMARY KEY (ID),
+  CONSTRAINT U_PROCESSED_REPORT_KEY UNIQUE (report_key));
@@ -7,6 +7,7 @@ import org.ei.drishti.reporting.domain.Location;
 import org.ei.drishti.reporting.domain.PHC;
 import org.ei.drishti.reporting.service.ANMService;
 import org.ei.drishti.reporting.service.AggregateReportsService;
+import org.ei.drishti.reporting.service.AggregatedReportsCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
@@ -17,6 +18,8 @@ import static java.util.Arrays.asList;
 import static org.ei.drishti.common.util.EasyMap.create;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -26,25 +29,42 @@ public class AggregatedReportControllerTest {
     private AggregateReportsService aggregateReportsService;
     @Mock
     private ANMService anmService;
+    @Mock
+    private AggregatedReportsCache aggregatedReportsCache;
 
     private AggregatedReportController controller;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        controller = new AggregatedReportController(aggregateReportsService, "http://dristhi_site_url", anmService);
+        controller = new AggregatedReportController(aggregateReportsService, "http://dristhi_site_url", anmService, aggregatedReportsCache);
     }
 
     @Test
     public void shouldReturnAggregatedReportDataForAGivenANMMonthAndYear() {
         when(aggregateReportsService.getAggregatedReports("demo1", 12, 2013)).thenReturn(asList(new AggregatorResponseDTO("OCP", 4), new AggregatorResponseDTO("OPV_1", 2)));
         when(anmService.getLocation("demo1")).thenReturn(new Location("Bherya", "sub Center", new PHC(1, "PHC 1", "Bherya"), "taluka", "mysore", "karnataka"));
+        when(aggregatedReportsCache.version("demo1", 12, 2013)).thenReturn(7L);
 
         ResponseEntity<AggregatedReportsDTO> aggregatedReports = controller.get("demo1", 12, 2013);
 
-        assertEquals(new AggregatedReportsDTO(create("OCP", 4).put("OPV_1", 2).map(), new LocationDTO("Sub Center", "Bherya", "taluka", "mysore", "karnataka")), aggregatedReports.getBody());
+        AggregatedReportsDTO expectedReports = new AggregatedReportsDTO(create("OCP", 4).put("OPV_1", 2).map(), new LocationDTO("Sub Center", "Bherya", "taluka", "mysore", "karnataka"));
+        assertEquals(expectedReports, aggregatedReports.getBody());
+        verify(aggregatedReportsCache).put("demo1", 12, 2013, expectedReports, 7L);
         assertEquals(HttpStatus.OK, aggregatedReports.getStatusCode());
         assertTrue(aggregatedReports.getHeaders().containsKey("Access-Control-Allow-Origin"));
         assertEquals("http://dristhi_site_url", aggregatedReports.getHeaders().getFirst("Access-Control-Allow-Origin"));
     }
+
+    @Test
+    public void shouldReturnCachedAggregatedReportsWithoutAskingTheAggregator() {
+        AggregatedReportsDTO cachedReports = new AggregatedReportsDTO(create("OCP", 4).map(), new LocationDTO("Sub Center", "Bherya", "taluka", "mysore", "karnataka"));
+        when(aggregatedReportsCache.get("demo1", 12, 2013)).thenReturn(cachedReports);
+
+        ResponseEntity<AggregatedReportsDTO> aggregatedReports = controller.get("demo1", 12, 2013);
+
+        assertEquals(cachedReports, aggregatedReports.getBody());
+        assertEquals("http://dristhi_site_url", aggregatedReports.getHeaders().getFirst("Access-Control-Allow-Origin"));
+        verifyZeroInteractions(aggregateReportsService, anmService);
+    }
 }
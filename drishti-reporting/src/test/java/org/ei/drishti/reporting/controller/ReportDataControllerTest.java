@@ -1,6 +1,9 @@
 package org.ei.drishti.reporting.controller;
 
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import org.ei.drishti.common.domain.ANMReport;
+import org.ei.drishti.common.domain.ReportDataBatchResult;
 import org.ei.drishti.common.domain.ReportDataDeleteRequest;
 import org.ei.drishti.common.domain.ReportDataUpdateRequest;
 import org.ei.drishti.common.domain.ReportingData;
@@ -10,11 +13,20 @@ import org.ei.drishti.reporting.ReportDataMissingException;
 import org.ei.drishti.reporting.domain.ANMReportData;
 import org.ei.drishti.reporting.domain.ServiceProvided;
 import org.ei.drishti.reporting.repository.ANMReportsRepository;
+import org.ei.drishti.reporting.repository.ResultHandler;
 import org.ei.drishti.reporting.repository.ServicesProvidedRepository;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
-
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -27,6 +39,10 @@ import static org.ei.drishti.common.domain.ReportingData.anmReportData;
 import static org.ei.drishti.common.domain.ReportingData.serviceProvidedData;
 import static org.ei.drishti.common.util.ANMIndicatorSummaryFactory.createSummaryForANC;
 import static org.ei.drishti.common.util.ANMIndicatorSummaryFactory.createSummaryForIUD;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
@@ -43,13 +59,23 @@ public class ReportDataControllerTest {
     private ANMReportData anmReportData;
     @Mock
     private Date date;
+    @Mock
+    private HttpServletResponse response;
 
     private ReportDataController controller;
+    private ByteArrayOutputStream body;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
         controller = new ReportDataController(servicesProvidedRepository, anmReportsRepository);
+        body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+        });
     }
 
     @Test
@@ -85,14 +111,40 @@ public class ReportDataControllerTest {
     }
 
     @Test
-    public void shouldReturnListOfANMIndicatorSummaryForAllANMs() throws Exception {
-        ANMReport anmXReport = new ANMReport("ANM X", asList(createSummaryForIUD()));
-        ANMReport anmYReport = new ANMReport("ANM Y", asList(createSummaryForANC()));
-        when(anmReportsRepository.fetchAllANMsReport()).thenReturn(asList(anmXReport, anmYReport));
+    public void shouldWriteListOfANMIndicatorSummaryForAllANMsAsTheyAreFetched() throws Exception {
+        final ANMReport anmXReport = new ANMReport("ANM X", asList(createSummaryForIUD()));
+        final ANMReport anmYReport = new ANMReport("ANM Y", asList(createSummaryForANC()));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ResultHandler<ANMReport> handler = (ResultHandler<ANMReport>) invocation.getArguments()[0];
+                handler.handle(anmXReport);
+                handler.handle(anmYReport);
+                return null;
+            }
+        }).when(anmReportsRepository).fetchAllANMsReport(any(ResultHandler.class));
+        controller.getAllANMsIndicatorSummaries(response);
+
+        verify(response).setContentType("application/json");
+        verify(response).setCharacterEncoding("UTF-8");
+        List<ANMReport> summaries = new Gson().fromJson(body.toString("UTF-8"), new TypeToken<List<ANMReport>>() {
+        }.getType());
+        assertEquals(asList(anmXReport, anmYReport), summaries);
+    }
+
+    @Test
+    public void shouldRebuildTheMonthlySummariesOfANMReports() throws Exception {
+        controller.rebuildANMReportSummaries();
 
-        List<ANMReport> summaries = controller.getAllANMsIndicatorSummaries();
+        verify(anmReportsRepository).rebuildMonthlySummaries();
+    }
 
-        assertEquals(asList(anmXReport, anmYReport), summaries);
+    @Test
+    public void shouldWriteAnEmptyListWhenThereAreNoANMs() throws Exception {
+        controller.getAllANMsIndicatorSummaries(response);
+
+        verify(response).setContentType("application/json");
+        assertEquals("[]", body.toString("UTF-8"));
     }
 
     @Test
@@ -186,4 +238,44 @@ public class ReportDataControllerTest {
         verify(anmReportsRepository).update(reportDataUpdateRequest);
         assertEquals("Success.", result);
     }
+
+    @Test
+    public void shouldSaveABatchOfReportDataGroupedByTypeAndReportFailuresByPosition() throws Exception {
+        ReportingData serviceProvided = serviceProvidedData("ANM X", "TC 1", BCG, "2012-01-01", new Location("bherya", "Sub Center", "PHC X"), "entity id 1");
+        ReportingData incompleteANMReport = anmReportData(null, null, FP_CONDOM, null);
+        ReportingData unsavableServiceProvided = serviceProvidedData("ANM X", "TC 2", BCG, "2012-01-01", new Location("unknown", "Sub Center", "PHC X"), "entity id 2");
+        ReportingData anmReport = anmReportData("ANM X", "EC Number 1", FP_IUD, "2012-01-01");
+        ReportingData unknownType = new ReportingData("unknown");
+        when(servicesProvidedRepository.saveAll(asList(serviceProvided, unsavableServiceProvided)))
+                .thenReturn(Collections.singletonMap(1, "Unknown location"));
+        when(anmReportsRepository.saveAll(asList(anmReport))).thenReturn(Collections.<Integer, String>emptyMap());
+
+        ReportDataBatchResult result = controller.submitBatch(
+                new ReportingData[]{serviceProvided, incompleteANMReport, unsavableServiceProvided, anmReport, unknownType});
+
+        assertEquals(5, result.submittedCount());
+        assertEquals(2, result.savedCount());
+        assertEquals(asList(1, 2, 4), new ArrayList<>(result.failures().keySet()));
+        assertEquals("Unknown location", result.failures().get(2));
+    }
+
+    @Test
+    public void shouldBackfillABatchOfReportDataAndTellWhichReportsWereAlreadySavedByPosition() throws Exception {
+        ReportingData serviceProvided = serviceProvidedData("ANM X", "TC 1", BCG, "2012-01-01", new Location("bherya", "Sub Center", "PHC X"), "entity id 1");
+        ReportingData firstANMReport = anmReportData("ANM X", "EC Number 1", FP_IUD, "2012-01-01");
+        ReportingData secondANMReport = anmReportData("ANM X", "EC Number 2", FP_IUD, "2012-01-01");
+        when(servicesProvidedRepository.backfillAll(asList(serviceProvided), true, "backfill 1"))
+                .thenReturn(new ReportDataBatchResult(1).withExistingCount(0, 1));
+        when(anmReportsRepository.backfillAll(asList(firstANMReport, secondANMReport), true, "backfill 1"))
+                .thenReturn(new ReportDataBatchResult(2).withExistingCount(1, 1));
+
+        ReportDataBatchResult result = controller.backfillBatch(new ReportingData[]{firstANMReport, serviceProvided, secondANMReport}, true, "backfill 1");
+
+        assertEquals(3, result.submittedCount());
+        assertEquals(0, result.existingCount(0));
+        assertEquals(1, result.existingCount(1));
+        assertEquals(1, result.existingCount(2));
+        verify(servicesProvidedRepository, never()).saveAll(anyListOf(ReportingData.class));
+        verify(anmReportsRepository, never()).saveAll(anyListOf(ReportingData.class));
+    }
 }
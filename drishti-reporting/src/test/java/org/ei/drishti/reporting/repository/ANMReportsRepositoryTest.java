@@ -5,7 +5,7 @@ import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.util.DateUtil;
 import org.ei.drishti.reporting.domain.ANM;
 import org.ei.drishti.reporting.domain.ANMReportData;
-import org.ei.drishti.reporting.domain.AnnualTarget;
+import org.ei.drishti.reporting.domain.ANMReportDataCount;
 import org.ei.drishti.reporting.domain.Indicator;
 import org.ei.drishti.reporting.repository.cache.ANMCacheableRepository;
 import org.ei.drishti.reporting.repository.cache.CacheableRepository;
@@ -13,11 +13,18 @@ import org.ei.drishti.reporting.repository.cache.IndicatorCacheableRepository;
 import org.ei.drishti.reporting.repository.cache.ReadOnlyCacheableRepository;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.Arrays.asList;
 import static junit.framework.Assert.assertEquals;
@@ -38,6 +45,9 @@ public class ANMReportsRepositoryTest {
     @Mock
     private AllANMReportDataRepository anmReportDataRepository;
 
+    @Mock
+    private AllANMReportMonthlySummariesRepository monthlySummariesRepository;
+
     @Mock
     private Monitor monitor;
 
@@ -50,7 +60,7 @@ public class ANMReportsRepositoryTest {
     public void setUp() throws Exception {
         initMocks(this);
         repository = new ANMReportsRepository(anmRepository, indicatorRepository,
-                anmReportDataRepository, annualTargetsRepository, monitor, new ReportMonth());
+                anmReportDataRepository, monthlySummariesRepository, annualTargetsRepository, monitor, new ReportMonth(), 100, 0);
     }
 
     @Test
@@ -73,8 +83,157 @@ public class ANMReportsRepositoryTest {
         verifyCallsToReadOnlyCachedRepository(indicatorRepository, fetchedIndicator);
 
         verify(anmReportDataRepository, times(2)).save(anm, externalId, fetchedIndicator, date);
+        verify(monthlySummariesRepository, times(2)).addAll(asList(new ANMReportData(anm, externalId, fetchedIndicator, date)));
+    }
+
+
+    @Test
+    public void shouldSaveABatchLookingUpEachANMAndIndicatorOnce() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+
+        Map<Integer, String> failures = repository.saveAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04").withQuantity("2"),
+                ReportingData.anmReportData("ANM X", "EC CASE 2", org.ei.drishti.common.domain.Indicator.FP_IUD, "04/04/2012"),
+                ReportingData.anmReportData("ANM X", "EC CASE 3", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")));
+
+        assertEquals(asList(1), new ArrayList<>(failures.keySet()));
+        verifyCallsToReadOnlyCachedRepository(anmRepository, new ANM("ANM X"));
+        verifyCallsToReadOnlyCachedRepository(indicatorRepository, new Indicator("IUD"));
+        List<ANMReportData> savedReportData = asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date),
+                new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date), new ANMReportData(anm, "EC CASE 3", fetchedIndicator, date));
+        verify(anmReportDataRepository).saveAll(savedReportData);
+        verify(monthlySummariesRepository).addAll(savedReportData);
+    }
+
+    @Test
+    public void shouldReportRecordsOfAnUnknownANMOrIndicatorAsFailuresAndSaveTheRestOfTheBatch() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+
+        Map<Integer, String> failures = repository.saveAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04"),
+                ReportingData.anmReportData("Unknown ANM", "EC CASE 2", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04"),
+                ReportingData.anmReportData("ANM X", "EC CASE 3", org.ei.drishti.common.domain.Indicator.FP_OCP, "2012-04-04"),
+                ReportingData.anmReportData("Unknown ANM", "EC CASE 4", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04"),
+                ReportingData.anmReportData("ANM X", "EC CASE 5", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")));
+
+        assertEquals(asList(1, 2, 3), new ArrayList<>(new TreeMap<>(failures).keySet()));
+        assertEquals("Unknown ANM: Unknown ANM", failures.get(1));
+        assertEquals("Unknown indicator: OCP", failures.get(2));
+        verify(anmRepository, times(1)).fetch(new ANM("Unknown ANM"));
+        List<ANMReportData> savedReportData = asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date),
+                new ANMReportData(anm, "EC CASE 5", fetchedIndicator, date));
+        verify(anmReportDataRepository).saveAll(savedReportData);
+        verify(monthlySummariesRepository).addAll(savedReportData);
+    }
+
+    @Test
+    public void shouldSkipRecordsWhoseReportKeyWasAlreadyProcessed() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+        when(anmReportDataRepository.findProcessedReportKeys(new HashSet<>(asList("key 1", "key 2"))))
+                .thenReturn(new HashSet<>(asList("key 1")));
+
+        repository.saveAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04").with(REPORT_KEY, "key 1"),
+                ReportingData.anmReportData("ANM X", "EC CASE 2", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04").with(REPORT_KEY, "key 2")));
+
+        List<ANMReportData> savedReportData = asList(new ANMReportData(anm, "EC CASE 2", fetchedIndicator, date));
+        verify(anmReportDataRepository).saveAll(savedReportData);
+        verify(anmReportDataRepository).saveProcessedReportKeys(asList("key 2"));
+        verify(monthlySummariesRepository).addAll(savedReportData);
     }
 
+    @Test
+    public void shouldBackfillOnlyTheReportsThatAreNotSavedYet() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+        when(anmReportDataRepository.findByExternalIds(new HashSet<>(asList("EC CASE 1", "EC CASE 2")))).thenReturn(asList(
+                new ANMReportData(anm, "EC CASE 1", fetchedIndicator, new java.sql.Date(date.getTime())),
+                new ANMReportData(anm, "EC CASE 2", fetchedIndicator, parse("2012-04-05").toDate())));
+
+        ReportDataBatchResult result = repository.backfillAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04").withQuantity("3"),
+                ReportingData.anmReportData("ANM X", "EC CASE 2", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")), false, null);
+
+        assertEquals(1, result.existingCount(0));
+        assertEquals(0, result.existingCount(1));
+        assertTrue(result.failures().isEmpty());
+        List<ANMReportData> addedReportData = asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date),
+                new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date), new ANMReportData(anm, "EC CASE 2", fetchedIndicator, date));
+        verify(anmReportDataRepository).saveAll(addedReportData);
+        verify(monthlySummariesRepository).addAll(addedReportData);
+    }
+
+    @Test
+    public void shouldOnlyTellWhichReportsAreAlreadySavedOnABackfillDryRun() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+        when(anmReportDataRepository.findByExternalIds(new HashSet<>(asList("EC CASE 1"))))
+                .thenReturn(asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date)));
+
+        ReportDataBatchResult result = repository.backfillAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04"),
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")), true, null);
+
+        assertEquals(1, result.existingCount(0));
+        assertEquals(0, result.existingCount(1));
+        verify(anmReportDataRepository, never()).saveAll(anyListOf(ANMReportData.class));
+        verifyZeroInteractions(monthlySummariesRepository);
+    }
+
+    @Test
+    public void shouldMatchASavedReportOnlyOnceAcrossTheBatchesOfABackfill() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+        when(anmReportDataRepository.findByExternalIds(new HashSet<>(asList("EC CASE 1"))))
+                .thenReturn(asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date)));
+
+        ReportDataBatchResult firstBatchResult = repository.backfillAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")), false, "backfill 1");
+        ReportDataBatchResult secondBatchResult = repository.backfillAll(asList(
+                ReportingData.anmReportData("ANM X", "EC CASE 1", org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04")), false, "backfill 1");
+
+        assertEquals(1, firstBatchResult.existingCount(0));
+        assertEquals(0, secondBatchResult.existingCount(0));
+        verify(anmReportDataRepository).saveAll(asList(new ANMReportData(anm, "EC CASE 1", fetchedIndicator, date)));
+    }
+
+    @Test
+    public void shouldMatchBackfilledReportsWithoutAnExternalIdToSavedReportsWithoutOne() throws Exception {
+        Date date = parse("2012-04-04").toDate();
+        Indicator fetchedIndicator = new Indicator(2, "IUD");
+        ANM anm = new ANM(2, "ANM X");
+        when(anmRepository.fetch(new ANM("ANM X"))).thenReturn(anm);
+        when(indicatorRepository.fetch(new Indicator("IUD"))).thenReturn(fetchedIndicator);
+        when(anmReportDataRepository.findWithoutExternalIdOn(new HashSet<>(asList(date))))
+                .thenReturn(asList(new ANMReportData(anm, null, fetchedIndicator, date)));
+
+        ReportDataBatchResult result = repository.backfillAll(asList(
+                ReportingData.anmReportData("ANM X", null, org.ei.drishti.common.domain.Indicator.FP_IUD, "2012-04-04").withQuantity("2")), true, null);
+
+        assertEquals(1, result.existingCount(0));
+        verify(anmReportDataRepository).findByExternalIds(new HashSet<String>());
+    }
 
     @Test
     public void shouldSaveAsPerQuantityIfQuantityIsNotNull() throws Exception {
@@ -97,21 +256,14 @@ public class ANMReportsRepositoryTest {
     @Test
     public void shouldFetchANMIndicatorSummaries() throws Exception {
         DateUtil.fakeIt(parse("2012-06-30"));
-        ANM anm = new ANM("ANM X");
-        Date date1 = parse("2012-03-29").toDate();
-        Date date2 = parse("2012-05-15").toDate();
-        Date date3 = parse("2012-05-30").toDate();
-        Indicator indicator1 = new Indicator("IUD");
-        Indicator indicator2 = new Indicator("ANC");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anm, "CASE 1", indicator1, date1),
-                new ANMReportData(anm, "CASE 2", indicator1, date1),
-                new ANMReportData(anm, "CASE 3", indicator1, date2),
-                new ANMReportData(anm, "CASE 4", indicator1, date2),
-                new ANMReportData(anm, "CASE 5", indicator2, date3),
-                new ANMReportData(anm, "CASE 6", indicator2, date3)));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator1, parse("2012-06-30").toDate())).thenReturn(new AnnualTarget(1, 1, "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator2, parse("2012-06-30").toDate())).thenReturn(new AnnualTarget(1, 1, "30", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-07-26").toDate())).thenReturn(asList(
+                count("ANC", "2012-05-30", "CASE 5"),
+                count("ANC", "2012-05-30", "CASE 6"),
+                count("IUD", "2012-03-29", "CASE 1"),
+                count("IUD", "2012-03-29", "CASE 2"),
+                count("IUD", "2012-05-15", "CASE 3"),
+                count("IUD", "2012-05-15", "CASE 4")));
+        when(annualTargetsRepository.fetchAllFor("ANM X", parse("2012-06-30").toDate())).thenReturn(targets("IUD", "40", "ANC", "30"));
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
@@ -119,14 +271,25 @@ public class ANMReportsRepositoryTest {
         assertEquals(2, anmIndicatorSummaries.size());
     }
 
+    @Test
+    public void shouldFetchAllAnnualTargetsOfAnANMWithOneQuery() throws Exception {
+        DateUtil.fakeIt(parse("2012-06-30"));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-07-26").toDate())).thenReturn(asList(
+                count("ANC", "2012-05-30", "CASE 5"),
+                count("IUD", "2012-03-29", "CASE 1")));
+
+        repository.fetchANMSummary("ANM X");
+
+        verify(annualTargetsRepository).fetchAllFor("ANM X", parse("2012-06-30").toDate());
+        verifyNoMoreInteractions(annualTargetsRepository);
+    }
+
     @Test
     public void shouldSetMonthOfSummaryToBeNextYearsInCaseOfLastMonthOfTheYear() throws Exception {
         DateUtil.fakeIt(parse("2013-01-30"));
-        ANM anm = new ANM("ANM X");
-        Date date = parse("2012-12-29").toDate();
-        Indicator indicator = new Indicator("IUD");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(new ANMReportData(anm, "CASE 1", indicator, date)));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator, parse("2013-01-30").toDate())).thenReturn(new AnnualTarget(1, 1, "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-02-26").toDate()))
+                .thenReturn(asList(count("IUD", "2012-12-29", "CASE 1")));
+        when(annualTargetsRepository.fetchAllFor("ANM X", parse("2013-01-30").toDate())).thenReturn(targets("IUD", "40"));
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
@@ -136,12 +299,9 @@ public class ANMReportsRepositoryTest {
     @Test
     public void shouldFetchANMIndicatorSummariesIncludingAllServicesProvidedTillTheCurrentMonth() throws Exception {
         DateUtil.fakeIt(parse("2013-01-15"));
-        ANM anm = new ANM("ANM X");
-        Date january = parse("2013-01-11").toDate();
-        Indicator indicator1 = new Indicator("IUD");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anm, "CASE 1", indicator1, january)));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator1, parse("2013-01-15").toDate())).thenReturn(new AnnualTarget(1, 1, "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-01-26").toDate()))
+                .thenReturn(asList(count("IUD", "2013-01-11", "CASE 1")));
+        when(annualTargetsRepository.fetchAllFor("ANM X", parse("2013-01-15").toDate())).thenReturn(targets("IUD", "40"));
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
@@ -152,28 +312,39 @@ public class ANMReportsRepositoryTest {
     @Test
     public void shouldFetchANMIndicatorSummariesWithDistinctExternalIds() throws Exception {
         DateUtil.fakeIt(parse("2013-03-22"));
-        ANM anm = new ANM("ANM X");
-        Date dates = parse("2013-03-21").toDate();
-        Indicator indicator = new Indicator("CONDOM");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anm, "CASE 7", indicator, dates),
-                new ANMReportData(anm, "CASE 7", indicator, dates)));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator, parse("2013-03-22").toDate())).thenReturn(new AnnualTarget(1, 1, "20", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-03-26").toDate()))
+                .thenReturn(asList(new ANMReportDataCount("ANM X", "CONDOM", parse("2013-03-21").toDate(), "CASE 7", 2L)));
+        when(annualTargetsRepository.fetchAllFor("ANM X", parse("2013-03-22").toDate())).thenReturn(targets("CONDOM", "20"));
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
-        System.out.println(anmIndicatorSummaries);
         assertTrue(anmIndicatorSummaries.containsAll(asList(createSummaryForCondom())));
         assertEquals(1, anmIndicatorSummaries.size());
     }
 
+    @Test
+    public void shouldAddUpTheCountsOfAllDaysOfAReportingMonth() throws Exception {
+        DateUtil.fakeIt(parse("2012-06-30"));
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-07-26").toDate())).thenReturn(asList(
+                new ANMReportDataCount("ANM X", "IUD", parse("2012-04-26").toDate(), "CASE 1", 2L),
+                new ANMReportDataCount("ANM X", "IUD", parse("2012-05-25").toDate(), "CASE 1", 1L),
+                new ANMReportDataCount("ANM X", "IUD", parse("2012-05-26").toDate(), "CASE 2", 1L)));
+        when(annualTargetsRepository.fetchAllFor("ANM X", parse("2012-06-30").toDate())).thenReturn(targets("IUD", "40"));
+
+        List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
+
+        assertEquals(asList(new ANMIndicatorSummary("IUD", "40", asList(
+                new MonthSummary("5", "2012", "3", "3", asList("CASE 1")),
+                new MonthSummary("6", "2012", "1", "4", asList("CASE 2"))))), anmIndicatorSummaries);
+    }
+
     @Test
     public void shouldFetchANMIndicatorSummariesForCurrentReportingYear() throws Exception {
         DateUtil.fakeIt(parse("2013-01-02"));
 
         repository.fetchANMSummary("ANM X");
 
-        verify(anmReportDataRepository).fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate());
+        verify(monthlySummariesRepository).countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-01-26").toDate());
     }
 
     @Test
@@ -182,7 +353,7 @@ public class ANMReportsRepositoryTest {
 
         repository.fetchANMSummary("ANM X");
 
-        verify(anmReportDataRepository).fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate());
+        verify(monthlySummariesRepository).countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-04-26").toDate());
     }
 
     @Test
@@ -191,32 +362,27 @@ public class ANMReportsRepositoryTest {
 
         repository.fetchANMSummary("ANM X");
 
-        verify(anmReportDataRepository).fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate());
+        verify(monthlySummariesRepository).countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-03-26").toDate());
     }
 
     @Test
     public void shouldReturnEmptyANMIndicatorSummariesWhenThereIsNoDataForANM() throws Exception {
         DateUtil.fakeIt(parse("2012-03-31"));
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-01-01").toDate())).thenReturn(null);
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
         assertEquals(0, anmIndicatorSummaries.size());
+        verifyZeroInteractions(annualTargetsRepository);
     }
 
     @Test
     public void shouldReturnANMIndicatorSummariesWithNullAnnualTargetWhenThereIsNoAnnualTargetForANM() throws Exception {
         DateUtil.fakeIt(parse("2012-06-30"));
-        ANM anm = new ANM("ANM X");
-        Date date1 = parse("2012-03-29").toDate();
-        Date date2 = parse("2012-05-15").toDate();
-        Indicator indicator = new Indicator("IUD");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anm, "CASE 1", indicator, date1),
-                new ANMReportData(anm, "CASE 2", indicator, date1),
-                new ANMReportData(anm, "CASE 3", indicator, date2),
-                new ANMReportData(anm, "CASE 4", indicator, date2)));
-        when(annualTargetsRepository.fetchFor("ANM X", new Indicator("IUD"), parse("2012-06-30").toDate())).thenReturn(null);
+        when(monthlySummariesRepository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-07-26").toDate())).thenReturn(asList(
+                count("IUD", "2012-03-29", "CASE 1"),
+                count("IUD", "2012-03-29", "CASE 2"),
+                count("IUD", "2012-05-15", "CASE 3"),
+                count("IUD", "2012-05-15", "CASE 4")));
 
         List<ANMIndicatorSummary> anmIndicatorSummaries = repository.fetchANMSummary("ANM X");
 
@@ -229,30 +395,34 @@ public class ANMReportsRepositoryTest {
         DateUtil.fakeIt(parse("2012-06-30"));
         ANM anmX = new ANM("ANM X");
         ANM anmY = new ANM("ANM Y");
-        Date date1 = parse("2012-03-29").toDate();
-        Date date2 = parse("2012-04-30").toDate();
-        Date date3 = parse("2012-05-27").toDate();
-        Indicator indicator1 = new Indicator("IUD");
-        Indicator indicator2 = new Indicator("ANC");
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM X", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anmX, "CASE 1", indicator1, date1),
-                new ANMReportData(anmX, "CASE 2", indicator1, date1),
-                new ANMReportData(anmX, "CASE 3", indicator1, date2),
-                new ANMReportData(anmX, "CASE 4", indicator1, date2)));
-        when(anmReportDataRepository.fetchByANMIdAndDate("ANM Y", parse("2012-03-26").toDate())).thenReturn(asList(
-                new ANMReportData(anmY, "CASE 5", indicator2, date3),
-                new ANMReportData(anmY, "CASE 6", indicator2, date3)));
-        when(annualTargetsRepository.fetchFor("ANM X", indicator1, parse("2012-06-30").toDate())).thenReturn(new AnnualTarget(1, 1, "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
-        when(annualTargetsRepository.fetchFor("ANM Y", indicator2, parse("2012-06-30").toDate())).thenReturn(new AnnualTarget(1, 1, "30", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
-        when(anmRepository.fetchAll()).thenReturn(asList(anmX, anmY));
-
-        List<ANMReport> anmReports = repository.fetchAllANMsReport();
-
-        ANMReport anmXReport = new ANMReport("ANM X", asList(createSummaryForIUD()));
-        ANMReport anmYReport = new ANMReport("ANM Y", asList(createSummaryForANC()));
-
-        assertTrue(anmReports.containsAll(asList(anmXReport, anmYReport)));
-        assertEquals(2, anmReports.size());
+        ANM anmZ = new ANM("ANM Z");
+        countsOfAllANMsAre(
+                count("ANM X", "IUD", "2012-03-29", "CASE 1"),
+                count("ANM X", "IUD", "2012-03-29", "CASE 2"),
+                count("ANM X", "IUD", "2012-04-30", "CASE 3"),
+                count("ANM X", "IUD", "2012-04-30", "CASE 4"),
+                count("ANM Y", "ANC", "2012-05-27", "CASE 5"),
+                count("ANM Y", "ANC", "2012-05-27", "CASE 6"));
+        Map<String, Map<String, String>> targetsByANM = new HashMap<>();
+        targetsByANM.put("ANM X", targets("IUD", "40"));
+        targetsByANM.put("ANM Y", targets("ANC", "30"));
+        when(annualTargetsRepository.fetchAllByANMFor(parse("2012-06-30").toDate())).thenReturn(targetsByANM);
+        when(anmRepository.fetchAll()).thenReturn(asList(anmX, anmY, anmZ));
+        final List<ANMReport> anmReports = new ArrayList<>();
+
+        repository.fetchAllANMsReport(new ResultHandler<ANMReport>() {
+            @Override
+            public void handle(ANMReport report) {
+                anmReports.add(report);
+            }
+        });
+
+        assertEquals(asList(new ANMReport("ANM X", asList(createSummaryForIUD())),
+                new ANMReport("ANM Y", asList(createSummaryForANC())),
+                new ANMReport("ANM Z", new ArrayList<ANMIndicatorSummary>())), anmReports);
+        verify(monthlySummariesRepository).countByDateRange(eq(parse("2012-03-26").toDate()), eq(parse("2012-07-26").toDate()), any(ResultHandler.class));
+        verify(monthlySummariesRepository, never()).countByANMIdAndDateRange(anyString(), any(Date.class), any(Date.class));
+        verify(annualTargetsRepository, never()).fetchAllFor(anyString(), any(Date.class));
     }
 
     @Test
@@ -286,10 +456,16 @@ public class ANMReportsRepositoryTest {
         when(anmRepository.fetch(new ANM((anmIdentifier)))).thenReturn(anm);
         when(indicatorRepository.fetch(new Indicator(indicator))).thenReturn(fetchedIndicator);
 
+        List<ANMReportData> deletedReportData = asList(new ANMReportData(anm, "EC CASE 2", fetchedIndicator, date));
+        when(anmReportDataRepository.delete("INDICATOR 1", "2013-01-26", "2013-02-25")).thenReturn(deletedReportData);
+
         repository.update(request);
 
-        verify(anmReportDataRepository).delete("INDICATOR 1", "2013-01-26", "2013-02-25");
-        verify(anmReportDataRepository).save(anm, externalId, fetchedIndicator, date);
+        InOrder inOrder = inOrder(anmReportDataRepository, monthlySummariesRepository);
+        inOrder.verify(anmReportDataRepository).delete("INDICATOR 1", "2013-01-26", "2013-02-25");
+        inOrder.verify(monthlySummariesRepository).removeAll(deletedReportData);
+        inOrder.verify(anmReportDataRepository).save(anm, externalId, fetchedIndicator, date);
+        inOrder.verify(monthlySummariesRepository).addAll(asList(new ANMReportData(anm, externalId, fetchedIndicator, date)));
     }
 
     @Test
@@ -304,8 +480,49 @@ public class ANMReportsRepositoryTest {
         ReportDataDeleteRequest request = new ReportDataDeleteRequest()
                 .withType("type")
                 .withDristhiEntityId("entity id 1");
+        List<ANMReportData> deletedReportData = asList(new ANMReportData(new ANM(2, "ANM X"), "entity id 1", new Indicator(2, "IUD"), new Date()));
+        when(anmReportDataRepository.deleteReportsForExternalId("entity id 1")).thenReturn(deletedReportData);
+
         repository.delete(request);
+
         verify(anmReportDataRepository).deleteReportsForExternalId("entity id 1");
+        verify(monthlySummariesRepository).removeAll(deletedReportData);
+    }
+
+    @Test
+    public void shouldRebuildMonthlySummaries() {
+        repository.rebuildMonthlySummaries();
+
+        verify(monthlySummariesRepository).rebuild();
+    }
+
+    private ANMReportDataCount count(String indicator, String date, String externalId) {
+        return count("ANM X", indicator, date, externalId);
+    }
+
+    private ANMReportDataCount count(String anmIdentifier, String indicator, String date, String externalId) {
+        return new ANMReportDataCount(anmIdentifier, indicator, parse(date).toDate(), externalId, 1L);
+    }
+
+    private void countsOfAllANMsAre(final ANMReportDataCount... counts) {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ResultHandler<ANMReportDataCount> handler = (ResultHandler<ANMReportDataCount>) invocation.getArguments()[2];
+                for (ANMReportDataCount count : counts) {
+                    handler.handle(count);
+                }
+                return null;
+            }
+        }).when(monthlySummariesRepository).countByDateRange(any(Date.class), any(Date.class), any(ResultHandler.class));
+    }
+
+    private Map<String, String> targets(String... indicatorsAndTargets) {
+        Map<String, String> targets = new HashMap<>();
+        for (int i = 0; i < indicatorsAndTargets.length; i += 2) {
+            targets.put(indicatorsAndTargets[i], indicatorsAndTargets[i + 1]);
+        }
+        return targets;
     }
 
     private <T> void verifyCallsToReadOnlyCachedRepository(ReadOnlyCacheableRepository<T> repo, T object) {
@@ -0,0 +1,103 @@
+package org.ei.drishti.reporting.repository;
+
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.util.DateUtil;
+import org.ei.drishti.reporting.domain.Location;
+import org.ei.drishti.reporting.domain.PHC;
+import org.ei.drishti.reporting.domain.ServiceProvider;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.ei.drishti.reporting.domain.ServiceProviderType.ANM;
+import static org.ei.drishti.reporting.domain.ServiceProviderType.PHC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ServiceProvidedDimensionIndexTest {
+    @Mock
+    private AllLocationsRepository locationRepository;
+    @Mock
+    private AllServiceProvidersRepository serviceProvidersRepository;
+    @Mock
+    private Monitor monitor;
+
+    private ServiceProvidedDimensionIndex index;
+    private Location bherya;
+    private ServiceProvider anmServiceProvider;
+    private ServiceProvider phcServiceProvider;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        DateUtil.fakeIt(LocalDate.parse("2013-01-01"));
+        index = new ServiceProvidedDimensionIndex(locationRepository, serviceProvidersRepository, monitor, 60);
+
+        bherya = new Location(2, "Bherya", "Sub Center", new PHC(34, "PHC X", "PHC"), "taluka", "mysore", "karnataka");
+        anmServiceProvider = new ServiceProvider(2, 2, ANM);
+        phcServiceProvider = new ServiceProvider(3, 34, PHC);
+        when(locationRepository.fetchAll()).thenReturn(asList(bherya));
+        when(serviceProvidersRepository.fetchAllBy(ANM)).thenReturn(serviceProviders("ANM X", anmServiceProvider));
+        when(serviceProvidersRepository.fetchAllBy(PHC)).thenReturn(serviceProviders("PHC X", phcServiceProvider));
+    }
+
+    @Test
+    public void shouldResolveLocationsAndServiceProvidersFromTheIndexLoadedOnFirstUse() throws Exception {
+        assertEquals(bherya, index.location("Bherya", "Sub Center", "PHC X"));
+        assertEquals(bherya, index.location("Bherya", "Sub Center", "PHC X"));
+        assertEquals(anmServiceProvider, index.serviceProvider("ANM X", ANM));
+        assertEquals(phcServiceProvider, index.serviceProvider("PHC X", PHC));
+
+        verify(locationRepository, times(1)).fetchAll();
+        verify(serviceProvidersRepository, times(1)).fetchAllBy(ANM);
+        verify(serviceProvidersRepository, times(1)).fetchAllBy(PHC);
+        verifyNoMoreInteractions(locationRepository, serviceProvidersRepository);
+    }
+
+    @Test
+    public void shouldLookUpAndIndexALocationWhichWasInsertedAfterTheIndexWasLoaded() throws Exception {
+        Location keelanapura = new Location(3, "Keelanapura", "Sub Center", new PHC(34, "PHC X", "PHC"), "taluka", "mysore", "karnataka");
+        when(locationRepository.fetchBy("Keelanapura", "Sub Center", "PHC X")).thenReturn(keelanapura);
+
+        assertEquals(keelanapura, index.location("Keelanapura", "Sub Center", "PHC X"));
+        assertEquals(keelanapura, index.location("Keelanapura", "Sub Center", "PHC X"));
+
+        verify(locationRepository, times(1)).fetchBy("Keelanapura", "Sub Center", "PHC X");
+    }
+
+    @Test
+    public void shouldLookUpAnUnknownServiceProviderEveryTimeAsItMayBeInsertedLater() throws Exception {
+        when(serviceProvidersRepository.fetchBy("ANM Y", ANM)).thenReturn(null);
+
+        assertNull(index.serviceProvider("ANM Y", ANM));
+        assertNull(index.serviceProvider("ANM Y", ANM));
+
+        verify(serviceProvidersRepository, times(2)).fetchBy("ANM Y", ANM);
+    }
+
+    @Test
+    public void shouldReloadTheIndexOnceItIsOlderThanTheRefreshInterval() throws Exception {
+        index.location("Bherya", "Sub Center", "PHC X");
+        when(locationRepository.fetchAll()).thenReturn(Collections.<Location>emptyList());
+        when(locationRepository.fetchBy("Bherya", "Sub Center", "PHC X")).thenReturn(null);
+
+        DateUtil.fakeIt(LocalDate.parse("2013-01-02"));
+
+        assertNull(index.location("Bherya", "Sub Center", "PHC X"));
+        verify(locationRepository, times(2)).fetchAll();
+    }
+
+    private Map<String, ServiceProvider> serviceProviders(String identifier, ServiceProvider serviceProvider) {
+        Map<String, ServiceProvider> serviceProviders = new HashMap<>();
+        serviceProviders.put(identifier, serviceProvider);
+        return serviceProviders;
+    }
+}
@@ -1,5 +1,6 @@
 package org.ei.drishti.reporting.repository;
 
+import org.ei.drishti.common.domain.ReportDataBatchResult;
 import org.ei.drishti.common.domain.ReportDataDeleteRequest;
 import org.ei.drishti.common.domain.ReportDataUpdateRequest;
 import org.ei.drishti.common.domain.ReportingData;
@@ -13,14 +14,21 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.Arrays.asList;
 import static org.ei.drishti.common.AllConstants.ReportDataParameters.*;
 import static org.ei.drishti.common.AllConstants.ReportDataParameters.ANM_IDENTIFIER;
 import static org.ei.drishti.common.AllConstants.ReportDataParameters.INDICATOR;
 import static org.ei.drishti.reporting.domain.ServiceProviderType.ANM;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -29,10 +37,7 @@ public class ServicesProvidedRepositoryTest {
     private IndicatorCacheableRepository indicatorRepository;
 
     @Mock
-    private AllLocationsRepository locationRepository;
-
-    @Mock
-    private AllServiceProvidersRepository serviceProvidersRepository;
+    private ServiceProvidedDimensionIndex dimensionIndex;
 
     @Mock
     private AllServicesProvidedRepository servicesProvidedRepository;
@@ -45,7 +50,7 @@ public class ServicesProvidedRepositoryTest {
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        repository = new ServicesProvidedRepository(indicatorRepository, locationRepository, serviceProvidersRepository, servicesProvidedRepository, monitor);
+        repository = new ServicesProvidedRepository(indicatorRepository, dimensionIndex, servicesProvidedRepository, monitor, 100, 0);
     }
 
     @Test
@@ -61,16 +66,16 @@ public class ServicesProvidedRepositoryTest {
         ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
         Indicator fetchedIndicator = new Indicator(2, indicator);
         Location location = new Location(2, village, subCenter, phc, "taluka", "mysore", "karnataka");
-        when(serviceProvidersRepository.fetchBy("ANM X", ANM)).thenReturn(serviceProvider);
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
         when(indicatorRepository.fetch(new Indicator(indicator))).thenReturn(fetchedIndicator);
-        when(locationRepository.fetchBy(village, subCenter, phc.phcIdentifier())).thenReturn(location);
+        when(dimensionIndex.location(village, subCenter, phc.phcIdentifier())).thenReturn(location);
 
         repository.save(anmIdentifier, "ANM", externalId, indicator, "2012-04-04", village, subCenter, phc.phcIdentifier(), null, dristhiEntityId);
         repository.save(anmIdentifier, "ANM", externalId, indicator, "2012-04-04", village, subCenter, phc.phcIdentifier(), null, dristhiEntityId);
 
         verifyCallsToReadOnlyCachedRepository(indicatorRepository, new Indicator(indicator));
-        verify(locationRepository, times(2)).fetchBy(village, subCenter, phc.phcIdentifier());
-        verify(serviceProvidersRepository, times(2)).fetchBy(anmIdentifier, ANM);
+        verify(dimensionIndex, times(2)).location(village, subCenter, phc.phcIdentifier());
+        verify(dimensionIndex, times(2)).serviceProvider(anmIdentifier, ANM);
         verify(servicesProvidedRepository, times(2)).save(serviceProvider, "12345", fetchedIndicator, date, location, dristhiEntityId);
     }
 
@@ -88,9 +93,9 @@ public class ServicesProvidedRepositoryTest {
         ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
         Indicator fetchedIndicator = new Indicator(2, indicator);
         Location location = new Location(2, village, subCenter, phc, "taluka", "mysore", "karnataka");
-        when(serviceProvidersRepository.fetchBy("ANM X", ANM)).thenReturn(serviceProvider);
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
         when(indicatorRepository.fetch(new Indicator(indicator))).thenReturn(fetchedIndicator);
-        when(locationRepository.fetchBy(village, subCenter, phc.phcIdentifier())).thenReturn(location);
+        when(dimensionIndex.location(village, subCenter, phc.phcIdentifier())).thenReturn(location);
 
         repository.save(anmIdentifier, "ANM", externalId, indicator, "2012-04-04", village, subCenter, phc.phcIdentifier(), "40", dristhiEntityId);
 
@@ -133,9 +138,9 @@ public class ServicesProvidedRepositoryTest {
         ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
         Indicator fetchedIndicator = new Indicator(2, indicator);
         Location location = new Location(2, village, subCenter, phc, "taluka", "mysore", "karnataka");
-        when(serviceProvidersRepository.fetchBy(anmIdentifier, ANM)).thenReturn(serviceProvider);
+        when(dimensionIndex.serviceProvider(anmIdentifier, ANM)).thenReturn(serviceProvider);
         when(indicatorRepository.fetch(new Indicator(indicator))).thenReturn(fetchedIndicator);
-        when(locationRepository.fetchBy(village, subCenter, phc.phcIdentifier())).thenReturn(location);
+        when(dimensionIndex.location(village, subCenter, phc.phcIdentifier())).thenReturn(location);
 
         repository.update(request);
 
@@ -162,6 +167,173 @@ public class ServicesProvidedRepositoryTest {
     }
 
 
+    @Test
+    public void shouldSaveABatchLookingUpEachDimensionOnceAndReportRecordsThatCannotBeSaved() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        ReportingData first = serviceProvidedData("entity id 1", "Bherya", "2012-04-04", "2");
+        ReportingData unknownLocation = serviceProvidedData("entity id 2", "Unknown", "2012-04-04", null);
+        ReportingData invalidDate = serviceProvidedData("entity id 3", "Bherya", "not a date", null);
+        ReportingData second = serviceProvidedData("entity id 4", "Bherya", "2012-04-04", null);
+
+        Map<Integer, String> failures = repository.saveAll(asList(first, unknownLocation, invalidDate, second));
+
+        assertEquals(asList(1, 2), new ArrayList<>(new TreeMap<>(failures).keySet()));
+        verifyCallsToReadOnlyCachedRepository(indicatorRepository, new Indicator("ANC"));
+        verify(dimensionIndex, times(1)).location("Bherya", "Sub Center", "PHC X");
+        verify(dimensionIndex, times(1)).serviceProvider("ANM X", ANM);
+        verify(servicesProvidedRepository).saveAll(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 1"),
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 1"),
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 4")));
+        verify(servicesProvidedRepository, never()).save(any(ServiceProvider.class), anyString(), any(Indicator.class),
+                any(Date.class), any(Location.class), anyString());
+    }
+
+    @Test
+    public void shouldSkipRecordsWhoseReportKeyWasAlreadyProcessedAndSaveTheKeysOfTheOthers() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        when(servicesProvidedRepository.findProcessedReportKeys(new HashSet<>(asList("key 1", "key 2"))))
+                .thenReturn(new HashSet<>(asList("key 1")));
+        ReportingData delivered = serviceProvidedData("entity id 1", "Bherya", "2012-04-04", null).with(REPORT_KEY, "key 1");
+        ReportingData first = serviceProvidedData("entity id 2", "Bherya", "2012-04-04", null).with(REPORT_KEY, "key 2");
+        ReportingData repeated = serviceProvidedData("entity id 2", "Bherya", "2012-04-04", null).with(REPORT_KEY, "key 2");
+        ReportingData withoutKey = serviceProvidedData("entity id 3", "Bherya", "2012-04-04", null);
+
+        Map<Integer, String> failures = repository.saveAll(asList(delivered, first, repeated, withoutKey));
+
+        assertTrue(failures.isEmpty());
+        verify(servicesProvidedRepository).saveAll(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 2"),
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 3")));
+        verify(servicesProvidedRepository).saveProcessedReportKeys(asList("key 2"));
+    }
+
+    @Test
+    public void shouldReportRecordsOfAnUnknownIndicatorOrServiceProviderAsFailuresAndSaveTheRestOfTheBatch() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        ReportingData first = serviceProvidedData("entity id 1", "Bherya", "2012-04-04", null);
+        ReportingData unknownIndicator = serviceProvidedData("entity id 2", "Bherya", "2012-04-04", null).with(INDICATOR, "Unknown");
+        ReportingData unknownANM = serviceProvidedData("entity id 3", "Bherya", "2012-04-04", null).with(ANM_IDENTIFIER, "Unknown ANM");
+        ReportingData second = serviceProvidedData("entity id 4", "Bherya", "2012-04-04", null);
+
+        Map<Integer, String> failures = repository.saveAll(asList(first, unknownIndicator, unknownANM, second));
+
+        assertEquals(asList(1, 2), new ArrayList<>(new TreeMap<>(failures).keySet()));
+        assertEquals("Unknown indicator: Unknown", failures.get(1));
+        assertEquals("Unknown service provider: ANM|Unknown ANM", failures.get(2));
+        verify(servicesProvidedRepository).saveAll(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 1"),
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 4")));
+    }
+
+    @Test
+    public void shouldBackfillOnlyTheServicesProvidedThatAreNotSavedYet() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        when(servicesProvidedRepository.findByDristhiEntityIds(new HashSet<>(asList("entity id 1", "entity id 2")))).thenReturn(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, new java.sql.Date(date.getTime()), location, "entity id 1")));
+
+        ReportDataBatchResult result = repository.backfillAll(asList(
+                serviceProvidedData("entity id 1", "Bherya", "2012-04-04", null),
+                serviceProvidedData("entity id 2", "Bherya", "2012-04-04", null),
+                serviceProvidedData("entity id 3", "Unknown", "2012-04-04", null)), false, null);
+
+        assertEquals(1, result.existingCount(0));
+        assertEquals(0, result.existingCount(1));
+        assertEquals(asList(2), new ArrayList<>(result.failures().keySet()));
+        verify(servicesProvidedRepository).saveAll(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 2")));
+    }
+
+    @Test
+    public void shouldNotMatchTheServicesProvidedABackfillAddedToItsLaterBatches() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        ServiceProvided serviceProvided = new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, "entity id 1");
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        when(servicesProvidedRepository.findByDristhiEntityIds(new HashSet<>(asList("entity id 1"))))
+                .thenReturn(Collections.<ServiceProvided>emptyList())
+                .thenReturn(asList(serviceProvided));
+
+        ReportDataBatchResult firstBatchResult = repository.backfillAll(asList(
+                serviceProvidedData("entity id 1", "Bherya", "2012-04-04", null)), false, "backfill 1");
+        ReportDataBatchResult secondBatchResult = repository.backfillAll(asList(
+                serviceProvidedData("entity id 1", "Bherya", "2012-04-04", null)), false, "backfill 1");
+
+        assertEquals(0, firstBatchResult.existingCount(0));
+        assertEquals(0, secondBatchResult.existingCount(0));
+        verify(servicesProvidedRepository, times(2)).saveAll(asList(serviceProvided));
+    }
+
+    @Test
+    public void shouldMatchBackfilledServicesProvidedWithoutAnEntityIdToSavedOnesWithoutOne() throws Exception {
+        PHC phc = new PHC(34, "PHC X", "PHC");
+        ServiceProvider serviceProvider = new ServiceProvider(2, 2, ANM);
+        Indicator fetchedIndicator = new Indicator(2, "ANC");
+        Location location = new Location(2, "Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        Date date = LocalDate.parse("2012-04-04").toDate();
+        when(dimensionIndex.serviceProvider("ANM X", ANM)).thenReturn(serviceProvider);
+        when(indicatorRepository.fetch(new Indicator("ANC"))).thenReturn(fetchedIndicator);
+        when(dimensionIndex.location("Bherya", "Sub Center", "PHC X")).thenReturn(location);
+        when(servicesProvidedRepository.findWithoutDristhiEntityIdOn(new HashSet<>(asList(date))))
+                .thenReturn(asList(new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, null)));
+
+        ReportDataBatchResult result = repository.backfillAll(asList(
+                serviceProvidedData(null, "Bherya", "2012-04-04", null),
+                serviceProvidedData(null, "Bherya", "2012-04-04", null)), false, null);
+
+        assertEquals(1, result.existingCount(0));
+        assertEquals(0, result.existingCount(1));
+        verify(servicesProvidedRepository).saveAll(asList(
+                new ServiceProvided(serviceProvider, "12345", fetchedIndicator, date, location, null)));
+    }
+
+    private ReportingData serviceProvidedData(String dristhiEntityId, String village, String date, String quantity) {
+        return new ReportingData(SERVICE_PROVIDED_DATA_TYPE)
+                .with(ANM_IDENTIFIER, "ANM X")
+                .with(SERVICE_PROVIDER_TYPE, "ANM")
+                .with(EXTERNAL_ID, "12345")
+                .with(INDICATOR, "ANC")
+                .with(SERVICE_PROVIDED_DATE, date)
+                .with(VILLAGE, village)
+                .with(SUB_CENTER, "Sub Center")
+                .with(PHC, "PHC X")
+                .with(DRISTHI_ENTITY_ID, dristhiEntityId)
+                .withQuantity(quantity);
+    }
+
     private <T> void verifyCallsToReadOnlyCachedRepository(ReadOnlyCacheableRepository<T> repo, T object) {
         verify(repo, times(1)).fetch(object);
         verifyNoMoreInteractions(repo);
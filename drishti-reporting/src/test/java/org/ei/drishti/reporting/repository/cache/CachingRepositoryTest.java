@@ -0,0 +1,42 @@
+package org.ei.drishti.reporting.repository.cache;
+
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.reporting.domain.ANM;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CachingRepositoryTest {
+    @Mock
+    private CacheableRepository<ANM> anmRepository;
+    @Mock
+    private Monitor monitor;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+    }
+
+    @Test
+    public void shouldSaveAnObjectWhichIsNotInDBAndCacheTheSavedObject() throws Exception {
+        CachingRepository<ANM> repository = new CachingRepository<>(anmRepository, monitor);
+        ANM anm = new ANM("ANM X");
+        ANM savedANM = new ANM(1, "ANM X");
+        when(anmRepository.fetch(anm)).thenReturn(null, savedANM);
+
+        assertEquals(savedANM, repository.fetch(anm));
+        assertEquals(savedANM, repository.fetch(anm));
+
+        InOrder inOrder = inOrder(anmRepository);
+        inOrder.verify(anmRepository).fetch(anm);
+        inOrder.verify(anmRepository).save(anm);
+        inOrder.verify(anmRepository).flush();
+        inOrder.verify(anmRepository).fetch(anm);
+        verifyNoMoreInteractions(anmRepository);
+    }
+}
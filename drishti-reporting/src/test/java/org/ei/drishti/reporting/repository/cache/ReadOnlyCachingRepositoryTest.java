@@ -1,11 +1,28 @@
 package org.ei.drishti.reporting.repository.cache;
 
+import org.ei.drishti.common.monitor.Monitor;
+import org.ei.drishti.common.util.DateUtil;
 import org.ei.drishti.reporting.domain.ANM;
 import org.ei.drishti.reporting.domain.Indicator;
+import org.joda.time.LocalDate;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
-
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.ei.drishti.common.monitor.Metric.REPORTING_CACHE_HITS;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_CACHE_MISSES;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -15,12 +32,19 @@ public class ReadOnlyCachingRepositoryTest {
     private ANMCacheableRepository anmsRepository;
     @Mock
     private IndicatorCacheableRepository indicatorRepository;
+    @Mock
+    private Monitor monitor;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
     }
 
+    @After
+    public void tearDown() throws Exception {
+        DateUtil.fakeIt(LocalDate.now());
+    }
+
     @Test
     public void shouldOnlyFetchNewANMsAndFetchOldOnesFromCache() throws Exception {
         assertCacheableReadOnly(anmsRepository, new FactoryForReadOnlyCache<ANM>() {
@@ -51,8 +75,121 @@ public class ReadOnlyCachingRepositoryTest {
         });
     }
 
+    @Test
+    public void shouldLoadAnObjectOnceWhenManyThreadsAskForItAtTheSameTime() throws Exception {
+        final ReadOnlyCachingRepository<ANM> repository = new ReadOnlyCachingRepository<>(anmsRepository, monitor);
+        final ANM anm = new ANM(4, "ANM X");
+        final CountDownLatch loadStarted = new CountDownLatch(1);
+        final CountDownLatch finishLoad = new CountDownLatch(1);
+        when(anmsRepository.fetch(anm)).thenAnswer(new Answer<ANM>() {
+            @Override
+            public ANM answer(InvocationOnMock invocation) throws Throwable {
+                loadStarted.countDown();
+                finishLoad.await(5, TimeUnit.SECONDS);
+                return anm;
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<ANM>> fetches = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                fetches.add(executor.submit(new Callable<ANM>() {
+                    @Override
+                    public ANM call() throws Exception {
+                        return repository.fetch(anm);
+                    }
+                }));
+            }
+            loadStarted.await(5, TimeUnit.SECONDS);
+            finishLoad.countDown();
+
+            for (Future<ANM> fetch : fetches) {
+                assertEquals(anm, fetch.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(anmsRepository, times(1)).fetch(anm);
+    }
+
+    @Test
+    public void shouldEvictTheOldestObjectsWhenTheCacheIsFull() throws Exception {
+        ReadOnlyCachingRepository<ANM> repository = new ReadOnlyCachingRepository<>(anmsRepository, monitor, 2, 0);
+        ANM anmX = new ANM(1, "ANM X");
+        ANM anmY = new ANM(2, "ANM Y");
+        ANM anmZ = new ANM(3, "ANM Z");
+        when(anmsRepository.fetch(anmX)).thenReturn(anmX);
+        when(anmsRepository.fetch(anmY)).thenReturn(anmY);
+        when(anmsRepository.fetch(anmZ)).thenReturn(anmZ);
+
+        repository.fetch(anmX);
+        repository.fetch(anmY);
+        repository.fetch(anmZ);
+        repository.fetch(anmY);
+        repository.fetch(anmZ);
+        repository.fetch(anmX);
+
+        verify(anmsRepository, times(2)).fetch(anmX);
+        verify(anmsRepository, times(1)).fetch(anmY);
+        verify(anmsRepository, times(1)).fetch(anmZ);
+    }
+
+    @Test
+    public void shouldFetchAnObjectAgainOnceItHasLivedInTheCacheForItsTimeToLive() throws Exception {
+        ReadOnlyCachingRepository<Indicator> repository = new ReadOnlyCachingRepository<>(indicatorRepository, monitor, 0, 3600);
+        Indicator indicator = new Indicator(4, "IUD");
+        when(indicatorRepository.fetch(indicator)).thenReturn(indicator);
+
+        DateUtil.fakeIt(LocalDate.parse("2013-01-01"));
+        repository.fetch(indicator);
+        repository.fetch(indicator);
+        DateUtil.fakeIt(LocalDate.parse("2013-01-02"));
+        repository.fetch(indicator);
+
+        verify(indicatorRepository, times(2)).fetch(indicator);
+    }
+
+    @Test
+    public void shouldFetchAnObjectAgainAfterItIsCleared() throws Exception {
+        ReadOnlyCachingRepository<Indicator> repository = new ReadOnlyCachingRepository<>(indicatorRepository, monitor);
+        Indicator iud = new Indicator(4, "IUD");
+        Indicator bcg = new Indicator(5, "BCG");
+        when(indicatorRepository.fetch(iud)).thenReturn(iud);
+        when(indicatorRepository.fetch(bcg)).thenReturn(bcg);
+
+        repository.fetch(iud);
+        repository.fetch(bcg);
+        repository.clear(iud);
+        repository.fetch(iud);
+        repository.fetch(bcg);
+        repository.clearAll();
+        repository.fetch(bcg);
+
+        verify(indicatorRepository, times(2)).fetch(iud);
+        verify(indicatorRepository, times(2)).fetch(bcg);
+    }
+
+    @Test
+    public void shouldReportCacheHitsAndMissesToTheMonitor() throws Exception {
+        ReadOnlyCachingRepository<Indicator> repository = new ReadOnlyCachingRepository<>(indicatorRepository, monitor);
+        Indicator iud = new Indicator(4, "IUD");
+        Indicator bcg = new Indicator(5, "BCG");
+        when(indicatorRepository.fetch(iud)).thenReturn(iud);
+        when(indicatorRepository.fetch(bcg)).thenReturn(bcg);
+
+        repository.fetch(iud);
+        repository.fetch(iud);
+        repository.fetch(iud);
+        repository.fetch(bcg);
+
+        verify(monitor).addObservationFor(REPORTING_CACHE_HITS, 0);
+        verify(monitor).addObservationFor(REPORTING_CACHE_HITS, 2);
+        verify(monitor, times(2)).addObservationFor(REPORTING_CACHE_MISSES, 1);
+    }
+
     private <T> void assertCacheableReadOnly(ReadOnlyCacheableRepository<T> cacheableRepository, final FactoryForReadOnlyCache<T> factory) {
-        ReadOnlyCachingRepository<T> repository = new ReadOnlyCachingRepository<>(cacheableRepository);
+        ReadOnlyCachingRepository<T> repository = new ReadOnlyCachingRepository<>(cacheableRepository, monitor);
 
         T objectInDB = factory.objectInDB();
         T objectNotInDB = factory.objectNotInDB();
@@ -73,6 +210,4 @@ public class ReadOnlyCachingRepositoryTest {
 
         public abstract T objectInDB();
     }
-
-
 }
@@ -0,0 +1,217 @@
+package org.ei.drishti.reporting.repository.it;
+
+import org.ei.drishti.reporting.domain.ANM;
+import org.ei.drishti.reporting.domain.ANMReportData;
+import org.ei.drishti.reporting.domain.ANMReportDataCount;
+import org.ei.drishti.reporting.domain.ANMReportMonthlySummary;
+import org.ei.drishti.reporting.domain.Indicator;
+import org.ei.drishti.reporting.repository.AllANMReportMonthlySummariesRepository;
+import org.ei.drishti.reporting.repository.ResultHandler;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static junit.framework.Assert.assertEquals;
+import static org.joda.time.LocalDate.parse;
+
+public class AllANMReportMonthlySummariesRepositoryIntegrationTest extends ANMReportsIntegrationTestBase {
+    @Autowired
+    private AllANMReportMonthlySummariesRepository repository;
+    @Autowired
+    @Qualifier("anmReportTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldAddReportDataToTheSummaryOfItsReportingMonth() throws Exception {
+        ANM anm = new ANM("ANM X");
+        Indicator indicator = new Indicator("ANC Indicator");
+        template.save(anm);
+        template.save(indicator);
+
+        repository.addAll(asList(reportData(anm, "EC CASE X", indicator, "2012-03-31"), reportData(anm, "EC CASE X", indicator, "2012-04-25")));
+        repository.addAll(asList(reportData(anm, "EC CASE X", indicator, "2012-04-26")));
+
+        List<ANMReportDataCount> counts = repository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-06-26").toDate());
+        assertEquals(2, counts.size());
+        assertEquals(parse("2012-04-25").toDate().getTime(), counts.get(0).date().getTime());
+        assertEquals(2L, counts.get(0).count());
+        assertEquals(parse("2012-05-25").toDate().getTime(), counts.get(1).date().getTime());
+        assertEquals(1L, counts.get(1).count());
+    }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldRemoveReportDataFromTheSummaryAndDropSummariesThatBecomeEmpty() throws Exception {
+        ANM anm = new ANM("ANM X");
+        Indicator indicator = new Indicator("ANC Indicator");
+        template.save(anm);
+        template.save(indicator);
+        repository.addAll(asList(reportData(anm, "EC CASE X", indicator, "2012-03-31"), reportData(anm, "EC CASE X", indicator, "2012-03-31"),
+                reportData(anm, "EC CASE Y", indicator, "2012-03-31")));
+
+        repository.removeAll(asList(reportData(anm, "EC CASE X", indicator, "2012-03-31"), reportData(anm, "EC CASE Y", indicator, "2012-03-31")));
+
+        template.clear();
+        List<ANMReportMonthlySummary> summaries = template.loadAll(ANMReportMonthlySummary.class);
+        assertEquals(1, summaries.size());
+        assertEquals("EC CASE X", summaries.get(0).externalId());
+        assertEquals(1L, summaries.get(0).total());
+    }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldHandTheCountsOfAllANMsWithinADateRangeOrderedByANM() throws Exception {
+        ANM anm1 = new ANM("ANM X");
+        ANM anm2 = new ANM("ANM Y");
+        Indicator indicator = new Indicator("ANC Indicator");
+        template.save(anm1);
+        template.save(anm2);
+        template.save(indicator);
+        repository.addAll(asList(reportData(anm2, "EC CASE Y", indicator, "2012-03-31"), reportData(anm1, "EC CASE X", indicator, "2012-03-31"),
+                reportData(anm1, "EC CASE X", indicator, "2012-03-31"), reportData(anm1, "EC CASE X", indicator, "2012-04-26")));
+        final List<ANMReportDataCount> counts = new ArrayList<>();
+
+        repository.countByDateRange(parse("2012-03-26").toDate(), parse("2012-04-26").toDate(), new ResultHandler<ANMReportDataCount>() {
+            @Override
+            public void handle(ANMReportDataCount count) {
+                counts.add(count);
+            }
+        });
+
+        assertEquals(2, counts.size());
+        assertEquals("ANM X", counts.get(0).anmIdentifier());
+        assertEquals(2L, counts.get(0).count());
+        assertEquals("ANM Y", counts.get(1).anmIdentifier());
+        assertEquals(1L, counts.get(1).count());
+    }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldRebuildTheSummariesFromTheReportData() throws Exception {
+        ANM anm = new ANM("ANM X");
+        Indicator indicator = new Indicator("ANC Indicator");
+        template.save(anm);
+        template.save(indicator);
+        template.save(reportData(anm, "EC CASE X", indicator, "2012-03-31"));
+        template.save(reportData(anm, "EC CASE X", indicator, "2012-04-25"));
+        template.save(reportData(anm, "EC CASE X", indicator, "2012-12-26"));
+        repository.addAll(asList(reportData(anm, "EC CASE Z", indicator, "2012-03-31")));
+        template.flush();
+
+        repository.rebuild();
+
+        template.clear();
+        List<ANMReportDataCount> counts = repository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2013-03-26").toDate());
+        assertEquals(2, counts.size());
+        assertEquals(asList("EC CASE X", "EC CASE X"), asList(counts.get(0).externalId(), counts.get(1).externalId()));
+        assertEquals(parse("2012-04-25").toDate().getTime(), counts.get(0).date().getTime());
+        assertEquals(2L, counts.get(0).count());
+        assertEquals(parse("2013-01-25").toDate().getTime(), counts.get(1).date().getTime());
+        assertEquals(1L, counts.get(1).count());
+    }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldNotTouchTheSummariesWhenNothingIsRemoved() throws Exception {
+        repository.removeAll(Collections.<ANMReportData>emptyList());
+
+        assertEquals(0, template.loadAll(ANMReportMonthlySummary.class).size());
+    }
+
+    @Test
+    public void shouldAddToTheSameSummaryFromConcurrentTransactions() throws Exception {
+        final TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        final ANM anm = new ANM("ANM X");
+        final Indicator indicator = new Indicator("ANC Indicator");
+        transaction.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                template.save(anm);
+                template.save(indicator);
+            }
+        });
+        final CountDownLatch secondTransactionStarted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    transaction.execute(new TransactionCallbackWithoutResult() {
+                        @Override
+                        protected void doInTransactionWithoutResult(TransactionStatus status) {
+                            repository.addAll(asList(reportData(anm, "EC CASE X", indicator, "2012-03-31")));
+                            try {
+                                secondTransactionStarted.await(10, TimeUnit.SECONDS);
+                                Thread.sleep(500);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                    });
+                }
+            });
+            Future<?> second = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    transaction.execute(new TransactionCallbackWithoutResult() {
+                        @Override
+                        protected void doInTransactionWithoutResult(TransactionStatus status) {
+                            secondTransactionStarted.countDown();
+                            repository.addAll(asList(reportData(anm, "EC CASE X", indicator, "2012-04-25")));
+                        }
+                    });
+                }
+            });
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+
+            List<ANMReportDataCount> counts = transaction.execute(new TransactionCallback<List<ANMReportDataCount>>() {
+                @Override
+                public List<ANMReportDataCount> doInTransaction(TransactionStatus status) {
+                    return repository.countByANMIdAndDateRange("ANM X", parse("2012-03-26").toDate(), parse("2012-04-26").toDate());
+                }
+            });
+            assertEquals(1, counts.size());
+            assertEquals(2L, counts.get(0).count());
+        } finally {
+            executor.shutdownNow();
+            transaction.execute(new TransactionCallbackWithoutResult() {
+                @Override
+                protected void doInTransactionWithoutResult(TransactionStatus status) {
+                    template.bulkUpdate("delete from ANMReportMonthlySummary s where s.anm = ?", anm);
+                    template.delete(anm);
+                    template.delete(indicator);
+                }
+            });
+        }
+    }
+
+    private ANMReportData reportData(ANM anm, String externalId, Indicator indicator, String date) {
+        Date reportDate = parse(date).toDate();
+        return new ANMReportData(anm, externalId, indicator, reportDate);
+    }
+}
@@ -9,6 +9,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.Map;
+
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
 import static org.joda.time.LocalDate.parse;
@@ -66,4 +69,46 @@ public class AllAnnualTargetsRepositoryIntegrationTest extends ANMReportsIntegra
         assertEquals("40", annualTargetForFirstIndicator.target());
         assertEquals("80", annualTargetForSecondIndicator.target());
     }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldFetchAllAnnualTargetsOfAnANMByIndicator() throws Exception {
+        Indicator firstIndicator = new Indicator("INDICATOR1");
+        Indicator secondIndicator = new Indicator("INDICATOR2");
+        ANM anm = new ANM("ANM X");
+        ANM anotherANM = new ANM("ANM Y");
+        template.save(firstIndicator);
+        template.save(secondIndicator);
+        template.save(anm);
+        template.save(anotherANM);
+        template.save(new AnnualTarget(anm.id(), firstIndicator.id(), "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        template.save(new AnnualTarget(anm.id(), secondIndicator.id(), "80", parse("2011-03-26").toDate(), parse("2012-03-25").toDate()));
+        template.save(new AnnualTarget(anotherANM.id(), secondIndicator.id(), "20", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+
+        Map<String, String> targets = repository.fetchAllFor(anm.anmIdentifier(), parse("2012-03-31").toDate());
+
+        assertEquals(Collections.singletonMap("INDICATOR1", "40"), targets);
+    }
+
+    @Test
+    @Transactional("anm_report")
+    @Rollback
+    public void shouldFetchTheAnnualTargetsOfAllANMsByANMAndIndicator() throws Exception {
+        Indicator indicator = new Indicator("INDICATOR");
+        ANM anm = new ANM("ANM X");
+        ANM anotherANM = new ANM("ANM Y");
+        template.save(indicator);
+        template.save(anm);
+        template.save(anotherANM);
+        template.save(new AnnualTarget(anm.id(), indicator.id(), "40", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        template.save(new AnnualTarget(anotherANM.id(), indicator.id(), "20", parse("2012-03-26").toDate(), parse("2013-03-25").toDate()));
+        template.save(new AnnualTarget(anotherANM.id(), indicator.id(), "10", parse("2011-03-26").toDate(), parse("2012-03-25").toDate()));
+
+        Map<String, Map<String, String>> targetsByANM = repository.fetchAllByANMFor(parse("2012-03-31").toDate());
+
+        assertEquals(Collections.singletonMap("INDICATOR", "40"), targetsByANM.get("ANM X"));
+        assertEquals(Collections.singletonMap("INDICATOR", "20"), targetsByANM.get("ANM Y"));
+        assertEquals(2, targetsByANM.size());
+    }
 }
@@ -11,6 +11,7 @@ import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 
 import static ch.lambdaj.Lambda.having;
 import static ch.lambdaj.Lambda.on;
@@ -60,4 +61,24 @@ public class AllServiceProvidersRepositoryIntegrationTest extends ServicesProvid
         assertEquals(anm.id(), serviceProvider.serviceProviderId());
         assertTrue("ID should be non-zero.", serviceProvider.id() != 0);
     }
+
+    @Test
+    @Transactional("service_provided")
+    @Rollback
+    public void shouldFetchAllServiceProvidersOfATypeByTheirIdentifier() throws Exception {
+        PHC phc = new PHC("bhe", "Bherya");
+        template.save(phc);
+        SP_ANM anm = new SP_ANM("bhe1anm", "bhe1anm name", "Sub Center 1", phc.id());
+        template.save(anm);
+        List<ServiceProviderType> serviceProviderTypes = template.loadAll(ServiceProviderType.class);
+        ServiceProviderType anmServiceProvider = selectUnique(serviceProviderTypes, having(on(ServiceProviderType.class).type(), equalTo(ANM.type())));
+        ServiceProviderType phcServiceProvider = selectUnique(serviceProviderTypes, having(on(ServiceProviderType.class).type(), equalTo(PHC.type())));
+        template.save(new ServiceProvider(anm.id(), anmServiceProvider));
+        template.save(new ServiceProvider(phc.id(), phcServiceProvider));
+
+        Map<String, ServiceProvider> anms = repository.fetchAllBy(ANM);
+
+        assertEquals(1, anms.size());
+        assertEquals(anm.id(), anms.get("bhe1anm").serviceProviderId());
+    }
 }
@@ -12,6 +12,7 @@ import java.util.Date;
 import java.util.List;
 
 import static ch.lambdaj.Lambda.*;
+import static java.util.Arrays.asList;
 import static org.ei.drishti.reporting.domain.ServiceProviderType.ANM;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.*;
@@ -45,6 +46,33 @@ public class AllServicesProvidedIntegrationTest extends ServicesProvidedIntegrat
         assertTrue(servicesProvided.contains(new ServiceProvided(serviceProvider, "123", indicator, dates, location, dristhiEntityId)));
     }
 
+    @Test
+    @Transactional("service_provided")
+    @Rollback
+    public void shouldSaveABatchOfServicesWithJDBCBatching() throws Exception {
+        PHC phc = new PHC("bhe", "Bherya");
+        template.save(phc);
+        SP_ANM anm = new SP_ANM("ANM X", "anmx name", "Sub Center 1", phc.id());
+        template.save(anm);
+        Date dates = LocalDate.parse("2013-01-26").toDate();
+        Indicator indicator = new Indicator("ANC indicator");
+        Location location = new Location("Bherya", "Sub Center", phc, "taluka", "mysore", "karnataka");
+        List<ServiceProviderType> serviceProviderTypes = template.loadAll(ServiceProviderType.class);
+        ServiceProviderType anmServiceProvider = selectUnique(serviceProviderTypes, having(on(ServiceProviderType.class).type(), equalTo(ANM.type())));
+        ServiceProvider serviceProvider = new ServiceProvider(anm.id(), anmServiceProvider);
+        template.save(location);
+        template.save(indicator);
+        template.save(serviceProvider);
+        template.flush();
+
+        repository.saveAll(asList(new ServiceProvided(serviceProvider, "123", indicator, dates, location, "entity id 1"),
+                new ServiceProvided(serviceProvider, "456", indicator, dates, location, null)));
+
+        List<ServiceProvided> servicesProvided = template.loadAll(ServiceProvided.class);
+        assertTrue(servicesProvided.contains(new ServiceProvided(serviceProvider, "123", indicator, dates, location, "entity id 1")));
+        assertTrue(servicesProvided.contains(new ServiceProvided(serviceProvider, "456", indicator, dates, location, null)));
+    }
+
     @Test
     @Transactional("service_provided")
     @Rollback
@@ -2,6 +2,7 @@ package org.ei.drishti.reporting.service;
 
 import com.google.gson.Gson;
 import org.ei.drishti.common.domain.ReportMonth;
+import org.ei.drishti.common.monitor.Monitor;
 import org.ei.drishti.common.util.HttpAgent;
 import org.ei.drishti.common.util.HttpResponse;
 import org.ei.drishti.dto.aggregatorResponse.AggregatorResponseDTO;
@@ -12,14 +13,22 @@ import org.ei.drishti.reporting.repository.ServicesProvidedRepository;
 import org.joda.time.LocalDate;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static java.util.Arrays.asList;
+import static org.ei.drishti.common.monitor.Metric.REPORTING_AGGREGATOR_LAG_ROWS;
 import static org.ei.drishti.common.util.EasyMap.mapOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -35,16 +44,21 @@ public class AggregateReportsServiceTest {
     private ServicesProvidedRepository servicesProvidedRepository;
     @Mock
     private ReportMonth reportMonth;
+    @Mock
+    private Monitor monitor;
+    @Mock
+    private AggregatedReportsCache aggregatedReportsCache;
 
     @Before
     public void setUp() throws Exception {
         initMocks(this);
-        aggregateReportsService = new AggregateReportsService("bamboo.url", "bamboo.aggregated.url", batchSizeToUpdate, httpAgent, tokenRepository, servicesProvidedRepository, reportMonth);
+        aggregateReportsService = service(batchSizeToUpdate);
     }
 
     @Test
     public void shouldSendReportsWithNRHMReportingMonthToAggregator() throws Exception {
         when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(2L);
         when(servicesProvidedRepository.getNewReports(0, batchSizeToUpdate))
                 .thenReturn(asList(new ServiceProvidedReport().withId(1).withDate(LocalDate.parse("2012-11-26").toDate()),
                         new ServiceProvidedReport().withId(2).withDate(LocalDate.parse("2012-12-28").toDate())));
@@ -57,38 +71,40 @@ public class AggregateReportsServiceTest {
         String reportJson = new Gson().toJson(asList(
                 new ServiceProvidedReportDTO().withDate(LocalDate.parse("2012-11-26")).withNRHMReportMonth(12).withNRHMReportYear(2012).withId(1),
                 new ServiceProvidedReportDTO().withDate(LocalDate.parse("2012-12-28")).withNRHMReportMonth(1).withNRHMReportYear(2013).withId(2)));
-        when(httpAgent.put("bamboo.url", mapOf("update", reportJson))).thenReturn(new HttpResponse(true, ""));
+        when(httpAgent.putAsync("bamboo.url", mapOf("update", reportJson))).thenReturn(respondsWith(true));
 
         aggregateReportsService.sendReportsToAggregator();
 
-        verify(httpAgent).put("bamboo.url", mapOf("update", reportJson));
+        verify(httpAgent).putAsync("bamboo.url", mapOf("update", reportJson));
         verify(tokenRepository).saveAggregateReportsToken(2);
+        verify(aggregatedReportsCache).invalidate(null, 12, 2012);
+        verify(aggregatedReportsCache).invalidate(null, 1, 2013);
     }
 
     @Test(expected = RuntimeException.class)
     public void shouldThrowExceptionWhenReportsAreNotSent() throws Exception {
         when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
-        ServiceProvidedReport firstServiceProvidedReport = new ServiceProvidedReport().withId(1);
-        ServiceProvidedReport secondServiceProvidedReport = new ServiceProvidedReport().withId(2);
-        when(servicesProvidedRepository.getNewReports(0, batchSizeToUpdate)).thenReturn(asList(firstServiceProvidedReport, secondServiceProvidedReport));
-        String firstReportJson = new Gson().toJson(firstServiceProvidedReport);
-        String secondReportAsJson = new Gson().toJson(secondServiceProvidedReport);
-        when(httpAgent.put("bamboo.url", mapOf("update", firstReportJson))).thenReturn(new HttpResponse(false, ""));
-
-        aggregateReportsService.sendReportsToAggregator();
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(2L);
+        when(servicesProvidedRepository.getNewReports(0, batchSizeToUpdate)).thenReturn(reports(1, 2));
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(false));
 
-        verify(httpAgent).put("bamboo.url", mapOf("update", firstReportJson));
-        verify(httpAgent, never()).put("bamboo.url", mapOf("update", secondReportAsJson));
+        try {
+            aggregateReportsService.sendReportsToAggregator();
+        } finally {
+            verify(tokenRepository, never()).saveAggregateReportsToken(anyInt());
+            verify(aggregatedReportsCache, never()).invalidate(anyString(), anyInt(), anyInt());
+        }
     }
 
     @Test
     public void shouldNotAggregateReportsWhenThereIsNoNewReport() throws Exception {
         when(tokenRepository.getAggregateReportsToken()).thenReturn(12345);
+        when(servicesProvidedRepository.countNewReports(12345)).thenReturn(0L);
         when(servicesProvidedRepository.getNewReports(12345, batchSizeToUpdate)).thenReturn(Collections.<ServiceProvidedReport>emptyList());
 
         aggregateReportsService.sendReportsToAggregator();
 
-        verify(httpAgent, never()).put(anyString(), anyMap());
+        verify(httpAgent, never()).putAsync(anyString(), anyMap());
         verify(tokenRepository, never()).saveAggregateReportsToken(anyInt());
     }
 
@@ -101,4 +117,147 @@ public class AggregateReportsServiceTest {
 
         assertEquals(asList(new AggregatorResponseDTO("OCP", 2), new AggregatorResponseDTO("OPV_1", 1)), aggregatorResponse);
     }
+
+    @Test
+    public void shouldKeepSendingBatchesUntilTheAggregatorHasCaughtUpAndAdvanceTheTokenAfterEachOne() throws Exception {
+        AggregateReportsService service = service(2);
+        when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(5L);
+        when(servicesProvidedRepository.getNewReports(0, 2)).thenReturn(reports(1, 2));
+        when(servicesProvidedRepository.getNewReports(2, 2)).thenReturn(reports(3, 4));
+        when(servicesProvidedRepository.getNewReports(4, 2)).thenReturn(reports(5));
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(true));
+
+        service.sendReportsToAggregator();
+
+        verify(httpAgent, times(3)).putAsync(eq("bamboo.url"), anyMap());
+        InOrder inOrder = inOrder(tokenRepository);
+        inOrder.verify(tokenRepository).saveAggregateReportsToken(2);
+        inOrder.verify(tokenRepository).saveAggregateReportsToken(4);
+        inOrder.verify(tokenRepository).saveAggregateReportsToken(5);
+        verify(monitor).addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, 5);
+        verify(monitor).addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, 3);
+        verify(monitor).addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, 1);
+        verify(monitor).addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, 0);
+    }
+
+    @Test
+    public void shouldNotAdvanceTheTokenPastABatchTheAggregatorDidNotAccept() throws Exception {
+        AggregateReportsService service = service(2);
+        when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(6L);
+        when(servicesProvidedRepository.getNewReports(0, 2)).thenReturn(reports(1, 2));
+        when(servicesProvidedRepository.getNewReports(2, 2)).thenReturn(reports(3, 4));
+        when(servicesProvidedRepository.getNewReports(4, 2)).thenReturn(reports(5, 6));
+        when(servicesProvidedRepository.getNewReports(6, 2)).thenReturn(Collections.<ServiceProvidedReport>emptyList());
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(true), respondsWith(false), respondsWith(true));
+
+        try {
+            service.sendReportsToAggregator();
+            fail("Expected the failed batch to be reported.");
+        } catch (RuntimeException expected) {
+        }
+
+        verify(httpAgent, times(3)).putAsync(eq("bamboo.url"), anyMap());
+        verify(tokenRepository).saveAggregateReportsToken(2);
+        verify(tokenRepository, never()).saveAggregateReportsToken(4);
+        verify(tokenRepository, never()).saveAggregateReportsToken(6);
+        verify(tokenRepository).saveAggregateReportsAcceptedAhead(ranges(5, 6));
+    }
+
+    @Test
+    public void shouldNotSendAgainTheBatchesTheAggregatorAcceptedAfterTheOneItDidNotAccept() throws Exception {
+        AggregateReportsService service = service(2);
+        when(tokenRepository.getAggregateReportsToken()).thenReturn(2);
+        when(tokenRepository.getAggregateReportsAcceptedAhead()).thenReturn(ranges(5, 6));
+        when(servicesProvidedRepository.countNewReports(2)).thenReturn(4L);
+        when(servicesProvidedRepository.getNewReports(2, 2)).thenReturn(reports(3, 4));
+        when(servicesProvidedRepository.getNewReports(4, 2)).thenReturn(reports(5, 6));
+        when(servicesProvidedRepository.getNewReports(6, 2)).thenReturn(Collections.<ServiceProvidedReport>emptyList());
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(true));
+
+        service.sendReportsToAggregator();
+
+        String reportJson = new Gson().toJson(asList(
+                new ServiceProvidedReportDTO().withDate(LocalDate.parse("2012-11-26")).withNRHMReportMonth(0).withNRHMReportYear(0).withId(3),
+                new ServiceProvidedReportDTO().withDate(LocalDate.parse("2012-11-26")).withNRHMReportMonth(0).withNRHMReportYear(0).withId(4)));
+        verify(httpAgent).putAsync("bamboo.url", mapOf("update", reportJson));
+        verify(httpAgent, times(1)).putAsync(eq("bamboo.url"), anyMap());
+        InOrder inOrder = inOrder(tokenRepository);
+        inOrder.verify(tokenRepository).saveAggregateReportsToken(4);
+        inOrder.verify(tokenRepository).saveAggregateReportsToken(6);
+        inOrder.verify(tokenRepository).saveAggregateReportsAcceptedAhead(new TreeMap<Integer, Integer>());
+        verify(monitor).addObservationFor(REPORTING_AGGREGATOR_LAG_ROWS, 0);
+    }
+
+    @Test
+    public void shouldSendOnlyTheReportsOfABatchThatWereNotAcceptedBefore() throws Exception {
+        AggregateReportsService service = service(3);
+        when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
+        when(tokenRepository.getAggregateReportsAcceptedAhead()).thenReturn(ranges(2, 3));
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(3L);
+        when(servicesProvidedRepository.getNewReports(0, 3)).thenReturn(reports(1, 2, 3));
+        when(servicesProvidedRepository.getNewReports(3, 3)).thenReturn(Collections.<ServiceProvidedReport>emptyList());
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(true));
+
+        service.sendReportsToAggregator();
+
+        String reportJson = new Gson().toJson(asList(
+                new ServiceProvidedReportDTO().withDate(LocalDate.parse("2012-11-26")).withNRHMReportMonth(0).withNRHMReportYear(0).withId(1)));
+        verify(httpAgent).putAsync("bamboo.url", mapOf("update", reportJson));
+        verify(tokenRepository).saveAggregateReportsToken(3);
+        verify(tokenRepository).saveAggregateReportsAcceptedAhead(new TreeMap<Integer, Integer>());
+    }
+
+    @Test
+    public void shouldSendOneBatchAtATimeWhenTheLagIsSmall() throws Exception {
+        AggregateReportsService service = new AggregateReportsService("bamboo.url", "bamboo.aggregated.url", 2, 4, 5000, 100,
+                httpAgent, tokenRepository, servicesProvidedRepository, reportMonth, monitor, aggregatedReportsCache);
+        when(tokenRepository.getAggregateReportsToken()).thenReturn(0);
+        when(servicesProvidedRepository.countNewReports(0)).thenReturn(6L);
+        when(servicesProvidedRepository.getNewReports(0, 2)).thenReturn(reports(1, 2));
+        when(servicesProvidedRepository.getNewReports(2, 2)).thenReturn(reports(3, 4));
+        when(servicesProvidedRepository.getNewReports(4, 2)).thenReturn(reports(5, 6));
+        when(servicesProvidedRepository.getNewReports(6, 2)).thenReturn(Collections.<ServiceProvidedReport>emptyList());
+        when(httpAgent.putAsync(eq("bamboo.url"), anyMap())).thenReturn(respondsWith(true), respondsWith(false));
+
+        try {
+            service.sendReportsToAggregator();
+            fail("Expected the failed batch to be reported.");
+        } catch (RuntimeException expected) {
+        }
+
+        verify(httpAgent, times(2)).putAsync(eq("bamboo.url"), anyMap());
+        verify(servicesProvidedRepository, never()).getNewReports(4, 2);
+    }
+
+    private AggregateReportsService service(int batchSize) {
+        return new AggregateReportsService("bamboo.url", "bamboo.aggregated.url", batchSize, 4, 5000, 0,
+                httpAgent, tokenRepository, servicesProvidedRepository, reportMonth, monitor, aggregatedReportsCache);
+    }
+
+    private List<ServiceProvidedReport> reports(Integer... ids) {
+        ServiceProvidedReport[] reports = new ServiceProvidedReport[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            reports[i] = new ServiceProvidedReport().withId(ids[i]).withDate(LocalDate.parse("2012-11-26").toDate());
+        }
+        return asList(reports);
+    }
+
+    private SortedMap<Integer, Integer> ranges(Integer firstId, Integer lastId) {
+        SortedMap<Integer, Integer> ranges = new TreeMap<>();
+        ranges.put(firstId, lastId);
+        return ranges;
+    }
+
+    private Future<HttpResponse> respondsWith(final boolean isSuccess) {
+        FutureTask<HttpResponse> response = new FutureTask<>(new Callable<HttpResponse>() {
+            @Override
+            public HttpResponse call() throws Exception {
+                return new HttpResponse(isSuccess, "");
+            }
+        });
+        response.run();
+        return response;
+    }
 }
@@ -0,0 +1,68 @@
+package org.ei.drishti.reporting.service;
+
+import org.ei.drishti.common.domain.ReportMonth;
+import org.ei.drishti.common.util.DateUtil;
+import org.ei.drishti.dto.LocationDTO;
+import org.ei.drishti.dto.report.AggregatedReportsDTO;
+import org.joda.time.LocalDate;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.ei.drishti.common.util.EasyMap.create;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AggregatedReportsCacheTest {
+    private AggregatedReportsCache cache;
+    private AggregatedReportsDTO reports;
+
+    @Before
+    public void setUp() throws Exception {
+        DateUtil.fakeIt(LocalDate.parse("2013-12-10"));
+        cache = new AggregatedReportsCache(new ReportMonth(), 2880, 5, 100);
+        reports = new AggregatedReportsDTO(create("OCP", 4).map(), new LocationDTO("Sub Center", "Bherya", "taluka", "mysore", "karnataka"));
+    }
+
+    @Test
+    public void shouldKeepReportsOfAClosedMonthLongerThanReportsOfTheCurrentMonth() throws Exception {
+        cache.put("demo1", 11, 2013, reports, cache.version("demo1", 11, 2013));
+        cache.put("demo1", 12, 2013, reports, cache.version("demo1", 12, 2013));
+
+        DateUtil.fakeIt(LocalDate.parse("2013-12-11"));
+
+        assertEquals(reports, cache.get("demo1", 11, 2013));
+        assertNull(cache.get("demo1", 12, 2013));
+    }
+
+    @Test
+    public void shouldDropReportsOfAMonthWhenItIsInvalidated() throws Exception {
+        cache.put("demo1", 11, 2013, reports, cache.version("demo1", 11, 2013));
+        cache.put("demo2", 11, 2013, reports, cache.version("demo2", 11, 2013));
+
+        cache.invalidate("demo1", 11, 2013);
+
+        assertNull(cache.get("demo1", 11, 2013));
+        assertEquals(reports, cache.get("demo2", 11, 2013));
+    }
+
+    @Test
+    public void shouldNotCacheReportsFetchedBeforeTheMonthWasInvalidated() throws Exception {
+        long versionWhenFetched = cache.version("demo1", 11, 2013);
+
+        cache.invalidate("demo1", 11, 2013);
+        cache.put("demo1", 11, 2013, reports, versionWhenFetched);
+
+        assertNull(cache.get("demo1", 11, 2013));
+    }
+
+    @Test
+    public void shouldNotCacheMoreReportsThanItsMaximumSize() throws Exception {
+        cache = new AggregatedReportsCache(new ReportMonth(), 2880, 5, 1);
+
+        cache.put("demo1", 11, 2013, reports, cache.version("demo1", 11, 2013));
+        cache.put("demo2", 11, 2013, reports, cache.version("demo2", 11, 2013));
+
+        assertEquals(reports, cache.get("demo1", 11, 2013));
+        assertNull(cache.get("demo2", 11, 2013));
+    }
+}
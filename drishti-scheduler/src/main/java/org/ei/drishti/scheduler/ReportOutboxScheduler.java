@@ -0,0 +1,42 @@
+package org.ei.drishti.scheduler;
+
+import org.joda.time.DateTime;
+import org.motechproject.scheduler.MotechSchedulerService;
+import org.motechproject.scheduler.domain.MotechEvent;
+import org.motechproject.scheduler.domain.RepeatingSchedulableJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.HashMap;
+
+import static org.joda.time.DateTimeConstants.MILLIS_PER_SECOND;
+
+@Component
+public class ReportOutboxScheduler {
+    public static final String SUBJECT = "REPORT-OUTBOX-FLUSH-SCHEDULE";
+    private static final int START_DELAY_IN_MINUTES = 1;
+    private final MotechSchedulerService schedulerService;
+    private static Logger logger = LoggerFactory.getLogger(ReportOutboxScheduler.class.toString());
+    private long flushIntervalInSeconds;
+
+    @Autowired
+    public ReportOutboxScheduler(MotechSchedulerService schedulerService,
+                                 @Value("#{drishti['report.outbox.flush.interval.in.seconds']}") Long flushIntervalInSeconds) {
+        this.schedulerService = schedulerService;
+        this.flushIntervalInSeconds = flushIntervalInSeconds;
+    }
+
+    public void startTimedScheduler() {
+        logger.info("Scheduling report outbox flush ...");
+
+        Date startTime = DateTime.now().plusMinutes(START_DELAY_IN_MINUTES).toDate();
+        MotechEvent event = new MotechEvent(SUBJECT, new HashMap<String, Object>());
+        RepeatingSchedulableJob job = new RepeatingSchedulableJob(event, startTime, null, flushIntervalInSeconds * MILLIS_PER_SECOND);
+
+        schedulerService.safeScheduleRepeatingJob(job);
+    }
+}
@@ -1,6 +1,9 @@
 package org.ei.drishti.web.controller;
 
-import ch.lambdaj.function.convert.Converter;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.ei.drishti.dto.form.FormSubmissionDTO;
 import org.ei.drishti.event.FormSubmissionEvent;
 import org.ei.drishti.form.domain.FormSubmission;
@@ -16,11 +19,11 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.List;
 
-import static ch.lambdaj.collection.LambdaCollections.with;
 import static java.text.MessageFormat.format;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.web.bind.annotation.RequestMethod.GET;
@@ -31,42 +34,30 @@ public class FormSubmissionController {
     private static Logger logger = LoggerFactory.getLogger(FormSubmissionController.class.toString());
     private FormSubmissionService formSubmissionService;
     private OutboundEventGateway gateway;
+    private ObjectMapper objectMapper;
 
     @Autowired
     public FormSubmissionController(FormSubmissionService formSubmissionService, OutboundEventGateway gateway) {
         this.formSubmissionService = formSubmissionService;
         this.gateway = gateway;
+        this.objectMapper = new ObjectMapper().configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
     }
 
     @RequestMapping(method = GET, value = "/form-submissions")
-    @ResponseBody
-    private List<FormSubmissionDTO> getNewSubmissionsForANM(@RequestParam("anm-id") String anmIdentifier,
-                                                            @RequestParam("timestamp") Long timeStamp,
-                                                            @RequestParam(value = "batch-size", required = false)
-                                                            Integer batchSize) {
-        List<FormSubmission> newSubmissionsForANM = formSubmissionService
-                .getNewSubmissionsForANM(anmIdentifier, timeStamp, batchSize);
-        return with(newSubmissionsForANM).convert(new Converter<FormSubmission, FormSubmissionDTO>() {
-            @Override
-            public FormSubmissionDTO convert(FormSubmission submission) {
-                return FormSubmissionConverter.from(submission);
-            }
-        });
+    public void getNewSubmissionsForANM(@RequestParam("anm-id") String anmIdentifier,
+                                        @RequestParam("timestamp") Long timeStamp,
+                                        @RequestParam(value = "batch-size", required = false)
+                                        Integer batchSize,
+                                        HttpServletResponse response) throws IOException {
+        writeSubmissions(formSubmissionService.streamNewSubmissionsForANM(anmIdentifier, timeStamp, batchSize), response);
     }
 
     @RequestMapping(method = GET, value="/all-form-submissions")
-    @ResponseBody
-    private List<FormSubmissionDTO> getAllFormSubmissions(@RequestParam("timestamp") Long timeStamp,
-                                                          @RequestParam(value = "batch-size", required = false)
-                                                          Integer batchSize) {
-        List<FormSubmission> allSubmissions = formSubmissionService
-                .getAllSubmissions(timeStamp, batchSize);
-        return with(allSubmissions).convert(new Converter<FormSubmission, FormSubmissionDTO>() {
-            @Override
-            public FormSubmissionDTO convert(FormSubmission submission) {
-                return FormSubmissionConverter.from(submission);
-            }
-        });
+    public void getAllFormSubmissions(@RequestParam("timestamp") Long timeStamp,
+                                      @RequestParam(value = "batch-size", required = false)
+                                      Integer batchSize,
+                                      HttpServletResponse response) throws IOException {
+        writeSubmissions(formSubmissionService.streamAllSubmissions(timeStamp, batchSize), response);
     }
 
     @RequestMapping(headers = {"Accept=application/json"}, method = POST, value = "/form-submissions")
@@ -84,4 +75,19 @@ public class FormSubmissionController {
         }
         return new ResponseEntity<>(CREATED);
     }
+
+    private void writeSubmissions(Iterable<FormSubmission> submissions, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        JsonGenerator generator = objectMapper.getJsonFactory().createJsonGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        try {
+            generator.writeStartArray();
+            for (FormSubmission submission : submissions) {
+                objectMapper.writeValue(generator, FormSubmissionConverter.from(submission));
+            }
+            generator.writeEndArray();
+        } finally {
+            generator.close();
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package org.ei.drishti.web.controller;
+
+import org.ei.drishti.service.reporting.ReportBackfillJob;
+import org.ei.drishti.service.reporting.ReportBackfillService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+@Controller
+public class ReportBackfillController {
+    private ReportBackfillService reportBackfillService;
+
+    @Autowired
+    public ReportBackfillController(ReportBackfillService reportBackfillService) {
+        this.reportBackfillService = reportBackfillService;
+    }
+
+    @RequestMapping(method = POST, value = "/report-backfill")
+    @ResponseBody
+    public ResponseEntity<ReportBackfillJob> backfill(@RequestParam("form-name") String formName,
+                                                      @RequestParam("from-server-version") long fromServerVersion,
+                                                      @RequestParam("to-server-version") long toServerVersion,
+                                                      @RequestParam(value = "dry-run", defaultValue = "true") boolean dryRun) {
+        ReportBackfillJob job = reportBackfillService.start(formName, fromServerVersion, toServerVersion, dryRun);
+        return new ResponseEntity<>(job.snapshot(), ACCEPTED);
+    }
+
+    @RequestMapping(method = GET, value = "/report-backfill/{id}")
+    @ResponseBody
+    public ResponseEntity<ReportBackfillJob> job(@PathVariable("id") String id) {
+        ReportBackfillJob job = reportBackfillService.job(id);
+        if (job == null) {
+            return new ResponseEntity<>(NOT_FOUND);
+        }
+        return new ResponseEntity<>(job.snapshot(), OK);
+    }
+}
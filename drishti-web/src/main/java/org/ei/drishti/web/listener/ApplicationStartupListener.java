@@ -3,6 +3,7 @@ package org.ei.drishti.web.listener;
 import org.ei.drishti.scheduler.ANMReportScheduler;
 import org.ei.drishti.scheduler.DrishtiFormScheduler;
 import org.ei.drishti.scheduler.MCTSReportScheduler;
+import org.ei.drishti.scheduler.ReportOutboxScheduler;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
@@ -14,12 +15,15 @@ public class ApplicationStartupListener implements ApplicationListener<ContextRe
     private ANMReportScheduler anmReportScheduler;
     private DrishtiFormScheduler drishtiFormScheduler;
     private MCTSReportScheduler mctsReportScheduler;
+    private ReportOutboxScheduler reportOutboxScheduler;
 
     @Autowired
-    public ApplicationStartupListener(ANMReportScheduler anmReportScheduler, DrishtiFormScheduler drishtiFormScheduler, MCTSReportScheduler mctsReportScheduler) {
+    public ApplicationStartupListener(ANMReportScheduler anmReportScheduler, DrishtiFormScheduler drishtiFormScheduler, MCTSReportScheduler mctsReportScheduler,
+                                      ReportOutboxScheduler reportOutboxScheduler) {
         this.anmReportScheduler = anmReportScheduler;
         this.drishtiFormScheduler = drishtiFormScheduler;
         this.mctsReportScheduler = mctsReportScheduler;
+        this.reportOutboxScheduler = reportOutboxScheduler;
     }
 
     @Override
@@ -28,6 +32,7 @@ public class ApplicationStartupListener implements ApplicationListener<ContextRe
             anmReportScheduler.startTimedScheduler();
             drishtiFormScheduler.startTimedScheduler();
             mctsReportScheduler.startTimedScheduler();
+            reportOutboxScheduler.startTimedScheduler();
         }
     }
 }
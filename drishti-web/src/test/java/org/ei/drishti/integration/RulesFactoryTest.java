@@ -2,6 +2,7 @@ package org.ei.drishti.integration;
 
 import org.ei.drishti.service.reporting.RuleNotFoundException;
 import org.ei.drishti.service.reporting.RulesFactory;
+import org.ei.drishti.service.reporting.expression.ExpressionRule;
 import org.ei.drishti.service.reporting.rules.*;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,6 +32,15 @@ public class RulesFactoryTest {
         IRule rule = rulesFactory.ruleByName(ruleName);
     }
 
+    @Test
+    public void shouldCompileAFieldNameThatNoRuleIsCalledIntoAnExpression() throws Exception {
+        String ruleName = "isHighRisk";
+
+        IRule rule = rulesFactory.ruleByName(ruleName);
+
+        assertTrue(rule instanceof ExpressionRule);
+    }
+
     @Test
     public void shouldLoadAgeIsLessThanOneYearRuleClassByName() throws Exception {
         String ruleName = "IsChildLessThanOneYearOldRule";
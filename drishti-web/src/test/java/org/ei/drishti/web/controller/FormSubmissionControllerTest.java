@@ -0,0 +1,81 @@
+package org.ei.drishti.web.controller;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.ei.drishti.form.domain.FormSubmission;
+import org.ei.drishti.form.service.FormSubmissionConverter;
+import org.ei.drishti.form.service.FormSubmissionService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.motechproject.scheduler.gateway.OutboundEventGateway;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class FormSubmissionControllerTest {
+    @Mock
+    private FormSubmissionService formSubmissionService;
+    @Mock
+    private OutboundEventGateway gateway;
+    @Mock
+    private HttpServletResponse response;
+
+    private FormSubmissionController controller;
+    private ByteArrayOutputStream body;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        controller = new FormSubmissionController(formSubmissionService, gateway);
+        body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+        });
+    }
+
+    @Test
+    public void shouldStreamNewSubmissionsOfAnANMAsAJSONArrayOfDTOs() throws Exception {
+        FormSubmission firstSubmission = new FormSubmission("ANM 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, 1L);
+        FormSubmission secondSubmission = new FormSubmission("ANM 1", "instance id 2", "form name 1", "entity id 2", 0L, "1", null, 2L);
+        when(formSubmissionService.streamNewSubmissionsForANM("ANM 1", 0L, 2)).thenReturn(asList(firstSubmission, secondSubmission));
+
+        controller.getNewSubmissionsForANM("ANM 1", 0L, 2, response);
+
+        verify(response).setContentType("application/json");
+        verify(response).setCharacterEncoding("UTF-8");
+        assertEquals(new ObjectMapper().writeValueAsString(asList(FormSubmissionConverter.from(firstSubmission), FormSubmissionConverter.from(secondSubmission))),
+                body.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldStreamAllSubmissionsAfterAServerVersionWithoutABatchSize() throws Exception {
+        FormSubmission submission = new FormSubmission("ANM 1", "instance id 1", "form name 1", "entity id 1", 0L, "1", null, 6L);
+        when(formSubmissionService.streamAllSubmissions(5L, null)).thenReturn(asList(submission));
+
+        controller.getAllFormSubmissions(5L, null, response);
+
+        verify(response).setContentType("application/json");
+        assertEquals(new ObjectMapper().writeValueAsString(asList(FormSubmissionConverter.from(submission))), body.toString("UTF-8"));
+    }
+
+    @Test
+    public void shouldWriteAnEmptyArrayWhenThereAreNoNewSubmissions() throws Exception {
+        when(formSubmissionService.streamNewSubmissionsForANM("ANM 1", 10L, null)).thenReturn(Collections.<FormSubmission>emptyList());
+
+        controller.getNewSubmissionsForANM("ANM 1", 10L, null, response);
+
+        assertEquals("[]", body.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,66 @@
+package org.ei.drishti.web.controller;
+
+import org.ei.drishti.service.reporting.ReportBackfillJob;
+import org.ei.drishti.service.reporting.ReportBackfillResult;
+import org.ei.drishti.service.reporting.ReportBackfillService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+public class ReportBackfillControllerTest {
+    @Mock
+    private ReportBackfillService reportBackfillService;
+
+    private ReportBackfillController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        controller = new ReportBackfillController(reportBackfillService);
+    }
+
+    @Test
+    public void shouldStartABackfillInTheBackgroundAndReturnItsJob() throws Exception {
+        ReportBackfillJob job = new ReportBackfillJob("anc_visit", 0L, 10L, true);
+        when(reportBackfillService.start("anc_visit", 0L, 10L, true)).thenReturn(job);
+
+        ResponseEntity<ReportBackfillJob> response = controller.backfill("anc_visit", 0L, 10L, true);
+
+        assertEquals(ACCEPTED, response.getStatusCode());
+        assertEquals(job.id(), response.getBody().id());
+        assertEquals(ReportBackfillJob.State.QUEUED, response.getBody().state());
+    }
+
+    @Test
+    public void shouldReturnACopyOfTheJobWithItsProgressSoFar() throws Exception {
+        ReportBackfillJob job = new ReportBackfillJob("anc_visit", 0L, 10L, false);
+        ReportBackfillResult result = new ReportBackfillResult("anc_visit", false, 0L);
+        job.running(result);
+        when(reportBackfillService.job(job.id())).thenReturn(job);
+
+        ResponseEntity<ReportBackfillJob> response = controller.job(job.id());
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(ReportBackfillJob.State.RUNNING, response.getBody().state());
+        assertEquals(result, response.getBody().result());
+        assertNotSame(result, response.getBody().result());
+    }
+
+    @Test
+    public void shouldReturnNotFoundForAnUnknownJob() throws Exception {
+        ResponseEntity<ReportBackfillJob> response = controller.job("unknown id");
+
+        assertEquals(NOT_FOUND, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+}